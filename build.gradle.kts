@@ -1,6 +1,7 @@
 plugins {
     `java-library`
     alias(libs.plugins.gradleJavaConventions)
+    alias(libs.plugins.jmh)
 }
 
 group = "com.opencastsoftware"
@@ -14,6 +15,7 @@ dependencies {
     testImplementation(libs.junitJupiter)
     testImplementation(libs.hamcrest)
     testImplementation(libs.jqwik)
+    testImplementation(libs.jol)
 }
 
 mavenPublishing {
@@ -61,6 +63,14 @@ mavenPublishing {
     }
 }
 
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.add("thrpt")
+    timeUnit.set("s")
+    // Report allocated bytes per operation alongside throughput
+    profilers.add("gc")
+}
+
 tasks.named<Test>("test") { useJUnitPlatform { includeEngines("junit-jupiter", "jqwik") } }
 
 // Create an integration test source set and configuration
@@ -0,0 +1,71 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ExpressionBuilderBenchmark {
+    @Param({"1000", "100000"})
+    int instructionCount;
+
+    @Benchmark
+    public Expression numericExpression() {
+        var instructions = new ArrayList<Instruction>(instructionCount);
+
+        instructions.add(VariableInstruction.local_get(0));
+        for (int i = 1; i + 1 < instructionCount; i += 2) {
+            instructions.add(NumericInstruction.i32_const(i));
+            instructions.add(i % 4 == 1 ? NumericInstruction.i32_add() : NumericInstruction.i32_mul());
+        }
+
+        return new Expression(instructions);
+    }
+
+    @Benchmark
+    public Expression memoryExpression() {
+        var instructions = new ArrayList<Instruction>(instructionCount);
+
+        for (int i = 0; i + 2 < instructionCount; i += 3) {
+            instructions.add(VariableInstruction.local_get(0));
+            instructions.add(MemoryInstruction.i64_load(i * 8, 3));
+            instructions.add(VariableInstruction.local_set(1));
+        }
+
+        return new Expression(instructions);
+    }
+
+    // Builds nested blocks of ten instructions each, from the innermost block outwards
+    @Benchmark
+    public Expression nestedExpression() {
+        Instruction block = ControlInstruction.nop();
+
+        for (int i = 0; i < instructionCount; i += 10) {
+            block = ControlInstruction.block(
+                    block,
+                    VariableInstruction.local_get(0),
+                    NumericInstruction.i32_const(i),
+                    NumericInstruction.i32_add(),
+                    VariableInstruction.local_tee(0),
+                    NumericInstruction.i32_eqz(),
+                    ControlInstruction.br_if(0),
+                    ControlInstruction.nop(),
+                    VariableInstruction.local_get(0),
+                    VariableInstruction.local_set(0));
+        }
+
+        return Expression.of(block);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.Limits;
+import com.opencastsoftware.wasm4j.types.NumType;
+import com.opencastsoftware.wasm4j.types.ValType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Small compute kernels for measuring execution engines.
+// Each module exports a function named "run" which takes the size of the problem as an i32.
+public final class SamplePrograms {
+    private SamplePrograms() {
+    }
+
+    public enum Program {
+        // Recursive calls, computing the nth Fibonacci number
+        FIB(25),
+        // Loops over memory, counting the primes below n with a sieve of i32 flags
+        SIEVE(50000),
+        // Nested loops of f64 arithmetic, multiplying two n by n matrices
+        MATMUL(40);
+
+        private final int size;
+
+        Program(int size) {
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    public static Module of(Program program) {
+        switch (program) {
+            case FIB:
+                return fib();
+            case SIEVE:
+                return sieve();
+            default:
+                return matmul();
+        }
+    }
+
+    private static Module export(Module.Builder builder) {
+        return builder.withExport(new Export("run", Export.Descriptor.func(0))).build();
+    }
+
+    // A block which counts a local up from a start value to the value of another local, running the body each time
+    private static Instruction forLoop(int counter, int start, int limit, Instruction... body) {
+        var loop = new ArrayList<Instruction>();
+        loop.add(VariableInstruction.local_get(counter));
+        loop.add(VariableInstruction.local_get(limit));
+        loop.add(NumericInstruction.i32_ge_u());
+        loop.add(ControlInstruction.br_if(1));
+        Collections.addAll(loop, body);
+        loop.add(VariableInstruction.local_get(counter));
+        loop.add(NumericInstruction.i32_const(1));
+        loop.add(NumericInstruction.i32_add());
+        loop.add(VariableInstruction.local_set(counter));
+        loop.add(ControlInstruction.br(0));
+
+        return ControlInstruction.block(
+                NumericInstruction.i32_const(start),
+                VariableInstruction.local_set(counter),
+                ControlInstruction.loop(loop));
+    }
+
+    // Pushes the address of an element of an n by n matrix of f64 values, where n is the first local
+    private static List<Instruction> address(int matrix, int row, int column) {
+        return List.of(
+                VariableInstruction.local_get(row),
+                VariableInstruction.local_get(0),
+                NumericInstruction.i32_mul(),
+                VariableInstruction.local_get(column),
+                NumericInstruction.i32_add(),
+                NumericInstruction.i32_const(3),
+                NumericInstruction.i32_shl(),
+                VariableInstruction.local_get(matrix),
+                NumericInstruction.i32_add());
+    }
+
+    @SafeVarargs
+    private static Instruction[] concat(List<Instruction>... parts) {
+        var instructions = new ArrayList<Instruction>();
+        for (List<Instruction> part : parts) {
+            instructions.addAll(part);
+        }
+        return instructions.toArray(new Instruction[0]);
+    }
+
+    public static Module fib() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+
+        return export(Module.builder().withFunc(type, Expression.of(
+                VariableInstruction.local_get(0),
+                NumericInstruction.i32_const(2),
+                NumericInstruction.i32_lt_u(),
+                ControlInstruction.ifInstr(NumType.i32(),
+                        List.of(VariableInstruction.local_get(0)),
+                        List.of(
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_const(1),
+                                NumericInstruction.i32_sub(),
+                                ControlInstruction.call(0),
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_const(2),
+                                NumericInstruction.i32_sub(),
+                                ControlInstruction.call(0),
+                                NumericInstruction.i32_add())))));
+    }
+
+    public static Module sieve() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+        // The candidate, its multiple and the count of primes
+        var locals = List.<ValType>of(NumType.i32(), NumType.i32(), NumType.i32());
+
+        return export(Module.builder()
+                .withMemory(ExternType.mem(Limits.of(4)))
+                .withFunc(type, locals, Expression.of(
+                        NumericInstruction.i32_const(0),
+                        NumericInstruction.i32_const(0),
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(2),
+                        NumericInstruction.i32_shl(),
+                        MemoryInstruction.memory_fill(),
+                        forLoop(1, 2, 0,
+                                VariableInstruction.local_get(1),
+                                NumericInstruction.i32_const(2),
+                                NumericInstruction.i32_shl(),
+                                MemoryInstruction.i32_load(0, 2),
+                                NumericInstruction.i32_eqz(),
+                                ControlInstruction.ifInstr(List.of(
+                                        VariableInstruction.local_get(3),
+                                        NumericInstruction.i32_const(1),
+                                        NumericInstruction.i32_add(),
+                                        VariableInstruction.local_set(3),
+                                        VariableInstruction.local_get(1),
+                                        VariableInstruction.local_get(1),
+                                        NumericInstruction.i32_mul(),
+                                        VariableInstruction.local_set(2),
+                                        ControlInstruction.block(ControlInstruction.loop(
+                                                VariableInstruction.local_get(2),
+                                                VariableInstruction.local_get(0),
+                                                NumericInstruction.i32_ge_u(),
+                                                ControlInstruction.br_if(1),
+                                                VariableInstruction.local_get(2),
+                                                NumericInstruction.i32_const(2),
+                                                NumericInstruction.i32_shl(),
+                                                NumericInstruction.i32_const(1),
+                                                MemoryInstruction.i32_store(0, 2),
+                                                VariableInstruction.local_get(2),
+                                                VariableInstruction.local_get(1),
+                                                NumericInstruction.i32_add(),
+                                                VariableInstruction.local_set(2),
+                                                ControlInstruction.br(0)))), List.of())),
+                        VariableInstruction.local_get(3))));
+    }
+
+    public static Module matmul() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.f64()));
+        // The row, column and inner indices, the sum of the current element, and the addresses of the three matrices
+        var locals = List.<ValType>of(
+                NumType.i32(), NumType.i32(), NumType.i32(), NumType.f64(), NumType.i32(), NumType.i32(), NumType.i32());
+        int i = 1, j = 2, k = 3, sum = 4, a = 5, b = 6, c = 7;
+
+        return export(Module.builder()
+                .withMemory(ExternType.mem(Limits.of(1)))
+                .withFunc(type, locals, Expression.of(concat(
+                        // The matrices are stored one after another, starting at address zero
+                        List.of(
+                                VariableInstruction.local_get(0),
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_mul(),
+                                NumericInstruction.i32_const(3),
+                                NumericInstruction.i32_shl(),
+                                VariableInstruction.local_tee(b),
+                                VariableInstruction.local_get(b),
+                                NumericInstruction.i32_add(),
+                                VariableInstruction.local_set(c),
+                                forLoop(i, 0, 0, forLoop(k, 0, 0, concat(
+                                        address(a, i, k),
+                                        List.of(
+                                                VariableInstruction.local_get(i),
+                                                VariableInstruction.local_get(k),
+                                                NumericInstruction.i32_add(),
+                                                NumericInstruction.f64_convert_i32_s(),
+                                                MemoryInstruction.f64_store(0, 3)),
+                                        address(b, i, k),
+                                        List.of(
+                                                VariableInstruction.local_get(i),
+                                                VariableInstruction.local_get(k),
+                                                NumericInstruction.i32_sub(),
+                                                NumericInstruction.f64_convert_i32_s(),
+                                                MemoryInstruction.f64_store(0, 3))))),
+                                forLoop(i, 0, 0, forLoop(j, 0, 0, concat(
+                                        List.of(
+                                                NumericInstruction.f64_const(0.0),
+                                                VariableInstruction.local_set(sum),
+                                                forLoop(k, 0, 0, concat(
+                                                        List.of(VariableInstruction.local_get(sum)),
+                                                        address(a, i, k),
+                                                        List.of(MemoryInstruction.f64_load(0, 3)),
+                                                        address(b, k, j),
+                                                        List.of(
+                                                                MemoryInstruction.f64_load(0, 3),
+                                                                NumericInstruction.f64_mul(),
+                                                                NumericInstruction.f64_add(),
+                                                                VariableInstruction.local_set(sum))))),
+                                        address(c, i, j),
+                                        List.of(
+                                                VariableInstruction.local_get(sum),
+                                                MemoryInstruction.f64_store(0, 3))))),
+                                VariableInstruction.local_get(sum))))));
+    }
+}
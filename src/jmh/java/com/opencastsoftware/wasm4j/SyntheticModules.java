@@ -0,0 +1,157 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.Limits;
+import com.opencastsoftware.wasm4j.types.NumType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Valid modules of configurable size, shaped like typical compiler output
+public final class SyntheticModules {
+    private static final int PAGE_SIZE = 65536;
+
+    private SyntheticModules() {
+    }
+
+    public enum Shape {
+        NUMERIC, CONTROL, DATA
+    }
+
+    public static Module of(Shape shape, int funcCount, int unitsPerFunc) {
+        switch (shape) {
+            case NUMERIC:
+                return numericHeavy(funcCount, unitsPerFunc);
+            case CONTROL:
+                return controlHeavy(funcCount, unitsPerFunc);
+            default:
+                // Each unit of a data heavy module is a kilobyte of data
+                return dataHeavy(funcCount, unitsPerFunc * 1024);
+        }
+    }
+
+    // Straight-line arithmetic over an (i32, i64, f64) -> f64 function
+    public static Module numericHeavy(int funcCount, int unitsPerFunc) {
+        var builder = Module.builder();
+        var type = ExternType.func(List.of(NumType.i32(), NumType.i64(), NumType.f64()), List.of(NumType.f64()));
+
+        for (int f = 0; f < funcCount; f++) {
+            var instructions = new ArrayList<Instruction>(unitsPerFunc * 4 + 1);
+
+            instructions.add(NumericInstruction.f64_const(0.0));
+            for (int u = 0; u < unitsPerFunc; u++) {
+                switch (u % 3) {
+                    case 0:
+                        instructions.add(VariableInstruction.local_get(0));
+                        instructions.add(NumericInstruction.i32_const(u * 31));
+                        instructions.add(NumericInstruction.i32_mul());
+                        instructions.add(VariableInstruction.local_set(0));
+                        break;
+                    case 1:
+                        instructions.add(VariableInstruction.local_get(1));
+                        instructions.add(NumericInstruction.i64_const((long) u << 33));
+                        instructions.add(NumericInstruction.i64_add());
+                        instructions.add(VariableInstruction.local_set(1));
+                        break;
+                    default:
+                        instructions.add(VariableInstruction.local_get(2));
+                        instructions.add(NumericInstruction.f64_const(u * 0.5));
+                        instructions.add(NumericInstruction.f64_mul());
+                        instructions.add(NumericInstruction.f64_add());
+                }
+            }
+
+            builder.withFunc(type, List.of(NumType.i32(), NumType.i32(), NumType.f64()), new Expression(instructions));
+        }
+
+        return builder.build();
+    }
+
+    // Nested blocks, loops, conditionals and calls over an (i32) -> () function
+    public static Module controlHeavy(int funcCount, int unitsPerFunc) {
+        var builder = Module.builder();
+        var type = ExternType.func(List.of(NumType.i32()), List.of());
+
+        for (int f = 0; f < funcCount; f++) {
+            var instructions = new ArrayList<Instruction>(unitsPerFunc * 4);
+
+            for (int u = 0; u < unitsPerFunc; u++) {
+                switch (u % 3) {
+                    case 0:
+                        instructions.add(ControlInstruction.block(
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_eqz(),
+                                ControlInstruction.br_if(0),
+                                ControlInstruction.loop(
+                                        VariableInstruction.local_get(0),
+                                        NumericInstruction.i32_const(1),
+                                        NumericInstruction.i32_sub(),
+                                        VariableInstruction.local_tee(0),
+                                        ControlInstruction.br_if(0))));
+                        break;
+                    case 1:
+                        instructions.add(VariableInstruction.local_get(0));
+                        instructions.add(NumericInstruction.i32_const(u));
+                        instructions.add(NumericInstruction.i32_lt_s());
+                        instructions.add(ControlInstruction.ifInstr(
+                                List.of(VariableInstruction.local_get(0), ControlInstruction.call((f + 1) % funcCount)),
+                                List.of(ControlInstruction.nop())));
+                        break;
+                    default:
+                        instructions.add(ControlInstruction.block(
+                                ControlInstruction.block(
+                                        VariableInstruction.local_get(0),
+                                        ControlInstruction.br_table(new int[]{0, 1, 0}, 1)),
+                                VariableInstruction.local_get(0),
+                                ParametricInstruction.drop()));
+                }
+            }
+
+            builder.withFunc(type, new Expression(instructions));
+        }
+
+        return builder.build();
+    }
+
+    // Active and passive data segments, with a function copying from each passive segment
+    public static Module dataHeavy(int segmentCount, int segmentSize) {
+        var random = new Random(42);
+        int pages = (int) (((long) segmentCount * segmentSize) / PAGE_SIZE) + 1;
+
+        var builder = Module.builder()
+                .withMemory(ExternType.mem(Limits.of(pages)));
+
+        var copies = new ArrayList<Instruction>();
+        for (int d = 0; d < segmentCount; d++) {
+            var init = new byte[segmentSize];
+            random.nextBytes(init);
+
+            if (d % 2 == 0) {
+                var offset = ConstantExpression.of(NumericInstruction.i32_const(d * segmentSize));
+                builder.withData(new Data(init, Data.Mode.active(0, offset)));
+            } else {
+                builder.withData(new Data(init, Data.Mode.passive()));
+                copies.add(NumericInstruction.i32_const(d * segmentSize));
+                copies.add(NumericInstruction.i32_const(0));
+                copies.add(NumericInstruction.i32_const(segmentSize));
+                copies.add(MemoryInstruction.memory_init(d));
+                copies.add(MemoryInstruction.data_drop(d));
+            }
+        }
+
+        builder.withFunc(ExternType.func(List.of(), List.of()), new Expression(copies));
+
+        return builder.build();
+    }
+}
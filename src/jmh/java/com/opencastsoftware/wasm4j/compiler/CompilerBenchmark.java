@@ -0,0 +1,48 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.SamplePrograms;
+import com.opencastsoftware.wasm4j.interpreter.Interpreter;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompilerBenchmark {
+    public enum Engine {
+        COMPILER,
+        // The interpreter runs the same programs, for comparison
+        INTERPRETER
+    }
+
+    @Param({"FIB", "SIEVE", "MATMUL"})
+    SamplePrograms.Program program;
+
+    @Param({"COMPILER", "INTERPRETER"})
+    Engine engine;
+
+    private Instance instance;
+
+    @Setup
+    public void setup() {
+        var module = SamplePrograms.of(program);
+
+        this.instance = engine == Engine.COMPILER
+                ? Compiler.compile(module).instantiate()
+                : Interpreter.instantiate(module);
+    }
+
+    @Benchmark
+    public long[] run() {
+        return instance.invoke("run", program.size());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class LEB128Benchmark {
+    static final int VALUE_COUNT = 1024;
+
+    // The number of bytes in the encoding of each value, where int values are capped at 5 bytes.
+    // The mixed lengths are closer to a real module, where most indices and immediates fit into one or two bytes.
+    @Param({"1", "2", "3", "5", "10", "mixed"})
+    String encodedLength;
+
+    private int[] values;
+    private long[] longValues;
+    private byte[] encoded;
+    private byte[][] separatelyEncoded;
+    private byte[] output;
+    private ByteArrayOutputStream stream;
+
+    @Setup
+    public void setup() throws IOException {
+        var random = new Random(42);
+
+        values = new int[VALUE_COUNT];
+        longValues = new long[VALUE_COUNT];
+        separatelyEncoded = new byte[VALUE_COUNT][];
+        stream = new ByteArrayOutputStream();
+
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            var length = length(random);
+            var bits = Math.min(length * 7, Integer.SIZE);
+
+            // One bit of each signed encoding is taken by the sign
+            var longBits = Math.min(length * 7 - 1, Long.SIZE - 1);
+
+            // Set the top bit of the range so that each value has exactly the encoded length chosen for it
+            values[i] = (random.nextInt() >>> (Integer.SIZE - bits)) | (1 << (bits - 1));
+
+            var valueStream = new ByteArrayOutputStream();
+            LEB128.writeUnsigned(valueStream, values[i]);
+            separatelyEncoded[i] = valueStream.toByteArray();
+
+            LEB128.writeUnsigned(stream, values[i]);
+
+            // Alternate the sign of the values, which keeps the same encoded length
+            longValues[i] = (random.nextLong() >>> (Long.SIZE - longBits)) | (1L << (longBits - 1));
+            if (i % 2 == 1) {
+                longValues[i] = ~longValues[i];
+            }
+        }
+
+        encoded = stream.toByteArray();
+        output = new byte[VALUE_COUNT * LEB128.MAX_LONG_LENGTH];
+    }
+
+    private int length(Random random) {
+        if (!encodedLength.equals("mixed")) {
+            return Integer.parseInt(encodedLength);
+        }
+
+        int percentile = random.nextInt(100);
+        return percentile < 70 ? 1 : percentile < 90 ? 2 : percentile < 97 ? 3 : 5;
+    }
+
+    @Benchmark
+    public int writeToStream() throws IOException {
+        stream.reset();
+        for (int value : values) {
+            LEB128.writeUnsigned(stream, value);
+        }
+        return stream.size();
+    }
+
+    @Benchmark
+    public int writeToArray() {
+        int pos = 0;
+        for (int value : values) {
+            pos = LEB128.writeUnsigned(output, pos, value);
+        }
+        return pos;
+    }
+
+    @Benchmark
+    public int writeSignedLongToStream() throws IOException {
+        stream.reset();
+        for (long value : longValues) {
+            LEB128.writeSigned(stream, value);
+        }
+        return stream.size();
+    }
+
+    @Benchmark
+    public int writeSignedLongToArray() {
+        int pos = 0;
+        for (long value : longValues) {
+            pos = LEB128.writeSigned(output, pos, value);
+        }
+        return pos;
+    }
+
+    @Benchmark
+    public void sizeOf(Blackhole blackhole) {
+        for (int value : values) {
+            blackhole.consume(LEB128.sizeOfUnsigned(value));
+        }
+    }
+
+    // The existing reader can only decode from the start of an array, so each value must first be copied out
+    @Benchmark
+    public void readCopiedArrays(Blackhole blackhole) {
+        int pos = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            int length = separatelyEncoded[i].length;
+            var bytes = Arrays.copyOfRange(encoded, pos, pos + length);
+            blackhole.consume(LEB128.readUnsignedInt(bytes));
+            pos += length;
+        }
+    }
+
+    @Benchmark
+    public void readSeparateArrays(Blackhole blackhole) {
+        for (byte[] bytes : separatelyEncoded) {
+            blackhole.consume(LEB128.readUnsignedInt(bytes));
+        }
+    }
+
+    @Benchmark
+    public void decodeAtOffset(Blackhole blackhole) {
+        int pos = 0;
+        while (pos < encoded.length) {
+            long decoded = LEB128.decodeUnsignedInt(encoded, pos);
+            blackhole.consume(LEB128.decodedValue(decoded));
+            pos += LEB128.decodedLength(decoded);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.SyntheticModules;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModuleScannerBenchmark {
+    @Param({"NUMERIC", "DATA"})
+    SyntheticModules.Shape shape;
+
+    @Param({"100", "1000"})
+    int funcCount;
+
+    private final ModuleScanner scanner = new ModuleScanner();
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        this.file = Files.createTempFile("scanner", ".wasm");
+
+        try (OutputStream output = Files.newOutputStream(file)) {
+            new WasmBinaryEncoder().encodeModule(output, SyntheticModules.of(shape, funcCount, 100));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ModuleSummary scan() throws IOException {
+        return scanner.scan(file);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.SyntheticModules;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WasmBinaryDecoderBenchmark {
+    @Param({"NUMERIC", "CONTROL", "DATA"})
+    SyntheticModules.Shape shape;
+
+    @Param({"100", "1000"})
+    int funcCount;
+
+    @Param({"100"})
+    int unitsPerFunc;
+
+    private final WasmBinaryDecoder decoder = new WasmBinaryDecoder();
+    private final WasmBinaryDecoder parallelDecoder = new WasmBinaryDecoder(ForkJoinPool.commonPool());
+    private final WasmBinaryDecoder lazyDecoder = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY);
+    private ByteBuffer heapInput;
+    private ByteBuffer directInput;
+
+    // Counts the decoded input bytes, so that throughput is reported in bytes per second as well as modules per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DecodedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, SyntheticModules.of(shape, funcCount, unitsPerFunc));
+        var encoded = output.toByteArray();
+
+        this.heapInput = ByteBuffer.wrap(encoded);
+        this.directInput = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+    }
+
+    @Benchmark
+    public Module decodeHeapBuffer(DecodedBytes counter) {
+        counter.bytes += heapInput.remaining();
+        return decoder.decodeModule(heapInput);
+    }
+
+    @Benchmark
+    public Module decodeDirectBuffer(DecodedBytes counter) {
+        counter.bytes += directInput.remaining();
+        return decoder.decodeModule(directInput);
+    }
+
+    @Benchmark
+    public Module decodeParallel(DecodedBytes counter) {
+        counter.bytes += heapInput.remaining();
+        return parallelDecoder.decodeModule(heapInput);
+    }
+
+    @Benchmark
+    public Module decodeLazily(DecodedBytes counter) {
+        counter.bytes += heapInput.remaining();
+        return lazyDecoder.decodeModule(heapInput);
+    }
+}
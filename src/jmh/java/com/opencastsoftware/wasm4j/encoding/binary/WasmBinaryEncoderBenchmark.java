@@ -0,0 +1,53 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.SyntheticModules;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class WasmBinaryEncoderBenchmark {
+    @Param({"NUMERIC", "CONTROL", "DATA"})
+    SyntheticModules.Shape shape;
+
+    @Param({"100", "1000"})
+    int funcCount;
+
+    @Param({"100"})
+    int unitsPerFunc;
+
+    private final WasmBinaryEncoder encoder = new WasmBinaryEncoder();
+    private final WasmBinaryEncoder parallelEncoder = new WasmBinaryEncoder(ForkJoinPool.commonPool());
+    private final OutputStream output = OutputStream.nullOutputStream();
+    private Module module;
+
+    @Setup
+    public void setup() {
+        this.module = SyntheticModules.of(shape, funcCount, unitsPerFunc);
+    }
+
+    @Benchmark
+    public void encodeModule() throws IOException {
+        encoder.encodeModule(output, module);
+    }
+
+    @Benchmark
+    public void encodeModuleParallel() throws IOException {
+        parallelEncoder.encodeModule(output, module);
+    }
+
+    @Benchmark
+    public int sizeOfModule() {
+        return encoder.sizeOfModule(module);
+    }
+}
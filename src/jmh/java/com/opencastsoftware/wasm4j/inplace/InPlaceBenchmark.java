@@ -0,0 +1,59 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.SamplePrograms;
+import com.opencastsoftware.wasm4j.interpreter.Interpreter;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InPlaceBenchmark {
+    public enum Engine {
+        IN_PLACE,
+        // The interpreter runs the same programs, for comparison
+        INTERPRETER
+    }
+
+    @Param({"FIB", "SIEVE", "MATMUL"})
+    SamplePrograms.Program program;
+
+    @Param({"IN_PLACE", "INTERPRETER"})
+    Engine engine;
+
+    private Module module;
+    private Instance instance;
+
+    private Instance instantiate() {
+        return engine == Engine.IN_PLACE
+                ? InPlaceInterpreter.instantiate(module)
+                : Interpreter.instantiate(module);
+    }
+
+    @Setup
+    public void setup() {
+        this.module = SamplePrograms.of(program);
+        this.instance = instantiate();
+    }
+
+    @Benchmark
+    public long[] run() {
+        return instance.invoke("run", program.size());
+    }
+
+    // Includes preparing each function on its first call, which is paid again by every new instance
+    @Benchmark
+    public long[] instantiateAndRunOnce() {
+        return instantiate().invoke("run", 1);
+    }
+}
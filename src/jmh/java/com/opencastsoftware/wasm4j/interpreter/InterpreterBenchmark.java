@@ -0,0 +1,56 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+import com.opencastsoftware.wasm4j.SamplePrograms;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InterpreterBenchmark {
+    @Param({"FIB", "SIEVE", "MATMUL"})
+    SamplePrograms.Program program;
+
+    private Instance instance;
+    private long instructionsPerRun;
+
+    // Counts the WebAssembly instructions run, so that throughput is reported in instructions per second as well as runs per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ExecutedInstructions {
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            instructions = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        var module = SamplePrograms.of(program);
+
+        // Instructions are only counted in a separate instance, as counting them slows the interpreter down
+        var counting = new InterpreterInstance(module, Imports.empty(), true);
+        counting.invoke("run", program.size());
+        this.instructionsPerRun = counting.instructionCount();
+
+        this.instance = Interpreter.instantiate(module);
+    }
+
+    @Benchmark
+    public long[] run(ExecutedInstructions counter) {
+        counter.instructions += instructionsPerRun;
+        return instance.invoke("run", program.size());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.SyntheticModules;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryDecoder;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModuleValidatorBenchmark {
+    @Param({"NUMERIC", "CONTROL"})
+    SyntheticModules.Shape shape;
+
+    @Param({"100", "1000"})
+    int funcCount;
+
+    @Param({"100"})
+    int unitsPerFunc;
+
+    private Module module;
+    private Module packedModule;
+    private int encodedSize;
+
+    // Counts the encoded bytes of the validated modules, so that throughput is reported in bytes per second as well as modules per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ValidatedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, SyntheticModules.of(shape, funcCount, unitsPerFunc));
+        var encoded = output.toByteArray();
+
+        this.encodedSize = encoded.length;
+        this.module = new WasmBinaryDecoder().decodeModule(ByteBuffer.wrap(encoded));
+        this.packedModule = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.PACKED).decodeModule(ByteBuffer.wrap(encoded));
+    }
+
+    @Benchmark
+    public void validate(ValidatedBytes counter) {
+        counter.bytes += encodedSize;
+        ModuleValidator.validate(module);
+    }
+
+    @Benchmark
+    public void validatePacked(ValidatedBytes counter) {
+        counter.bytes += encodedSize;
+        ModuleValidator.validate(packedModule);
+    }
+
+    @Benchmark
+    public void validateParallel(ValidatedBytes counter) {
+        counter.bytes += encodedSize;
+        ModuleValidator.validate(module, ForkJoinPool.commonPool());
+    }
+}
@@ -4,17 +4,55 @@
  */
 package com.opencastsoftware.wasm4j;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
 public class Data {
-    private final byte[] init;
+    @Nullable
+    private volatile byte[] init;
+    @Nullable
+    private final ByteBuffer initBuffer;
     private final Mode mode;
 
     public Data(byte[] init, Mode mode) {
         this.init = init;
+        this.initBuffer = null;
+        this.mode = mode;
+    }
+
+    // Keeps a view of the buffer's remaining bytes, which are only copied if init() is called
+    public Data(ByteBuffer init, Mode mode) {
+        this.init = null;
+        this.initBuffer = init.slice().asReadOnlyBuffer();
         this.mode = mode;
     }
 
     public byte[] init() {
-        return init;
+        var bytes = init;
+
+        if (bytes == null) {
+            bytes = new byte[initBuffer.remaining()];
+            initBuffer.duplicate().get(bytes);
+            init = bytes;
+        }
+
+        return bytes;
+    }
+
+    public ByteBuffer initBuffer() {
+        var bytes = init;
+        return bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : initBuffer.duplicate();
+    }
+
+    // Whether the bytes are held in an array, which init() returns without copying
+    public boolean hasInitArray() {
+        return init != null;
+    }
+
+    public int initLength() {
+        var bytes = init;
+        return bytes != null ? bytes.length : initBuffer.remaining();
     }
 
     public Mode mode() {
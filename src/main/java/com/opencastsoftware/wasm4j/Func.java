@@ -6,19 +6,76 @@ package com.opencastsoftware.wasm4j;
 
 import com.opencastsoftware.wasm4j.types.ValType;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class Func {
     private final int typeIndex;
+    private final List<Locals> compressedLocals;
     private final List<ValType> locals;
     private final Expression body;
 
     public Func(int typeIndex, List<ValType> locals, Expression body) {
+        this(typeIndex, body, compress(locals));
+    }
+
+    private Func(int typeIndex, Expression body, List<Locals> compressedLocals) {
         this.typeIndex = typeIndex;
-        this.locals = locals;
+        this.compressedLocals = compressedLocals;
+        this.locals = new ExpandedLocals(compressedLocals);
         this.body = body;
     }
 
+    // For subclasses that produce their locals and body on demand, which must override each of the accessors below
+    protected Func(int typeIndex) {
+        this(typeIndex, Expression.empty(), Collections.emptyList());
+    }
+
+    // Creates a function from runs of same-typed locals, without materialising each local
+    public static Func compressed(int typeIndex, List<Locals> locals, Expression body) {
+        return new Func(typeIndex, body, merge(locals));
+    }
+
+    private static List<Locals> compress(List<ValType> locals) {
+        var runs = new ArrayList<Locals>();
+
+        int i = 0;
+        while (i < locals.size()) {
+            var type = locals.get(i);
+            int start = i;
+            while (i < locals.size() && locals.get(i).equals(type)) {
+                i++;
+            }
+            runs.add(Locals.of(i - start, type));
+        }
+
+        return Collections.unmodifiableList(runs);
+    }
+
+    // Drops empty runs and merges adjacent runs of the same type, so that each run is encoded as a single entry
+    private static List<Locals> merge(List<Locals> locals) {
+        var runs = new ArrayList<Locals>(locals.size());
+
+        for (Locals run : locals) {
+            if (run.count() == 0) {
+                continue;
+            }
+
+            int last = runs.size() - 1;
+            if (last >= 0 && runs.get(last).type().equals(run.type())) {
+                runs.set(last, Locals.of(Math.addExact(runs.get(last).count(), run.count()), run.type()));
+            } else {
+                runs.add(run);
+            }
+        }
+
+        return Collections.unmodifiableList(runs);
+    }
+
     public int typeIndex() {
         return typeIndex;
     }
@@ -27,7 +84,44 @@ public class Func {
         return locals;
     }
 
+    public List<Locals> compressedLocals() {
+        return compressedLocals;
+    }
+
     public Expression body() {
         return body;
     }
+
+    // A read-only view of the individual locals described by a list of runs
+    private static class ExpandedLocals extends AbstractList<ValType> implements RandomAccess {
+        private final List<Locals> runs;
+        // The index after the last local of each run
+        private final int[] runEnds;
+
+        ExpandedLocals(List<Locals> runs) {
+            this.runs = runs;
+            this.runEnds = new int[runs.size()];
+
+            int end = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                end = Math.addExact(end, runs.get(i).count());
+                runEnds[i] = end;
+            }
+        }
+
+        @Override
+        public ValType get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+
+            int run = Arrays.binarySearch(runEnds, index + 1);
+            return runs.get(run >= 0 ? run : -run - 1).type();
+        }
+
+        @Override
+        public int size() {
+            return runEnds.length == 0 ? 0 : runEnds[runEnds.length - 1];
+        }
+    }
 }
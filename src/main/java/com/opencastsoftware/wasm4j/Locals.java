@@ -0,0 +1,45 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.types.ValType;
+
+import java.util.Objects;
+
+// A run of `count` consecutive locals of the same type
+public class Locals {
+    private final int count;
+    private final ValType type;
+
+    public Locals(int count, ValType type) {
+        this.count = count;
+        this.type = type;
+    }
+
+    public static Locals of(int count, ValType type) {
+        return new Locals(count, type);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public ValType type() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Locals locals = (Locals) o;
+        return count == locals.count && Objects.equals(type, locals.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, type);
+    }
+}
@@ -11,6 +11,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 
 public class Module {
@@ -101,6 +102,11 @@ public class Module {
         return exports;
     }
 
+    // Returns a module without duplicate types, or this module if it has none
+    public Module deduplicateTypes() {
+        return TypeDeduplicator.deduplicate(this);
+    }
+
     public static class Builder {
         private final List<FuncType> types = new ArrayList<>();
         private final List<Func> funcs = new ArrayList<>();
@@ -113,10 +119,41 @@ public class Module {
         private Integer start = null;
         private final List<Import> imports = new ArrayList<>();
         private final List<Export> exports = new ArrayList<>();
+        // The index of each distinct type, once types are deduplicated
+        @Nullable
+        private HashMap<FuncType, Integer> typeIndices = null;
+
+        // Adds each structurally distinct type only once, so that the index returned by typeIndex must be used to refer to it.
+        // Types which were already added keep their indices, and any type identical to one of them is given the first such index.
+        public Builder withTypeDeduplication() {
+            if (typeIndices == null) {
+                typeIndices = new HashMap<>();
+                for (int i = 0; i < types.size(); i++) {
+                    typeIndices.putIfAbsent(types.get(i), i);
+                }
+            }
 
-        public Builder withType(FuncType type) {
+            return this;
+        }
+
+        // Adds a type, returning its index
+        public int typeIndex(FuncType type) {
+            if (typeIndices != null) {
+                var existing = typeIndices.putIfAbsent(type, types.size());
+                if (existing != null) {
+                    return existing;
+                }
+            }
+
+            int typeIndex = types.size();
             this.types.add(type);
 
+            return typeIndex;
+        }
+
+        public Builder withType(FuncType type) {
+            typeIndex(type);
+
             return this;
         }
 
@@ -127,9 +164,13 @@ public class Module {
         }
 
         public Builder withFunc(FuncType type, List<ValType> locals, Expression body) {
-            int typeIndex = this.types.size();
-            this.types.add(type);
-            this.funcs.add(new Func(typeIndex, locals, body));
+            this.funcs.add(new Func(typeIndex(type), locals, body));
+
+            return this;
+        }
+
+        public Builder withCompressedFunc(FuncType type, List<Locals> locals, Expression body) {
+            this.funcs.add(Func.compressed(typeIndex(type), locals, body));
 
             return this;
         }
@@ -0,0 +1,379 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Removes structurally identical entries from a module's type section and renumbers every reference to a type:
+// function and import type indices, call_indirect and call_ref, block types, and typed references in value types.
+// The first occurrence of each type is kept, so the types which remain stay in their original order.
+// Parts of the module which do not refer to a removed or renumbered type are reused rather than copied.
+public class TypeDeduplicator {
+    private final int[] typeIndices;
+
+    private TypeDeduplicator(int[] typeIndices) {
+        this.typeIndices = typeIndices;
+    }
+
+    public static Module deduplicate(Module module) {
+        var types = module.types();
+        var typeIndices = new int[types.size()];
+        for (int i = 0; i < typeIndices.length; i++) {
+            typeIndices[i] = i;
+        }
+
+        // Renumbering the references within the remaining types can make more of them identical, so repeat until none are
+        while (true) {
+            var indices = new HashMap<FuncType, Integer>();
+            var remaining = new ArrayList<FuncType>();
+            var remap = new int[types.size()];
+
+            for (int i = 0; i < types.size(); i++) {
+                var existing = indices.putIfAbsent(types.get(i), remaining.size());
+                if (existing == null) {
+                    remap[i] = remaining.size();
+                    remaining.add(types.get(i));
+                } else {
+                    remap[i] = existing;
+                }
+            }
+
+            if (remaining.size() == types.size()) {
+                break;
+            }
+
+            for (int i = 0; i < typeIndices.length; i++) {
+                typeIndices[i] = remap[typeIndices[i]];
+            }
+
+            var deduplicator = new TypeDeduplicator(remap);
+            types = new ArrayList<>(remaining.size());
+            for (FuncType type : remaining) {
+                types.add(deduplicator.remapFuncType(type));
+            }
+        }
+
+        if (types == module.types()) {
+            return module;
+        }
+
+        return new TypeDeduplicator(typeIndices).remapModule(module, types);
+    }
+
+    private Module remapModule(Module module, List<FuncType> types) {
+        var funcs = new ArrayList<Func>(module.funcs().size());
+        for (Func func : module.funcs()) {
+            funcs.add(remapFunc(func));
+        }
+
+        var tables = new ArrayList<Table>(module.tables().size());
+        for (Table table : module.tables()) {
+            tables.add(new Table(remapTableType(table.type()), remapConstantExpression(table.init())));
+        }
+
+        var globals = new ArrayList<Global>(module.globals().size());
+        for (Global global : module.globals()) {
+            globals.add(new Global(remapGlobalType(global.type()), remapConstantExpression(global.init())));
+        }
+
+        var elems = new ArrayList<Elem>(module.elems().size());
+        for (Elem elem : module.elems()) {
+            var init = new ArrayList<ConstantExpression>(elem.init().size());
+            for (ConstantExpression expression : elem.init()) {
+                init.add(remapConstantExpression(expression));
+            }
+
+            var mode = elem.mode();
+            if (mode instanceof Elem.Mode.Active) {
+                var active = (Elem.Mode.Active) mode;
+                mode = Elem.Mode.active(active.tableIndex(), remapConstantExpression(active.offset()));
+            }
+
+            elems.add(new Elem(remapRefType(elem.type()), init, mode));
+        }
+
+        var imports = new ArrayList<Import>(module.imports().size());
+        for (Import imp : module.imports()) {
+            imports.add(new Import(imp.module(), imp.name(), remapImportDescriptor(imp.descriptor())));
+        }
+
+        return new Module(types, funcs, tables, module.mems(), globals, elems, module.datas(), module.start(), imports, module.exports());
+    }
+
+    private int remapTypeIndex(int typeIndex) {
+        if (typeIndex < 0 || typeIndex >= typeIndices.length) {
+            throw new IllegalArgumentException("Type index " + Integer.toUnsignedString(typeIndex) + " is out of range");
+        }
+
+        return typeIndices[typeIndex];
+    }
+
+    private Func remapFunc(Func func) {
+        var locals = func.compressedLocals();
+        var remappedLocals = locals;
+
+        for (int i = 0; i < locals.size(); i++) {
+            var run = locals.get(i);
+            var type = remapValType(run.type());
+
+            if (type != run.type()) {
+                if (remappedLocals == locals) {
+                    remappedLocals = new ArrayList<>(locals);
+                }
+                remappedLocals.set(i, Locals.of(run.count(), type));
+            }
+        }
+
+        var body = func.body();
+        var instructions = body.instructions();
+        var remappedInstructions = remapInstructions(instructions);
+        int typeIndex = remapTypeIndex(func.typeIndex());
+
+        if (typeIndex == func.typeIndex() && remappedLocals == locals && remappedInstructions == instructions) {
+            return func;
+        }
+
+        return Func.compressed(typeIndex, remappedLocals, remappedInstructions == instructions ? body : new Expression(remappedInstructions));
+    }
+
+    // A list of instructions being renumbered, which belongs to a structured instruction unless it is the outermost list
+    private static final class Frame {
+        final List<Instruction> instructions;
+        @Nullable
+        final Instruction owner;
+        // When renumbering the alternative of an if, its renumbered consequent
+        @Nullable
+        final List<Instruction> consequent;
+        List<Instruction> remapped;
+        int position = 0;
+
+        Frame(List<Instruction> instructions, @Nullable Instruction owner, @Nullable List<Instruction> consequent) {
+            this.instructions = instructions;
+            this.owner = owner;
+            this.consequent = consequent;
+            this.remapped = instructions;
+        }
+
+        // Replaces the instruction which was most recently visited, copying the list the first time that one is replaced
+        void replace(Instruction original, Instruction replacement) {
+            if (replacement != original) {
+                if (remapped == instructions) {
+                    remapped = new ArrayList<>(instructions);
+                }
+                remapped.set(position - 1, replacement);
+            }
+        }
+    }
+
+    // Returns the list itself if none of its instructions refer to a type.
+    // Structured instructions are entered using a stack in the heap rather than recursion, so that any depth of nesting can be renumbered.
+    private List<Instruction> remapInstructions(List<Instruction> instructions) {
+        var frames = new ArrayDeque<Frame>();
+        frames.push(new Frame(instructions, null, null));
+
+        while (true) {
+            var frame = frames.peek();
+
+            if (frame.position < frame.instructions.size()) {
+                var instr = frame.instructions.get(frame.position++);
+
+                if (instr instanceof Block) {
+                    frames.push(new Frame(((Block) instr).instructions(), instr, null));
+                } else if (instr instanceof Loop) {
+                    frames.push(new Frame(((Loop) instr).instructions(), instr, null));
+                } else if (instr instanceof If) {
+                    frames.push(new Frame(((If) instr).consequent(), instr, null));
+                } else {
+                    frame.replace(instr, remapInstruction(instr));
+                }
+
+                continue;
+            }
+
+            frames.pop();
+            var owner = frame.owner;
+
+            if (owner == null) {
+                return frame.remapped;
+            }
+
+            Instruction remapped;
+            if (owner instanceof Block) {
+                var block = (Block) owner;
+                var blockType = remapBlockType(block.blockType());
+                remapped = blockType == block.blockType() && frame.remapped == frame.instructions
+                        ? block
+                        : ControlInstruction.block(blockType, frame.remapped);
+            } else if (owner instanceof Loop) {
+                var loop = (Loop) owner;
+                var blockType = remapBlockType(loop.blockType());
+                remapped = blockType == loop.blockType() && frame.remapped == frame.instructions
+                        ? loop
+                        : ControlInstruction.loop(blockType, frame.remapped);
+            } else {
+                var ifInstr = (If) owner;
+                var consequent = frame.consequent;
+
+                if (consequent == null) {
+                    // Renumber the alternative next
+                    frames.push(new Frame(ifInstr.alternative(), ifInstr, frame.remapped));
+                    continue;
+                }
+
+                var blockType = remapBlockType(ifInstr.blockType());
+                remapped = blockType == ifInstr.blockType() && consequent == ifInstr.consequent() && frame.remapped == frame.instructions
+                        ? ifInstr
+                        : ControlInstruction.ifInstr(blockType, consequent, frame.remapped);
+            }
+
+            frames.peek().replace(owner, remapped);
+        }
+    }
+
+    // Renumbers an instruction other than a block, loop or if
+    private Instruction remapInstruction(Instruction instr) {
+        if (instr instanceof CallIndirect) {
+            var callIndirect = (CallIndirect) instr;
+            int typeIndex = remapTypeIndex(callIndirect.typeIndex());
+            return typeIndex == callIndirect.typeIndex()
+                    ? callIndirect
+                    : ControlInstruction.call_indirect(callIndirect.tableIndex(), typeIndex);
+        } else if (instr instanceof CallRef) {
+            var callRef = (CallRef) instr;
+            int typeIndex = remapTypeIndex(callRef.typeIndex());
+            return typeIndex == callRef.typeIndex() ? callRef : ControlInstruction.call_ref(typeIndex);
+        } else if (instr instanceof Select) {
+            var select = (Select) instr;
+            if (select.valTypes().isEmpty()) {
+                return select;
+            }
+            var valType = remapValType(select.valTypes().get(0));
+            return valType == select.valTypes().get(0) ? select : ParametricInstruction.select(valType);
+        } else if (instr instanceof RefNull) {
+            var refNull = (RefNull) instr;
+            var heapType = remapHeapType(refNull.heapType());
+            return heapType == refNull.heapType() ? refNull : ReferenceInstruction.ref_null(heapType);
+        } else {
+            return instr;
+        }
+    }
+
+    private ConstantExpression remapConstantExpression(ConstantExpression expression) {
+        var instructions = expression.instructions();
+        List<ConstantInstruction> remapped = instructions;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instr = instructions.get(i);
+            var remappedInstr = (ConstantInstruction) remapInstruction(instr);
+
+            if (remappedInstr != instr) {
+                if (remapped == instructions) {
+                    remapped = new ArrayList<>(instructions);
+                }
+                remapped.set(i, remappedInstr);
+            }
+        }
+
+        return remapped == instructions ? expression : new ConstantExpression(remapped);
+    }
+
+    private Import.Descriptor remapImportDescriptor(Import.Descriptor descriptor) {
+        if (descriptor instanceof Import.Descriptor.Func) {
+            var func = (Import.Descriptor.Func) descriptor;
+            int typeIndex = remapTypeIndex(func.typeIndex());
+            return typeIndex == func.typeIndex() ? func : Import.Descriptor.func(typeIndex);
+        } else if (descriptor instanceof Import.Descriptor.Table) {
+            var table = (Import.Descriptor.Table) descriptor;
+            var tableType = remapTableType(table.tableType());
+            return tableType == table.tableType() ? table : Import.Descriptor.table(tableType);
+        } else if (descriptor instanceof Import.Descriptor.Global) {
+            var global = (Import.Descriptor.Global) descriptor;
+            var globalType = remapGlobalType(global.globalType());
+            return globalType == global.globalType() ? global : Import.Descriptor.global(globalType);
+        } else {
+            return descriptor;
+        }
+    }
+
+    private FuncType remapFuncType(FuncType type) {
+        var arguments = remapValTypes(type.arguments());
+        var results = remapValTypes(type.results());
+        return arguments == type.arguments() && results == type.results() ? type : ExternType.func(arguments, results);
+    }
+
+    private List<ValType> remapValTypes(List<ValType> valTypes) {
+        List<ValType> remapped = valTypes;
+
+        for (int i = 0; i < valTypes.size(); i++) {
+            var valType = remapValType(valTypes.get(i));
+
+            if (valType != valTypes.get(i)) {
+                if (remapped == valTypes) {
+                    remapped = new ArrayList<>(valTypes);
+                }
+                remapped.set(i, valType);
+            }
+        }
+
+        return remapped;
+    }
+
+    private TableType remapTableType(TableType type) {
+        var refType = remapRefType(type.refType());
+        return refType == type.refType() ? type : ExternType.table(type.limits(), refType);
+    }
+
+    private GlobalType remapGlobalType(GlobalType type) {
+        var valType = remapValType(type.valType());
+        return valType == type.valType() ? type : ExternType.global(type.isMutable(), valType);
+    }
+
+    @Nullable
+    private BlockType remapBlockType(@Nullable BlockType blockType) {
+        if (blockType instanceof TypeId) {
+            return remapTypeId((TypeId) blockType);
+        } else if (blockType instanceof ValType) {
+            return remapValType((ValType) blockType);
+        } else {
+            return blockType;
+        }
+    }
+
+    private ValType remapValType(ValType valType) {
+        return valType instanceof RefType ? remapRefType((RefType) valType) : valType;
+    }
+
+    private RefType remapRefType(RefType refType) {
+        var heapType = remapHeapType(refType.heapType());
+
+        if (heapType == refType.heapType()) {
+            return refType;
+        }
+
+        return refType.isNullable() ? RefType.nullable(heapType) : RefType.nonNullable(heapType);
+    }
+
+    private HeapType remapHeapType(HeapType heapType) {
+        return heapType instanceof TypeId ? remapTypeId((TypeId) heapType) : heapType;
+    }
+
+    private TypeId remapTypeId(TypeId typeId) {
+        int typeIndex = remapTypeIndex(typeId.typeIndex());
+        return typeIndex == typeId.typeIndex() ? typeId : HeapType.typeId(typeIndex);
+    }
+}
@@ -0,0 +1,2132 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Locals;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.unary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.conversion.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I32Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I64Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.unary.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.Drop;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefAsNonNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefIsNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.table.*;
+import com.opencastsoftware.wasm4j.instructions.variable.*;
+import com.opencastsoftware.wasm4j.runtime.Numerics;
+import com.opencastsoftware.wasm4j.runtime.Trap;
+import com.opencastsoftware.wasm4j.runtime.Values;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.TypeId;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.opencastsoftware.wasm4j.closure.StatementNode.NEXT;
+
+// Compiles the body of a validated function to statements, each of which holds a tree of the operands it uses.
+// Operands are only stored in the frame when their order of evaluation would otherwise change,
+// which is before any statement with effects that they might observe, and wherever control flow meets.
+// Structured control flow is flattened into one array of statements, in which a branch continues at the index of
+// the statement its label targets, so nesting blocks deeply uses no more of the Java stack than running them in sequence.
+// Unreachable code is skipped, as validation has already checked it.
+final class BodyCompiler implements FlatInstructionVisitor<RuntimeException> {
+    private static final int BLOCK = 0;
+    private static final int LOOP = 1;
+    private static final int IF = 2;
+
+    private static final StatementNode[] NO_STATEMENTS = new StatementNode[0];
+
+    // Evaluating a tree recurses once per level, so deeper trees are stored in the frame before they are used
+    private static final int MAX_TREE_DEPTH = 64;
+
+    // The index of the statement where a branch to a label continues, which for a block is only known at its end
+    static final class Label {
+        int target;
+    }
+
+    // A value known while compiling
+    static final class Constant implements ValueNode {
+        final long value;
+
+        Constant(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long evaluate(long[] frame) {
+            return value;
+        }
+    }
+
+    // The value of a local, which changes whenever the local is set
+    static final class Local implements ValueNode {
+        private final int slot;
+
+        Local(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public long evaluate(long[] frame) {
+            return frame[slot];
+        }
+    }
+
+    // An operand which an earlier statement stored in the frame
+    static final class Operand implements ValueNode {
+        private final int slot;
+
+        Operand(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public long evaluate(long[] frame) {
+            return frame[slot];
+        }
+    }
+
+    private final ClosureInstance instance;
+    // The number of parameters and results of each type, and the type index of each function
+    private final int[] paramCounts;
+    private final int[] resultCounts;
+    private final int[] funcTypeIndices;
+
+    private int localCount;
+    private final List<StatementNode> statements = new ArrayList<>();
+
+    // The operands, each of which is stored in the frame at its height above the locals when it is not left in a tree
+    private ValueNode[] operands = new ValueNode[16];
+    private int[] operandDepths = new int[16];
+    private int height;
+    // The depth of the deepest tree popped since the last operand was pushed, which the next tree pushed is built from
+    private int poppedDepth;
+    private int maxHeight;
+
+    private int[] frameKinds = new int[16];
+    private int[] frameHeights = new int[16];
+    private int[] frameParams = new int[16];
+    private int[] frameResults = new int[16];
+    private Label[] frameLabels = new Label[16];
+    // Where an if continues when its condition is false, until its alternative has started
+    private Label[] frameElseLabels = new Label[16];
+    private boolean[] frameUnreachable = new boolean[16];
+    private int depth;
+    // The number of structured instructions entered within unreachable code
+    private int skipDepth;
+
+    BodyCompiler(ClosureInstance instance, int[] paramCounts, int[] resultCounts, int[] funcTypeIndices) {
+        this.instance = instance;
+        this.paramCounts = paramCounts;
+        this.resultCounts = resultCounts;
+        this.funcTypeIndices = funcTypeIndices;
+    }
+
+    FunctionBody compile(Func func) {
+        int typeIndex = func.typeIndex();
+        int params = paramCounts[typeIndex];
+        int results = resultCounts[typeIndex];
+
+        long locals = params;
+        for (Locals run : func.compressedLocals()) {
+            locals += Integer.toUnsignedLong(run.count());
+        }
+
+        // Validation does not limit the number of locals, but a frame must fit in an array
+        if (locals > Integer.MAX_VALUE - 1024) {
+            throw new IllegalArgumentException("too many locals in function");
+        }
+
+        this.localCount = (int) locals;
+        this.height = 0;
+        this.poppedDepth = 0;
+        this.maxHeight = 0;
+        this.depth = 0;
+        this.skipDepth = 0;
+        this.statements.clear();
+
+        pushFrame(BLOCK, 0, results);
+        visitExpression(func.body());
+
+        return new FunctionBody(statements.toArray(NO_STATEMENTS), params, localCount, results, localCount + maxHeight);
+    }
+
+    // Operands
+
+    private void push(ValueNode node) {
+        if (height == operands.length) {
+            operands = Arrays.copyOf(operands, height * 2);
+            operandDepths = Arrays.copyOf(operandDepths, height * 2);
+        }
+
+        boolean leaf = node instanceof Constant || node instanceof Local || node instanceof Operand;
+        int depth = leaf ? 1 : poppedDepth + 1;
+        poppedDepth = 0;
+
+        operands[height] = node;
+        operandDepths[height] = depth;
+        height++;
+        maxHeight = Math.max(maxHeight, height);
+
+        // The operands below are stored too, so that they are still evaluated first
+        if (depth > MAX_TREE_DEPTH) {
+            spill();
+        }
+    }
+
+    private ValueNode pop() {
+        height--;
+        poppedDepth = Math.max(poppedDepth, operandDepths[height]);
+        return operands[height];
+    }
+
+    private ValueNode[] pop(int count) {
+        var nodes = Arrays.copyOfRange(operands, height - count, height);
+        for (int i = 0; i < count; i++) {
+            pop();
+        }
+        return nodes;
+    }
+
+    private int slot(int height) {
+        return localCount + height;
+    }
+
+    // Pushes operands which a statement has stored in the frame
+    private void pushStored(int count) {
+        for (int i = 0; i < count; i++) {
+            push(new Operand(slot(height)));
+        }
+    }
+
+    private void store(int index) {
+        var value = operands[index];
+        int slot = slot(index);
+        emit(frame -> {
+            frame[slot] = value.evaluate(frame);
+            return NEXT;
+        });
+        operands[index] = new Operand(slot);
+        operandDepths[index] = 1;
+    }
+
+    // Stores the operands which a statement could change, or which must be evaluated before it
+    private void spill() {
+        for (int i = 0; i < height; i++) {
+            if (!(operands[i] instanceof Constant || operands[i] instanceof Operand)) {
+                store(i);
+            }
+        }
+    }
+
+    // Stores every operand in the frame, where control flow meets
+    private void flush() {
+        for (int i = 0; i < height; i++) {
+            if (!(operands[i] instanceof Operand)) {
+                store(i);
+            }
+        }
+    }
+
+    // Statements
+
+    private void emit(StatementNode statement) {
+        statements.add(statement);
+    }
+
+    // Emits a statement after spilling the operands below those it uses
+    private void statement(StatementNode statement) {
+        spill();
+        emit(statement);
+    }
+
+    // Frames
+
+    private void pushFrame(int kind, int params, int results) {
+        if (depth == frameKinds.length) {
+            int length = depth * 2;
+            frameKinds = Arrays.copyOf(frameKinds, length);
+            frameHeights = Arrays.copyOf(frameHeights, length);
+            frameParams = Arrays.copyOf(frameParams, length);
+            frameResults = Arrays.copyOf(frameResults, length);
+            frameLabels = Arrays.copyOf(frameLabels, length);
+            frameElseLabels = Arrays.copyOf(frameElseLabels, length);
+            frameUnreachable = Arrays.copyOf(frameUnreachable, length);
+        }
+
+        // A loop is branched to at its start, which is already known
+        var label = new Label();
+        label.target = statements.size();
+
+        frameKinds[depth] = kind;
+        frameHeights[depth] = height - params;
+        frameParams[depth] = params;
+        frameResults[depth] = results;
+        frameLabels[depth] = label;
+        frameElseLabels[depth] = null;
+        frameUnreachable[depth] = false;
+        depth++;
+    }
+
+    private void startFrame(int kind, @Nullable BlockType blockType) {
+        if (blockType == null) {
+            pushFrame(kind, 0, 0);
+        } else if (blockType instanceof TypeId) {
+            int typeIndex = ((TypeId) blockType).typeIndex();
+            pushFrame(kind, paramCounts[typeIndex], resultCounts[typeIndex]);
+        } else {
+            pushFrame(kind, 0, 1);
+        }
+    }
+
+    private void unreachable() {
+        frameUnreachable[depth - 1] = true;
+    }
+
+    private int labelArity(int frame) {
+        return frameKinds[frame] == LOOP ? frameParams[frame] : frameResults[frame];
+    }
+
+    // Moves the values of a label from the top of the stack to where the label expects them, once they are stored
+    private StatementNode branch(int labelIndex) {
+        int label = depth - 1 - labelIndex;
+        int arity = labelArity(label);
+        int source = slot(height - arity);
+        int target = slot(frameHeights[label]);
+        var next = frameLabels[label];
+
+        if (source == target || arity == 0) {
+            return frame -> next.target;
+        }
+
+        return frame -> {
+            System.arraycopy(frame, source, frame, target, arity);
+            return next.target;
+        };
+    }
+
+    // Places a label at the next statement to be emitted
+    private void place(Label label) {
+        label.target = statements.size();
+    }
+
+    @Override
+    public void visitInstruction(Instruction instruction) {
+        if (frameUnreachable[depth - 1]) {
+            return;
+        }
+
+        instruction.accept(this);
+    }
+
+    @Override
+    public void visitExpression(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            ((PackedExpression) expression).replay(this);
+        } else {
+            InstructionWalker.walk(expression, this);
+        }
+    }
+
+    @Override
+    public void visitConstantExpression(ConstantExpression constExpr) {
+        throw new UnsupportedOperationException("Constant expressions are evaluated during instantiation");
+    }
+
+    @Override
+    public void visitBlockStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        flush();
+        startFrame(BLOCK, blockType);
+    }
+
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        flush();
+        startFrame(LOOP, blockType);
+    }
+
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        var condition = pop();
+        flush();
+        startFrame(IF, blockType);
+
+        var alternative = new Label();
+        frameElseLabels[depth - 1] = alternative;
+        emit(frame -> (int) condition.evaluate(frame) != 0 ? NEXT : alternative.target);
+    }
+
+    // Replaces the operands from the start of a frame with those its statements stored
+    private void restoreOperands(int frame, int count) {
+        height = frameHeights[frame];
+        pushStored(count);
+    }
+
+    @Override
+    public void visitElse() {
+        if (skipDepth > 0) {
+            return;
+        }
+
+        int current = depth - 1;
+
+        if (!frameUnreachable[current]) {
+            flush();
+            var end = frameLabels[current];
+            emit(frame -> end.target);
+        }
+
+        place(frameElseLabels[current]);
+        frameElseLabels[current] = null;
+        frameUnreachable[current] = false;
+        restoreOperands(current, frameParams[current]);
+    }
+
+    @Override
+    public void visitEnd() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+
+        int current = depth - 1;
+
+        if (!frameUnreachable[current]) {
+            flush();
+        }
+
+        restoreOperands(current, frameResults[current]);
+        depth--;
+
+        // An if without an else continues after its consequent when its condition is false
+        if (frameElseLabels[current] != null) {
+            place(frameElseLabels[current]);
+        }
+
+        if (frameKinds[current] != LOOP) {
+            place(frameLabels[current]);
+        }
+    }
+
+    // Control instructions
+
+    @Override
+    public void visitBlock(Block block) {
+        InstructionWalker.walk(block, this);
+    }
+
+    @Override
+    public void visitLoop(Loop loop) {
+        InstructionWalker.walk(loop, this);
+    }
+
+    @Override
+    public void visitIf(If ifInstr) {
+        InstructionWalker.walk(ifInstr, this);
+    }
+
+    @Override
+    public void visitBranch(Branch branch) {
+        flush();
+        emit(branch(branch.labelIndex()));
+        unreachable();
+    }
+
+    @Override
+    public void visitBranchIf(BranchIf branchIf) {
+        var condition = pop();
+        flush();
+        var branch = branch(branchIf.labelIndex());
+        emit(frame -> (int) condition.evaluate(frame) != 0 ? branch.execute(frame) : NEXT);
+    }
+
+    @Override
+    public void visitBranchOnNull(BranchOnNull branchOnNull) {
+        var ref = pop();
+        flush();
+        var branch = branch(branchOnNull.labelIndex());
+        int slot = slot(height);
+        emit(frame -> {
+            long value = ref.evaluate(frame);
+            if (value == Values.NULL) {
+                return branch.execute(frame);
+            }
+            frame[slot] = value;
+            return NEXT;
+        });
+        pushStored(1);
+    }
+
+    @Override
+    public void visitBranchOnNonNull(BranchOnNonNull branchOnNonNull) {
+        var ref = pop();
+        flush();
+        int slot = slot(height);
+        // The reference is one of the values of the label
+        pushStored(1);
+        var branch = branch(branchOnNonNull.labelIndex());
+        pop();
+        emit(frame -> {
+            long value = ref.evaluate(frame);
+            if (value != Values.NULL) {
+                frame[slot] = value;
+                return branch.execute(frame);
+            }
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitBranchTable(BranchTable branchTable) {
+        var index = pop();
+        flush();
+
+        var labels = branchTable.labels();
+        var branches = new StatementNode[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            branches[i] = branch(labels[i]);
+        }
+        var defaultBranch = branch(branchTable.defaultLabel());
+
+        emit(frame -> {
+            int i = (int) index.evaluate(frame);
+            return (Integer.compareUnsigned(i, branches.length) < 0 ? branches[i] : defaultBranch).execute(frame);
+        });
+
+        unreachable();
+    }
+
+    @Override
+    public void visitCall(Call call) {
+        int funcIndex = call.funcIndex();
+        int typeIndex = funcTypeIndices[funcIndex];
+        var args = pop(paramCounts[typeIndex]);
+        int slot = slot(height);
+
+        statement(frame -> {
+            instance.call(funcIndex, args, frame, slot);
+            return NEXT;
+        });
+
+        pushStored(resultCounts[typeIndex]);
+    }
+
+    @Override
+    public void visitCallIndirect(CallIndirect callIndirect) {
+        int tableIndex = callIndirect.tableIndex();
+        int typeIndex = callIndirect.typeIndex();
+        var element = pop();
+        // The arguments are stored so that they are evaluated before the element
+        spill();
+        var args = pop(paramCounts[typeIndex]);
+        int slot = slot(height);
+
+        emit(frame -> {
+            int funcIndex = instance.indirectTarget(tableIndex, typeIndex, (int) element.evaluate(frame));
+            instance.call(funcIndex, args, frame, slot);
+            return NEXT;
+        });
+
+        pushStored(resultCounts[typeIndex]);
+    }
+
+    @Override
+    public void visitCallRef(CallRef callRef) {
+        int typeIndex = callRef.typeIndex();
+        var ref = pop();
+        spill();
+        var args = pop(paramCounts[typeIndex]);
+        int slot = slot(height);
+
+        emit(frame -> {
+            long value = ref.evaluate(frame);
+            if (value == Values.NULL) {
+                throw new Trap("null function reference");
+            }
+            instance.call(Values.asFuncIndex(value), args, frame, slot);
+            return NEXT;
+        });
+
+        pushStored(resultCounts[typeIndex]);
+    }
+
+    @Override
+    public void visitNop(Nop nop) {
+    }
+
+    @Override
+    public void visitReturn(Return ret) {
+        flush();
+        emit(branch(depth - 1));
+        unreachable();
+    }
+
+    @Override
+    public void visitUnreachable(Unreachable unreachable) {
+        statement(frame -> {
+            throw new Trap("unreachable");
+        });
+        unreachable();
+    }
+
+    // Memory instructions
+
+    private void load(MemArgInstruction instr, int size) {
+        var memory = instance.memory(0);
+        int offset = instr.offset();
+        var address = pop();
+
+        if (size == 4) {
+            push(frame -> memory.buffer().getInt(memory.effectiveAddress((int) address.evaluate(frame), offset, 4)));
+        } else {
+            push(frame -> memory.buffer().getLong(memory.effectiveAddress((int) address.evaluate(frame), offset, 8)));
+        }
+    }
+
+    private void store(MemArgInstruction instr, int size) {
+        var memory = instance.memory(0);
+        int offset = instr.offset();
+        var value = pop();
+        var address = pop();
+
+        if (size == 4) {
+            statement(frame -> {
+                int base = (int) address.evaluate(frame);
+                int bits = (int) value.evaluate(frame);
+                memory.buffer().putInt(memory.effectiveAddress(base, offset, 4), bits);
+                return NEXT;
+            });
+        } else {
+            statement(frame -> {
+                int base = (int) address.evaluate(frame);
+                long bits = value.evaluate(frame);
+                memory.buffer().putLong(memory.effectiveAddress(base, offset, 8), bits);
+                return NEXT;
+            });
+        }
+    }
+
+    @Override
+    public void visitI32Load(I32Load i32Load) {
+        load(i32Load, 4);
+    }
+
+    @Override
+    public void visitI64Load(I64Load i64Load) {
+        load(i64Load, 8);
+    }
+
+    @Override
+    public void visitF32Load(F32Load f32Load) {
+        load(f32Load, 4);
+    }
+
+    @Override
+    public void visitF64Load(F64Load f64Load) {
+        load(f64Load, 8);
+    }
+
+    @Override
+    public void visitI32Store(I32Store i32Store) {
+        store(i32Store, 4);
+    }
+
+    @Override
+    public void visitI64Store(I64Store i64Store) {
+        store(i64Store, 8);
+    }
+
+    @Override
+    public void visitF32Store(F32Store f32Store) {
+        store(f32Store, 4);
+    }
+
+    @Override
+    public void visitF64Store(F64Store f64Store) {
+        store(f64Store, 8);
+    }
+
+    @Override
+    public void visitMemorySize(MemorySize memorySize) {
+        var memory = instance.memory(memorySize.memIndex());
+        push(frame -> memory.size());
+    }
+
+    @Override
+    public void visitMemoryGrow(MemoryGrow memoryGrow) {
+        var memory = instance.memory(memoryGrow.memIndex());
+        var delta = pop();
+        int slot = slot(height);
+
+        statement(frame -> {
+            frame[slot] = memory.grow((int) delta.evaluate(frame));
+            return NEXT;
+        });
+
+        pushStored(1);
+    }
+
+    @Override
+    public void visitMemoryFill(MemoryFill memoryFill) {
+        var memory = instance.memory(memoryFill.memIndex());
+        var length = pop();
+        var value = pop();
+        var offset = pop();
+
+        statement(frame -> {
+            int target = (int) offset.evaluate(frame);
+            byte fill = (byte) value.evaluate(frame);
+            memory.fill(target, fill, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitMemoryCopy(MemoryCopy memoryCopy) {
+        var target = instance.memory(memoryCopy.targetMemIndex());
+        var source = instance.memory(memoryCopy.sourceMemIndex());
+        var length = pop();
+        var sourceOffset = pop();
+        var targetOffset = pop();
+
+        statement(frame -> {
+            int to = (int) targetOffset.evaluate(frame);
+            int from = (int) sourceOffset.evaluate(frame);
+            target.copy(to, source, from, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitMemoryInit(MemoryInit memoryInit) {
+        var memory = instance.memory(memoryInit.memIndex());
+        int dataIndex = memoryInit.dataIndex();
+        var length = pop();
+        var sourceOffset = pop();
+        var targetOffset = pop();
+
+        statement(frame -> {
+            int to = (int) targetOffset.evaluate(frame);
+            int from = (int) sourceOffset.evaluate(frame);
+            memory.init(to, instance.data(dataIndex), from, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitDataDrop(DataDrop dataDrop) {
+        int dataIndex = dataDrop.dataIndex();
+        statement(frame -> {
+            instance.dataDrop(dataIndex);
+            return NEXT;
+        });
+    }
+
+    // Numeric instructions
+
+    @Override
+    public void visitI32Const(I32Const i32Const) {
+        push(new Constant(i32Const.value()));
+    }
+
+    @Override
+    public void visitI64Const(I64Const i64Const) {
+        push(new Constant(i64Const.value()));
+    }
+
+    @Override
+    public void visitF32Const(F32Const f32Const) {
+        push(new Constant(Float.floatToRawIntBits(f32Const.value())));
+    }
+
+    @Override
+    public void visitF64Const(F64Const f64Const) {
+        push(new Constant(Double.doubleToRawLongBits(f64Const.value())));
+    }
+
+    @Override
+    public void visitI32Clz(I32Clz i32Clz) {
+        var operand = pop();
+        push(frame -> Integer.numberOfLeadingZeros((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI32Ctz(I32Ctz i32Ctz) {
+        var operand = pop();
+        push(frame -> Integer.numberOfTrailingZeros((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI32Popcnt(I32Popcnt i32Popcnt) {
+        var operand = pop();
+        push(frame -> Integer.bitCount((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI64Clz(I64Clz i64Clz) {
+        var operand = pop();
+        push(frame -> Long.numberOfLeadingZeros(operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI64Ctz(I64Ctz i64Ctz) {
+        var operand = pop();
+        push(frame -> Long.numberOfTrailingZeros(operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI64Popcnt(I64Popcnt i64Popcnt) {
+        var operand = pop();
+        push(frame -> Long.bitCount(operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitF32Abs(F32Abs f32Abs) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame) & 0x7FFF_FFFF);
+    }
+
+    @Override
+    public void visitF32Ceil(F32Ceil f32Ceil) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) Math.ceil(Float.intBitsToFloat((int) operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Floor(F32Floor f32Floor) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) Math.floor(Float.intBitsToFloat((int) operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Nearest(F32Nearest f32Nearest) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits(Numerics.f32Nearest(Float.intBitsToFloat((int) operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Neg(F32Neg f32Neg) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame) ^ 0x8000_0000);
+    }
+
+    @Override
+    public void visitF32Sqrt(F32Sqrt f32Sqrt) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) Math.sqrt(Float.intBitsToFloat((int) operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Trunc(F32Trunc f32Trunc) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits(Numerics.f32Trunc(Float.intBitsToFloat((int) operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Abs(F64Abs f64Abs) {
+        var operand = pop();
+        push(frame -> operand.evaluate(frame) & 0x7FFF_FFFF_FFFF_FFFFL);
+    }
+
+    @Override
+    public void visitF64Ceil(F64Ceil f64Ceil) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.ceil(Double.longBitsToDouble(operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Floor(F64Floor f64Floor) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.floor(Double.longBitsToDouble(operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Nearest(F64Nearest f64Nearest) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.rint(Double.longBitsToDouble(operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Neg(F64Neg f64Neg) {
+        var operand = pop();
+        push(frame -> operand.evaluate(frame) ^ 0x8000_0000_0000_0000L);
+    }
+
+    @Override
+    public void visitF64Sqrt(F64Sqrt f64Sqrt) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.sqrt(Double.longBitsToDouble(operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Trunc(F64Trunc f64Trunc) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Numerics.f64Trunc(Double.longBitsToDouble(operand.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitI32Add(I32Add i32Add) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) + (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) + (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32And(I32And i32And) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) & (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) & (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32DivSigned(I32DivSigned i32DivSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i32DivS((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Numerics.i32DivS((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32DivUnsigned(I32DivUnsigned i32DivUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i32DivU((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Numerics.i32DivU((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32Mul(I32Mul i32Mul) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) * (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) * (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32Or(I32Or i32Or) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) | (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) | (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32RemSigned(I32RemSigned i32RemSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i32RemS((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Numerics.i32RemS((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32RemUnsigned(I32RemUnsigned i32RemUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i32RemU((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Numerics.i32RemU((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32Rotl(I32Rotl i32Rotl) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.rotateLeft((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Integer.rotateLeft((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32Rotr(I32Rotr i32Rotr) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.rotateRight((int) left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Integer.rotateRight((int) left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI32Shl(I32Shl i32Shl) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) << (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) << (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32ShrSigned(I32ShrSigned i32ShrSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) >> (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) >> (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32ShrUnsigned(I32ShrUnsigned i32ShrUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) >>> (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) >>> (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32Sub(I32Sub i32Sub) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) - (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) - (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI32Xor(I32Xor i32Xor) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) ^ (int) constant);
+        } else {
+            push(frame -> (int) left.evaluate(frame) ^ (int) right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64Add(I64Add i64Add) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) + constant);
+        } else {
+            push(frame -> left.evaluate(frame) + right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64And(I64And i64And) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) & constant);
+        } else {
+            push(frame -> left.evaluate(frame) & right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64DivSigned(I64DivSigned i64DivSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i64DivS(left.evaluate(frame), constant));
+        } else {
+            push(frame -> Numerics.i64DivS(left.evaluate(frame), right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64DivUnsigned(I64DivUnsigned i64DivUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i64DivU(left.evaluate(frame), constant));
+        } else {
+            push(frame -> Numerics.i64DivU(left.evaluate(frame), right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64Mul(I64Mul i64Mul) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) * constant);
+        } else {
+            push(frame -> left.evaluate(frame) * right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64Or(I64Or i64Or) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) | constant);
+        } else {
+            push(frame -> left.evaluate(frame) | right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64RemSigned(I64RemSigned i64RemSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i64RemS(left.evaluate(frame), constant));
+        } else {
+            push(frame -> Numerics.i64RemS(left.evaluate(frame), right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64RemUnsigned(I64RemUnsigned i64RemUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Numerics.i64RemU(left.evaluate(frame), constant));
+        } else {
+            push(frame -> Numerics.i64RemU(left.evaluate(frame), right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64Rotl(I64Rotl i64Rotl) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.rotateLeft(left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Long.rotateLeft(left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64Rotr(I64Rotr i64Rotr) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.rotateRight(left.evaluate(frame), (int) constant));
+        } else {
+            push(frame -> Long.rotateRight(left.evaluate(frame), (int) right.evaluate(frame)));
+        }
+    }
+
+    @Override
+    public void visitI64Shl(I64Shl i64Shl) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) << constant);
+        } else {
+            push(frame -> left.evaluate(frame) << right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64ShrSigned(I64ShrSigned i64ShrSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) >> constant);
+        } else {
+            push(frame -> left.evaluate(frame) >> right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64ShrUnsigned(I64ShrUnsigned i64ShrUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) >>> constant);
+        } else {
+            push(frame -> left.evaluate(frame) >>> right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64Sub(I64Sub i64Sub) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) - constant);
+        } else {
+            push(frame -> left.evaluate(frame) - right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitI64Xor(I64Xor i64Xor) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) ^ constant);
+        } else {
+            push(frame -> left.evaluate(frame) ^ right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public void visitF32Add(F32Add f32Add) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Float.intBitsToFloat((int) left.evaluate(frame)) + Float.intBitsToFloat((int) right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32Copysign(F32Copysign f32Copysign) {
+        var right = pop();
+        var left = pop();
+        push(frame -> ((int) left.evaluate(frame) & 0x7FFF_FFFF) | ((int) right.evaluate(frame) & 0x8000_0000));
+    }
+
+    @Override
+    public void visitF32Div(F32Div f32Div) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Float.intBitsToFloat((int) left.evaluate(frame)) / Float.intBitsToFloat((int) right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32Max(F32Max f32Max) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Math.max(Float.intBitsToFloat((int) left.evaluate(frame)), Float.intBitsToFloat((int) right.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Min(F32Min f32Min) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Math.min(Float.intBitsToFloat((int) left.evaluate(frame)), Float.intBitsToFloat((int) right.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF32Mul(F32Mul f32Mul) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Float.intBitsToFloat((int) left.evaluate(frame)) * Float.intBitsToFloat((int) right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32Sub(F32Sub f32Sub) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.floatToRawIntBits(Float.intBitsToFloat((int) left.evaluate(frame)) - Float.intBitsToFloat((int) right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64Add(F64Add f64Add) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Double.longBitsToDouble(left.evaluate(frame)) + Double.longBitsToDouble(right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64Copysign(F64Copysign f64Copysign) {
+        var right = pop();
+        var left = pop();
+        push(frame -> (left.evaluate(frame) & 0x7FFF_FFFF_FFFF_FFFFL) | (right.evaluate(frame) & 0x8000_0000_0000_0000L));
+    }
+
+    @Override
+    public void visitF64Div(F64Div f64Div) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Double.longBitsToDouble(left.evaluate(frame)) / Double.longBitsToDouble(right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64Max(F64Max f64Max) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(left.evaluate(frame)), Double.longBitsToDouble(right.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Min(F64Min f64Min) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(left.evaluate(frame)), Double.longBitsToDouble(right.evaluate(frame)))));
+    }
+
+    @Override
+    public void visitF64Mul(F64Mul f64Mul) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Double.longBitsToDouble(left.evaluate(frame)) * Double.longBitsToDouble(right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64Sub(F64Sub f64Sub) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.doubleToRawLongBits(Double.longBitsToDouble(left.evaluate(frame)) - Double.longBitsToDouble(right.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32Eqz(I32Eqz i32Eqz) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame) == 0 ? 1 : 0);
+    }
+
+    @Override
+    public void visitI64Eqz(I64Eqz i64Eqz) {
+        var operand = pop();
+        push(frame -> operand.evaluate(frame) == 0 ? 1 : 0);
+    }
+
+    @Override
+    public void visitI32Eq(I32Eq i32Eq) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) == (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) == (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32GeSigned(I32GeSigned i32GeSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) >= (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) >= (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32GeUnsigned(I32GeUnsigned i32GeUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) constant) >= 0 ? 1 : 0);
+        } else {
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) right.evaluate(frame)) >= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32GtSigned(I32GtSigned i32GtSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) > (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) > (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32GtUnsigned(I32GtUnsigned i32GtUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) constant) > 0 ? 1 : 0);
+        } else {
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) right.evaluate(frame)) > 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32LeSigned(I32LeSigned i32LeSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) <= (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) <= (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32LeUnsigned(I32LeUnsigned i32LeUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) constant) <= 0 ? 1 : 0);
+        } else {
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) right.evaluate(frame)) <= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32LtSigned(I32LtSigned i32LtSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) < (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) < (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32LtUnsigned(I32LtUnsigned i32LtUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) constant) < 0 ? 1 : 0);
+        } else {
+            push(frame -> Integer.compareUnsigned((int) left.evaluate(frame), (int) right.evaluate(frame)) < 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI32Ne(I32Ne i32Ne) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> (int) left.evaluate(frame) != (int) constant ? 1 : 0);
+        } else {
+            push(frame -> (int) left.evaluate(frame) != (int) right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64Eq(I64Eq i64Eq) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) == constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) == right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64GeSigned(I64GeSigned i64GeSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) >= constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) >= right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64GeUnsigned(I64GeUnsigned i64GeUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), constant) >= 0 ? 1 : 0);
+        } else {
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), right.evaluate(frame)) >= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64GtSigned(I64GtSigned i64GtSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) > constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) > right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64GtUnsigned(I64GtUnsigned i64GtUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), constant) > 0 ? 1 : 0);
+        } else {
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), right.evaluate(frame)) > 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64LeSigned(I64LeSigned i64LeSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) <= constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) <= right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64LeUnsigned(I64LeUnsigned i64LeUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), constant) <= 0 ? 1 : 0);
+        } else {
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), right.evaluate(frame)) <= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64LtSigned(I64LtSigned i64LtSigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) < constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) < right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64LtUnsigned(I64LtUnsigned i64LtUnsigned) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), constant) < 0 ? 1 : 0);
+        } else {
+            push(frame -> Long.compareUnsigned(left.evaluate(frame), right.evaluate(frame)) < 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitI64Ne(I64Ne i64Ne) {
+        var right = pop();
+        var left = pop();
+        if (right instanceof Constant) {
+            long constant = ((Constant) right).value;
+            push(frame -> left.evaluate(frame) != constant ? 1 : 0);
+        } else {
+            push(frame -> left.evaluate(frame) != right.evaluate(frame) ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void visitF32Eq(F32Eq f32Eq) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) == Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF32Ge(F32Ge f32Ge) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) >= Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF32Gt(F32Gt f32Gt) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) > Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF32Le(F32Le f32Le) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) <= Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF32Lt(F32Lt f32Lt) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) < Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF32Ne(F32Ne f32Ne) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Float.intBitsToFloat((int) left.evaluate(frame)) != Float.intBitsToFloat((int) right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Eq(F64Eq f64Eq) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) == Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Ge(F64Ge f64Ge) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) >= Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Gt(F64Gt f64Gt) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) > Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Le(F64Le f64Le) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) <= Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Lt(F64Lt f64Lt) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) < Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitF64Ne(F64Ne f64Ne) {
+        var right = pop();
+        var left = pop();
+        push(frame -> Double.longBitsToDouble(left.evaluate(frame)) != Double.longBitsToDouble(right.evaluate(frame)) ? 1 : 0);
+    }
+
+    @Override
+    public void visitI32Extend8Signed(I32Extend8Signed i32Extend8Signed) {
+        var operand = pop();
+        push(frame -> (byte) (int) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI64Extend8Signed(I64Extend8Signed i64Extend8Signed) {
+        var operand = pop();
+        push(frame -> (byte) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI32Extend16Signed(I32Extend16Signed i32Extend16Signed) {
+        var operand = pop();
+        push(frame -> (short) (int) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI64Extend16Signed(I64Extend16Signed i64Extend16Signed) {
+        var operand = pop();
+        push(frame -> (short) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI64Extend32Signed(I64Extend32Signed i64Extend32Signed) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI32WrapI64(I32WrapI64 i32WrapI64) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI64ExtendI32Signed(I64ExtendI32Signed i64ExtendI32Signed) {
+        var operand = pop();
+        push(frame -> (int) operand.evaluate(frame));
+    }
+
+    @Override
+    public void visitI64ExtendI32Unsigned(I64ExtendI32Unsigned i64ExtendI32Unsigned) {
+        var operand = pop();
+        push(frame -> Integer.toUnsignedLong((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI32TruncF32Signed(I32TruncF32Signed i32TruncF32Signed) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncF32S(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32TruncF32Unsigned(I32TruncF32Unsigned i32TruncF32Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncF32U(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32TruncF64Signed(I32TruncF64Signed i32TruncF64Signed) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncF64S(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32TruncF64Unsigned(I32TruncF64Unsigned i32TruncF64Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncF64U(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncF32Signed(I64TruncF32Signed i64TruncF32Signed) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncF32S(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncF32Unsigned(I64TruncF32Unsigned i64TruncF32Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncF32U(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncF64Signed(I64TruncF64Signed i64TruncF64Signed) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncF64S(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncF64Unsigned(I64TruncF64Unsigned i64TruncF64Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncF64U(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32TruncSatF32Signed(I32TruncSatF32Signed i32TruncSatF32Signed) {
+        var operand = pop();
+        push(frame -> (int) Float.intBitsToFloat((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI32TruncSatF32Unsigned(I32TruncSatF32Unsigned i32TruncSatF32Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncSatF32U(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI32TruncSatF64Signed(I32TruncSatF64Signed i32TruncSatF64Signed) {
+        var operand = pop();
+        push(frame -> (int) Double.longBitsToDouble(operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI32TruncSatF64Unsigned(I32TruncSatF64Unsigned i32TruncSatF64Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i32TruncSatF64U(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncSatF32Signed(I64TruncSatF32Signed i64TruncSatF32Signed) {
+        var operand = pop();
+        push(frame -> (long) Float.intBitsToFloat((int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI64TruncSatF32Unsigned(I64TruncSatF32Unsigned i64TruncSatF32Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncSatF32U(Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitI64TruncSatF64Signed(I64TruncSatF64Signed i64TruncSatF64Signed) {
+        var operand = pop();
+        push(frame -> (long) Double.longBitsToDouble(operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitI64TruncSatF64Unsigned(I64TruncSatF64Unsigned i64TruncSatF64Unsigned) {
+        var operand = pop();
+        push(frame -> Numerics.i64TruncSatF64U(Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32DemoteF64(F32DemoteF64 f32DemoteF64) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) Double.longBitsToDouble(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64PromoteF32(F64PromoteF32 f64PromoteF32) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits((double) Float.intBitsToFloat((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32ConvertI32Signed(F32ConvertI32Signed f32ConvertI32Signed) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) (int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitF32ConvertI32Unsigned(F32ConvertI32Unsigned f32ConvertI32Unsigned) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) Integer.toUnsignedLong((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF32ConvertI64Signed(F32ConvertI64Signed f32ConvertI64Signed) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits((float) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitF32ConvertI64Unsigned(F32ConvertI64Unsigned f32ConvertI64Unsigned) {
+        var operand = pop();
+        push(frame -> Float.floatToRawIntBits(Numerics.f32ConvertI64U(operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64ConvertI32Signed(F64ConvertI32Signed f64ConvertI32Signed) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits((double) (int) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitF64ConvertI32Unsigned(F64ConvertI32Unsigned f64ConvertI32Unsigned) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits((double) Integer.toUnsignedLong((int) operand.evaluate(frame))));
+    }
+
+    @Override
+    public void visitF64ConvertI64Signed(F64ConvertI64Signed f64ConvertI64Signed) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits((double) operand.evaluate(frame)));
+    }
+
+    @Override
+    public void visitF64ConvertI64Unsigned(F64ConvertI64Unsigned f64ConvertI64Unsigned) {
+        var operand = pop();
+        push(frame -> Double.doubleToRawLongBits(Numerics.f64ConvertI64U(operand.evaluate(frame))));
+    }
+
+    // Values are represented by their bits, so reinterpreting them leaves them as they are
+
+    @Override
+    public void visitI32ReinterpretF32(I32ReinterpretF32 i32ReinterpretF32) {
+    }
+
+    @Override
+    public void visitI64ReinterpretF64(I64ReinterpretF64 i64ReinterpretF64) {
+    }
+
+    @Override
+    public void visitF32ReinterpretI32(F32ReinterpretI32 f32ReinterpretI32) {
+    }
+
+    @Override
+    public void visitF64ReinterpretI64(F64ReinterpretI64 f64ReinterpretI64) {
+    }
+
+    // Parametric instructions
+
+    // Whether evaluating a node neither traps nor does any work worth keeping
+    private static boolean isTrivial(ValueNode node) {
+        return node instanceof Constant || node instanceof Local || node instanceof Operand;
+    }
+
+    @Override
+    public void visitDrop(Drop drop) {
+        var value = pop();
+
+        if (!isTrivial(value)) {
+            statement(frame -> {
+                value.evaluate(frame);
+                return NEXT;
+            });
+        }
+    }
+
+    @Override
+    public void visitSelect(Select select) {
+        var condition = pop();
+        var second = pop();
+        var first = pop();
+
+        if (isTrivial(first) && isTrivial(second)) {
+            push(frame -> (int) condition.evaluate(frame) != 0 ? first.evaluate(frame) : second.evaluate(frame));
+        } else {
+            push(frame -> {
+                long firstValue = first.evaluate(frame);
+                long secondValue = second.evaluate(frame);
+                return (int) condition.evaluate(frame) != 0 ? firstValue : secondValue;
+            });
+        }
+    }
+
+    // Reference instructions
+
+    @Override
+    public void visitRefNull(RefNull refNull) {
+        push(new Constant(Values.NULL));
+    }
+
+    @Override
+    public void visitRefFunc(RefFunc refFunc) {
+        push(new Constant(Values.funcRef(refFunc.funcIndex())));
+    }
+
+    @Override
+    public void visitRefIsNull(RefIsNull refIsNull) {
+        var ref = pop();
+        push(frame -> ref.evaluate(frame) == Values.NULL ? 1 : 0);
+    }
+
+    @Override
+    public void visitRefAsNonNull(RefAsNonNull refAsNonNull) {
+        var ref = pop();
+        push(frame -> {
+            long value = ref.evaluate(frame);
+            if (value == Values.NULL) {
+                throw new Trap("null reference");
+            }
+            return value;
+        });
+    }
+
+    // Table instructions
+
+    @Override
+    public void visitTableGet(TableGet tableGet) {
+        var table = instance.table(tableGet.tableIndex());
+        var index = pop();
+        push(frame -> table.get((int) index.evaluate(frame)));
+    }
+
+    @Override
+    public void visitTableSet(TableSet tableSet) {
+        var table = instance.table(tableSet.tableIndex());
+        var value = pop();
+        var index = pop();
+
+        statement(frame -> {
+            int i = (int) index.evaluate(frame);
+            table.set(i, value.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitTableSize(TableSize tableSize) {
+        var table = instance.table(tableSize.tableIndex());
+        push(frame -> table.size());
+    }
+
+    @Override
+    public void visitTableGrow(TableGrow tableGrow) {
+        var table = instance.table(tableGrow.tableIndex());
+        var delta = pop();
+        var initialValue = pop();
+        int slot = slot(height);
+
+        statement(frame -> {
+            long value = initialValue.evaluate(frame);
+            frame[slot] = table.grow((int) delta.evaluate(frame), value);
+            return NEXT;
+        });
+
+        pushStored(1);
+    }
+
+    @Override
+    public void visitTableFill(TableFill tableFill) {
+        var table = instance.table(tableFill.tableIndex());
+        var length = pop();
+        var value = pop();
+        var offset = pop();
+
+        statement(frame -> {
+            int target = (int) offset.evaluate(frame);
+            long fill = value.evaluate(frame);
+            table.fill(target, fill, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitTableCopy(TableCopy tableCopy) {
+        var target = instance.table(tableCopy.targetTableIndex());
+        var source = instance.table(tableCopy.sourceTableIndex());
+        var length = pop();
+        var sourceOffset = pop();
+        var targetOffset = pop();
+
+        statement(frame -> {
+            int to = (int) targetOffset.evaluate(frame);
+            int from = (int) sourceOffset.evaluate(frame);
+            target.copy(to, source, from, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitTableInit(TableInit tableInit) {
+        var table = instance.table(tableInit.tableIndex());
+        int elemIndex = tableInit.elemIndex();
+        var length = pop();
+        var sourceOffset = pop();
+        var targetOffset = pop();
+
+        statement(frame -> {
+            int to = (int) targetOffset.evaluate(frame);
+            int from = (int) sourceOffset.evaluate(frame);
+            table.init(to, instance.elem(elemIndex), from, (int) length.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitElemDrop(ElemDrop elemDrop) {
+        int elemIndex = elemDrop.elemIndex();
+        statement(frame -> {
+            instance.elemDrop(elemIndex);
+            return NEXT;
+        });
+    }
+
+    // Variable instructions
+
+    @Override
+    public void visitGlobalGet(GlobalGet globalGet) {
+        var global = instance.global(globalGet.globalIndex());
+        push(frame -> global.get());
+    }
+
+    @Override
+    public void visitGlobalSet(GlobalSet globalSet) {
+        var global = instance.global(globalSet.globalIndex());
+        var value = pop();
+
+        statement(frame -> {
+            global.set(value.evaluate(frame));
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitLocalGet(LocalGet localGet) {
+        push(new Local(localGet.localIndex()));
+    }
+
+    private void setLocal(int slot) {
+        var value = pop();
+
+        statement(frame -> {
+            frame[slot] = value.evaluate(frame);
+            return NEXT;
+        });
+    }
+
+    @Override
+    public void visitLocalSet(LocalSet localSet) {
+        setLocal(localSet.localIndex());
+    }
+
+    @Override
+    public void visitLocalTee(LocalTee localTee) {
+        setLocal(localTee.localIndex());
+        push(new Local(localTee.localIndex()));
+    }
+}
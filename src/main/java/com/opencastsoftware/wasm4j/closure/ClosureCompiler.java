@@ -0,0 +1,27 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import com.opencastsoftware.wasm4j.validation.ModuleValidator;
+
+// Instantiates modules whose functions are compiled to trees of closures.
+// Unlike the compiler, no classes are generated, so this works wherever classes cannot be defined at run time,
+// while the closures still let the JIT inline the work of each instruction into the ones that use its result.
+public final class ClosureCompiler {
+    private ClosureCompiler() {
+    }
+
+    public static Instance instantiate(Module module) {
+        return instantiate(module, Imports.empty());
+    }
+
+    public static Instance instantiate(Module module, Imports imports) {
+        ModuleValidator.validate(module);
+        return new ClosureInstance(module, imports);
+    }
+}
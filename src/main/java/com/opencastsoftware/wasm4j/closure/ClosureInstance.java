@@ -0,0 +1,140 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+// An instance whose functions are compiled to trees of closures the first time they are called.
+// The closures are bound to the instance, so they refer to its memories, tables and globals directly.
+final class ClosureInstance extends Instance {
+    private final List<Func> funcs;
+    private final int[] paramCounts;
+    private final int[] resultCounts;
+    private final FunctionBody[] bodies;
+
+    ClosureInstance(Module module, Imports imports) {
+        super(module, imports);
+
+        var types = module.types();
+        this.paramCounts = new int[types.size()];
+        this.resultCounts = new int[types.size()];
+        for (int i = 0; i < types.size(); i++) {
+            paramCounts[i] = types.get(i).arguments().size();
+            resultCounts[i] = types.get(i).results().size();
+        }
+
+        this.funcs = module.funcs();
+        this.bodies = new FunctionBody[funcs.size()];
+
+        initialize();
+    }
+
+    private FunctionBody body(int funcIndex) {
+        int index = funcIndex - importedFuncCount;
+        var body = bodies[index];
+
+        if (body == null) {
+            body = new BodyCompiler(this, paramCounts, resultCounts, funcTypeIndices).compile(funcs.get(index));
+            bodies[index] = body;
+        }
+
+        return body;
+    }
+
+    @Override
+    protected long[] call(int funcIndex, long[] args) {
+        if (funcIndex < importedFuncCount) {
+            return importedFuncs[funcIndex].call(args);
+        }
+
+        var body = body(funcIndex);
+        var frame = new long[body.frameSize];
+        System.arraycopy(args, 0, frame, 0, args.length);
+
+        // The trees of nodes evaluated by each statement are kept shallow, so the stack only grows with the calls they make
+        try {
+            FunctionBody.run(body.statements, frame);
+        } catch (StackOverflowError e) {
+            throw callStackExhausted(e);
+        }
+
+        return Arrays.copyOfRange(frame, body.localCount, body.localCount + body.resultCount);
+    }
+
+    // Calls a function with arguments evaluated in the frame of the caller, storing its results in that frame
+    void call(int funcIndex, ValueNode[] args, long[] frame, int resultSlot) {
+        if (funcIndex < importedFuncCount) {
+            var values = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                values[i] = args[i].evaluate(frame);
+            }
+
+            var results = importedFuncs[funcIndex].call(values);
+            System.arraycopy(results, 0, frame, resultSlot, results.length);
+            return;
+        }
+
+        var body = body(funcIndex);
+        var callee = new long[body.frameSize];
+        for (int i = 0; i < args.length; i++) {
+            callee[i] = args[i].evaluate(frame);
+        }
+
+        FunctionBody.run(body.statements, callee);
+
+        System.arraycopy(callee, body.localCount, frame, resultSlot, body.resultCount);
+    }
+
+    int indirectTarget(int tableIndex, int typeIndex, int elementIndex) {
+        long ref = tables[tableIndex].get(elementIndex);
+
+        if (ref == Values.NULL) {
+            throw new Trap("uninitialized element " + Integer.toUnsignedString(elementIndex));
+        }
+
+        int funcIndex = Values.asFuncIndex(ref);
+        if (funcIndex >= funcTypeIndices.length || canonicalTypes[funcTypeIndices[funcIndex]] != canonicalTypes[typeIndex]) {
+            throw new Trap("indirect call type mismatch");
+        }
+
+        return funcIndex;
+    }
+
+    MemoryInstance memory(int memIndex) {
+        return memories[memIndex];
+    }
+
+    TableInstance table(int tableIndex) {
+        return tables[tableIndex];
+    }
+
+    GlobalInstance global(int globalIndex) {
+        return globals[globalIndex];
+    }
+
+    // Segments are read when they are used, as they are replaced when they are dropped
+
+    long[] elem(int elemIndex) {
+        return elems[elemIndex];
+    }
+
+    ByteBuffer data(int dataIndex) {
+        return datas[dataIndex];
+    }
+
+    void elemDrop(int elemIndex) {
+        dropElem(elemIndex);
+    }
+
+    void dataDrop(int dataIndex) {
+        dropData(dataIndex);
+    }
+}
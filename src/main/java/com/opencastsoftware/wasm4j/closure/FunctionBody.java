@@ -0,0 +1,32 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+// The statements of a function, with the layout of its frames.
+// A frame holds the locals of a call followed by its operands, and the results are left at the start of the operands.
+final class FunctionBody {
+    final StatementNode[] statements;
+    final int paramCount;
+    final int localCount;
+    final int resultCount;
+    final int frameSize;
+
+    FunctionBody(StatementNode[] statements, int paramCount, int localCount, int resultCount, int frameSize) {
+        this.statements = statements;
+        this.paramCount = paramCount;
+        this.localCount = localCount;
+        this.resultCount = resultCount;
+        this.frameSize = frameSize;
+    }
+
+    // Runs statements in order, continuing wherever a branch says, until execution leaves the last of them
+    static void run(StatementNode[] statements, long[] frame) {
+        int index = 0;
+        while (index < statements.length) {
+            int next = statements[index].execute(frame);
+            index = next == StatementNode.NEXT ? index + 1 : next;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+// Runs part of a function for its effects on the frame of a call or on the instance.
+// The result says where execution continues: with the next statement, or at the index of the statement a branch targets.
+// Returning from a function continues after the last of its statements.
+@FunctionalInterface
+interface StatementNode {
+    int NEXT = -1;
+
+    int execute(long[] frame);
+}
@@ -0,0 +1,12 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+// Computes a value from the frame of a call, as described in Values.
+// Nodes hold their operands and immediates, so evaluating a node evaluates the tree of nodes below it.
+@FunctionalInterface
+interface ValueNode {
+    long evaluate(long[] frame);
+}
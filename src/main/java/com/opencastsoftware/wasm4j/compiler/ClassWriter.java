@@ -0,0 +1,77 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.opencastsoftware.wasm4j.compiler.Opcodes.*;
+
+// Assembles a class file with no fields, interfaces or attributes.
+// Classes use version 49, which the JVM verifies by type inference, so that no stack map frames are needed.
+final class ClassWriter {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final String name;
+    private final String superName;
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    ClassWriter(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    MethodWriter method(int access, String name, String descriptor) {
+        var method = new MethodWriter(pool, access, name, descriptor);
+        methods.add(method);
+        return method;
+    }
+
+    // Discards a method, whose constants are left in the pool
+    void remove(MethodWriter method) {
+        methods.remove(method);
+    }
+
+    byte[] toByteArray() {
+        if (methods.size() > 0xFFFF) {
+            throw new IllegalArgumentException("module is too large to compile: too many methods in class");
+        }
+
+        try {
+            // The methods are written first, as they add their own constants to the pool
+            var body = new ByteArrayOutputStream();
+            var bodyOut = new DataOutputStream(body);
+
+            bodyOut.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            bodyOut.writeShort(pool.classRef(name));
+            bodyOut.writeShort(pool.classRef(superName));
+            bodyOut.writeShort(0);
+            bodyOut.writeShort(0);
+            bodyOut.writeShort(methods.size());
+            for (MethodWriter method : methods) {
+                method.writeTo(bodyOut);
+            }
+            bodyOut.writeShort(0);
+
+            var bytes = new ByteArrayOutputStream(body.size() + 1024);
+            var out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            pool.writeTo(out);
+            body.writeTo(out);
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.interpreter.Interpreter;
+import com.opencastsoftware.wasm4j.runtime.*;
+
+import java.nio.ByteBuffer;
+
+// The superclass of the classes generated for compiled modules.
+// Each function of the module is a static method of the generated class, which takes the instance as its last argument.
+// The static methods here are called by generated code for operations that are not worth generating inline,
+// and the JIT compiler inlines them into their callers.
+public abstract class CompiledInstance extends Instance {
+    // The contents of the first memory, which are reloaded whenever the memory may have grown
+    protected ByteBuffer memory;
+    // Runs the functions too large to compile, and is created the first time one of them is called
+    private Instance interpreter;
+
+    protected CompiledInstance(Module module, Imports imports) {
+        super(module, imports);
+        refreshMemory();
+        initialize();
+    }
+
+    protected final void refreshMemory() {
+        memory = memories.length > 0 ? memories[0].buffer() : null;
+    }
+
+    @Override
+    protected final long[] call(int funcIndex, long[] args) {
+        // The memory may have grown since the instance was last called
+        refreshMemory();
+
+        try {
+            return dispatch(canonicalTypes[funcTypeIndices[funcIndex]], funcIndex, args);
+        } catch (IndexOutOfBoundsException e) {
+            // Memory is only accessed through byte buffers, which check the bounds of each access
+            throw new Trap("out of bounds memory access", e);
+        } catch (StackOverflowError e) {
+            // Generated methods only call each other for the calls made by the functions they compile
+            throw callStackExhausted(e);
+        }
+    }
+
+    // Calls a function with a type identified by the index of the first of its structurally identical types,
+    // converting the arguments from their raw bits and the results back to raw bits
+    protected abstract long[] dispatch(int typeIndex, int funcIndex, long[] args);
+
+    // Control
+
+    protected static Trap unreachable() {
+        return new Trap("unreachable");
+    }
+
+    protected static Trap indirectCallTypeMismatch() {
+        return new Trap("indirect call type mismatch");
+    }
+
+    // Returns the index of the function referred to by an element of a table, for call_indirect
+    protected static int indirectTarget(int elementIndex, int tableIndex, CompiledInstance self) {
+        long ref = self.tables[tableIndex].get(elementIndex);
+
+        if (ref == Values.NULL) {
+            throw new Trap("uninitialized element " + Integer.toUnsignedString(elementIndex));
+        }
+
+        return Values.asFuncIndex(ref);
+    }
+
+    protected static int refTarget(long ref) {
+        if (ref == Values.NULL) {
+            throw new Trap("null function reference");
+        }
+
+        return Values.asFuncIndex(ref);
+    }
+
+    protected static long[] callImport(long[] args, int funcIndex, int resultCount, CompiledInstance self) {
+        var results = self.importedFuncs[funcIndex].call(args);
+
+        // The host may have grown the memory, or called back into this instance
+        self.refreshMemory();
+
+        if (results.length != resultCount) {
+            throw new IllegalStateException("imported function " + funcIndex + " returned " + results.length + " results but its type has " + resultCount);
+        }
+
+        return results;
+    }
+
+    protected static long[] callInterpreted(long[] args, int funcIndex, int resultCount, CompiledInstance self) {
+        if (self.interpreter == null) {
+            self.interpreter = Interpreter.share(self);
+        }
+
+        var results = self.interpreter.invoke(funcIndex, args);
+
+        // The interpreted function may have grown the memory
+        self.refreshMemory();
+
+        return results;
+    }
+
+    // Parametric
+
+    protected static int selectI32(int first, int second, int condition) {
+        return condition != 0 ? first : second;
+    }
+
+    protected static long selectI64(long first, long second, int condition) {
+        return condition != 0 ? first : second;
+    }
+
+    protected static float selectF32(float first, float second, int condition) {
+        return condition != 0 ? first : second;
+    }
+
+    protected static double selectF64(double first, double second, int condition) {
+        return condition != 0 ? first : second;
+    }
+
+    // Variables
+
+    protected static long globalGet(int globalIndex, CompiledInstance self) {
+        return self.globals[globalIndex].get();
+    }
+
+    protected static void globalSet(long value, int globalIndex, CompiledInstance self) {
+        self.globals[globalIndex].set(value);
+    }
+
+    // Memory
+
+    // Returns the index of the bytes at an address and offset, which is negative if it is beyond any memory
+    private static int effectiveAddress(int address, int offset) {
+        long effective = Integer.toUnsignedLong(address) + Integer.toUnsignedLong(offset);
+        return effective <= Integer.MAX_VALUE ? (int) effective : -1;
+    }
+
+    protected static int i32Load(int address, int offset, CompiledInstance self) {
+        return self.memory.getInt(effectiveAddress(address, offset));
+    }
+
+    protected static long i64Load(int address, int offset, CompiledInstance self) {
+        return self.memory.getLong(effectiveAddress(address, offset));
+    }
+
+    protected static float f32Load(int address, int offset, CompiledInstance self) {
+        return Float.intBitsToFloat(self.memory.getInt(effectiveAddress(address, offset)));
+    }
+
+    protected static double f64Load(int address, int offset, CompiledInstance self) {
+        return Double.longBitsToDouble(self.memory.getLong(effectiveAddress(address, offset)));
+    }
+
+    protected static void i32Store(int address, int value, int offset, CompiledInstance self) {
+        self.memory.putInt(effectiveAddress(address, offset), value);
+    }
+
+    protected static void i64Store(int address, long value, int offset, CompiledInstance self) {
+        self.memory.putLong(effectiveAddress(address, offset), value);
+    }
+
+    protected static void f32Store(int address, float value, int offset, CompiledInstance self) {
+        self.memory.putInt(effectiveAddress(address, offset), Float.floatToRawIntBits(value));
+    }
+
+    protected static void f64Store(int address, double value, int offset, CompiledInstance self) {
+        self.memory.putLong(effectiveAddress(address, offset), Double.doubleToRawLongBits(value));
+    }
+
+    protected static int memorySize(int memIndex, CompiledInstance self) {
+        return self.memories[memIndex].size();
+    }
+
+    protected static int memoryGrow(int deltaPages, int memIndex, CompiledInstance self) {
+        int result = self.memories[memIndex].grow(deltaPages);
+        self.refreshMemory();
+        return result;
+    }
+
+    protected static void memoryFill(int offset, int value, int length, int memIndex, CompiledInstance self) {
+        self.memories[memIndex].fill(offset, (byte) value, length);
+    }
+
+    protected static void memoryCopy(int targetOffset, int sourceOffset, int length, int targetMemIndex, int sourceMemIndex, CompiledInstance self) {
+        self.memories[targetMemIndex].copy(targetOffset, self.memories[sourceMemIndex], sourceOffset, length);
+    }
+
+    protected static void memoryInit(int targetOffset, int sourceOffset, int length, int memIndex, int dataIndex, CompiledInstance self) {
+        self.memories[memIndex].init(targetOffset, self.datas[dataIndex], sourceOffset, length);
+    }
+
+    protected static void dataDrop(int dataIndex, CompiledInstance self) {
+        self.dropData(dataIndex);
+    }
+
+    // References
+
+    protected static long refAsNonNull(long ref) {
+        if (ref == Values.NULL) {
+            throw new Trap("null reference");
+        }
+
+        return ref;
+    }
+
+    // Tables
+
+    protected static long tableGet(int index, int tableIndex, CompiledInstance self) {
+        return self.tables[tableIndex].get(index);
+    }
+
+    protected static void tableSet(int index, long value, int tableIndex, CompiledInstance self) {
+        self.tables[tableIndex].set(index, value);
+    }
+
+    protected static int tableSize(int tableIndex, CompiledInstance self) {
+        return self.tables[tableIndex].size();
+    }
+
+    protected static int tableGrow(long initialValue, int delta, int tableIndex, CompiledInstance self) {
+        return self.tables[tableIndex].grow(delta, initialValue);
+    }
+
+    protected static void tableFill(int offset, long value, int length, int tableIndex, CompiledInstance self) {
+        self.tables[tableIndex].fill(offset, value, length);
+    }
+
+    protected static void tableCopy(int targetOffset, int sourceOffset, int length, int targetTableIndex, int sourceTableIndex, CompiledInstance self) {
+        self.tables[targetTableIndex].copy(targetOffset, self.tables[sourceTableIndex], sourceOffset, length);
+    }
+
+    protected static void tableInit(int targetOffset, int sourceOffset, int length, int tableIndex, int elemIndex, CompiledInstance self) {
+        self.tables[tableIndex].init(targetOffset, self.elems[elemIndex], sourceOffset, length);
+    }
+
+    protected static void elemDrop(int elemIndex, CompiledInstance self) {
+        self.dropElem(elemIndex);
+    }
+}
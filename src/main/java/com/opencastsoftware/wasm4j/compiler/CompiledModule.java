@@ -0,0 +1,47 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+// A module compiled to a JVM class, which can be instantiated any number of times.
+public final class CompiledModule {
+    private final Module module;
+    private final Constructor<? extends CompiledInstance> constructor;
+
+    CompiledModule(Module module, Constructor<? extends CompiledInstance> constructor) {
+        this.module = module;
+        this.constructor = constructor;
+    }
+
+    public Module module() {
+        return module;
+    }
+
+    public Instance instantiate() {
+        return instantiate(Imports.empty());
+    }
+
+    public Instance instantiate(Imports imports) {
+        try {
+            return constructor.newInstance(module, imports);
+        } catch (InvocationTargetException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
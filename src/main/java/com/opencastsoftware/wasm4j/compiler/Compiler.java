@@ -0,0 +1,34 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.validation.ModuleValidator;
+
+// Compiles modules ahead of time to JVM classes, whose functions are static methods the JIT compiler can optimise.
+// Each module is loaded by its own class loader.
+// Functions whose code does not fit in a JVM method are run by the interpreter instead,
+// and vector instructions cannot be compiled.
+public final class Compiler {
+    private Compiler() {
+    }
+
+    public static CompiledModule compile(Module module) {
+        ModuleValidator.validate(module);
+
+        var moduleCompiler = new ModuleCompiler(module);
+        var bytes = moduleCompiler.compile();
+        var generatedClass = new GeneratedClassLoader()
+                .define(moduleCompiler.className(), bytes)
+                .asSubclass(CompiledInstance.class);
+
+        try {
+            return new CompiledModule(module, generatedClass.getConstructor(Module.class, Imports.class));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// The constant pool of a class file, where each distinct constant is added once
+final class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(bytes);
+    private final Map<String, Integer> indices = new HashMap<>();
+    // Index zero is unused, and long and double constants take two entries
+    private int count = 1;
+
+    private interface Entry {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    private int add(String key, int size, Entry entry) {
+        var index = indices.get(key);
+
+        if (index == null) {
+            if (count + size > 0xFFFF) {
+                throw new IllegalArgumentException("module is too large to compile: too many constants in class");
+            }
+
+            try {
+                entry.write(output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            index = count;
+            count += size;
+            indices.put(key, index);
+        }
+
+        return index;
+    }
+
+    int utf8(String value) {
+        return add("U" + value, 1, out -> {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return add("I" + value, 1, out -> {
+            out.writeByte(INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int floatBits(int bits) {
+        return add("F" + bits, 1, out -> {
+            out.writeByte(FLOAT);
+            out.writeInt(bits);
+        });
+    }
+
+    int longValue(long value) {
+        return add("J" + value, 2, out -> {
+            out.writeByte(LONG);
+            out.writeLong(value);
+        });
+    }
+
+    int doubleBits(long bits) {
+        return add("D" + bits, 2, out -> {
+            out.writeByte(DOUBLE);
+            out.writeLong(bits);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return add("C" + internalName, 1, out -> {
+            out.writeByte(CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add("N" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return add("M" + tag + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+}
@@ -0,0 +1,1761 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Locals;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.unary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.conversion.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I32Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I64Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.unary.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.Drop;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefAsNonNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefIsNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.table.*;
+import com.opencastsoftware.wasm4j.instructions.variable.*;
+import com.opencastsoftware.wasm4j.runtime.Values;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.TypeId;
+import com.opencastsoftware.wasm4j.types.ValType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static com.opencastsoftware.wasm4j.compiler.JvmTypes.*;
+import static com.opencastsoftware.wasm4j.compiler.ModuleCompiler.INSTANCE;
+import static com.opencastsoftware.wasm4j.compiler.ModuleCompiler.INSTANCE_DESCRIPTOR;
+import static com.opencastsoftware.wasm4j.compiler.Opcodes.*;
+
+// Compiles the body of a validated function to the code of a static method.
+// Operands stay on the JVM operand stack and locals are JVM locals, so the types of both are tracked while compiling.
+// A branch to a label which has other operands below its values moves them through spare locals,
+// and a branch out of the function returns directly.
+// Unreachable code is skipped, as validation has already checked it.
+final class FunctionCompiler implements FlatInstructionVisitor<RuntimeException> {
+    private static final int BLOCK = 0;
+    private static final int LOOP = 1;
+    private static final int IF = 2;
+
+    private static final String MATH = "java/lang/Math";
+    private static final String INTEGER = "java/lang/Integer";
+    private static final String LONG_CLASS = "java/lang/Long";
+    private static final String FLOAT_CLASS = "java/lang/Float";
+    private static final String DOUBLE_CLASS = "java/lang/Double";
+    private static final String NUMERICS = "com/opencastsoftware/wasm4j/runtime/Numerics";
+    private static final String TRAP_DESCRIPTOR = "()Lcom/opencastsoftware/wasm4j/runtime/Trap;";
+
+    private static final int MAX_LOCALS = 0xFFFF;
+
+    private static final int[] NONE = new int[0];
+    // The types of blocks with a single result, by the type of the result
+    private static final int[][] SINGLE = {{INT}, {LONG}, {FLOAT}, {DOUBLE}};
+    private static final String[] SELECTS = {"selectI32", "selectI64", "selectF32", "selectF64"};
+
+    private final ModuleCompiler module;
+
+    private MethodWriter method;
+    private int[] results;
+
+    // The JVM local and type of each local of the function
+    private int[] localSlots;
+    private int[] localTypes;
+    private int selfSlot;
+    // The first JVM local which is free for moving operands
+    private int scratchSlot;
+    private int maxLocals;
+
+    // The type of each operand, and the number of JVM stack slots below each operand
+    private int[] types = new int[64];
+    private int[] slotsBelow = new int[65];
+    private int height;
+    private int maxSlots;
+
+    private int[] frameKinds = new int[16];
+    private int[] frameHeights = new int[16];
+    private int[][] frameParams = new int[16][];
+    private int[][] frameResults = new int[16][];
+    // The end of each block and if, or the start of each loop
+    private Label[] frameLabels = new Label[16];
+    // The start of the alternative of an if
+    private Label[] frameElseLabels = new Label[16];
+    private boolean[] frameUnreachable = new boolean[16];
+    private int depth;
+    // The number of structured instructions entered within unreachable code
+    private int skipDepth;
+
+    FunctionCompiler(ModuleCompiler module) {
+        this.module = module;
+    }
+
+    void compile(int funcIndex, Func func, MethodWriter method) {
+        int typeIndex = func.typeIndex();
+        var params = module.params(typeIndex);
+
+        long localCount = params.length;
+        for (Locals run : func.compressedLocals()) {
+            localCount += Integer.toUnsignedLong(run.count());
+        }
+
+        if (localCount > MAX_LOCALS) {
+            throw new IllegalArgumentException("too many locals to compile function " + funcIndex);
+        }
+
+        this.method = method;
+        this.results = module.results(typeIndex);
+        this.localSlots = new int[(int) localCount];
+        this.localTypes = new int[(int) localCount];
+
+        int slot = 0;
+        for (int i = 0; i < params.length; i++) {
+            localSlots[i] = slot;
+            localTypes[i] = params[i];
+            slot += size(params[i]);
+        }
+
+        this.selfSlot = slot++;
+
+        // Declared locals start at zero, and the JVM requires them to be stored before they are read
+        int local = params.length;
+        for (Locals run : func.compressedLocals()) {
+            int type = of(run.type());
+            for (int i = 0; i < run.count(); i++) {
+                if (slot + size(type) > MAX_LOCALS) {
+                    throw new IllegalArgumentException("too many locals to compile function " + funcIndex);
+                }
+                localSlots[local] = slot;
+                localTypes[local++] = type;
+                method.op(zero(type));
+                method.var(store(type), slot);
+                slot += size(type);
+            }
+        }
+
+        this.scratchSlot = slot;
+        this.maxLocals = slot;
+        this.height = 0;
+        this.maxSlots = 2;
+        this.depth = 0;
+        this.skipDepth = 0;
+
+        pushFrame(BLOCK, NONE, results, new Label());
+        visitExpression(func.body());
+
+        method.setMaxStack(maxSlots + 8);
+        method.setMaxLocals(maxLocals);
+    }
+
+    // Operand types
+
+    private void push(int type) {
+        if (height + 1 == types.length) {
+            types = Arrays.copyOf(types, types.length * 2);
+            slotsBelow = Arrays.copyOf(slotsBelow, slotsBelow.length * 2);
+        }
+
+        types[height] = type;
+        slotsBelow[height + 1] = slotsBelow[height] + size(type);
+        height++;
+        maxSlots = Math.max(maxSlots, slotsBelow[height]);
+    }
+
+    private void pushAll(int[] types) {
+        for (int type : types) {
+            push(type);
+        }
+    }
+
+    private int pop() {
+        return types[--height];
+    }
+
+    private void popAll(int count) {
+        height -= count;
+    }
+
+    private void result(int operands, int type) {
+        popAll(operands);
+        push(type);
+    }
+
+    // Code
+
+    private void op(int opcode) {
+        method.op(opcode);
+    }
+
+    private void iconst(int value) {
+        method.iconst(value);
+    }
+
+    private void lconst(long value) {
+        method.lconst(value);
+    }
+
+    private void invokeStatic(String owner, String name, String descriptor) {
+        method.invoke(INVOKESTATIC, owner, name, descriptor);
+    }
+
+    private void invokeInstance(String name, String descriptor) {
+        method.var(ALOAD, selfSlot);
+        method.invoke(INVOKESTATIC, INSTANCE, name, descriptor);
+    }
+
+    // Replaces the operands of a conditional jump with 1 when it is taken, and 0 otherwise
+    private void compare(int opcode) {
+        var isTrue = new Label();
+        var end = new Label();
+        method.jump(opcode, isTrue);
+        method.op(ICONST_0);
+        method.jump(GOTO, end);
+        method.mark(isTrue);
+        method.op(ICONST_1);
+        method.mark(end);
+    }
+
+    private void popValue(int type) {
+        op(size(type) == 2 ? POP2 : POP);
+    }
+
+    // Stores the operands at the top of the stack in spare locals, and returns the local after them
+    private int spill(int count) {
+        int slot = scratchSlot + slotsBelow[height] - slotsBelow[height - count];
+        maxLocals = Math.max(maxLocals, slot);
+
+        for (int i = height - 1; i >= height - count; i--) {
+            slot -= size(types[i]);
+            method.var(store(types[i]), slot);
+        }
+
+        return scratchSlot + slotsBelow[height] - slotsBelow[height - count];
+    }
+
+    private void reload(int count) {
+        int slot = scratchSlot;
+        for (int i = height - count; i < height; i++) {
+            method.var(load(types[i]), slot);
+            slot += size(types[i]);
+        }
+    }
+
+    // Frames
+
+    private void pushFrame(int kind, int[] params, int[] results, Label label) {
+        if (depth == frameKinds.length) {
+            int length = depth * 2;
+            frameKinds = Arrays.copyOf(frameKinds, length);
+            frameHeights = Arrays.copyOf(frameHeights, length);
+            frameParams = Arrays.copyOf(frameParams, length);
+            frameResults = Arrays.copyOf(frameResults, length);
+            frameLabels = Arrays.copyOf(frameLabels, length);
+            frameElseLabels = Arrays.copyOf(frameElseLabels, length);
+            frameUnreachable = Arrays.copyOf(frameUnreachable, length);
+        }
+
+        frameKinds[depth] = kind;
+        frameHeights[depth] = height - params.length;
+        frameParams[depth] = params;
+        frameResults[depth] = results;
+        frameLabels[depth] = label;
+        frameElseLabels[depth] = null;
+        frameUnreachable[depth] = false;
+        depth++;
+    }
+
+    private void startFrame(int kind, @Nullable BlockType blockType, Label label) {
+        if (blockType == null) {
+            pushFrame(kind, NONE, NONE, label);
+        } else if (blockType instanceof TypeId) {
+            int typeIndex = ((TypeId) blockType).typeIndex();
+            pushFrame(kind, module.params(typeIndex), module.results(typeIndex), label);
+        } else {
+            pushFrame(kind, NONE, SINGLE[of((ValType) blockType)], label);
+        }
+    }
+
+    private void unreachable() {
+        frameUnreachable[depth - 1] = true;
+    }
+
+    private int labelArity(int frame) {
+        return frameKinds[frame] == LOOP ? frameParams[frame].length : frameResults[frame].length;
+    }
+
+    // Whether a branch to a label can jump straight to it, leaving the operands as they are
+    private boolean isDirect(int frame) {
+        return frame > 0 && height - labelArity(frame) == frameHeights[frame];
+    }
+
+    // Returns the results at the top of the stack, packing them into an array when there are several
+    private void returnResults() {
+        if (results.length == 0) {
+            op(RETURN);
+        } else if (results.length == 1) {
+            op(IRETURN + results[0]);
+        } else {
+            spill(results.length);
+            iconst(results.length);
+            method.op(NEWARRAY, T_LONG);
+            int slot = scratchSlot;
+            for (int i = 0; i < results.length; i++) {
+                op(DUP);
+                iconst(i);
+                method.var(load(results[i]), slot);
+                toBits(method, results[i]);
+                op(LASTORE);
+                slot += size(results[i]);
+            }
+            op(ARETURN);
+        }
+    }
+
+    // Jumps to a label, first removing any operands below its values
+    private void branch(int labelIndex) {
+        int frame = depth - 1 - labelIndex;
+
+        if (frame == 0) {
+            returnResults();
+            return;
+        }
+
+        int arity = labelArity(frame);
+
+        if (height - arity != frameHeights[frame]) {
+            spill(arity);
+            for (int i = height - arity - 1; i >= frameHeights[frame]; i--) {
+                popValue(types[i]);
+            }
+            reload(arity);
+        }
+
+        method.jump(GOTO, frameLabels[frame]);
+    }
+
+    // Branches to a label when a jump on the int at the top of the stack is taken, where the inverse jump is its opposite
+    private void branchIf(int opcode, int inverse, int labelIndex) {
+        int frame = depth - 1 - labelIndex;
+
+        if (isDirect(frame)) {
+            method.jump(opcode, frameLabels[frame]);
+        } else {
+            var skip = new Label();
+            method.jump(inverse, skip);
+            branch(labelIndex);
+            method.mark(skip);
+        }
+    }
+
+    @Override
+    public void visitInstruction(Instruction instruction) {
+        if (frameUnreachable[depth - 1]) {
+            return;
+        }
+
+        instruction.accept(this);
+    }
+
+    @Override
+    public void visitExpression(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            ((PackedExpression) expression).replay(this);
+        } else {
+            InstructionWalker.walk(expression, this);
+        }
+    }
+
+    @Override
+    public void visitConstantExpression(ConstantExpression constExpr) {
+        throw new UnsupportedOperationException("Constant expressions are evaluated during instantiation");
+    }
+
+    @Override
+    public void visitBlockStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        startFrame(BLOCK, blockType, new Label());
+    }
+
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        var start = new Label();
+        method.mark(start);
+        startFrame(LOOP, blockType, start);
+    }
+
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        pop();
+        var elseLabel = new Label();
+        method.jump(IFEQ, elseLabel);
+        startFrame(IF, blockType, new Label());
+        frameElseLabels[depth - 1] = elseLabel;
+    }
+
+    @Override
+    public void visitElse() {
+        if (skipDepth > 0) {
+            return;
+        }
+
+        int frame = depth - 1;
+
+        if (!frameUnreachable[frame]) {
+            method.jump(GOTO, frameLabels[frame]);
+        }
+
+        method.mark(frameElseLabels[frame]);
+        frameElseLabels[frame] = null;
+        frameUnreachable[frame] = false;
+        height = frameHeights[frame];
+        pushAll(frameParams[frame]);
+    }
+
+    @Override
+    public void visitEnd() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+
+        int frame = depth - 1;
+
+        if (frame == 0) {
+            if (!frameUnreachable[frame]) {
+                returnResults();
+            }
+            depth--;
+            return;
+        }
+
+        // An if without an else falls through to its end when the condition is false
+        if (frameElseLabels[frame] != null) {
+            method.mark(frameElseLabels[frame]);
+        }
+
+        if (frameKinds[frame] != LOOP) {
+            method.mark(frameLabels[frame]);
+        }
+
+        height = frameHeights[frame];
+        pushAll(frameResults[frame]);
+        depth--;
+    }
+
+    // Control instructions
+
+    @Override
+    public void visitBlock(Block block) {
+        InstructionWalker.walk(block, this);
+    }
+
+    @Override
+    public void visitLoop(Loop loop) {
+        InstructionWalker.walk(loop, this);
+    }
+
+    @Override
+    public void visitIf(If ifInstr) {
+        InstructionWalker.walk(ifInstr, this);
+    }
+
+    @Override
+    public void visitBranch(Branch branch) {
+        branch(branch.labelIndex());
+        unreachable();
+    }
+
+    @Override
+    public void visitBranchIf(BranchIf branchIf) {
+        pop();
+        branchIf(IFNE, IFEQ, branchIf.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNull(BranchOnNull branchOnNull) {
+        // The null reference is dropped when branching, so the branch cannot be direct
+        var skip = new Label();
+        op(DUP2);
+        op(LCONST_0);
+        op(LCMP);
+        method.jump(IFNE, skip);
+        op(POP2);
+        pop();
+        branch(branchOnNull.labelIndex());
+        method.mark(skip);
+        push(LONG);
+    }
+
+    @Override
+    public void visitBranchOnNonNull(BranchOnNonNull branchOnNonNull) {
+        op(DUP2);
+        op(LCONST_0);
+        op(LCMP);
+        branchIf(IFNE, IFEQ, branchOnNonNull.labelIndex());
+        op(POP2);
+        pop();
+    }
+
+    @Override
+    public void visitBranchTable(BranchTable branchTable) {
+        pop();
+
+        var labels = branchTable.labels();
+        int defaultLabel = branchTable.defaultLabel();
+
+        if (labels.length == 0) {
+            op(POP);
+            branch(defaultLabel);
+            unreachable();
+            return;
+        }
+
+        // Branches which cannot be direct go through a stub for each label, placed after the switch
+        var stubs = new HashMap<Integer, Label>();
+        var targets = new Label[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            targets[i] = target(labels[i], stubs);
+        }
+
+        method.tableSwitch(0, target(defaultLabel, stubs), targets);
+
+        for (var stub : stubs.entrySet()) {
+            method.mark(stub.getValue());
+            branch(stub.getKey());
+        }
+
+        unreachable();
+    }
+
+    private Label target(int labelIndex, HashMap<Integer, Label> stubs) {
+        int frame = depth - 1 - labelIndex;
+        return isDirect(frame) ? frameLabels[frame] : stubs.computeIfAbsent(labelIndex, l -> new Label());
+    }
+
+    // Calls a function whose arguments are on the stack, followed by the instance
+    private void call(String name, String descriptor, int typeIndex) {
+        method.var(ALOAD, selfSlot);
+        method.invoke(INVOKESTATIC, module.className(), name, descriptor);
+        popAll(module.params(typeIndex).length);
+
+        var results = module.results(typeIndex);
+        if (results.length > 1) {
+            method.var(ASTORE, scratchSlot);
+            maxLocals = Math.max(maxLocals, scratchSlot + 1);
+            for (int i = 0; i < results.length; i++) {
+                method.var(ALOAD, scratchSlot);
+                iconst(i);
+                op(LALOAD);
+                fromBits(method, results[i]);
+                push(results[i]);
+            }
+        } else {
+            pushAll(results);
+        }
+    }
+
+    @Override
+    public void visitCall(Call call) {
+        int funcIndex = call.funcIndex();
+        call(ModuleCompiler.funcName(funcIndex), module.funcDescriptor(funcIndex), module.funcType(funcIndex));
+    }
+
+    @Override
+    public void visitCallIndirect(CallIndirect callIndirect) {
+        int typeIndex = callIndirect.typeIndex();
+        iconst(callIndirect.tableIndex());
+        invokeInstance("indirectTarget", "(II" + INSTANCE_DESCRIPTOR + ")I");
+        pop();
+        call(module.dispatcherName(typeIndex), module.dispatcherDescriptor(typeIndex), typeIndex);
+    }
+
+    @Override
+    public void visitCallRef(CallRef callRef) {
+        int typeIndex = callRef.typeIndex();
+        invokeStatic(INSTANCE, "refTarget", "(J)I");
+        pop();
+        call(module.dispatcherName(typeIndex), module.dispatcherDescriptor(typeIndex), typeIndex);
+    }
+
+    @Override
+    public void visitNop(Nop nop) {
+    }
+
+    @Override
+    public void visitReturn(Return ret) {
+        returnResults();
+        unreachable();
+    }
+
+    @Override
+    public void visitUnreachable(Unreachable unreachable) {
+        invokeStatic(INSTANCE, "unreachable", TRAP_DESCRIPTOR);
+        op(ATHROW);
+        unreachable();
+    }
+
+    // Memory instructions
+
+    private void memoryLoad(String name, MemArgInstruction instr, int type) {
+        iconst(instr.offset());
+        invokeInstance(name, "(II" + INSTANCE_DESCRIPTOR + ")" + descriptor(type));
+        result(1, type);
+    }
+
+    private void memoryStore(String name, MemArgInstruction instr, int type) {
+        iconst(instr.offset());
+        invokeInstance(name, "(I" + descriptor(type) + "I" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(2);
+    }
+
+    @Override
+    public void visitI32Load(I32Load i32Load) {
+        memoryLoad("i32Load", i32Load, INT);
+    }
+
+    @Override
+    public void visitI64Load(I64Load i64Load) {
+        memoryLoad("i64Load", i64Load, LONG);
+    }
+
+    @Override
+    public void visitF32Load(F32Load f32Load) {
+        memoryLoad("f32Load", f32Load, FLOAT);
+    }
+
+    @Override
+    public void visitF64Load(F64Load f64Load) {
+        memoryLoad("f64Load", f64Load, DOUBLE);
+    }
+
+    @Override
+    public void visitI32Store(I32Store i32Store) {
+        memoryStore("i32Store", i32Store, INT);
+    }
+
+    @Override
+    public void visitI64Store(I64Store i64Store) {
+        memoryStore("i64Store", i64Store, LONG);
+    }
+
+    @Override
+    public void visitF32Store(F32Store f32Store) {
+        memoryStore("f32Store", f32Store, FLOAT);
+    }
+
+    @Override
+    public void visitF64Store(F64Store f64Store) {
+        memoryStore("f64Store", f64Store, DOUBLE);
+    }
+
+    @Override
+    public void visitMemorySize(MemorySize memorySize) {
+        iconst(memorySize.memIndex());
+        invokeInstance("memorySize", "(I" + INSTANCE_DESCRIPTOR + ")I");
+        push(INT);
+    }
+
+    @Override
+    public void visitMemoryGrow(MemoryGrow memoryGrow) {
+        iconst(memoryGrow.memIndex());
+        invokeInstance("memoryGrow", "(II" + INSTANCE_DESCRIPTOR + ")I");
+    }
+
+    @Override
+    public void visitMemoryFill(MemoryFill memoryFill) {
+        iconst(memoryFill.memIndex());
+        invokeInstance("memoryFill", "(IIII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitMemoryCopy(MemoryCopy memoryCopy) {
+        iconst(memoryCopy.targetMemIndex());
+        iconst(memoryCopy.sourceMemIndex());
+        invokeInstance("memoryCopy", "(IIIII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitMemoryInit(MemoryInit memoryInit) {
+        iconst(memoryInit.memIndex());
+        iconst(memoryInit.dataIndex());
+        invokeInstance("memoryInit", "(IIIII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitDataDrop(DataDrop dataDrop) {
+        iconst(dataDrop.dataIndex());
+        invokeInstance("dataDrop", "(I" + INSTANCE_DESCRIPTOR + ")V");
+    }
+
+    // Numeric instructions
+
+    @Override
+    public void visitI32Const(I32Const i32Const) {
+        iconst(i32Const.value());
+        push(INT);
+    }
+
+    @Override
+    public void visitI64Const(I64Const i64Const) {
+        lconst(i64Const.value());
+        push(LONG);
+    }
+
+    @Override
+    public void visitF32Const(F32Const f32Const) {
+        method.fconst(f32Const.value());
+        push(FLOAT);
+    }
+
+    @Override
+    public void visitF64Const(F64Const f64Const) {
+        method.dconst(f64Const.value());
+        push(DOUBLE);
+    }
+
+    @Override
+    public void visitI32Clz(I32Clz i32Clz) {
+        invokeStatic(INTEGER, "numberOfLeadingZeros", "(I)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32Ctz(I32Ctz i32Ctz) {
+        invokeStatic(INTEGER, "numberOfTrailingZeros", "(I)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32Popcnt(I32Popcnt i32Popcnt) {
+        invokeStatic(INTEGER, "bitCount", "(I)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64Clz(I64Clz i64Clz) {
+        invokeStatic(LONG_CLASS, "numberOfLeadingZeros", "(J)I");
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64Ctz(I64Ctz i64Ctz) {
+        invokeStatic(LONG_CLASS, "numberOfTrailingZeros", "(J)I");
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64Popcnt(I64Popcnt i64Popcnt) {
+        invokeStatic(LONG_CLASS, "bitCount", "(J)I");
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitF32Abs(F32Abs f32Abs) {
+        invokeStatic(FLOAT_CLASS, "floatToRawIntBits", "(F)I");
+        iconst(0x7FFF_FFFF);
+        op(IAND);
+        invokeStatic(FLOAT_CLASS, "intBitsToFloat", "(I)F");
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Ceil(F32Ceil f32Ceil) {
+        op(F2D);
+        invokeStatic(MATH, "ceil", "(D)D");
+        op(D2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Floor(F32Floor f32Floor) {
+        op(F2D);
+        invokeStatic(MATH, "floor", "(D)D");
+        op(D2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Nearest(F32Nearest f32Nearest) {
+        invokeStatic(NUMERICS, "f32Nearest", "(F)F");
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Neg(F32Neg f32Neg) {
+        op(FNEG);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Sqrt(F32Sqrt f32Sqrt) {
+        op(F2D);
+        invokeStatic(MATH, "sqrt", "(D)D");
+        op(D2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32Trunc(F32Trunc f32Trunc) {
+        invokeStatic(NUMERICS, "f32Trunc", "(F)F");
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF64Abs(F64Abs f64Abs) {
+        invokeStatic(DOUBLE_CLASS, "doubleToRawLongBits", "(D)J");
+        lconst(0x7FFF_FFFF_FFFF_FFFFL);
+        op(LAND);
+        invokeStatic(DOUBLE_CLASS, "longBitsToDouble", "(J)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Ceil(F64Ceil f64Ceil) {
+        invokeStatic(MATH, "ceil", "(D)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Floor(F64Floor f64Floor) {
+        invokeStatic(MATH, "floor", "(D)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Nearest(F64Nearest f64Nearest) {
+        invokeStatic(MATH, "rint", "(D)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Neg(F64Neg f64Neg) {
+        op(DNEG);
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Sqrt(F64Sqrt f64Sqrt) {
+        invokeStatic(MATH, "sqrt", "(D)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Trunc(F64Trunc f64Trunc) {
+        invokeStatic(NUMERICS, "f64Trunc", "(D)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitI32Add(I32Add i32Add) {
+        op(IADD);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32And(I32And i32And) {
+        op(IAND);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32DivSigned(I32DivSigned i32DivSigned) {
+        invokeStatic(NUMERICS, "i32DivS", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32DivUnsigned(I32DivUnsigned i32DivUnsigned) {
+        invokeStatic(NUMERICS, "i32DivU", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Mul(I32Mul i32Mul) {
+        op(IMUL);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Or(I32Or i32Or) {
+        op(IOR);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32RemSigned(I32RemSigned i32RemSigned) {
+        invokeStatic(NUMERICS, "i32RemS", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32RemUnsigned(I32RemUnsigned i32RemUnsigned) {
+        invokeStatic(NUMERICS, "i32RemU", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Rotl(I32Rotl i32Rotl) {
+        invokeStatic(INTEGER, "rotateLeft", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Rotr(I32Rotr i32Rotr) {
+        invokeStatic(INTEGER, "rotateRight", "(II)I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Shl(I32Shl i32Shl) {
+        op(ISHL);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32ShrSigned(I32ShrSigned i32ShrSigned) {
+        op(ISHR);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32ShrUnsigned(I32ShrUnsigned i32ShrUnsigned) {
+        op(IUSHR);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Sub(I32Sub i32Sub) {
+        op(ISUB);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Xor(I32Xor i32Xor) {
+        op(IXOR);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64Add(I64Add i64Add) {
+        op(LADD);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64And(I64And i64And) {
+        op(LAND);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64DivSigned(I64DivSigned i64DivSigned) {
+        invokeStatic(NUMERICS, "i64DivS", "(JJ)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64DivUnsigned(I64DivUnsigned i64DivUnsigned) {
+        invokeStatic(NUMERICS, "i64DivU", "(JJ)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Mul(I64Mul i64Mul) {
+        op(LMUL);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Or(I64Or i64Or) {
+        op(LOR);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64RemSigned(I64RemSigned i64RemSigned) {
+        invokeStatic(NUMERICS, "i64RemS", "(JJ)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64RemUnsigned(I64RemUnsigned i64RemUnsigned) {
+        invokeStatic(NUMERICS, "i64RemU", "(JJ)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Rotl(I64Rotl i64Rotl) {
+        op(L2I);
+        invokeStatic(LONG_CLASS, "rotateLeft", "(JI)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Rotr(I64Rotr i64Rotr) {
+        op(L2I);
+        invokeStatic(LONG_CLASS, "rotateRight", "(JI)J");
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Shl(I64Shl i64Shl) {
+        op(L2I);
+        op(LSHL);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64ShrSigned(I64ShrSigned i64ShrSigned) {
+        op(L2I);
+        op(LSHR);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64ShrUnsigned(I64ShrUnsigned i64ShrUnsigned) {
+        op(L2I);
+        op(LUSHR);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Sub(I64Sub i64Sub) {
+        op(LSUB);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitI64Xor(I64Xor i64Xor) {
+        op(LXOR);
+        result(2, LONG);
+    }
+
+    @Override
+    public void visitF32Add(F32Add f32Add) {
+        op(FADD);
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Copysign(F32Copysign f32Copysign) {
+        invokeStatic(MATH, "copySign", "(FF)F");
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Div(F32Div f32Div) {
+        op(FDIV);
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Max(F32Max f32Max) {
+        invokeStatic(MATH, "max", "(FF)F");
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Min(F32Min f32Min) {
+        invokeStatic(MATH, "min", "(FF)F");
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Mul(F32Mul f32Mul) {
+        op(FMUL);
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF32Sub(F32Sub f32Sub) {
+        op(FSUB);
+        result(2, FLOAT);
+    }
+
+    @Override
+    public void visitF64Add(F64Add f64Add) {
+        op(DADD);
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Copysign(F64Copysign f64Copysign) {
+        invokeStatic(MATH, "copySign", "(DD)D");
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Div(F64Div f64Div) {
+        op(DDIV);
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Max(F64Max f64Max) {
+        invokeStatic(MATH, "max", "(DD)D");
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Min(F64Min f64Min) {
+        invokeStatic(MATH, "min", "(DD)D");
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Mul(F64Mul f64Mul) {
+        op(DMUL);
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitF64Sub(F64Sub f64Sub) {
+        op(DSUB);
+        result(2, DOUBLE);
+    }
+
+    @Override
+    public void visitI32Eqz(I32Eqz i32Eqz) {
+        compare(IFEQ);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64Eqz(I64Eqz i64Eqz) {
+        op(LCONST_0);
+        op(LCMP);
+        compare(IFEQ);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32Eq(I32Eq i32Eq) {
+        compare(IF_ICMPEQ);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32GeSigned(I32GeSigned i32GeSigned) {
+        compare(IF_ICMPGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32GeUnsigned(I32GeUnsigned i32GeUnsigned) {
+        invokeStatic(INTEGER, "compareUnsigned", "(II)I");
+        compare(IFGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32GtSigned(I32GtSigned i32GtSigned) {
+        compare(IF_ICMPGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32GtUnsigned(I32GtUnsigned i32GtUnsigned) {
+        invokeStatic(INTEGER, "compareUnsigned", "(II)I");
+        compare(IFGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32LeSigned(I32LeSigned i32LeSigned) {
+        compare(IF_ICMPLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32LeUnsigned(I32LeUnsigned i32LeUnsigned) {
+        invokeStatic(INTEGER, "compareUnsigned", "(II)I");
+        compare(IFLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32LtSigned(I32LtSigned i32LtSigned) {
+        compare(IF_ICMPLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32LtUnsigned(I32LtUnsigned i32LtUnsigned) {
+        invokeStatic(INTEGER, "compareUnsigned", "(II)I");
+        compare(IFLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Ne(I32Ne i32Ne) {
+        compare(IF_ICMPNE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64Eq(I64Eq i64Eq) {
+        op(LCMP);
+        compare(IFEQ);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64GeSigned(I64GeSigned i64GeSigned) {
+        op(LCMP);
+        compare(IFGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64GeUnsigned(I64GeUnsigned i64GeUnsigned) {
+        invokeStatic(LONG_CLASS, "compareUnsigned", "(JJ)I");
+        compare(IFGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64GtSigned(I64GtSigned i64GtSigned) {
+        op(LCMP);
+        compare(IFGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64GtUnsigned(I64GtUnsigned i64GtUnsigned) {
+        invokeStatic(LONG_CLASS, "compareUnsigned", "(JJ)I");
+        compare(IFGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64LeSigned(I64LeSigned i64LeSigned) {
+        op(LCMP);
+        compare(IFLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64LeUnsigned(I64LeUnsigned i64LeUnsigned) {
+        invokeStatic(LONG_CLASS, "compareUnsigned", "(JJ)I");
+        compare(IFLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64LtSigned(I64LtSigned i64LtSigned) {
+        op(LCMP);
+        compare(IFLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64LtUnsigned(I64LtUnsigned i64LtUnsigned) {
+        invokeStatic(LONG_CLASS, "compareUnsigned", "(JJ)I");
+        compare(IFLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI64Ne(I64Ne i64Ne) {
+        op(LCMP);
+        compare(IFNE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Eq(F32Eq f32Eq) {
+        op(FCMPL);
+        compare(IFEQ);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Ge(F32Ge f32Ge) {
+        op(FCMPL);
+        compare(IFGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Gt(F32Gt f32Gt) {
+        op(FCMPL);
+        compare(IFGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Le(F32Le f32Le) {
+        op(FCMPG);
+        compare(IFLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Lt(F32Lt f32Lt) {
+        op(FCMPG);
+        compare(IFLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF32Ne(F32Ne f32Ne) {
+        op(FCMPL);
+        compare(IFNE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Eq(F64Eq f64Eq) {
+        op(DCMPL);
+        compare(IFEQ);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Ge(F64Ge f64Ge) {
+        op(DCMPL);
+        compare(IFGE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Gt(F64Gt f64Gt) {
+        op(DCMPL);
+        compare(IFGT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Le(F64Le f64Le) {
+        op(DCMPG);
+        compare(IFLE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Lt(F64Lt f64Lt) {
+        op(DCMPG);
+        compare(IFLT);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitF64Ne(F64Ne f64Ne) {
+        op(DCMPL);
+        compare(IFNE);
+        result(2, INT);
+    }
+
+    @Override
+    public void visitI32Extend8Signed(I32Extend8Signed i32Extend8Signed) {
+        op(I2B);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64Extend8Signed(I64Extend8Signed i64Extend8Signed) {
+        op(L2I);
+        op(I2B);
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI32Extend16Signed(I32Extend16Signed i32Extend16Signed) {
+        op(I2S);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64Extend16Signed(I64Extend16Signed i64Extend16Signed) {
+        op(L2I);
+        op(I2S);
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64Extend32Signed(I64Extend32Signed i64Extend32Signed) {
+        op(L2I);
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI32WrapI64(I32WrapI64 i32WrapI64) {
+        op(L2I);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64ExtendI32Signed(I64ExtendI32Signed i64ExtendI32Signed) {
+        op(I2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64ExtendI32Unsigned(I64ExtendI32Unsigned i64ExtendI32Unsigned) {
+        invokeStatic(INTEGER, "toUnsignedLong", "(I)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI32TruncF32Signed(I32TruncF32Signed i32TruncF32Signed) {
+        invokeStatic(NUMERICS, "i32TruncF32S", "(F)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncF32Unsigned(I32TruncF32Unsigned i32TruncF32Unsigned) {
+        invokeStatic(NUMERICS, "i32TruncF32U", "(F)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncF64Signed(I32TruncF64Signed i32TruncF64Signed) {
+        invokeStatic(NUMERICS, "i32TruncF64S", "(D)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncF64Unsigned(I32TruncF64Unsigned i32TruncF64Unsigned) {
+        invokeStatic(NUMERICS, "i32TruncF64U", "(D)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64TruncF32Signed(I64TruncF32Signed i64TruncF32Signed) {
+        invokeStatic(NUMERICS, "i64TruncF32S", "(F)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncF32Unsigned(I64TruncF32Unsigned i64TruncF32Unsigned) {
+        invokeStatic(NUMERICS, "i64TruncF32U", "(F)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncF64Signed(I64TruncF64Signed i64TruncF64Signed) {
+        invokeStatic(NUMERICS, "i64TruncF64S", "(D)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncF64Unsigned(I64TruncF64Unsigned i64TruncF64Unsigned) {
+        invokeStatic(NUMERICS, "i64TruncF64U", "(D)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Signed(I32TruncSatF32Signed i32TruncSatF32Signed) {
+        op(F2I);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Unsigned(I32TruncSatF32Unsigned i32TruncSatF32Unsigned) {
+        invokeStatic(NUMERICS, "i32TruncSatF32U", "(F)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Signed(I32TruncSatF64Signed i32TruncSatF64Signed) {
+        op(D2I);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Unsigned(I32TruncSatF64Unsigned i32TruncSatF64Unsigned) {
+        invokeStatic(NUMERICS, "i32TruncSatF64U", "(D)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Signed(I64TruncSatF32Signed i64TruncSatF32Signed) {
+        op(F2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Unsigned(I64TruncSatF32Unsigned i64TruncSatF32Unsigned) {
+        invokeStatic(NUMERICS, "i64TruncSatF32U", "(F)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Signed(I64TruncSatF64Signed i64TruncSatF64Signed) {
+        op(D2L);
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Unsigned(I64TruncSatF64Unsigned i64TruncSatF64Unsigned) {
+        invokeStatic(NUMERICS, "i64TruncSatF64U", "(D)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitF32DemoteF64(F32DemoteF64 f32DemoteF64) {
+        op(D2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF64PromoteF32(F64PromoteF32 f64PromoteF32) {
+        op(F2D);
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF32ConvertI32Signed(F32ConvertI32Signed f32ConvertI32Signed) {
+        op(I2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32ConvertI32Unsigned(F32ConvertI32Unsigned f32ConvertI32Unsigned) {
+        invokeStatic(INTEGER, "toUnsignedLong", "(I)J");
+        op(L2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32ConvertI64Signed(F32ConvertI64Signed f32ConvertI64Signed) {
+        op(L2F);
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF32ConvertI64Unsigned(F32ConvertI64Unsigned f32ConvertI64Unsigned) {
+        invokeStatic(NUMERICS, "f32ConvertI64U", "(J)F");
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitF64ConvertI32Signed(F64ConvertI32Signed f64ConvertI32Signed) {
+        op(I2D);
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64ConvertI32Unsigned(F64ConvertI32Unsigned f64ConvertI32Unsigned) {
+        invokeStatic(INTEGER, "toUnsignedLong", "(I)J");
+        op(L2D);
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64ConvertI64Signed(F64ConvertI64Signed f64ConvertI64Signed) {
+        op(L2D);
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitF64ConvertI64Unsigned(F64ConvertI64Unsigned f64ConvertI64Unsigned) {
+        invokeStatic(NUMERICS, "f64ConvertI64U", "(J)D");
+        result(1, DOUBLE);
+    }
+
+    @Override
+    public void visitI32ReinterpretF32(I32ReinterpretF32 i32ReinterpretF32) {
+        invokeStatic(FLOAT_CLASS, "floatToRawIntBits", "(F)I");
+        result(1, INT);
+    }
+
+    @Override
+    public void visitF32ReinterpretI32(F32ReinterpretI32 f32ReinterpretI32) {
+        invokeStatic(FLOAT_CLASS, "intBitsToFloat", "(I)F");
+        result(1, FLOAT);
+    }
+
+    @Override
+    public void visitI64ReinterpretF64(I64ReinterpretF64 i64ReinterpretF64) {
+        invokeStatic(DOUBLE_CLASS, "doubleToRawLongBits", "(D)J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitF64ReinterpretI64(F64ReinterpretI64 f64ReinterpretI64) {
+        invokeStatic(DOUBLE_CLASS, "longBitsToDouble", "(J)D");
+        result(1, DOUBLE);
+    }
+
+    // Parametric instructions
+
+    @Override
+    public void visitDrop(Drop drop) {
+        popValue(pop());
+    }
+
+    @Override
+    public void visitSelect(Select select) {
+        int type = types[height - 2];
+        invokeStatic(INSTANCE, SELECTS[type], "(" + descriptor(type) + descriptor(type) + "I)" + descriptor(type));
+        result(3, type);
+    }
+
+    // Reference instructions
+
+    @Override
+    public void visitRefNull(RefNull refNull) {
+        lconst(Values.NULL);
+        push(LONG);
+    }
+
+    @Override
+    public void visitRefFunc(RefFunc refFunc) {
+        lconst(Values.funcRef(refFunc.funcIndex()));
+        push(LONG);
+    }
+
+    @Override
+    public void visitRefIsNull(RefIsNull refIsNull) {
+        op(LCONST_0);
+        op(LCMP);
+        compare(IFEQ);
+        result(1, INT);
+    }
+
+    @Override
+    public void visitRefAsNonNull(RefAsNonNull refAsNonNull) {
+        invokeStatic(INSTANCE, "refAsNonNull", "(J)J");
+    }
+
+    // Table instructions
+
+    @Override
+    public void visitTableGet(TableGet tableGet) {
+        iconst(tableGet.tableIndex());
+        invokeInstance("tableGet", "(II" + INSTANCE_DESCRIPTOR + ")J");
+        result(1, LONG);
+    }
+
+    @Override
+    public void visitTableSet(TableSet tableSet) {
+        iconst(tableSet.tableIndex());
+        invokeInstance("tableSet", "(IJI" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(2);
+    }
+
+    @Override
+    public void visitTableSize(TableSize tableSize) {
+        iconst(tableSize.tableIndex());
+        invokeInstance("tableSize", "(I" + INSTANCE_DESCRIPTOR + ")I");
+        push(INT);
+    }
+
+    @Override
+    public void visitTableGrow(TableGrow tableGrow) {
+        iconst(tableGrow.tableIndex());
+        invokeInstance("tableGrow", "(JII" + INSTANCE_DESCRIPTOR + ")I");
+        result(2, INT);
+    }
+
+    @Override
+    public void visitTableFill(TableFill tableFill) {
+        iconst(tableFill.tableIndex());
+        invokeInstance("tableFill", "(IJII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitTableCopy(TableCopy tableCopy) {
+        iconst(tableCopy.targetTableIndex());
+        iconst(tableCopy.sourceTableIndex());
+        invokeInstance("tableCopy", "(IIIII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitTableInit(TableInit tableInit) {
+        iconst(tableInit.tableIndex());
+        iconst(tableInit.elemIndex());
+        invokeInstance("tableInit", "(IIIII" + INSTANCE_DESCRIPTOR + ")V");
+        popAll(3);
+    }
+
+    @Override
+    public void visitElemDrop(ElemDrop elemDrop) {
+        iconst(elemDrop.elemIndex());
+        invokeInstance("elemDrop", "(I" + INSTANCE_DESCRIPTOR + ")V");
+    }
+
+    // Variable instructions
+
+    @Override
+    public void visitGlobalGet(GlobalGet globalGet) {
+        int type = module.globalType(globalGet.globalIndex());
+        iconst(globalGet.globalIndex());
+        invokeInstance("globalGet", "(I" + INSTANCE_DESCRIPTOR + ")J");
+        fromBits(method, type);
+        push(type);
+    }
+
+    @Override
+    public void visitGlobalSet(GlobalSet globalSet) {
+        toBits(method, pop());
+        iconst(globalSet.globalIndex());
+        invokeInstance("globalSet", "(JI" + INSTANCE_DESCRIPTOR + ")V");
+    }
+
+    @Override
+    public void visitLocalGet(LocalGet localGet) {
+        int type = localTypes[localGet.localIndex()];
+        method.var(load(type), localSlots[localGet.localIndex()]);
+        push(type);
+    }
+
+    @Override
+    public void visitLocalSet(LocalSet localSet) {
+        int type = pop();
+        method.var(store(type), localSlots[localSet.localIndex()]);
+    }
+
+    @Override
+    public void visitLocalTee(LocalTee localTee) {
+        int type = types[height - 1];
+        op(size(type) == 2 ? DUP2 : DUP);
+        method.var(store(type), localSlots[localTee.localIndex()]);
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+// Defines the class generated for one module, so that it can be unloaded once the module is no longer in use.
+final class GeneratedClassLoader extends ClassLoader {
+    GeneratedClassLoader() {
+        super(CompiledInstance.class.getClassLoader());
+    }
+
+    Class<?> define(String internalName, byte[] bytes) {
+        return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+    }
+}
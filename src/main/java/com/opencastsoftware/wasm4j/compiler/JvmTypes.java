@@ -0,0 +1,105 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.types.NumType;
+import com.opencastsoftware.wasm4j.types.RefType;
+import com.opencastsoftware.wasm4j.types.ValType;
+
+import java.util.List;
+
+import static com.opencastsoftware.wasm4j.compiler.Opcodes.*;
+
+// The JVM types that represent WebAssembly values, numbered in the order of the typed load, store and return opcodes.
+// References are represented by longs, as described in Values.
+final class JvmTypes {
+    static final int INT = 0;
+    static final int LONG = 1;
+    static final int FLOAT = 2;
+    static final int DOUBLE = 3;
+
+    private static final String DESCRIPTORS = "IJFD";
+    private static final int[] ZEROS = {ICONST_0, LCONST_0, FCONST_0, DCONST_0};
+
+    private JvmTypes() {
+    }
+
+    static int of(ValType valType) {
+        if (valType == NumType.i32()) {
+            return INT;
+        } else if (valType == NumType.i64() || valType instanceof RefType) {
+            return LONG;
+        } else if (valType == NumType.f32()) {
+            return FLOAT;
+        } else if (valType == NumType.f64()) {
+            return DOUBLE;
+        } else {
+            throw new IllegalArgumentException("values of type " + valType + " cannot be compiled");
+        }
+    }
+
+    static int[] of(List<ValType> valTypes) {
+        var types = new int[valTypes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = of(valTypes.get(i));
+        }
+        return types;
+    }
+
+    static char descriptor(int type) {
+        return DESCRIPTORS.charAt(type);
+    }
+
+    static int size(int type) {
+        return type == LONG || type == DOUBLE ? 2 : 1;
+    }
+
+    static int load(int type) {
+        return ILOAD + type;
+    }
+
+    static int store(int type) {
+        return ISTORE + type;
+    }
+
+    static int zero(int type) {
+        return ZEROS[type];
+    }
+
+    // The return descriptor of a function, which returns an array of raw bits when it has more than one result
+    static String returnDescriptor(int[] results) {
+        if (results.length == 0) {
+            return "V";
+        } else if (results.length == 1) {
+            return String.valueOf(descriptor(results[0]));
+        } else {
+            return "[J";
+        }
+    }
+
+    // Converts the value on top of the stack to its raw bits
+    static void toBits(MethodWriter method, int type) {
+        if (type == INT) {
+            method.op(I2L);
+        } else if (type == FLOAT) {
+            method.invoke(INVOKESTATIC, "java/lang/Float", "floatToRawIntBits", "(F)I");
+            method.op(I2L);
+        } else if (type == DOUBLE) {
+            method.invoke(INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J");
+        }
+    }
+
+    // Converts the raw bits on top of the stack to a value
+    static void fromBits(MethodWriter method, int type) {
+        if (type == INT) {
+            method.op(L2I);
+        } else if (type == FLOAT) {
+            method.op(L2I);
+            method.invoke(INVOKESTATIC, "java/lang/Float", "intBitsToFloat", "(I)F");
+        } else if (type == DOUBLE) {
+            method.invoke(INVOKESTATIC, "java/lang/Double", "longBitsToDouble", "(J)D");
+        }
+    }
+}
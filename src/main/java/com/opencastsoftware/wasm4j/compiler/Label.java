@@ -0,0 +1,40 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import java.util.Arrays;
+
+// A position in the code of a method, which branches can refer to before it is known
+final class Label {
+    int position = -1;
+
+    // The branches to this label, as the offset of each branch instruction followed by the offset of its operand
+    private int[] references = new int[4];
+    private int referenceCount;
+
+    boolean isPlaced() {
+        return position >= 0;
+    }
+
+    void addReference(int instruction, int operand) {
+        if (referenceCount + 2 > references.length) {
+            references = Arrays.copyOf(references, references.length * 2);
+        }
+        references[referenceCount++] = instruction;
+        references[referenceCount++] = operand;
+    }
+
+    int referenceCount() {
+        return referenceCount / 2;
+    }
+
+    int instruction(int reference) {
+        return references[2 * reference];
+    }
+
+    int operand(int reference) {
+        return references[2 * reference + 1];
+    }
+}
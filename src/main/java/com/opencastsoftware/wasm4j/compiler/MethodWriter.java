@@ -0,0 +1,287 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.opencastsoftware.wasm4j.compiler.Opcodes.*;
+
+// Assembles the code of a method.
+// Branches are patched once the code is complete, and the maximum stack depth and number of locals
+// are given by the caller, which knows them from the code it translates.
+final class MethodWriter {
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private final ConstantPool pool;
+    private final int access;
+    private final String name;
+    private final String descriptor;
+
+    private byte[] code = new byte[256];
+    private int length;
+    private final List<Label> labels = new ArrayList<>();
+
+    private int maxStack;
+    private int maxLocals;
+
+    MethodWriter(ConstantPool pool, int access, String name, String descriptor) {
+        this.pool = pool;
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void setMaxStack(int maxStack) {
+        this.maxStack = maxStack;
+    }
+
+    void setMaxLocals(int maxLocals) {
+        this.maxLocals = maxLocals;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + extra));
+        }
+    }
+
+    private void u1(int value) {
+        ensureCapacity(1);
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        ensureCapacity(2);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+
+    private void u4(int value) {
+        ensureCapacity(4);
+        code[length++] = (byte) (value >>> 24);
+        code[length++] = (byte) (value >>> 16);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+
+    void op(int opcode) {
+        u1(opcode);
+    }
+
+    // An instruction with a single byte operand, such as bipush or newarray
+    void op(int opcode, int operand) {
+        u1(opcode);
+        u1(operand);
+    }
+
+    // Loads or stores a local variable
+    void var(int opcode, int slot) {
+        if (slot > 0xFF) {
+            u1(WIDE);
+            u1(opcode);
+            u2(slot);
+        } else {
+            u1(opcode);
+            u1(slot);
+        }
+    }
+
+    void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value == (byte) value) {
+            op(BIPUSH, value);
+        } else if (value == (short) value) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            ldc(pool.integer(value));
+        }
+    }
+
+    void lconst(long value) {
+        if (value == 0 || value == 1) {
+            u1(LCONST_0 + (int) value);
+        } else {
+            u1(LDC2_W);
+            u2(pool.longValue(value));
+        }
+    }
+
+    void fconst(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        // Only positive zero, one and two have their own instructions
+        if (bits == 0 || bits == Float.floatToRawIntBits(1.0f) || bits == Float.floatToRawIntBits(2.0f)) {
+            u1(FCONST_0 + (int) value);
+        } else {
+            ldc(pool.floatBits(bits));
+        }
+    }
+
+    void dconst(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits == 0 || bits == Double.doubleToRawLongBits(1.0)) {
+            u1(DCONST_0 + (int) value);
+        } else {
+            u1(LDC2_W);
+            u2(pool.doubleBits(bits));
+        }
+    }
+
+    private void ldc(int index) {
+        if (index > 0xFF) {
+            u1(LDC_W);
+            u2(index);
+        } else {
+            op(LDC, index);
+        }
+    }
+
+    private void reference(Label label, int instruction, int operand) {
+        if (label.referenceCount() == 0) {
+            labels.add(label);
+        }
+        label.addReference(instruction, operand);
+    }
+
+    // A branch with a two byte offset
+    void jump(int opcode, Label label) {
+        int instruction = length;
+        u1(opcode);
+        reference(label, instruction, length);
+        u2(0);
+    }
+
+    void mark(Label label) {
+        label.position = length;
+    }
+
+    // Aligns the operands of a switch to a multiple of four bytes from the start of the code
+    private void switchPadding() {
+        while (length % 4 != 0) {
+            u1(0);
+        }
+    }
+
+    // A branch with a four byte offset, which is marked by storing the complement of its position
+    private void wideReference(Label label, int instruction) {
+        reference(label, instruction, ~length);
+        u4(0);
+    }
+
+    void tableSwitch(int low, Label defaultLabel, Label[] targets) {
+        int instruction = length;
+        u1(TABLESWITCH);
+        switchPadding();
+        wideReference(defaultLabel, instruction);
+        u4(low);
+        u4(low + targets.length - 1);
+        for (Label target : targets) {
+            wideReference(target, instruction);
+        }
+    }
+
+    // The keys must be in ascending order
+    void lookupSwitch(int[] keys, Label[] targets, Label defaultLabel) {
+        int instruction = length;
+        u1(LOOKUPSWITCH);
+        switchPadding();
+        wideReference(defaultLabel, instruction);
+        u4(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            u4(keys[i]);
+            wideReference(targets[i], instruction);
+        }
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(pool.methodRef(owner, name, descriptor));
+    }
+
+    private void resolveLabels() {
+        for (Label label : labels) {
+            if (!label.isPlaced()) {
+                throw new IllegalStateException("branch to a label which was never placed in " + name);
+            }
+
+            for (int i = 0; i < label.referenceCount(); i++) {
+                int offset = label.position - label.instruction(i);
+                int operand = label.operand(i);
+
+                if (operand < 0) {
+                    operand = ~operand;
+                    code[operand] = (byte) (offset >>> 24);
+                    code[operand + 1] = (byte) (offset >>> 16);
+                    code[operand + 2] = (byte) (offset >>> 8);
+                    code[operand + 3] = (byte) offset;
+                } else if (offset == (short) offset) {
+                    code[operand] = (byte) (offset >>> 8);
+                    code[operand + 1] = (byte) offset;
+                } else {
+                    throw tooLarge();
+                }
+            }
+        }
+    }
+
+    // Whether the code fits in a JVM method, whose length is limited and whose branches with two byte offsets
+    // cannot reach further than 32 KB
+    boolean fits() {
+        if (length > MAX_CODE_LENGTH || maxLocals > 0xFFFF || maxStack > 0xFFFF) {
+            return false;
+        }
+
+        for (Label label : labels) {
+            for (int i = 0; label.isPlaced() && i < label.referenceCount(); i++) {
+                int offset = label.position - label.instruction(i);
+                if (label.operand(i) >= 0 && offset != (short) offset) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private IllegalArgumentException tooLarge() {
+        return new IllegalArgumentException("method " + name + " is too large to compile to a JVM method");
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        if (!fits()) {
+            throw tooLarge();
+        }
+
+        resolveLabels();
+
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+
+        // The only attribute is the code, which has no exception handlers or attributes of its own
+        out.writeShort(1);
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+}
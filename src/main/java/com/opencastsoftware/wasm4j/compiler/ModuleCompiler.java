@@ -0,0 +1,342 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Import;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.types.FuncType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.opencastsoftware.wasm4j.compiler.Opcodes.*;
+
+// Generates the class of a compiled module, which extends CompiledInstance.
+// Each function becomes a static method named after its index, with the instance as its last argument,
+// and imported functions become methods which call the host, as do functions too large for a JVM method,
+// which call the interpreter.
+// Indirect calls go through a dispatcher for each function type, which switches on the function index,
+// so that arguments and results keep their JVM types.
+final class ModuleCompiler {
+    static final String INSTANCE = "com/opencastsoftware/wasm4j/compiler/CompiledInstance";
+    static final String INSTANCE_DESCRIPTOR = "L" + INSTANCE + ";";
+
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    private final Module module;
+    private final String className;
+    private final String selfDescriptor;
+
+    private final int[][] typeParams;
+    private final int[][] typeResults;
+    // Structurally identical types are identified by the index of the first of them
+    private final int[] canonicalTypes;
+    private final int[] funcTypeIndices;
+    private final int importedFuncCount;
+    private final int[] globalTypes;
+
+    ModuleCompiler(Module module) {
+        this.module = module;
+        this.className = "com/opencastsoftware/wasm4j/compiler/generated/WasmModule" + classCount.incrementAndGet();
+        this.selfDescriptor = "L" + className + ";";
+
+        var types = module.types();
+        this.typeParams = new int[types.size()][];
+        this.typeResults = new int[types.size()][];
+        this.canonicalTypes = new int[types.size()];
+        var firstIndices = new HashMap<FuncType, Integer>();
+        for (int i = 0; i < types.size(); i++) {
+            typeParams[i] = JvmTypes.of(types.get(i).arguments());
+            typeResults[i] = JvmTypes.of(types.get(i).results());
+            var firstIndex = firstIndices.putIfAbsent(types.get(i), i);
+            canonicalTypes[i] = firstIndex != null ? firstIndex : i;
+        }
+
+        var funcTypeIndices = new ArrayList<Integer>();
+        var globalTypes = new ArrayList<Integer>();
+        for (Import imp : module.imports()) {
+            var descriptor = imp.descriptor();
+            if (descriptor instanceof Import.Descriptor.Func) {
+                funcTypeIndices.add(((Import.Descriptor.Func) descriptor).typeIndex());
+            } else if (descriptor instanceof Import.Descriptor.Global) {
+                globalTypes.add(JvmTypes.of(((Import.Descriptor.Global) descriptor).globalType().valType()));
+            }
+        }
+        this.importedFuncCount = funcTypeIndices.size();
+        for (Func func : module.funcs()) {
+            funcTypeIndices.add(func.typeIndex());
+        }
+        for (var global : module.globals()) {
+            globalTypes.add(JvmTypes.of(global.type().valType()));
+        }
+
+        this.funcTypeIndices = funcTypeIndices.stream().mapToInt(Integer::intValue).toArray();
+        this.globalTypes = globalTypes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    String className() {
+        return className;
+    }
+
+    String selfDescriptor() {
+        return selfDescriptor;
+    }
+
+    int[] params(int typeIndex) {
+        return typeParams[typeIndex];
+    }
+
+    int[] results(int typeIndex) {
+        return typeResults[typeIndex];
+    }
+
+    int funcType(int funcIndex) {
+        return funcTypeIndices[funcIndex];
+    }
+
+    int globalType(int globalIndex) {
+        return globalTypes[globalIndex];
+    }
+
+    private String descriptor(int typeIndex, String extra) {
+        var descriptor = new StringBuilder("(");
+        for (int param : typeParams[typeIndex]) {
+            descriptor.append(JvmTypes.descriptor(param));
+        }
+        return descriptor.append(extra).append(selfDescriptor).append(')')
+                .append(JvmTypes.returnDescriptor(typeResults[typeIndex]))
+                .toString();
+    }
+
+    static String funcName(int funcIndex) {
+        return "f" + funcIndex;
+    }
+
+    String funcDescriptor(int funcIndex) {
+        return descriptor(funcTypeIndices[funcIndex], "");
+    }
+
+    // The dispatcher of a type takes the index of the function to call after the arguments
+    String dispatcherName(int typeIndex) {
+        return "dispatch" + canonicalTypes[typeIndex];
+    }
+
+    String dispatcherDescriptor(int typeIndex) {
+        return descriptor(canonicalTypes[typeIndex], "I");
+    }
+
+    byte[] compile() {
+        var writer = new ClassWriter(className, INSTANCE);
+
+        constructor(writer);
+
+        var funcs = module.funcs();
+        var functionCompiler = new FunctionCompiler(this);
+        for (int funcIndex = 0; funcIndex < funcTypeIndices.length; funcIndex++) {
+            var method = writer.method(ACC_PUBLIC | ACC_STATIC, funcName(funcIndex), funcDescriptor(funcIndex));
+            if (funcIndex < importedFuncCount) {
+                hostCall(method, funcIndex, "callImport");
+            } else {
+                functionCompiler.compile(funcIndex, funcs.get(funcIndex - importedFuncCount), method);
+
+                // A function too large for a JVM method is interpreted instead
+                if (!method.fits()) {
+                    writer.remove(method);
+                    hostCall(writer.method(ACC_PUBLIC | ACC_STATIC, funcName(funcIndex), funcDescriptor(funcIndex)), funcIndex, "callInterpreted");
+                }
+            }
+        }
+
+        // Group the functions by type, in order of their indices
+        var funcsByType = new HashMap<Integer, List<Integer>>();
+        for (int funcIndex = 0; funcIndex < funcTypeIndices.length; funcIndex++) {
+            funcsByType.computeIfAbsent(canonicalTypes[funcTypeIndices[funcIndex]], t -> new ArrayList<>()).add(funcIndex);
+        }
+
+        for (int typeIndex = 0; typeIndex < canonicalTypes.length; typeIndex++) {
+            if (canonicalTypes[typeIndex] == typeIndex) {
+                dispatcher(writer, typeIndex, funcsByType.getOrDefault(typeIndex, List.of()));
+            }
+        }
+
+        entryPoint(writer);
+
+        return writer.toByteArray();
+    }
+
+    private void constructor(ClassWriter writer) {
+        var method = writer.method(ACC_PUBLIC, "<init>", "(Lcom/opencastsoftware/wasm4j/Module;Lcom/opencastsoftware/wasm4j/runtime/Imports;)V");
+        method.var(ALOAD, 0);
+        method.var(ALOAD, 1);
+        method.var(ALOAD, 2);
+        method.invoke(INVOKESPECIAL, INSTANCE, "<init>", "(Lcom/opencastsoftware/wasm4j/Module;Lcom/opencastsoftware/wasm4j/runtime/Imports;)V");
+        method.op(RETURN);
+        method.setMaxStack(3);
+        method.setMaxLocals(3);
+    }
+
+    // Loads the arguments of a function from its first locals, returning the index of the local after them
+    private static int loadArguments(MethodWriter method, int[] params) {
+        int slot = 0;
+        for (int param : params) {
+            method.var(JvmTypes.load(param), slot);
+            slot += JvmTypes.size(param);
+        }
+        return slot;
+    }
+
+    private static void returnResults(MethodWriter method, int[] results) {
+        if (results.length == 0) {
+            method.op(RETURN);
+        } else if (results.length == 1) {
+            method.op(IRETURN + results[0]);
+        } else {
+            method.op(ARETURN);
+        }
+    }
+
+    // Passes the arguments to a function run outside the compiled code as raw bits, and converts the results back from raw bits.
+    // The method of CompiledInstance which runs it has the same descriptor as callImport.
+    private void hostCall(MethodWriter method, int funcIndex, String callName) {
+        int typeIndex = funcTypeIndices[funcIndex];
+        var params = typeParams[typeIndex];
+        var results = typeResults[typeIndex];
+
+        method.iconst(params.length);
+        method.op(NEWARRAY, T_LONG);
+        int slot = 0;
+        for (int i = 0; i < params.length; i++) {
+            method.op(DUP);
+            method.iconst(i);
+            method.var(JvmTypes.load(params[i]), slot);
+            JvmTypes.toBits(method, params[i]);
+            method.op(LASTORE);
+            slot += JvmTypes.size(params[i]);
+        }
+
+        method.iconst(funcIndex);
+        method.iconst(results.length);
+        method.var(ALOAD, slot);
+        method.invoke(INVOKESTATIC, INSTANCE, callName, "([JII" + INSTANCE_DESCRIPTOR + ")[J");
+
+        if (results.length == 0) {
+            method.op(POP);
+        } else if (results.length == 1) {
+            method.iconst(0);
+            method.op(LALOAD);
+            JvmTypes.fromBits(method, results[0]);
+        }
+
+        returnResults(method, results);
+        method.setMaxStack(8);
+        method.setMaxLocals(slot + 1);
+    }
+
+    private void dispatcher(ClassWriter writer, int typeIndex, List<Integer> funcIndices) {
+        var method = writer.method(ACC_PUBLIC | ACC_STATIC, dispatcherName(typeIndex), dispatcherDescriptor(typeIndex));
+        var params = typeParams[typeIndex];
+        var results = typeResults[typeIndex];
+
+        int funcIndexSlot = 0;
+        for (int param : params) {
+            funcIndexSlot += JvmTypes.size(param);
+        }
+
+        var keys = new int[funcIndices.size()];
+        var targets = new Label[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = funcIndices.get(i);
+            targets[i] = new Label();
+        }
+        var mismatch = new Label();
+
+        method.var(ILOAD, funcIndexSlot);
+        method.lookupSwitch(keys, targets, mismatch);
+
+        for (int i = 0; i < keys.length; i++) {
+            method.mark(targets[i]);
+            loadArguments(method, params);
+            method.var(ALOAD, funcIndexSlot + 1);
+            method.invoke(INVOKESTATIC, className, funcName(keys[i]), funcDescriptor(keys[i]));
+            returnResults(method, results);
+        }
+
+        method.mark(mismatch);
+        method.invoke(INVOKESTATIC, INSTANCE, "indirectCallTypeMismatch", "()Lcom/opencastsoftware/wasm4j/runtime/Trap;");
+        method.op(ATHROW);
+
+        method.setMaxStack(funcIndexSlot + 2);
+        method.setMaxLocals(funcIndexSlot + 2);
+    }
+
+    // Implements CompiledInstance.dispatch, unpacking the arguments of each type of function and packing its results
+    private void entryPoint(ClassWriter writer) {
+        var method = writer.method(ACC_PROTECTED, "dispatch", "(II[J)[J");
+
+        var types = new ArrayList<Integer>();
+        for (int typeIndex = 0; typeIndex < canonicalTypes.length; typeIndex++) {
+            if (canonicalTypes[typeIndex] == typeIndex) {
+                types.add(typeIndex);
+            }
+        }
+
+        var keys = types.stream().mapToInt(Integer::intValue).toArray();
+        var targets = new Label[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            targets[i] = new Label();
+        }
+        var unknown = new Label();
+
+        method.var(ILOAD, 1);
+        method.lookupSwitch(keys, targets, unknown);
+
+        int maxStack = 4;
+        for (int i = 0; i < keys.length; i++) {
+            var params = typeParams[keys[i]];
+            var results = typeResults[keys[i]];
+            method.mark(targets[i]);
+
+            int slots = 0;
+            for (int p = 0; p < params.length; p++) {
+                method.var(ALOAD, 3);
+                method.iconst(p);
+                method.op(LALOAD);
+                JvmTypes.fromBits(method, params[p]);
+                slots += JvmTypes.size(params[p]);
+            }
+            maxStack = Math.max(maxStack, slots + 4);
+
+            method.var(ILOAD, 2);
+            method.var(ALOAD, 0);
+            method.invoke(INVOKESTATIC, className, dispatcherName(keys[i]), dispatcherDescriptor(keys[i]));
+
+            if (results.length <= 1) {
+                if (results.length == 1) {
+                    JvmTypes.toBits(method, results[0]);
+                    method.var(LSTORE, 4);
+                }
+                method.iconst(results.length);
+                method.op(NEWARRAY, T_LONG);
+                if (results.length == 1) {
+                    method.op(DUP);
+                    method.iconst(0);
+                    method.var(LLOAD, 4);
+                    method.op(LASTORE);
+                }
+            }
+            method.op(ARETURN);
+        }
+
+        method.mark(unknown);
+        method.invoke(INVOKESTATIC, INSTANCE, "indirectCallTypeMismatch", "()Lcom/opencastsoftware/wasm4j/runtime/Trap;");
+        method.op(ATHROW);
+
+        method.setMaxStack(maxStack + 2);
+        method.setMaxLocals(6);
+    }
+}
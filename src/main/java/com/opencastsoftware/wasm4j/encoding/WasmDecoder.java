@@ -0,0 +1,13 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding;
+
+import com.opencastsoftware.wasm4j.Module;
+
+import java.nio.ByteBuffer;
+
+public interface WasmDecoder<T extends Exception> {
+    Module decodeModule(ByteBuffer input) throws T;
+}
@@ -9,7 +9,11 @@ import com.opencastsoftware.wasm4j.Module;
 import com.opencastsoftware.wasm4j.types.FuncType;
 import com.opencastsoftware.wasm4j.types.MemType;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 public interface WasmEncoder<T extends Exception> {
@@ -24,4 +28,14 @@ public interface WasmEncoder<T extends Exception> {
     void encodeImports(OutputStream output, List<Import> imports) throws T;
     void encodeExports(OutputStream output, List<Export> imports) throws T;
     void encodeModule(OutputStream output, Module module) throws T;
+
+    default void encodeModule(ByteBuffer output, Module module) throws T {
+        var bytes = new ByteArrayOutputStream();
+        encodeModule(bytes, module);
+        output.put(bytes.toByteArray());
+    }
+
+    default void encodeModule(WritableByteChannel output, Module module) throws T {
+        encodeModule(Channels.newOutputStream(output), module);
+    }
 }
@@ -0,0 +1,35 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Writes into a caller-supplied heap or direct buffer, which throws BufferOverflowException when it is full
+public class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buffer.put(b, off, len);
+    }
+
+    public void write(ByteBuffer payload) {
+        buffer.put(payload);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+public class ByteChannelOutputStream extends OutputStream {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    public ByteChannelOutputStream(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len <= buffer.remaining()) {
+            buffer.put(b, off, len);
+        } else {
+            write(ByteBuffer.wrap(b, off, len));
+        }
+    }
+
+    // Writes the remaining bytes of the payload, which are only copied into the buffer if they fit
+    public void write(ByteBuffer payload) throws IOException {
+        if (payload.remaining() <= buffer.remaining()) {
+            buffer.put(payload);
+        } else {
+            // Payloads that don't fit into the buffer are written straight from the caller's buffer,
+            // together with whatever is already buffered, rather than being copied into the buffer
+            buffer.flip();
+
+            if (channel instanceof GatheringByteChannel) {
+                var gathering = (GatheringByteChannel) channel;
+                var buffers = new ByteBuffer[]{buffer, payload};
+                while (payload.hasRemaining()) {
+                    gathering.write(buffers);
+                }
+            } else {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                while (payload.hasRemaining()) {
+                    channel.write(payload);
+                }
+            }
+
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    // The channel belongs to the caller, so it is left open
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
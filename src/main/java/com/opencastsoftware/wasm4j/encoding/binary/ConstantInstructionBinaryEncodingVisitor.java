@@ -17,18 +17,32 @@ import com.opencastsoftware.wasm4j.instructions.variable.GlobalGet;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 public class ConstantInstructionBinaryEncodingVisitor implements ConstantInstructionVisitor<IOException> {
-    protected final OutputStream output;
+    protected OutputStream output;
     protected final WasmTypeBinaryEncodingVisitor typeVisitor;
+    // Float constants are assembled here rather than in a freshly allocated buffer
+    private final byte[] scratch = new byte[Double.BYTES];
 
     public ConstantInstructionBinaryEncodingVisitor(OutputStream output, WasmTypeBinaryEncodingVisitor typeVisitor) {
         this.output = output;
         this.typeVisitor = typeVisitor;
     }
 
+    // Points this visitor and its type visitor at a new output, so that one instance can be reused across many targets
+    public void retarget(OutputStream output) {
+        this.output = output;
+        this.typeVisitor.retarget(output);
+    }
+
+    private void writeLittleEndian(long bits, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            scratch[i] = (byte) (bits >>> (i * Byte.SIZE));
+        }
+
+        output.write(scratch, 0, length);
+    }
+
     @Override
     public void visitI32Const(I32Const i32Const) throws IOException {
         output.write(Opcode.I32_CONST.bytes());
@@ -43,22 +57,14 @@ public class ConstantInstructionBinaryEncodingVisitor implements ConstantInstruc
 
     @Override
     public void visitF32Const(F32Const f32Const) throws IOException {
-        var buffer = ByteBuffer
-                .allocate(Float.BYTES)
-                .order(ByteOrder.LITTLE_ENDIAN)
-                .putFloat(f32Const.value());
         output.write(Opcode.F32_CONST.bytes());
-        output.write(buffer.array());
+        writeLittleEndian(Float.floatToRawIntBits(f32Const.value()), Float.BYTES);
     }
 
     @Override
     public void visitF64Const(F64Const f64Const) throws IOException {
-        var buffer = ByteBuffer
-                .allocate(Double.BYTES)
-                .order(ByteOrder.LITTLE_ENDIAN)
-                .putDouble(f64Const.value());
         output.write(Opcode.F64_CONST.bytes());
-        output.write(buffer.array());
+        writeLittleEndian(Double.doubleToRawLongBits(f64Const.value()), Double.BYTES);
     }
 
     @Override
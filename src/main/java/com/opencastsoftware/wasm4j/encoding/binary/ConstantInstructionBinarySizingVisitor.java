@@ -0,0 +1,90 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.variable.GlobalGet;
+
+public class ConstantInstructionBinarySizingVisitor implements ConstantInstructionVisitor<RuntimeException> {
+    protected final WasmTypeBinarySizingVisitor typeVisitor;
+    protected int size = 0;
+
+    public ConstantInstructionBinarySizingVisitor(WasmTypeBinarySizingVisitor typeVisitor) {
+        this.typeVisitor = typeVisitor;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        this.size = 0;
+    }
+
+    public int sizeOf(ConstantExpression constExpr) {
+        reset();
+        visitConstantExpression(constExpr);
+        return size;
+    }
+
+    @Override
+    public void visitI32Const(I32Const i32Const) {
+        size += Opcode.I32_CONST.bytes().length;
+        size += LEB128.sizeOfSigned(i32Const.value());
+    }
+
+    @Override
+    public void visitI64Const(I64Const i64Const) {
+        size += Opcode.I64_CONST.bytes().length;
+        size += LEB128.sizeOfSigned(i64Const.value());
+    }
+
+    @Override
+    public void visitF32Const(F32Const f32Const) {
+        size += Opcode.F32_CONST.bytes().length;
+        size += Float.BYTES;
+    }
+
+    @Override
+    public void visitF64Const(F64Const f64Const) {
+        size += Opcode.F64_CONST.bytes().length;
+        size += Double.BYTES;
+    }
+
+    @Override
+    public void visitRefNull(RefNull refNull) {
+        size += Opcode.REF_NULL.bytes().length;
+        size += typeVisitor.sizeOf(refNull.heapType());
+    }
+
+    @Override
+    public void visitRefFunc(RefFunc refFunc) {
+        size += Opcode.REF_FUNC.bytes().length;
+        size += LEB128.sizeOfUnsigned(refFunc.funcIndex());
+    }
+
+    @Override
+    public void visitGlobalGet(GlobalGet globalGet) {
+        size += Opcode.GLOBAL_GET.bytes().length;
+        size += LEB128.sizeOfUnsigned(globalGet.globalIndex());
+    }
+
+    @Override
+    public void visitConstantExpression(ConstantExpression constExpr) {
+        for (ConstantInstruction instr: constExpr.instructions()) {
+            instr.accept(this);
+        }
+
+        size += Opcode.END.bytes().length;
+    }
+}
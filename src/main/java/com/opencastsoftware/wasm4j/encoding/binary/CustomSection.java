@@ -0,0 +1,26 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import java.nio.ByteBuffer;
+
+public class CustomSection {
+    private final String name;
+    private final ByteBuffer content;
+
+    public CustomSection(String name, ByteBuffer content) {
+        this.name = name;
+        this.content = content.slice().asReadOnlyBuffer();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // A view of the section's content in the decoded input, rather than a copy
+    public ByteBuffer content() {
+        return content.duplicate();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Module;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// An encoding session for modules that are re-encoded repeatedly with small changes.
+// Encoded functions and sections are cached by the identity of the AST objects they were encoded from,
+// so the AST must not be mutated once it has been encoded. Only the entries used by the most recent
+// module are kept, so functions and sections that are replaced are evicted on the next encode.
+public class IncrementalModuleEncoder {
+    private final WasmBinaryEncoder encoder = new WasmBinaryEncoder();
+    private final Map<SectionId, CachedSection> sections = new EnumMap<>(SectionId.class);
+    private IdentityHashMap<Func, byte[]> funcEntries = new IdentityHashMap<>();
+
+    private int encodedFuncs = 0;
+    private int reusedFuncs = 0;
+    private int encodedSections = 0;
+    private int reusedSections = 0;
+
+    private interface SectionEncoder<T> {
+        void encode(OutputStream output, List<T> items) throws IOException;
+    }
+
+    private static class CachedSection {
+        private final Object[] items;
+        private final byte[] bytes;
+
+        CachedSection(Object[] items, byte[] bytes) {
+            this.items = items;
+            this.bytes = bytes;
+        }
+
+        boolean matches(List<?> items) {
+            if (this.items.length != items.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < this.items.length; i++) {
+                if (this.items[i] != items.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    // The number of functions encoded and reused by the most recent encodeModule call
+    public int encodedFuncs() {
+        return encodedFuncs;
+    }
+
+    public int reusedFuncs() {
+        return reusedFuncs;
+    }
+
+    // The number of sections other than the code section encoded and reused by the most recent encodeModule call
+    public int encodedSections() {
+        return encodedSections;
+    }
+
+    public int reusedSections() {
+        return reusedSections;
+    }
+
+    private <T> void encodeSection(OutputStream output, SectionId sectionId, List<T> items, SectionEncoder<T> sectionEncoder) throws IOException {
+        var cached = sections.get(sectionId);
+
+        if (cached != null && cached.matches(items)) {
+            reusedSections++;
+        } else {
+            var sectionOutput = new ByteArrayOutputStream();
+            sectionEncoder.encode(sectionOutput, items);
+            cached = new CachedSection(items.toArray(), sectionOutput.toByteArray());
+            sections.put(sectionId, cached);
+            encodedSections++;
+        }
+
+        output.write(cached.bytes);
+    }
+
+    private void encodeCode(OutputStream output, List<Func> funcs) throws IOException {
+        if (funcs.isEmpty()) {
+            funcEntries = new IdentityHashMap<>();
+            return;
+        }
+
+        var entries = new byte[funcs.size()][];
+        var nextFuncEntries = new IdentityHashMap<Func, byte[]>(funcs.size());
+        var funcOutput = new ByteArrayOutputStream();
+        var typeVisitor = new WasmTypeBinaryEncodingVisitor(funcOutput);
+        var visitor = new InstructionBinaryEncodingVisitor(funcOutput, typeVisitor);
+
+        int size = LEB128.sizeOfUnsigned(funcs.size());
+        for (int i = 0; i < funcs.size(); i++) {
+            var func = funcs.get(i);
+            var entry = funcEntries.get(func);
+
+            if (entry != null) {
+                reusedFuncs++;
+            } else {
+                funcOutput.reset();
+                encoder.encodeFunc(funcOutput, typeVisitor, visitor, func);
+
+                entry = new byte[LEB128.sizeOfUnsigned(funcOutput.size()) + funcOutput.size()];
+                int pos = LEB128.writeUnsigned(entry, 0, funcOutput.size());
+                System.arraycopy(funcOutput.toByteArray(), 0, entry, pos, funcOutput.size());
+
+                encodedFuncs++;
+            }
+
+            entries[i] = entry;
+            nextFuncEntries.put(func, entry);
+            size += entry.length;
+        }
+
+        funcEntries = nextFuncEntries;
+
+        encoder.encodeSectionHeader(output, SectionId.CODE, size);
+
+        LEB128.writeUnsigned(output, funcs.size());
+        for (byte[] entry : entries) {
+            output.write(entry);
+        }
+    }
+
+    public void encodeModule(OutputStream output, Module module) throws IOException {
+        encodedFuncs = 0;
+        reusedFuncs = 0;
+        encodedSections = 0;
+        reusedSections = 0;
+
+        encoder.encodeMagic(output);
+        encoder.encodeVersion(output);
+        encodeSection(output, SectionId.TYPE, module.types(), encoder::encodeTypes);
+        encodeSection(output, SectionId.IMPORT, module.imports(), encoder::encodeImports);
+        encodeSection(output, SectionId.FUNCTION, module.funcs(), encoder::encodeFunctions);
+        encodeSection(output, SectionId.TABLE, module.tables(), encoder::encodeTables);
+        encodeSection(output, SectionId.MEMORY, module.mems(), encoder::encodeMemories);
+        encodeSection(output, SectionId.GLOBAL, module.globals(), encoder::encodeGlobals);
+        encodeSection(output, SectionId.EXPORT, module.exports(), encoder::encodeExports);
+        encoder.encodeStart(output, module.start());
+        encodeSection(output, SectionId.ELEMENT, module.elems(), encoder::encodeElems);
+        encodeSection(output, SectionId.DATA_COUNT, module.datas(), encoder::encodeDataCount);
+        encodeCode(output, module.funcs());
+        encodeSection(output, SectionId.DATA, module.datas(), encoder::encodeData);
+    }
+}
@@ -5,8 +5,8 @@
 package com.opencastsoftware.wasm4j.encoding.binary;
 
 import com.opencastsoftware.wasm4j.Expression;
-import com.opencastsoftware.wasm4j.instructions.Instruction;
-import com.opencastsoftware.wasm4j.instructions.InstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
 import com.opencastsoftware.wasm4j.instructions.control.*;
 import com.opencastsoftware.wasm4j.instructions.memory.*;
 import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
@@ -31,16 +31,18 @@ import com.opencastsoftware.wasm4j.types.BlockType;
 import com.opencastsoftware.wasm4j.types.TypeId;
 import com.opencastsoftware.wasm4j.types.ValType;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
 import java.io.OutputStream;
 
-public class InstructionBinaryEncodingVisitor extends ConstantInstructionBinaryEncodingVisitor implements InstructionVisitor<IOException> {
+public class InstructionBinaryEncodingVisitor extends ConstantInstructionBinaryEncodingVisitor implements FlatInstructionVisitor<IOException> {
     public InstructionBinaryEncodingVisitor(OutputStream output, WasmTypeBinaryEncodingVisitor typeVisitor) {
         super(output, typeVisitor);
     }
 
     // Control instructions
-    private void visitBlockType(BlockType blockType) throws IOException {
+    private void visitBlockType(@Nullable BlockType blockType) throws IOException {
         if (blockType instanceof TypeId) {
             var typeId = (TypeId) blockType;
             LEB128.writeSigned(output, typeId.typeIndex());
@@ -53,18 +55,38 @@ public class InstructionBinaryEncodingVisitor extends ConstantInstructionBinaryE
     }
 
     @Override
-    public void visitBlock(Block block) throws IOException {
+    public void visitBlockStart(@Nullable BlockType blockType) throws IOException {
         output.write(Opcode.BLOCK.opcode());
+        visitBlockType(blockType);
+    }
 
-        visitBlockType(block.blockType());
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) throws IOException {
+        output.write(Opcode.LOOP.opcode());
+        visitBlockType(blockType);
+    }
 
-        for (Instruction instr: block.instructions()) {
-            instr.accept(this);
-        }
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) throws IOException {
+        output.write(Opcode.IF.opcode());
+        visitBlockType(blockType);
+    }
+
+    @Override
+    public void visitElse() throws IOException {
+        output.write(Opcode.ELSE.opcode());
+    }
 
+    @Override
+    public void visitEnd() throws IOException {
         output.write(Opcode.END.opcode());
     }
 
+    @Override
+    public void visitBlock(Block block) throws IOException {
+        InstructionWalker.walk(block, this);
+    }
+
     @Override
     public void visitBranch(Branch branch) throws IOException {
         output.write(Opcode.BR.opcode());
@@ -122,34 +144,12 @@ public class InstructionBinaryEncodingVisitor extends ConstantInstructionBinaryE
 
     @Override
     public void visitIf(If ifInstr) throws IOException {
-        output.write(Opcode.IF.opcode());
-
-        visitBlockType(ifInstr.blockType());
-
-        for (Instruction instr: ifInstr.consequent()) {
-            instr.accept(this);
-        }
-
-        output.write(Opcode.ELSE.opcode());
-
-        for (Instruction instr: ifInstr.alternative()) {
-            instr.accept(this);
-        }
-
-        output.write(Opcode.END.opcode());
+        InstructionWalker.walk(ifInstr, this);
     }
 
     @Override
     public void visitLoop(Loop loop) throws IOException {
-        output.write(Opcode.LOOP.opcode());
-
-        visitBlockType(loop.blockType());
-
-        for (Instruction instr: loop.instructions()) {
-            instr.accept(this);
-        }
-
-        output.write(Opcode.END.opcode());
+        InstructionWalker.walk(loop, this);
     }
 
     @Override
@@ -1049,10 +1049,11 @@ public class InstructionBinaryEncodingVisitor extends ConstantInstructionBinaryE
 
     @Override
     public void visitExpression(Expression expression) throws IOException {
-        for (Instruction instr: expression.instructions()) {
-            instr.accept(this);
+        if (expression instanceof PackedExpression) {
+            ((PackedExpression) expression).writeTo(output);
+            return;
         }
 
-        output.write(Opcode.END.opcode());
+        InstructionWalker.walk(expression, this);
     }
 }
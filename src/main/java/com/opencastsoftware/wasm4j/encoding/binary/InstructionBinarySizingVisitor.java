@@ -0,0 +1,1061 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.unary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.conversion.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I32Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I64Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.unary.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.Drop;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefAsNonNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefIsNull;
+import com.opencastsoftware.wasm4j.instructions.table.*;
+import com.opencastsoftware.wasm4j.instructions.variable.GlobalSet;
+import com.opencastsoftware.wasm4j.instructions.variable.LocalGet;
+import com.opencastsoftware.wasm4j.instructions.variable.LocalSet;
+import com.opencastsoftware.wasm4j.instructions.variable.LocalTee;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.TypeId;
+import com.opencastsoftware.wasm4j.types.ValType;
+import org.jetbrains.annotations.Nullable;
+
+public class InstructionBinarySizingVisitor extends ConstantInstructionBinarySizingVisitor implements FlatInstructionVisitor<RuntimeException> {
+    public InstructionBinarySizingVisitor(WasmTypeBinarySizingVisitor typeVisitor) {
+        super(typeVisitor);
+    }
+
+    public int sizeOf(Expression expression) {
+        reset();
+        visitExpression(expression);
+        return size;
+    }
+
+    // Control instructions
+    private void visitBlockType(@Nullable BlockType blockType) {
+        if (blockType instanceof TypeId) {
+            var typeId = (TypeId) blockType;
+            size += LEB128.sizeOfSigned(typeId.typeIndex());
+        } else if (blockType instanceof ValType) {
+            var valType = (ValType) blockType;
+            size += typeVisitor.sizeOf(valType);
+        } else {
+            size += 1; // Empty type
+        }
+    }
+
+    @Override
+    public void visitBlockStart(@Nullable BlockType blockType) {
+        size += 1;
+        visitBlockType(blockType);
+    }
+
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) {
+        size += 1;
+        visitBlockType(blockType);
+    }
+
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) {
+        size += 1;
+        visitBlockType(blockType);
+    }
+
+    @Override
+    public void visitElse() {
+        size += 1;
+    }
+
+    @Override
+    public void visitEnd() {
+        size += 1;
+    }
+
+    @Override
+    public void visitBlock(Block block) {
+        InstructionWalker.walk(block, this);
+    }
+
+    @Override
+    public void visitBranch(Branch branch) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(branch.labelIndex());
+    }
+
+    @Override
+    public void visitBranchIf(BranchIf branchIf) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(branchIf.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNonNull(BranchOnNonNull branchOnNonNull) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(branchOnNonNull.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNull(BranchOnNull branchOnNull) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(branchOnNull.labelIndex());
+    }
+
+    @Override
+    public void visitBranchTable(BranchTable branchTable) {
+        size += 1;
+
+        size += LEB128.sizeOfUnsigned(branchTable.labels().length);
+        for (int label : branchTable.labels()) {
+            size += LEB128.sizeOfUnsigned(label);
+        }
+
+        size += LEB128.sizeOfUnsigned(branchTable.defaultLabel());
+    }
+
+    @Override
+    public void visitCall(Call call) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(call.funcIndex());
+    }
+
+    @Override
+    public void visitCallIndirect(CallIndirect callIndirect) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(callIndirect.typeIndex());
+        size += LEB128.sizeOfUnsigned(callIndirect.tableIndex());
+    }
+
+    @Override
+    public void visitCallRef(CallRef callRef) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(callRef.typeIndex());
+    }
+
+    @Override
+    public void visitIf(If ifInstr) {
+        InstructionWalker.walk(ifInstr, this);
+    }
+
+    @Override
+    public void visitLoop(Loop loop) {
+        InstructionWalker.walk(loop, this);
+    }
+
+    @Override
+    public void visitNop(Nop nop) {
+        size += 1;
+    }
+
+    @Override
+    public void visitReturn(Return ret) {
+        size += 1;
+    }
+
+    @Override
+    public void visitUnreachable(Unreachable unreachable) {
+        size += 1;
+    }
+
+    // Memory instructions
+    private void visitMemArgInstruction(MemArgInstruction memArg) {
+        size += LEB128.sizeOfUnsigned(memArg.align());
+        size += LEB128.sizeOfUnsigned(memArg.offset());
+    }
+
+    @Override
+    public void visitI32Load(I32Load i32Load) {
+        size += 1;
+        visitMemArgInstruction(i32Load);
+    }
+
+    @Override
+    public void visitI64Load(I64Load i64Load) {
+        size += 1;
+        visitMemArgInstruction(i64Load);
+    }
+
+    @Override
+    public void visitF32Load(F32Load f32Load) {
+        size += 1;
+        visitMemArgInstruction(f32Load);
+    }
+
+    @Override
+    public void visitF64Load(F64Load f64Load) {
+        size += 1;
+        visitMemArgInstruction(f64Load);
+    }
+
+    @Override
+    public void visitI32Store(I32Store i32Store) {
+        size += 1;
+        visitMemArgInstruction(i32Store);
+    }
+
+    @Override
+    public void visitI64Store(I64Store i64Store) {
+        size += 1;
+        visitMemArgInstruction(i64Store);
+    }
+
+    @Override
+    public void visitF32Store(F32Store f32Store) {
+        size += 1;
+        visitMemArgInstruction(f32Store);
+    }
+
+    @Override
+    public void visitF64Store(F64Store f64Store) {
+        size += 1;
+        visitMemArgInstruction(f64Store);
+    }
+
+    @Override
+    public void visitMemorySize(MemorySize memorySize) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(memorySize.memIndex());
+    }
+
+    @Override
+    public void visitMemoryGrow(MemoryGrow memoryGrow) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(memoryGrow.memIndex());
+    }
+
+    @Override
+    public void visitMemoryFill(MemoryFill memoryFill) {
+        size += Opcode.MEMORY_FILL.bytes().length;
+        size += LEB128.sizeOfUnsigned(memoryFill.memIndex());
+    }
+
+    @Override
+    public void visitMemoryCopy(MemoryCopy memoryCopy) {
+        // TODO: Check parameter ordering once indexing additional memories is possible
+        size += Opcode.MEMORY_COPY.bytes().length;
+        size += LEB128.sizeOfUnsigned(memoryCopy.targetMemIndex());
+        size += LEB128.sizeOfUnsigned(memoryCopy.sourceMemIndex());
+    }
+
+    @Override
+    public void visitMemoryInit(MemoryInit memoryInit) {
+        size += Opcode.MEMORY_INIT.bytes().length;
+        size += LEB128.sizeOfUnsigned(memoryInit.dataIndex());
+        size += LEB128.sizeOfUnsigned(memoryInit.memIndex());
+    }
+
+    @Override
+    public void visitDataDrop(DataDrop dataDrop) {
+        size += Opcode.DATA_DROP.bytes().length;
+        size += LEB128.sizeOfUnsigned(dataDrop.dataIndex());
+    }
+
+    // Numeric instructions
+    @Override
+    public void visitI32Clz(I32Clz i32Clz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Ctz(I32Ctz i32Ctz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Popcnt(I32Popcnt i32Popcnt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Clz(I64Clz i64Clz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Ctz(I64Ctz i64Ctz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Popcnt(I64Popcnt i64Popcnt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Abs(F32Abs f32Abs) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Ceil(F32Ceil f32Ceil) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Floor(F32Floor f32Floor) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Nearest(F32Nearest f32Nearest) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Neg(F32Neg f32Neg) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Sqrt(F32Sqrt f32Sqrt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Trunc(F32Trunc f32Trunc) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Abs(F64Abs f64Abs) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Ceil(F64Ceil f64Ceil) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Floor(F64Floor f64Floor) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Nearest(F64Nearest f64Nearest) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Neg(F64Neg f64Neg) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Sqrt(F64Sqrt f64Sqrt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Trunc(F64Trunc f64Trunc) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Add(I32Add i32Add) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32And(I32And i32And) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32DivSigned(I32DivSigned i32DivSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32DivUnsigned(I32DivUnsigned i32DivUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Mul(I32Mul i32Mul) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Or(I32Or i32Or) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32RemSigned(I32RemSigned i32RemSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32RemUnsigned(I32RemUnsigned i32RemUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Rotl(I32Rotl i32Rotl) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Rotr(I32Rotr i32Rotr) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Shl(I32Shl i32Shl) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32ShrSigned(I32ShrSigned i32ShrSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32ShrUnsigned(I32ShrUnsigned i32ShrUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Sub(I32Sub i32Sub) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Xor(I32Xor i32Xor) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Add(I64Add i64Add) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64And(I64And i64And) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64DivSigned(I64DivSigned i64DivSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64DivUnsigned(I64DivUnsigned i64DivUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Mul(I64Mul i64Mul) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Or(I64Or i64Or) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64RemSigned(I64RemSigned i64RemSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64RemUnsigned(I64RemUnsigned i64RemUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Rotl(I64Rotl i64Rotl) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Rotr(I64Rotr i64Rotr) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Shl(I64Shl i64Shl) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64ShrSigned(I64ShrSigned i64ShrSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64ShrUnsigned(I64ShrUnsigned i64ShrUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Sub(I64Sub i64Sub) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Xor(I64Xor i64Xor) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Add(F32Add f32Add) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Copysign(F32Copysign f32Copysign) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Div(F32Div f32Div) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Max(F32Max f32Max) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Min(F32Min f32Min) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Mul(F32Mul f32Mul) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Sub(F32Sub f32Sub) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Add(F64Add f64Add) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Copysign(F64Copysign f64Copysign) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Div(F64Div f64Div) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Max(F64Max f64Max) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Min(F64Min f64Min) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Mul(F64Mul f64Mul) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Sub(F64Sub f64Sub) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Eqz(I32Eqz i32Eqz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Eqz(I64Eqz i64Eqz) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Eq(I32Eq i32Eq) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32GeSigned(I32GeSigned i32GeSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32GeUnsigned(I32GeUnsigned i32GeUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32GtSigned(I32GtSigned i32GtSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32GtUnsigned(I32GtUnsigned i32GtUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32LeSigned(I32LeSigned i32LeSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32LeUnsigned(I32LeUnsigned i32LeUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32LtSigned(I32LtSigned i32LtSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32LtUnsigned(I32LtUnsigned i32LtUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Ne(I32Ne i32Ne) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Eq(I64Eq i64Eq) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64GeSigned(I64GeSigned i64GeSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64GeUnsigned(I64GeUnsigned i64GeUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64GtSigned(I64GtSigned i64GtSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64GtUnsigned(I64GtUnsigned i64GtUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64LeSigned(I64LeSigned i64LeSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64LeUnsigned(I64LeUnsigned i64LeUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64LtSigned(I64LtSigned i64LtSigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64LtUnsigned(I64LtUnsigned i64LtUnsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Ne(I64Ne i64Ne) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Eq(F32Eq f32Eq) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Ge(F32Ge f32Ge) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Gt(F32Gt f32Gt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Le(F32Le f32Le) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Lt(F32Lt f32Lt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Ne(F32Ne f32Ne) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Eq(F64Eq f64Eq) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Ge(F64Ge f64Ge) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Gt(F64Gt f64Gt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Le(F64Le f64Le) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Lt(F64Lt f64Lt) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Ne(F64Ne f64Ne) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Extend8Signed(I32Extend8Signed i32Extend8Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Extend8Signed(I64Extend8Signed i64Extend8Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Extend16Signed(I32Extend16Signed i32Extend16Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Extend16Signed(I64Extend16Signed i64Extend16Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Extend32Signed(I64Extend32Signed i64Extend32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32WrapI64(I32WrapI64 i32WrapI64) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64ExtendI32Signed(I64ExtendI32Signed i64ExtendI32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64ExtendI32Unsigned(I64ExtendI32Unsigned i64ExtendI32Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32TruncF32Signed(I32TruncF32Signed i32TruncF32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32TruncF32Unsigned(I32TruncF32Unsigned i32TruncF32Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32TruncF64Signed(I32TruncF64Signed i32TruncF64Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32TruncF64Unsigned(I32TruncF64Unsigned i32TruncF64Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64TruncF32Signed(I64TruncF32Signed i64TruncF32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64TruncF32Unsigned(I64TruncF32Unsigned i64TruncF32Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64TruncF64Signed(I64TruncF64Signed i64TruncF64Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64TruncF64Unsigned(I64TruncF64Unsigned i64TruncF64Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32TruncSatF32Signed(I32TruncSatF32Signed i32TruncSatF32Signed) {
+        size += Opcode.I32_TRUNC_SAT_F32_S.bytes().length;
+    }
+
+    @Override
+    public void visitI32TruncSatF32Unsigned(I32TruncSatF32Unsigned i32TruncSatF32Unsigned) {
+        size += Opcode.I32_TRUNC_SAT_F32_U.bytes().length;
+    }
+
+    @Override
+    public void visitI32TruncSatF64Signed(I32TruncSatF64Signed i32TruncSatF64Signed) {
+        size += Opcode.I32_TRUNC_SAT_F64_S.bytes().length;
+    }
+
+    @Override
+    public void visitI32TruncSatF64Unsigned(I32TruncSatF64Unsigned i32TruncSatF64Unsigned) {
+        size += Opcode.I32_TRUNC_SAT_F64_U.bytes().length;
+    }
+
+    @Override
+    public void visitI64TruncSatF32Signed(I64TruncSatF32Signed i64TruncSatF32Signed) {
+        size += Opcode.I64_TRUNC_SAT_F32_S.bytes().length;
+    }
+
+    @Override
+    public void visitI64TruncSatF32Unsigned(I64TruncSatF32Unsigned i64TruncSatF32Unsigned) {
+        size += Opcode.I64_TRUNC_SAT_F32_U.bytes().length;
+    }
+
+    @Override
+    public void visitI64TruncSatF64Signed(I64TruncSatF64Signed i64TruncSatF64Signed) {
+        size += Opcode.I64_TRUNC_SAT_F64_S.bytes().length;
+    }
+
+    @Override
+    public void visitI64TruncSatF64Unsigned(I64TruncSatF64Unsigned i64TruncSatF64Unsigned) {
+        size += Opcode.I64_TRUNC_SAT_F64_U.bytes().length;
+    }
+
+    @Override
+    public void visitF32DemoteF64(F32DemoteF64 f32DemoteF64) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64PromoteF32(F64PromoteF32 f64PromoteF32) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32ConvertI32Signed(F32ConvertI32Signed f32ConvertI32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32ConvertI32Unsigned(F32ConvertI32Unsigned f32ConvertI32Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32ConvertI64Signed(F32ConvertI64Signed f32ConvertI64Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32ConvertI64Unsigned(F32ConvertI64Unsigned f32ConvertI64Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64ConvertI32Signed(F64ConvertI32Signed f64ConvertI32Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64ConvertI32Unsigned(F64ConvertI32Unsigned f64ConvertI32Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64ConvertI64Signed(F64ConvertI64Signed f64ConvertI64Signed) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64ConvertI64Unsigned(F64ConvertI64Unsigned f64ConvertI64Unsigned) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI32ReinterpretF32(I32ReinterpretF32 i32ReinterpretF32) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64ReinterpretF64(I64ReinterpretF64 i64ReinterpretF64) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32ReinterpretI32(F32ReinterpretI32 f32ReinterpretI32) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64ReinterpretI64(F64ReinterpretI64 f64ReinterpretI64) {
+        size += 1;
+    }
+
+    // Parametric instructions
+    @Override
+    public void visitDrop(Drop drop) {
+        size += 1;
+    }
+
+    @Override
+    public void visitSelect(Select select) {
+        if (select.valTypes().isEmpty()) {
+            size += 1;
+        } else {
+            size += 1;
+            size += LEB128.sizeOfUnsigned(select.valTypes().size());
+            for (ValType valType : select.valTypes()) {
+                size += typeVisitor.sizeOf(valType);
+            }
+        }
+    }
+
+    // Reference instructions
+    @Override
+    public void visitRefAsNonNull(RefAsNonNull refAsNonNull) {
+        size += 1;
+    }
+
+    @Override
+    public void visitRefIsNull(RefIsNull refIsNull) {
+        size += 1;
+    }
+
+    // Table instructions
+    @Override
+    public void visitTableGet(TableGet tableGet) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(tableGet.tableIndex());
+    }
+
+    @Override
+    public void visitTableSet(TableSet tableSet) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(tableSet.tableIndex());
+    }
+
+    @Override
+    public void visitTableSize(TableSize tableSize) {
+        size += Opcode.TABLE_SIZE.bytes().length;
+        size += LEB128.sizeOfUnsigned(tableSize.tableIndex());
+    }
+
+    @Override
+    public void visitTableGrow(TableGrow tableGrow) {
+        size += Opcode.TABLE_GROW.bytes().length;
+        size += LEB128.sizeOfUnsigned(tableGrow.tableIndex());
+    }
+
+    @Override
+    public void visitTableFill(TableFill tableFill) {
+        size += Opcode.TABLE_FILL.bytes().length;
+        size += LEB128.sizeOfUnsigned(tableFill.tableIndex());
+    }
+
+    @Override
+    public void visitTableCopy(TableCopy tableCopy) {
+        size += Opcode.TABLE_COPY.bytes().length;
+        size += LEB128.sizeOfUnsigned(tableCopy.targetTableIndex());
+        size += LEB128.sizeOfUnsigned(tableCopy.sourceTableIndex());
+    }
+
+    @Override
+    public void visitTableInit(TableInit tableInit) {
+        size += Opcode.TABLE_INIT.bytes().length;
+        size += LEB128.sizeOfUnsigned(tableInit.elemIndex());
+        size += LEB128.sizeOfUnsigned(tableInit.tableIndex());
+    }
+
+    @Override
+    public void visitElemDrop(ElemDrop elemDrop) {
+        size += Opcode.ELEM_DROP.bytes().length;
+        size += LEB128.sizeOfUnsigned(elemDrop.elemIndex());
+    }
+
+    // Variable instructions
+    @Override
+    public void visitGlobalSet(GlobalSet globalSet) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(globalSet.globalIndex());
+    }
+
+    @Override
+    public void visitLocalGet(LocalGet localGet) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(localGet.localIndex());
+    }
+
+    @Override
+    public void visitLocalSet(LocalSet localSet) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(localSet.localIndex());
+    }
+
+    @Override
+    public void visitLocalTee(LocalTee localTee) {
+        size += 1;
+        size += LEB128.sizeOfUnsigned(localTee.localIndex());
+    }
+
+    @Override
+    public void visitExpression(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            size += ((PackedExpression) expression).encodedSize();
+            return;
+        }
+
+        InstructionWalker.walk(expression, this);
+    }
+}
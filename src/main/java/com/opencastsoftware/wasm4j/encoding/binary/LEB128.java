@@ -6,15 +6,33 @@ package com.opencastsoftware.wasm4j.encoding.binary;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public class LEB128 {
     private static final byte LOW_7_BITS = 0x7F;
     private static final int CONTINUATION_BIT = 0x80;
     private static final byte SIGN_BIT = 0x40;
 
+    public static final int MAX_INT_LENGTH = 5; // ceil(32/7)
+    public static final int MAX_LONG_LENGTH = 10; // ceil(64/7)
+
     private LEB128() {
     }
 
+    public static int sizeOfUnsigned(int i) {
+        // Each byte carries 7 bits of payload, and zero still needs a byte of its own
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(i | 1) + 6) / 7;
+    }
+
+    public static int sizeOfUnsigned(long l) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(l | 1) + 6) / 7;
+    }
+
+    public static int sizeOfSigned(long l) {
+        // The number of significant bits, plus one for the sign bit
+        return (Long.SIZE - Long.numberOfLeadingZeros(l ^ (l >> 63)) + 1 + 6) / 7;
+    }
+
     public static void writeUnsigned(OutputStream out, int i) throws IOException {
         while (true) {
             if (Integer.compareUnsigned(i, CONTINUATION_BIT) < 0) {
@@ -39,6 +57,317 @@ public class LEB128 {
         }
     }
 
+    public static int writeUnsigned(byte[] out, int pos, int i) {
+        while (Integer.compareUnsigned(i, CONTINUATION_BIT) >= 0) {
+            out[pos++] = (byte) (i & LOW_7_BITS | CONTINUATION_BIT);
+            i >>>= 7;
+        }
+
+        out[pos++] = (byte) i;
+
+        return pos;
+    }
+
+    public static int writeUnsigned(byte[] out, int pos, long l) {
+        while (Long.compareUnsigned(l, CONTINUATION_BIT) >= 0) {
+            out[pos++] = (byte) (l & LOW_7_BITS | CONTINUATION_BIT);
+            l >>>= 7;
+        }
+
+        out[pos++] = (byte) l;
+
+        return pos;
+    }
+
+    public static int writeSigned(byte[] out, int pos, long l) {
+        // Stop once the remaining bits are all copies of the sign bit of the byte being written
+        while (l < -SIGN_BIT || l >= SIGN_BIT) {
+            out[pos++] = (byte) (l & LOW_7_BITS | CONTINUATION_BIT);
+            l >>= 7;
+        }
+
+        out[pos++] = (byte) (l & LOW_7_BITS);
+
+        return pos;
+    }
+
+    // Writes a fixed number of bytes, padding with continuation bytes, so that the value can be patched later
+    public static int writeUnsignedPadded(byte[] out, int pos, int i, int length) {
+        if (length < sizeOfUnsigned(i) || length > MAX_INT_LENGTH) {
+            throw new IllegalArgumentException("Value " + Integer.toUnsignedString(i) + " cannot be encoded in " + length + " bytes");
+        }
+
+        for (int b = 0; b < length - 1; b++) {
+            out[pos++] = (byte) (i & LOW_7_BITS | CONTINUATION_BIT);
+            i >>>= 7;
+        }
+
+        out[pos++] = (byte) (i & LOW_7_BITS);
+
+        return pos;
+    }
+
+    public static int writeUnsigned(ByteBuffer out, int pos, int i) {
+        while (Integer.compareUnsigned(i, CONTINUATION_BIT) >= 0) {
+            out.put(pos++, (byte) (i & LOW_7_BITS | CONTINUATION_BIT));
+            i >>>= 7;
+        }
+
+        out.put(pos++, (byte) i);
+
+        return pos;
+    }
+
+    public static int writeUnsigned(ByteBuffer out, int pos, long l) {
+        while (Long.compareUnsigned(l, CONTINUATION_BIT) >= 0) {
+            out.put(pos++, (byte) (l & LOW_7_BITS | CONTINUATION_BIT));
+            l >>>= 7;
+        }
+
+        out.put(pos++, (byte) l);
+
+        return pos;
+    }
+
+    public static int writeSigned(ByteBuffer out, int pos, long l) {
+        while (l < -SIGN_BIT || l >= SIGN_BIT) {
+            out.put(pos++, (byte) (l & LOW_7_BITS | CONTINUATION_BIT));
+            l >>= 7;
+        }
+
+        out.put(pos++, (byte) (l & LOW_7_BITS));
+
+        return pos;
+    }
+
+    // The int decoders return the value in the low 32 bits and the encoded length in the high 32 bits
+    public static int decodedValue(long decoded) {
+        return (int) decoded;
+    }
+
+    public static int decodedLength(long decoded) {
+        return (int) (decoded >>> 32);
+    }
+
+    private static long decoded(long value, int length) {
+        return ((long) length << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static long signExtend(long payload, int length) {
+        int shift = Long.SIZE - length * 7;
+        return shift <= 0 ? payload : (payload << shift) >> shift;
+    }
+
+    private static IllegalArgumentException tooLong(int offset, int maxLength) {
+        return new IllegalArgumentException("LEB128 value at offset " + offset + " is longer than " + maxLength + " bytes");
+    }
+
+    private static IllegalArgumentException truncated(int offset) {
+        return new IllegalArgumentException("Unexpected end of input in LEB128 value at offset " + offset);
+    }
+
+    private static IllegalArgumentException outOfRange(int offset) {
+        return new IllegalArgumentException("LEB128 value at offset " + offset + " is out of range");
+    }
+
+    private static int length(byte[] in, int offset, int maxLength) {
+        for (int length = 1; length <= maxLength; length++) {
+            if (offset + length > in.length) {
+                throw truncated(offset);
+            } else if ((in[offset + length - 1] & CONTINUATION_BIT) == 0) {
+                return length;
+            }
+        }
+
+        throw tooLong(offset, maxLength);
+    }
+
+    private static long payload(byte[] in, int offset, int length) {
+        long result = 0L;
+        for (int i = 0; i < length; i++) {
+            result |= (long) (in[offset + i] & LOW_7_BITS) << (7 * i);
+        }
+
+        return result;
+    }
+
+    private static int length(ByteBuffer in, int offset, int maxLength) {
+        for (int length = 1; length <= maxLength; length++) {
+            if (offset + length > in.limit()) {
+                throw truncated(offset);
+            } else if ((in.get(offset + length - 1) & CONTINUATION_BIT) == 0) {
+                return length;
+            }
+        }
+
+        throw tooLong(offset, maxLength);
+    }
+
+    private static long payload(ByteBuffer in, int offset, int length) {
+        long result = 0L;
+        for (int i = 0; i < length; i++) {
+            result |= (long) (in.get(offset + i) & LOW_7_BITS) << (7 * i);
+        }
+
+        return result;
+    }
+
+    private static long checkedUnsignedInt(long payload, int length, int offset) {
+        if ((payload >>> Integer.SIZE) != 0) {
+            throw outOfRange(offset);
+        }
+
+        return decoded(payload, length);
+    }
+
+    private static long checkedSignedInt(long payload, int length, int offset) {
+        long value = signExtend(payload, length);
+
+        if (value != (int) value) {
+            throw outOfRange(offset);
+        }
+
+        return decoded(value, length);
+    }
+
+    private static long checkedUnsignedLong(long payload, int length, byte last, int offset) {
+        // Only the lowest bit of the 10th byte is part of a 64 bit value
+        if (length == MAX_LONG_LENGTH && (last & ~1) != 0) {
+            throw outOfRange(offset);
+        }
+
+        return payload;
+    }
+
+    private static long checkedSignedLong(long payload, int length, byte last, int offset) {
+        // The unused bits of the 10th byte must all be copies of the sign bit
+        if (length == MAX_LONG_LENGTH && last != 0 && last != LOW_7_BITS) {
+            throw outOfRange(offset);
+        }
+
+        return signExtend(payload, length);
+    }
+
+    public static int encodedLength(byte[] in, int offset) {
+        return length(in, offset, MAX_LONG_LENGTH);
+    }
+
+    public static int encodedLength(ByteBuffer in, int offset) {
+        return length(in, offset, MAX_LONG_LENGTH);
+    }
+
+    public static long decodeUnsignedInt(byte[] in, int offset) {
+        // Most values in a module fit into a single byte
+        byte first = in[offset];
+        if (first >= 0) {
+            return decoded(first, 1);
+        }
+
+        int length = length(in, offset, MAX_INT_LENGTH);
+        return checkedUnsignedInt(payload(in, offset, length), length, offset);
+    }
+
+    public static long decodeSignedInt(byte[] in, int offset) {
+        byte first = in[offset];
+        if (first >= 0) {
+            return decoded(signExtend(first, 1), 1);
+        }
+
+        int length = length(in, offset, MAX_INT_LENGTH);
+        return checkedSignedInt(payload(in, offset, length), length, offset);
+    }
+
+    public static long decodeUnsignedInt(ByteBuffer in, int offset) {
+        byte first = in.get(offset);
+        if (first >= 0) {
+            return decoded(first, 1);
+        }
+
+        int length = length(in, offset, MAX_INT_LENGTH);
+        return checkedUnsignedInt(payload(in, offset, length), length, offset);
+    }
+
+    public static long decodeSignedInt(ByteBuffer in, int offset) {
+        byte first = in.get(offset);
+        if (first >= 0) {
+            return decoded(signExtend(first, 1), 1);
+        }
+
+        int length = length(in, offset, MAX_INT_LENGTH);
+        return checkedSignedInt(payload(in, offset, length), length, offset);
+    }
+
+    public static int readUnsignedInt(byte[] in, int offset) {
+        return decodedValue(decodeUnsignedInt(in, offset));
+    }
+
+    public static int readSignedInt(byte[] in, int offset) {
+        return decodedValue(decodeSignedInt(in, offset));
+    }
+
+    public static long readUnsignedLong(byte[] in, int offset) {
+        byte first = in[offset];
+        if (first >= 0) {
+            return first;
+        }
+
+        int length = length(in, offset, MAX_LONG_LENGTH);
+        return checkedUnsignedLong(payload(in, offset, length), length, in[offset + length - 1], offset);
+    }
+
+    public static long readSignedLong(byte[] in, int offset) {
+        byte first = in[offset];
+        if (first >= 0) {
+            return signExtend(first, 1);
+        }
+
+        int length = length(in, offset, MAX_LONG_LENGTH);
+        return checkedSignedLong(payload(in, offset, length), length, in[offset + length - 1], offset);
+    }
+
+    // The ByteBuffer readers consume the value, advancing the buffer's position past it
+    public static int readUnsignedInt(ByteBuffer in) {
+        long decoded = decodeUnsignedInt(in, in.position());
+        in.position(in.position() + decodedLength(decoded));
+        return decodedValue(decoded);
+    }
+
+    public static int readSignedInt(ByteBuffer in) {
+        long decoded = decodeSignedInt(in, in.position());
+        in.position(in.position() + decodedLength(decoded));
+        return decodedValue(decoded);
+    }
+
+    public static long readUnsignedLong(ByteBuffer in) {
+        int offset = in.position();
+
+        byte first = in.get(offset);
+        if (first >= 0) {
+            in.position(offset + 1);
+            return first;
+        }
+
+        int length = length(in, offset, MAX_LONG_LENGTH);
+        long value = checkedUnsignedLong(payload(in, offset, length), length, in.get(offset + length - 1), offset);
+        in.position(offset + length);
+        return value;
+    }
+
+    public static long readSignedLong(ByteBuffer in) {
+        int offset = in.position();
+
+        byte first = in.get(offset);
+        if (first >= 0) {
+            in.position(offset + 1);
+            return signExtend(first, 1);
+        }
+
+        int length = length(in, offset, MAX_LONG_LENGTH);
+        long value = checkedSignedLong(payload(in, offset, length), length, in.get(offset + length - 1), offset);
+        in.position(offset + length);
+        return value;
+    }
+
     public static int readUnsignedInt(byte[] in) {
         int result = 0;
         int shift = 0;
@@ -0,0 +1,113 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Locals;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.types.ValType;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// A function which records the location of its code entry, and decodes its locals and body when they are first accessed.
+// Decoding is idempotent, so concurrent first accesses may each decode the entry but will observe equivalent results.
+public class LazyFunc extends Func {
+    private final WasmBinaryDecoder decoder;
+    private final ByteBuffer input;
+    private final int offset;
+    private final int length;
+    private final boolean soft;
+
+    @Nullable
+    private volatile Func decoded;
+    @Nullable
+    private volatile SoftReference<Func> softlyDecoded;
+
+    LazyFunc(WasmBinaryDecoder decoder, int typeIndex, ByteBuffer input, int offset, int length, boolean soft) {
+        super(typeIndex);
+        this.decoder = decoder;
+        this.input = input;
+        this.offset = offset;
+        this.length = length;
+        this.soft = soft;
+    }
+
+    // The offset of the code entry's locals within the decoded input
+    public int offset() {
+        return offset;
+    }
+
+    // The size of the code entry, excluding its size prefix
+    public int length() {
+        return length;
+    }
+
+    // A view of the encoded locals and body
+    public ByteBuffer code() {
+        var code = input.duplicate();
+        code.limit(offset + length).position(offset);
+        return code.slice();
+    }
+
+    // The locals, which are decoded again on each call until the function itself is decoded, leaving the body encoded
+    public List<Locals> decodeLocals() {
+        var func = cached();
+        return func != null ? func.compressedLocals() : decoder.decodeLocals(input, offset, length);
+    }
+
+    // Reports each instruction of the body from its encoding, as PackedExpression.replay does, without keeping them
+    public <T extends Exception> void replayBody(FlatInstructionVisitor<T> visitor) throws T {
+        decoder.replayBody(input, offset, length, visitor);
+    }
+
+    public boolean isDecoded() {
+        return cached() != null;
+    }
+
+    @Nullable
+    private Func cached() {
+        if (soft) {
+            var ref = softlyDecoded;
+            return ref == null ? null : ref.get();
+        } else {
+            return decoded;
+        }
+    }
+
+    private Func decode() {
+        var func = cached();
+
+        if (func == null) {
+            func = decoder.decodeFunc(input, offset, length, typeIndex());
+
+            if (soft) {
+                softlyDecoded = new SoftReference<>(func);
+            } else {
+                decoded = func;
+            }
+        }
+
+        return func;
+    }
+
+    @Override
+    public List<ValType> locals() {
+        return decode().locals();
+    }
+
+    @Override
+    public List<Locals> compressedLocals() {
+        return decode().compressedLocals();
+    }
+
+    @Override
+    public Expression body() {
+        return decode().body();
+    }
+}
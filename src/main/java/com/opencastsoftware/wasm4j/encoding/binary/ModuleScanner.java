@@ -0,0 +1,150 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Export;
+import com.opencastsoftware.wasm4j.Import;
+import com.opencastsoftware.wasm4j.Table;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.MemType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Lists the sections of a module, decoding only its types, imports, tables, memories and exports.
+// Every other section is skipped by moving the channel's position past it, so code and data are never read.
+// The read buffer is reused between scans, so an instance should not be shared between threads.
+public class ModuleScanner {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final WasmBinaryDecoder decoder = new WasmBinaryDecoder();
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public ModuleSummary scan(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(channel);
+        }
+    }
+
+    // Scans a module starting at the channel's current position, with offsets relative to that position
+    public ModuleSummary scan(SeekableByteChannel channel) throws IOException {
+        long start = channel.position();
+        long end = channel.size();
+
+        var sections = new ArrayList<ModuleSummary.Section>();
+        List<FuncType> types = Collections.emptyList();
+        List<Import> imports = Collections.emptyList();
+        List<Table> tables = Collections.emptyList();
+        List<MemType> mems = Collections.emptyList();
+        List<Export> exports = Collections.emptyList();
+
+        read(channel, WasmBinaryEncoder.WASM_MAGIC.length + WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION.length, start);
+        decoder.decodeHeader(buffer);
+
+        int lastOrder = 0;
+        while (channel.position() < end) {
+            long offset = channel.position();
+
+            read(channel, (int) Math.min(1 + LEB128.MAX_INT_LENGTH, end - offset), start);
+
+            byte id = buffer.get();
+            var sectionId = SectionId.fromId(id);
+
+            if (sectionId == null) {
+                throw new IllegalArgumentException("Unknown section id " + id + " at offset " + (offset - start));
+            } else if (sectionId != SectionId.CUSTOM) {
+                int order = WasmBinaryDecoder.SECTION_ORDER[sectionId.id()];
+                if (order <= lastOrder) {
+                    throw new IllegalArgumentException("Unexpected " + sectionId + " section at offset " + (offset - start));
+                }
+                lastOrder = order;
+            }
+
+            int size = readSectionSize(offset - start);
+            long contentOffset = offset + buffer.position();
+
+            if (size > end - contentOffset) {
+                throw new IllegalArgumentException("Size of " + sectionId + " section exceeds the input at offset " + (offset - start));
+            }
+
+            sections.add(new ModuleSummary.Section(sectionId, contentOffset - start, size));
+
+            switch (sectionId) {
+                case TYPE:
+                case IMPORT:
+                case TABLE:
+                case MEMORY:
+                case EXPORT:
+                    channel.position(contentOffset);
+                    read(channel, size, start);
+
+                    try {
+                        if (sectionId == SectionId.TYPE) {
+                            types = decoder.decodeTypes(buffer);
+                        } else if (sectionId == SectionId.IMPORT) {
+                            imports = decoder.decodeImports(buffer);
+                        } else if (sectionId == SectionId.TABLE) {
+                            tables = decoder.decodeTables(buffer);
+                        } else if (sectionId == SectionId.MEMORY) {
+                            mems = decoder.decodeMemories(buffer);
+                        } else {
+                            exports = decoder.decodeExports(buffer);
+                        }
+                    } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+                        throw new IllegalArgumentException("Malformed " + sectionId + " section at offset " + (offset - start), e);
+                    }
+
+                    if (buffer.hasRemaining()) {
+                        throw new IllegalArgumentException("Size mismatch in " + sectionId + " section at offset " + (offset - start));
+                    }
+
+                    break;
+                default:
+                    // Skip the section without reading it
+                    channel.position(contentOffset + size);
+            }
+        }
+
+        return new ModuleSummary(sections, types, imports, tables, mems, exports);
+    }
+
+    private int readSectionSize(long offset) {
+        try {
+            int size = LEB128.readUnsignedInt(buffer);
+            if (size < 0) {
+                throw new IllegalArgumentException("Section size " + Integer.toUnsignedString(size) + " is too large");
+            }
+            return size;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed section header at offset " + offset, e);
+        }
+    }
+
+    // Reads the next length bytes of the channel into the buffer, which is left ready to decode them
+    private void read(SeekableByteChannel channel, int length, long start) throws IOException {
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        buffer.clear().limit(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IllegalArgumentException("Unexpected end of input at offset " + (channel.position() - start));
+            }
+        }
+
+        buffer.flip();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Export;
+import com.opencastsoftware.wasm4j.Import;
+import com.opencastsoftware.wasm4j.Table;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.MemType;
+
+import java.util.List;
+
+// The metadata of a module found by a ModuleScanner, without any function bodies or data segments
+public class ModuleSummary {
+    public static class Section {
+        private final SectionId id;
+        private final long offset;
+        private final int size;
+
+        public Section(SectionId id, long offset, int size) {
+            this.id = id;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public SectionId id() {
+            return id;
+        }
+
+        // The offset of the section's content within the input
+        public long offset() {
+            return offset;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private final List<Section> sections;
+    private final List<FuncType> types;
+    private final List<Import> imports;
+    private final List<Table> tables;
+    private final List<MemType> mems;
+    private final List<Export> exports;
+
+    public ModuleSummary(List<Section> sections, List<FuncType> types, List<Import> imports, List<Table> tables, List<MemType> mems, List<Export> exports) {
+        this.sections = sections;
+        this.types = types;
+        this.imports = imports;
+        this.tables = tables;
+        this.mems = mems;
+        this.exports = exports;
+    }
+
+    public List<Section> sections() {
+        return sections;
+    }
+
+    public List<FuncType> types() {
+        return types;
+    }
+
+    public List<Import> imports() {
+        return imports;
+    }
+
+    public List<Table> tables() {
+        return tables;
+    }
+
+    public List<MemType> mems() {
+        return mems;
+    }
+
+    public List<Export> exports() {
+        return exports;
+    }
+}
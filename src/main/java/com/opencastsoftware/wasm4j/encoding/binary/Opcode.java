@@ -4,6 +4,8 @@
  */
 package com.opencastsoftware.wasm4j.encoding.binary;
 
+import org.jetbrains.annotations.Nullable;
+
 public enum Opcode {
     UNREACHABLE((byte) 0x00),
     NOP((byte) 0x01),
@@ -515,6 +517,30 @@ public enum Opcode {
     F64X2_CONVERT_LOW_I32X4_U(new byte[]{(byte) 0xFD, (byte) 0xFF, (byte) 0x01}),
     ;
 
+    static final int PREFIX_FC = 0xFC;
+    static final int PREFIX_FD = 0xFD;
+
+    // Indexed by opcode byte, or by the sub-opcode following a prefix byte, so that decoding needs no search
+    private static final Opcode[] SINGLE_BYTE = new Opcode[256];
+    private static final Opcode[] PREFIXED_FC = new Opcode[256];
+    private static final Opcode[] PREFIXED_FD = new Opcode[256];
+
+    static {
+        for (Opcode opcode : values()) {
+            if (opcode.bytes.length == 1) {
+                SINGLE_BYTE[opcode.bytes[0] & 0xFF] = opcode;
+            } else {
+                // Sub-opcodes are encoded as unsigned LEB128 values
+                int subOpcode = LEB128.readUnsignedInt(opcode.bytes, 1);
+                if ((opcode.bytes[0] & 0xFF) == PREFIX_FC) {
+                    PREFIXED_FC[subOpcode] = opcode;
+                } else {
+                    PREFIXED_FD[subOpcode] = opcode;
+                }
+            }
+        }
+    }
+
     private final byte[] bytes;
 
     Opcode(byte[] bytes) {
@@ -532,4 +558,22 @@ public enum Opcode {
     public byte[] bytes() {
         return bytes;
     }
+
+    @Nullable
+    public static Opcode fromByte(int opcode) {
+        return SINGLE_BYTE[opcode & 0xFF];
+    }
+
+    @Nullable
+    public static Opcode fromPrefixed(int prefix, int subOpcode) {
+        if (subOpcode < 0 || subOpcode >= 256) {
+            return null;
+        } else if ((prefix & 0xFF) == PREFIX_FC) {
+            return PREFIXED_FC[subOpcode];
+        } else if ((prefix & 0xFF) == PREFIX_FD) {
+            return PREFIXED_FD[subOpcode];
+        } else {
+            return null;
+        }
+    }
 }
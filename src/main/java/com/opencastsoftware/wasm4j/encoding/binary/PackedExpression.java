@@ -0,0 +1,264 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+// An expression stored as its binary encoding, with a side table locating the else and end of each structured instruction.
+// Instruction objects are only created while the expression is traversed:
+// replay reports them one at a time to a FlatInstructionVisitor, and instructions() decodes the outermost instructions,
+// with the instructions nested inside each block, loop or if decoded when they are first accessed.
+// The binary encoding visitors and WasmBinarySizer use the encoding as it is.
+public class PackedExpression extends Expression {
+    private static final WasmBinaryDecoder DECODER = new WasmBinaryDecoder();
+
+    // The binary encoding of the instructions, including the final end
+    private final byte[] code;
+    // For each structured instruction in the order they appear, the offsets of its opcode, its else (or -1) and its end
+    private final int[] blocks;
+
+    private PackedExpression(byte[] code, int[] blocks) {
+        super(Collections.emptyList());
+        this.code = code;
+        this.blocks = blocks;
+    }
+
+    public static PackedExpression of(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            return (PackedExpression) expression;
+        }
+
+        var output = new ByteArrayOutputStream();
+        try {
+            expression.accept(new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return decode(ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    // Packs the instructions from the buffer's position up to and including the end of the expression
+    static PackedExpression decode(ByteBuffer in) {
+        int start = in.position();
+        var blocks = new int[12];
+        int blockCount = 0;
+        // The indices of the structured instructions enclosing the current position
+        var open = new int[4];
+        int depth = 0;
+
+        while (true) {
+            int offset = in.position();
+            var opcode = DECODER.readOpcode(in);
+
+            switch (opcode) {
+                case BLOCK:
+                case LOOP:
+                case IF:
+                    DECODER.decodeBlockType(in);
+                    if (3 * blockCount + 3 > blocks.length) {
+                        blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                    }
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, open.length * 2);
+                    }
+                    blocks[3 * blockCount] = offset - start;
+                    blocks[3 * blockCount + 1] = -1;
+                    blocks[3 * blockCount + 2] = -1;
+                    open[depth++] = blockCount++;
+                    break;
+                case ELSE: {
+                    int block = depth > 0 ? open[depth - 1] : -1;
+                    if (block < 0 || in.get(start + blocks[3 * block]) != Opcode.IF.opcode() || blocks[3 * block + 1] >= 0) {
+                        throw WasmBinaryDecoder.malformed("Unexpected else", offset);
+                    }
+                    blocks[3 * block + 1] = offset - start;
+                    break;
+                }
+                case END:
+                    if (depth == 0) {
+                        var code = new byte[in.position() - start];
+                        in.duplicate().position(start).get(code);
+                        return new PackedExpression(code, Arrays.copyOf(blocks, 3 * blockCount));
+                    }
+                    blocks[3 * open[--depth] + 2] = offset - start;
+                    break;
+                default:
+                    // Decoding checks the immediates, although the instruction itself is discarded
+                    DECODER.decodeInstruction(in, opcode, offset);
+            }
+        }
+    }
+
+    // The size of the expression's binary encoding
+    public int encodedSize() {
+        return code.length;
+    }
+
+    // A read-only view of the binary encoding, including the final end
+    public ByteBuffer code() {
+        return ByteBuffer.wrap(code).asReadOnlyBuffer();
+    }
+
+    void writeTo(OutputStream output) throws IOException {
+        output.write(code);
+    }
+
+    private ByteBuffer input() {
+        return ByteBuffer.wrap(code).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Reports each instruction in the order it is encoded, ending with the end of the expression
+    public <T extends Exception> void replay(FlatInstructionVisitor<T> visitor) throws T {
+        replay(input(), visitor);
+    }
+
+    // Reports each instruction from the buffer's position up to and including the end of the expression
+    static <T extends Exception> void replay(ByteBuffer in, FlatInstructionVisitor<T> visitor) throws T {
+        int start = in.position();
+        int depth = 0;
+
+        while (true) {
+            int offset = in.position();
+            visitor.visitOffset(offset - start);
+            var opcode = DECODER.readOpcode(in);
+
+            switch (opcode) {
+                case BLOCK:
+                    depth++;
+                    visitor.visitBlockStart(DECODER.decodeBlockType(in));
+                    break;
+                case LOOP:
+                    depth++;
+                    visitor.visitLoopStart(DECODER.decodeBlockType(in));
+                    break;
+                case IF:
+                    depth++;
+                    visitor.visitIfStart(DECODER.decodeBlockType(in));
+                    break;
+                case ELSE:
+                    visitor.visitElse();
+                    break;
+                case END:
+                    visitor.visitEnd();
+                    if (depth-- == 0) {
+                        return;
+                    }
+                    break;
+                default:
+                    visitor.visitInstruction(DECODER.decodeInstruction(in, opcode, offset));
+            }
+        }
+    }
+
+    // Decodes the outermost instructions each time it is called, so the result should be kept while it is in use
+    @Override
+    public List<Instruction> instructions() {
+        return new PackedInstructions(0, code.length - 1);
+    }
+
+    private int blockAt(int offset) {
+        int low = 0;
+        int high = blocks.length / 3 - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midOffset = blocks[3 * mid];
+
+            if (midOffset < offset) {
+                low = mid + 1;
+            } else if (midOffset > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        throw new IllegalStateException("No structured instruction at offset " + offset);
+    }
+
+    // The instructions between two offsets of the encoding, which are decoded when the list is first accessed
+    private class PackedInstructions extends AbstractList<Instruction> implements RandomAccess {
+        private final int start;
+        private final int end;
+        @Nullable
+        private volatile Instruction[] decoded;
+
+        PackedInstructions(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private Instruction[] decoded() {
+            var instructions = decoded;
+
+            if (instructions == null) {
+                var list = new ArrayList<Instruction>();
+                var in = input();
+                in.position(start);
+
+                while (in.position() < end) {
+                    int offset = in.position();
+                    var opcode = DECODER.readOpcode(in);
+
+                    if (opcode == Opcode.BLOCK || opcode == Opcode.LOOP || opcode == Opcode.IF) {
+                        var blockType = DECODER.decodeBlockType(in);
+                        int block = blockAt(offset);
+                        int elseOffset = blocks[3 * block + 1];
+                        int endOffset = blocks[3 * block + 2];
+
+                        if (opcode == Opcode.BLOCK) {
+                            list.add(ControlInstruction.block(blockType, new PackedInstructions(in.position(), endOffset)));
+                        } else if (opcode == Opcode.LOOP) {
+                            list.add(ControlInstruction.loop(blockType, new PackedInstructions(in.position(), endOffset)));
+                        } else if (elseOffset < 0) {
+                            list.add(ControlInstruction.ifInstr(blockType, new PackedInstructions(in.position(), endOffset), Collections.emptyList()));
+                        } else {
+                            list.add(ControlInstruction.ifInstr(blockType,
+                                    new PackedInstructions(in.position(), elseOffset),
+                                    new PackedInstructions(elseOffset + 1, endOffset)));
+                        }
+
+                        in.position(endOffset + 1);
+                    } else {
+                        list.add(DECODER.decodeInstruction(in, opcode, offset));
+                    }
+                }
+
+                instructions = list.toArray(new Instruction[0]);
+                decoded = instructions;
+            }
+
+            return instructions;
+        }
+
+        @Override
+        public Instruction get(int index) {
+            return decoded()[index];
+        }
+
+        @Override
+        public int size() {
+            return decoded().length;
+        }
+    }
+}
@@ -4,6 +4,8 @@
  */
 package com.opencastsoftware.wasm4j.encoding.binary;
 
+import org.jetbrains.annotations.Nullable;
+
 public enum SectionId {
     CUSTOM((byte) 0),
     TYPE((byte) 1),
@@ -20,6 +22,14 @@ public enum SectionId {
     DATA_COUNT((byte) 12),
     ;
 
+    private static final SectionId[] BY_ID = new SectionId[values().length];
+
+    static {
+        for (SectionId sectionId : values()) {
+            BY_ID[sectionId.id] = sectionId;
+        }
+    }
+
     private byte id;
 
     SectionId(byte id) {
@@ -29,4 +39,9 @@ public enum SectionId {
     public byte id() {
         return id;
     }
+
+    @Nullable
+    public static SectionId fromId(byte id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
 }
@@ -0,0 +1,459 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.MemType;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+// Parses a module from chunks of input as they arrive, reporting each part of the module to a StreamingModuleVisitor.
+// The code section is parsed one function body at a time, as soon as each body has arrived in full,
+// and each of its instructions is reported to the function's FlatInstructionVisitor without building an Expression.
+// Every other section is parsed once it has arrived in full.
+public class StreamingModuleParser<T extends Exception> {
+    private enum State {
+        HEADER, SECTION_HEADER, SECTION, CODE_COUNT, CODE_ENTRY, FINISHED
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final WasmBinaryDecoder decoder = new WasmBinaryDecoder();
+    private final StreamingModuleVisitor<T> visitor;
+
+    // Input that has been received but not yet parsed lies between the buffer's position and limit
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).limit(0);
+    // The offset within the input of the first byte of the buffer
+    private long bufferOffset = 0;
+
+    private State state = State.HEADER;
+    private int lastOrder = 0;
+    private SectionId sectionId = SectionId.CUSTOM;
+    private long sectionOffset;
+    private int sectionSize;
+    private long sectionEnd;
+
+    private int[] funcTypeIndices = new int[0];
+    private int codeCount = 0;
+    private int funcsParsed = 0;
+    @Nullable
+    private Integer dataCount = null;
+    private int dataSegments = 0;
+
+    public StreamingModuleParser(StreamingModuleVisitor<T> visitor) {
+        this.visitor = visitor;
+    }
+
+    // The number of bytes of input that have been parsed
+    public long offset() {
+        return bufferOffset + buffer.position();
+    }
+
+    // Consumes the remaining bytes of the chunk, and parses as much of the module as they complete
+    public void feed(ByteBuffer chunk) throws T {
+        if (state == State.FINISHED) {
+            throw new IllegalStateException("The module has already been finished");
+        }
+
+        append(chunk);
+
+        while (parseNext()) {
+            // Keep parsing until more input is required
+        }
+    }
+
+    // Signals the end of the input, which must complete the module
+    public void finish() throws T {
+        if (state == State.FINISHED) {
+            throw new IllegalStateException("The module has already been finished");
+        } else if (state != State.SECTION_HEADER || buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected end of input at offset " + (bufferOffset + buffer.limit()));
+        } else if (funcTypeIndices.length != funcsParsed) {
+            throw new IllegalArgumentException("Function and code section lengths differ");
+        } else if (dataCount != null && dataCount != dataSegments) {
+            throw new IllegalArgumentException("Data count and data section lengths differ");
+        }
+
+        state = State.FINISHED;
+        visitor.visitEnd();
+    }
+
+    private void append(ByteBuffer chunk) {
+        int length = chunk.remaining();
+
+        if (buffer.capacity() - buffer.limit() < length) {
+            // Discard the input that has already been parsed, growing the buffer if that is not enough
+            bufferOffset += buffer.position();
+
+            int required = buffer.remaining() + length;
+            if (required > buffer.capacity()) {
+                var grown = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(buffer);
+                buffer = grown;
+            } else {
+                buffer.compact();
+            }
+
+            buffer.flip();
+        }
+
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(limit + length).position(limit);
+        buffer.put(chunk);
+        buffer.position(position);
+    }
+
+    // Whether the buffer holds a complete LEB128 value at the position, or enough of one to know that it is too long
+    private boolean hasLEB128(int position) {
+        for (int i = position; i < buffer.limit(); i++) {
+            if ((buffer.get(i) & 0x80) == 0 || i - position + 1 == LEB128.MAX_INT_LENGTH) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private IllegalArgumentException malformedSection(RuntimeException cause) {
+        return new IllegalArgumentException("Malformed " + sectionId + " section at offset " + sectionOffset, cause);
+    }
+
+    private IllegalArgumentException malformedFunc(int funcIndex, long offset, RuntimeException cause) {
+        return new IllegalArgumentException("Malformed body of function " + funcIndex + " at offset " + offset, cause);
+    }
+
+    // Parses the next complete part of the input, returning false when more input is required
+    private boolean parseNext() throws T {
+        switch (state) {
+            case HEADER:
+                if (buffer.remaining() < WasmBinaryEncoder.WASM_MAGIC.length + WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION.length) {
+                    return false;
+                }
+                decoder.decodeHeader(buffer);
+                state = State.SECTION_HEADER;
+                return true;
+            case SECTION_HEADER:
+                if (!buffer.hasRemaining() || !hasLEB128(buffer.position() + 1)) {
+                    return false;
+                }
+                parseSectionHeader();
+                return true;
+            case SECTION:
+                if (buffer.remaining() < sectionSize) {
+                    return false;
+                }
+                parseSection();
+                state = State.SECTION_HEADER;
+                return true;
+            case CODE_COUNT:
+                if (!hasLEB128(buffer.position())) {
+                    return false;
+                }
+                parseCodeCount();
+                return true;
+            case CODE_ENTRY:
+                return parseCodeEntry();
+            default:
+                return false;
+        }
+    }
+
+    private void parseSectionHeader() throws T {
+        long offset = offset();
+        byte id = buffer.get();
+        var nextSectionId = SectionId.fromId(id);
+
+        if (nextSectionId == null) {
+            throw new IllegalArgumentException("Unknown section id " + id + " at offset " + offset);
+        } else if (nextSectionId != SectionId.CUSTOM) {
+            int order = WasmBinaryDecoder.SECTION_ORDER[nextSectionId.id()];
+            if (order <= lastOrder) {
+                throw new IllegalArgumentException("Unexpected " + nextSectionId + " section at offset " + offset);
+            }
+            lastOrder = order;
+        }
+
+        int size = LEB128.readUnsignedInt(buffer);
+        if (size < 0) {
+            throw new IllegalArgumentException("Section size " + Integer.toUnsignedString(size) + " is too large at offset " + offset);
+        }
+
+        this.sectionId = nextSectionId;
+        this.sectionOffset = offset;
+        this.sectionSize = size;
+        this.sectionEnd = offset() + size;
+        this.state = nextSectionId == SectionId.CODE ? State.CODE_COUNT : State.SECTION;
+
+        visitor.visitSection(nextSectionId, offset, size);
+    }
+
+    // A view of the next length bytes of the buffer, which are skipped
+    private ByteBuffer take(int length) {
+        var in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.limit(buffer.position() + length);
+        buffer.position(buffer.position() + length);
+        return in;
+    }
+
+    // Data segments and custom sections would otherwise be views of a buffer that is reused for later input
+    private ByteBuffer copy(ByteBuffer in) {
+        var copy = ByteBuffer.allocate(in.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(in).flip();
+        return copy;
+    }
+
+    private void checkConsumed(ByteBuffer in) {
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Size mismatch in " + sectionId + " section at offset " + sectionOffset);
+        }
+    }
+
+    private void parseSection() throws T {
+        var in = take(sectionSize);
+
+        try {
+            switch (sectionId) {
+                case CUSTOM: {
+                    var section = decoder.decodeCustomSection(copy(in));
+                    visitor.visitCustomSection(section);
+                    break;
+                }
+                case TYPE: {
+                    var types = decoder.decodeTypes(in);
+                    checkConsumed(in);
+                    for (int i = 0; i < types.size(); i++) {
+                        visitor.visitType(i, types.get(i));
+                    }
+                    break;
+                }
+                case IMPORT: {
+                    var imports = decoder.decodeImports(in);
+                    checkConsumed(in);
+                    for (Import imp : imports) {
+                        visitor.visitImport(imp);
+                    }
+                    break;
+                }
+                case FUNCTION: {
+                    funcTypeIndices = decoder.decodeFunctions(in);
+                    checkConsumed(in);
+                    for (int i = 0; i < funcTypeIndices.length; i++) {
+                        visitor.visitFunction(i, funcTypeIndices[i]);
+                    }
+                    break;
+                }
+                case TABLE: {
+                    var tables = decoder.decodeTables(in);
+                    checkConsumed(in);
+                    for (Table table : tables) {
+                        visitor.visitTable(table);
+                    }
+                    break;
+                }
+                case MEMORY: {
+                    var mems = decoder.decodeMemories(in);
+                    checkConsumed(in);
+                    for (MemType mem : mems) {
+                        visitor.visitMemory(mem);
+                    }
+                    break;
+                }
+                case GLOBAL: {
+                    var globals = decoder.decodeGlobals(in);
+                    checkConsumed(in);
+                    for (Global global : globals) {
+                        visitor.visitGlobal(global);
+                    }
+                    break;
+                }
+                case EXPORT: {
+                    var exports = decoder.decodeExports(in);
+                    checkConsumed(in);
+                    for (Export export : exports) {
+                        visitor.visitExport(export);
+                    }
+                    break;
+                }
+                case START: {
+                    int start = LEB128.readUnsignedInt(in);
+                    checkConsumed(in);
+                    visitor.visitStart(start);
+                    break;
+                }
+                case ELEMENT: {
+                    var elems = decoder.decodeElems(in);
+                    checkConsumed(in);
+                    for (Elem elem : elems) {
+                        visitor.visitElem(elem);
+                    }
+                    break;
+                }
+                case DATA_COUNT: {
+                    dataCount = LEB128.readUnsignedInt(in);
+                    checkConsumed(in);
+                    visitor.visitDataCount(dataCount);
+                    break;
+                }
+                case DATA: {
+                    var dataIn = copy(in);
+                    var datas = decoder.decodeData(dataIn);
+                    checkConsumed(dataIn);
+                    dataSegments = datas.size();
+                    for (Data data : datas) {
+                        visitor.visitData(data);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw malformedSection(e);
+        }
+    }
+
+    private void parseCodeCount() {
+        try {
+            codeCount = LEB128.readUnsignedInt(buffer);
+        } catch (IllegalArgumentException e) {
+            throw malformedSection(e);
+        }
+
+        if (offset() > sectionEnd) {
+            throw new IllegalArgumentException("Size mismatch in " + sectionId + " section at offset " + sectionOffset);
+        } else if (codeCount != funcTypeIndices.length) {
+            throw new IllegalArgumentException("Function and code section lengths differ at offset " + sectionOffset);
+        }
+
+        finishCodeEntry();
+    }
+
+    private void finishCodeEntry() {
+        if (funcsParsed < codeCount) {
+            state = State.CODE_ENTRY;
+        } else if (offset() != sectionEnd) {
+            throw new IllegalArgumentException("Size mismatch in " + sectionId + " section at offset " + sectionOffset);
+        } else {
+            state = State.SECTION_HEADER;
+        }
+    }
+
+    private boolean parseCodeEntry() throws T {
+        int position = buffer.position();
+        if (!hasLEB128(position)) {
+            return false;
+        }
+
+        long offset = offset();
+        int size = LEB128.readUnsignedInt(buffer);
+
+        if (size < 0 || offset() + size > sectionEnd) {
+            throw new IllegalArgumentException("Function body " + funcsParsed + " exceeds the code section at offset " + offset);
+        } else if (buffer.remaining() < size) {
+            // Wait for the rest of the body to arrive
+            buffer.position(position);
+            return false;
+        }
+
+        int funcIndex = funcsParsed++;
+        var in = take(size);
+
+        List<Locals> locals;
+        try {
+            locals = Collections.unmodifiableList(decoder.decodeLocals(in));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw malformedFunc(funcIndex, offset, e);
+        }
+
+        var instructionVisitor = visitor.visitFuncStart(funcIndex, funcTypeIndices[funcIndex], locals);
+        if (instructionVisitor != null) {
+            parseBody(in, funcIndex, offset, instructionVisitor);
+        }
+
+        visitor.visitFuncEnd(funcIndex);
+        finishCodeEntry();
+
+        return true;
+    }
+
+    private void parseBody(ByteBuffer in, int funcIndex, long entryOffset, FlatInstructionVisitor<T> instructionVisitor) throws T {
+        // Whether an else is permitted at each nesting depth, which is only until the else of an if
+        var elsePermitted = new BitSet();
+        int depth = 0;
+
+        while (true) {
+            int offset = in.position();
+
+            Opcode opcode;
+            BlockType blockType = null;
+            Instruction instruction = null;
+
+            try {
+                opcode = decoder.readOpcode(in);
+
+                switch (opcode) {
+                    case BLOCK:
+                    case LOOP:
+                    case IF:
+                        blockType = decoder.decodeBlockType(in);
+                        break;
+                    case ELSE:
+                        if (!elsePermitted.get(depth)) {
+                            throw WasmBinaryDecoder.malformed("Unexpected else", offset);
+                        }
+                        break;
+                    case END:
+                        if (depth == 0 && in.hasRemaining()) {
+                            throw WasmBinaryDecoder.malformed("Size mismatch in function body", offset);
+                        }
+                        break;
+                    default:
+                        instruction = decoder.decodeInstruction(in, opcode, offset);
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+                throw malformedFunc(funcIndex, entryOffset, e);
+            }
+
+            switch (opcode) {
+                case BLOCK:
+                    elsePermitted.clear(++depth);
+                    instructionVisitor.visitBlockStart(blockType);
+                    break;
+                case LOOP:
+                    elsePermitted.clear(++depth);
+                    instructionVisitor.visitLoopStart(blockType);
+                    break;
+                case IF:
+                    elsePermitted.set(++depth);
+                    instructionVisitor.visitIfStart(blockType);
+                    break;
+                case ELSE:
+                    elsePermitted.clear(depth);
+                    instructionVisitor.visitElse();
+                    break;
+                case END:
+                    instructionVisitor.visitEnd();
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                    break;
+                default:
+                    instructionVisitor.visitInstruction(instruction);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.MemType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+// Receives the parts of a module as they are parsed by a StreamingModuleParser.
+// Every method does nothing by default, so implementations only need to override the parts they are interested in.
+public interface StreamingModuleVisitor<T extends Exception> {
+    // The offset is that of the section id within the input, and the size that of the section's content
+    default void visitSection(SectionId sectionId, long offset, int size) throws T {}
+
+    default void visitCustomSection(CustomSection section) throws T {}
+
+    default void visitType(int typeIndex, FuncType type) throws T {}
+
+    default void visitImport(Import imp) throws T {}
+
+    // Function indices count the functions defined by the module, excluding imported functions
+    default void visitFunction(int funcIndex, int typeIndex) throws T {}
+
+    default void visitTable(Table table) throws T {}
+
+    default void visitMemory(MemType mem) throws T {}
+
+    default void visitGlobal(Global global) throws T {}
+
+    default void visitExport(Export export) throws T {}
+
+    default void visitStart(int funcIndex) throws T {}
+
+    default void visitElem(Elem elem) throws T {}
+
+    default void visitDataCount(int dataCount) throws T {}
+
+    // Returns a visitor for the instructions of the function's body, or null to skip decoding the body
+    @Nullable
+    default FlatInstructionVisitor<T> visitFuncStart(int funcIndex, int typeIndex, List<Locals> locals) throws T {
+        return null;
+    }
+
+    default void visitFuncEnd(int funcIndex) throws T {}
+
+    default void visitData(Data data) throws T {}
+
+    default void visitEnd() throws T {}
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Data;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Module;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+// Writes a module whose function bodies are supplied one at a time, so that each body can be dropped once written.
+// The code section size is written as a padded LEB128 placeholder and patched by seeking back once all bodies are written.
+public class StreamingModuleWriter {
+    private final SeekableByteChannel channel;
+    private final ByteChannelOutputStream output;
+    private final WasmBinaryEncoder encoder = new WasmBinaryEncoder();
+    private final WasmBinarySizer sizer = new WasmBinarySizer();
+    private final WasmTypeBinaryEncodingVisitor typeVisitor;
+    private final InstructionBinaryEncodingVisitor visitor;
+
+    private final int[] funcTypeIndices;
+    private final List<Data> datas;
+    private final long codeSizePosition;
+    private int funcsWritten = 0;
+    private boolean finished = false;
+
+    public StreamingModuleWriter(SeekableByteChannel channel, Module header, int[] funcTypeIndices) throws IOException {
+        if (!header.funcs().isEmpty()) {
+            throw new IllegalArgumentException("Function bodies must be supplied through writeFunc");
+        }
+
+        this.channel = channel;
+        this.output = new ByteChannelOutputStream(channel);
+        this.typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+        this.visitor = new InstructionBinaryEncodingVisitor(output, typeVisitor);
+        this.funcTypeIndices = funcTypeIndices.clone();
+        this.datas = header.datas();
+
+        encoder.encodeMagic(output);
+        encoder.encodeVersion(output);
+        encoder.encodeTypes(output, header.types());
+        encoder.encodeImports(output, header.imports());
+        encodeFunctionTypes();
+        encoder.encodeTables(output, header.tables());
+        encoder.encodeMemories(output, header.mems());
+        encoder.encodeGlobals(output, header.globals());
+        encoder.encodeExports(output, header.exports());
+        encoder.encodeStart(output, header.start());
+        encoder.encodeElems(output, header.elems());
+        encoder.encodeDataCount(output, header.datas());
+
+        if (funcTypeIndices.length > 0) {
+            output.write(SectionId.CODE.id());
+            output.flush();
+            this.codeSizePosition = channel.position();
+            output.write(new byte[LEB128.MAX_INT_LENGTH]);
+            LEB128.writeUnsigned(output, funcTypeIndices.length);
+        } else {
+            this.codeSizePosition = -1;
+        }
+    }
+
+    private void encodeFunctionTypes() throws IOException {
+        if (funcTypeIndices.length > 0) {
+            int size = LEB128.sizeOfUnsigned(funcTypeIndices.length);
+            for (int typeIndex : funcTypeIndices) {
+                size += LEB128.sizeOfUnsigned(typeIndex);
+            }
+
+            encoder.encodeSectionHeader(output, SectionId.FUNCTION, size);
+
+            LEB128.writeUnsigned(output, funcTypeIndices.length);
+            for (int typeIndex : funcTypeIndices) {
+                LEB128.writeUnsigned(output, typeIndex);
+            }
+        }
+    }
+
+    public int funcsWritten() {
+        return funcsWritten;
+    }
+
+    public void writeFunc(Func func) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The module has already been finished");
+        } else if (funcsWritten >= funcTypeIndices.length) {
+            throw new IllegalStateException("All " + funcTypeIndices.length + " functions have already been written");
+        } else if (func.typeIndex() != funcTypeIndices[funcsWritten]) {
+            throw new IllegalArgumentException(
+                    "Function " + funcsWritten + " has type index " + func.typeIndex() +
+                            " but was declared with type index " + funcTypeIndices[funcsWritten]);
+        }
+
+        LEB128.writeUnsigned(output, sizer.sizeOfFunc(func));
+        encoder.encodeFunc(output, typeVisitor, visitor, func);
+
+        funcsWritten++;
+    }
+
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        } else if (funcsWritten != funcTypeIndices.length) {
+            throw new IllegalStateException(
+                    "Only " + funcsWritten + " of " + funcTypeIndices.length + " functions have been written");
+        }
+
+        output.flush();
+
+        if (codeSizePosition >= 0) {
+            long end = channel.position();
+            long codeSize = end - codeSizePosition - LEB128.MAX_INT_LENGTH;
+
+            if (codeSize > 0xFFFFFFFFL) {
+                throw new IllegalStateException("The code section is larger than 4GiB");
+            }
+
+            var placeholder = new byte[LEB128.MAX_INT_LENGTH];
+            LEB128.writeUnsignedPadded(placeholder, 0, (int) codeSize, LEB128.MAX_INT_LENGTH);
+
+            channel.position(codeSizePosition);
+            var buffer = ByteBuffer.wrap(placeholder);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.position(end);
+        }
+
+        encoder.encodeData(output, datas);
+        output.flush();
+
+        finished = true;
+    }
+}
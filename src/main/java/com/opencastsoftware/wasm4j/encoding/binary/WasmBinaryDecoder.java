@@ -0,0 +1,1407 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.WasmDecoder;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.table.TableInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// Decodes the binary format written by WasmBinaryEncoder.
+// Data segments and custom sections are views of the input rather than copies, so the input must not be modified afterwards.
+public class WasmBinaryDecoder implements WasmDecoder<RuntimeException> {
+    public enum BodyDecoding {
+        // Function bodies are decoded along with the rest of the module
+        EAGER,
+        // Function bodies are decoded on first access and then retained
+        LAZY,
+        // Function bodies are decoded on first access and softly retained, so they can be reclaimed and decoded again
+        LAZY_SOFT,
+        // Function bodies are decoded along with the rest of the module into a PackedExpression
+        PACKED
+    }
+
+    // The order in which non-custom sections must appear, indexed by section id
+    static final int[] SECTION_ORDER = new int[SectionId.values().length];
+
+    static {
+        var order = new SectionId[]{
+                SectionId.TYPE, SectionId.IMPORT, SectionId.FUNCTION, SectionId.TABLE, SectionId.MEMORY, SectionId.GLOBAL,
+                SectionId.EXPORT, SectionId.START, SectionId.ELEMENT, SectionId.DATA_COUNT, SectionId.CODE, SectionId.DATA
+        };
+
+        for (int i = 0; i < order.length; i++) {
+            SECTION_ORDER[order[i].id()] = i + 1;
+        }
+    }
+
+    private final BodyDecoding bodyDecoding;
+    @Nullable
+    private final Executor executor;
+
+    public WasmBinaryDecoder() {
+        this(BodyDecoding.EAGER);
+    }
+
+    // With lazy body decoding the input must remain unchanged for as long as the module is in use,
+    // and malformed function bodies are only reported when they are accessed
+    public WasmBinaryDecoder(BodyDecoding bodyDecoding) {
+        this.bodyDecoding = bodyDecoding;
+        this.executor = null;
+    }
+
+    // Function bodies are decoded eagerly, in chunks of WasmBinaryEncoder.PARALLEL_CHUNK_SIZE on the executor
+    public WasmBinaryDecoder(Executor executor) {
+        this.bodyDecoding = BodyDecoding.EAGER;
+        this.executor = executor;
+    }
+
+    static IllegalArgumentException malformed(String message, int offset) {
+        return new IllegalArgumentException(message + " at offset " + offset);
+    }
+
+    private static IllegalArgumentException truncated(ByteBuffer in, RuntimeException cause) {
+        return new IllegalArgumentException("Unexpected end of input at offset " + in.position(), cause);
+    }
+
+    void decodeHeader(ByteBuffer in) {
+        for (byte b : WasmBinaryEncoder.WASM_MAGIC) {
+            if (in.get() != b) {
+                throw malformed("Missing WebAssembly magic number", 0);
+            }
+        }
+
+        for (byte b : WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION) {
+            if (in.get() != b) {
+                throw malformed("Unsupported binary format version", WasmBinaryEncoder.WASM_MAGIC.length);
+            }
+        }
+    }
+
+    // Every vector element takes at least one byte, which bounds the allocations made for a malformed length
+    int readCount(ByteBuffer in) {
+        int offset = in.position();
+        int count = LEB128.readUnsignedInt(in);
+
+        if (count < 0 || count > in.remaining()) {
+            throw malformed("Length " + Integer.toUnsignedString(count) + " exceeds the remaining input", offset);
+        }
+
+        return count;
+    }
+
+    private String readName(ByteBuffer in) {
+        int length = readCount(in);
+        int position = in.position();
+
+        String name;
+        if (in.hasArray()) {
+            name = new String(in.array(), in.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        } else {
+            var bytes = new byte[length];
+            in.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        in.position(position + length);
+
+        return name;
+    }
+
+    // A view of the next length bytes of the input, which are skipped
+    private ByteBuffer readSlice(ByteBuffer in, int length) {
+        int position = in.position();
+        var slice = in.duplicate();
+        slice.limit(position + length);
+        in.position(position + length);
+        return slice.slice();
+    }
+
+    @Override
+    public Module decodeModule(ByteBuffer input) {
+        var in = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            return decodeModuleSections(in);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw truncated(in, e);
+        }
+    }
+
+    private Module decodeModuleSections(ByteBuffer in) {
+        decodeHeader(in);
+
+        List<FuncType> types = new ArrayList<>();
+        List<Import> imports = new ArrayList<>();
+        int[] funcTypeIndices = new int[0];
+        List<Table> tables = new ArrayList<>();
+        List<MemType> mems = new ArrayList<>();
+        List<Global> globals = new ArrayList<>();
+        List<Export> exports = new ArrayList<>();
+        Integer start = null;
+        List<Elem> elems = new ArrayList<>();
+        Integer dataCount = null;
+        List<Func> funcs = new ArrayList<>();
+        List<Data> datas = new ArrayList<>();
+
+        int lastOrder = 0;
+        while (in.hasRemaining()) {
+            int sectionOffset = in.position();
+            var sectionId = SectionId.fromId(in.get());
+
+            if (sectionId == null) {
+                throw malformed("Unknown section id " + in.get(sectionOffset), sectionOffset);
+            } else if (sectionId != SectionId.CUSTOM) {
+                int order = SECTION_ORDER[sectionId.id()];
+                if (order <= lastOrder) {
+                    throw malformed("Unexpected " + sectionId + " section", sectionOffset);
+                }
+                lastOrder = order;
+            }
+
+            int size = readCount(in);
+            int end = in.position() + size;
+
+            // Reads past the end of the section fail instead of running into the next section
+            in.limit(end);
+
+            switch (sectionId) {
+                case CUSTOM:
+                    in.position(end);
+                    break;
+                case TYPE:
+                    types = decodeTypes(in);
+                    break;
+                case IMPORT:
+                    imports = decodeImports(in);
+                    break;
+                case FUNCTION:
+                    funcTypeIndices = decodeFunctions(in);
+                    break;
+                case TABLE:
+                    tables = decodeTables(in);
+                    break;
+                case MEMORY:
+                    mems = decodeMemories(in);
+                    break;
+                case GLOBAL:
+                    globals = decodeGlobals(in);
+                    break;
+                case EXPORT:
+                    exports = decodeExports(in);
+                    break;
+                case START:
+                    start = LEB128.readUnsignedInt(in);
+                    break;
+                case ELEMENT:
+                    elems = decodeElems(in);
+                    break;
+                case DATA_COUNT:
+                    dataCount = LEB128.readUnsignedInt(in);
+                    break;
+                case CODE:
+                    funcs = decodeCode(in, funcTypeIndices);
+                    break;
+                case DATA:
+                    datas = decodeData(in);
+                    break;
+            }
+
+            if (in.position() != end) {
+                throw malformed("Size mismatch in " + sectionId + " section", sectionOffset);
+            }
+
+            in.limit(in.capacity());
+        }
+
+        if (funcTypeIndices.length != funcs.size()) {
+            throw malformed("Function and code section lengths differ", in.position());
+        } else if (dataCount != null && dataCount != datas.size()) {
+            throw malformed("Data count and data section lengths differ", in.position());
+        }
+
+        return new Module(types, funcs, tables, mems, globals, elems, datas, start, imports, exports);
+    }
+
+    public List<CustomSection> decodeCustomSections(ByteBuffer input) {
+        var in = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+        var sections = new ArrayList<CustomSection>();
+
+        try {
+            decodeHeader(in);
+
+            while (in.hasRemaining()) {
+                int sectionOffset = in.position();
+                byte id = in.get();
+                int size = readCount(in);
+                int end = in.position() + size;
+
+                if (id == SectionId.CUSTOM.id()) {
+                    in.limit(end);
+                    sections.add(decodeCustomSection(in));
+                    in.limit(in.capacity());
+                } else if (SectionId.fromId(id) == null) {
+                    throw malformed("Unknown section id " + id, sectionOffset);
+                }
+
+                in.position(end);
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw truncated(in, e);
+        }
+
+        return sections;
+    }
+
+    // Decodes the name and content of a custom section, which extends to the limit of the input
+    CustomSection decodeCustomSection(ByteBuffer in) {
+        var name = readName(in);
+        return new CustomSection(name, readSlice(in, in.remaining()));
+    }
+
+    // Types
+    private ValType decodeValType(ByteBuffer in) {
+        int offset = in.position();
+        byte b = in.get();
+
+        if (b == TypeOpcode.I32.opcode()) {
+            return NumType.i32();
+        } else if (b == TypeOpcode.I64.opcode()) {
+            return NumType.i64();
+        } else if (b == TypeOpcode.F32.opcode()) {
+            return NumType.f32();
+        } else if (b == TypeOpcode.F64.opcode()) {
+            return NumType.f64();
+        } else if (b == TypeOpcode.V128.opcode()) {
+            return VecType.v128();
+        } else if (b == TypeOpcode.HEAP_FUNC.opcode()) {
+            // The short forms funcref and externref are nullable
+            return RefType.nullable(HeapType.func());
+        } else if (b == TypeOpcode.HEAP_EXTERN.opcode()) {
+            return RefType.nullable(HeapType.extern());
+        } else if (b == TypeOpcode.REF_NULLABLE.opcode()) {
+            return RefType.nullable(decodeHeapType(in));
+        } else if (b == TypeOpcode.REF.opcode()) {
+            return RefType.nonNullable(decodeHeapType(in));
+        } else {
+            throw malformed("Unknown value type 0x" + Integer.toHexString(b & 0xFF), offset);
+        }
+    }
+
+    private RefType decodeRefType(ByteBuffer in) {
+        int offset = in.position();
+        var valType = decodeValType(in);
+
+        if (!(valType instanceof RefType)) {
+            throw malformed("Expected a reference type", offset);
+        }
+
+        return (RefType) valType;
+    }
+
+    private HeapType decodeHeapType(ByteBuffer in) {
+        int offset = in.position();
+        byte b = in.get(offset);
+
+        if (b == TypeOpcode.HEAP_FUNC.opcode()) {
+            in.get();
+            return HeapType.func();
+        } else if (b == TypeOpcode.HEAP_EXTERN.opcode()) {
+            in.get();
+            return HeapType.extern();
+        } else {
+            return HeapType.typeId(readTypeIndex(in));
+        }
+    }
+
+    // Type indices in heap types and block types are encoded as non-negative signed values
+    private int readTypeIndex(ByteBuffer in) {
+        int offset = in.position();
+        int typeIndex = LEB128.readSignedInt(in);
+
+        if (typeIndex < 0) {
+            throw malformed("Unknown type 0x" + Integer.toHexString(in.get(offset) & 0xFF), offset);
+        }
+
+        return typeIndex;
+    }
+
+    @Nullable
+    BlockType decodeBlockType(ByteBuffer in) {
+        byte b = in.get(in.position());
+
+        if (b == 0x40) {
+            in.get();
+            return null; // Empty type
+        } else if ((b & 0xC0) == 0x40) {
+            // Value types are single bytes that would be negative as signed values
+            return decodeValType(in);
+        } else {
+            return TypeId.of(readTypeIndex(in));
+        }
+    }
+
+    private Limits decodeLimits(ByteBuffer in) {
+        int offset = in.position();
+        byte flag = in.get();
+
+        if (flag == 0x00) {
+            return Limits.of(LEB128.readUnsignedInt(in));
+        } else if (flag == 0x01) {
+            int min = LEB128.readUnsignedInt(in);
+            return Limits.of(min, LEB128.readUnsignedInt(in));
+        } else {
+            throw malformed("Unknown limits flag " + flag, offset);
+        }
+    }
+
+    private List<ValType> decodeResultType(ByteBuffer in) {
+        int count = readCount(in);
+        var valTypes = new ArrayList<ValType>(count);
+
+        for (int i = 0; i < count; i++) {
+            valTypes.add(decodeValType(in));
+        }
+
+        return valTypes;
+    }
+
+    private FuncType decodeFuncType(ByteBuffer in) {
+        int offset = in.position();
+
+        if (in.get() != TypeOpcode.FUNC.opcode()) {
+            throw malformed("Expected a function type", offset);
+        }
+
+        var arguments = decodeResultType(in);
+        return ExternType.func(arguments, decodeResultType(in));
+    }
+
+    private TableType decodeTableType(ByteBuffer in) {
+        var refType = decodeRefType(in);
+        return ExternType.table(decodeLimits(in), refType);
+    }
+
+    private MemType decodeMemType(ByteBuffer in) {
+        return ExternType.mem(decodeLimits(in));
+    }
+
+    private GlobalType decodeGlobalType(ByteBuffer in) {
+        var valType = decodeValType(in);
+
+        int offset = in.position();
+        byte mutability = in.get();
+
+        if (mutability == 0x00) {
+            return GlobalType.immutable(valType);
+        } else if (mutability == 0x01) {
+            return GlobalType.mutable(valType);
+        } else {
+            throw malformed("Unknown mutability " + mutability, offset);
+        }
+    }
+
+    // Sections
+    List<FuncType> decodeTypes(ByteBuffer in) {
+        int count = readCount(in);
+        var types = new ArrayList<FuncType>(count);
+        // Repeated types share one instance
+        var interner = new TypeInterner();
+
+        for (int i = 0; i < count; i++) {
+            types.add(interner.intern(decodeFuncType(in)));
+        }
+
+        return types;
+    }
+
+    private Import.Descriptor decodeImportDescriptor(ByteBuffer in) {
+        int offset = in.position();
+        byte kind = in.get();
+
+        switch (kind) {
+            case 0x00:
+                return Import.Descriptor.func(LEB128.readUnsignedInt(in));
+            case 0x01:
+                return Import.Descriptor.table(decodeTableType(in));
+            case 0x02:
+                return Import.Descriptor.mem(decodeMemType(in));
+            case 0x03:
+                return Import.Descriptor.global(decodeGlobalType(in));
+            default:
+                throw malformed("Unknown import kind " + kind, offset);
+        }
+    }
+
+    List<Import> decodeImports(ByteBuffer in) {
+        int count = readCount(in);
+        var imports = new ArrayList<Import>(count);
+
+        for (int i = 0; i < count; i++) {
+            var module = readName(in);
+            var name = readName(in);
+            imports.add(new Import(module, name, decodeImportDescriptor(in)));
+        }
+
+        return imports;
+    }
+
+    int[] decodeFunctions(ByteBuffer in) {
+        int count = readCount(in);
+        var typeIndices = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            typeIndices[i] = LEB128.readUnsignedInt(in);
+        }
+
+        return typeIndices;
+    }
+
+    List<Table> decodeTables(ByteBuffer in) {
+        int count = readCount(in);
+        var tables = new ArrayList<Table>(count);
+
+        for (int i = 0; i < count; i++) {
+            int offset = in.position();
+
+            if (in.get(offset) == 0x40) {
+                in.get();
+                if (in.get() != 0x00) {
+                    throw malformed("Malformed table with initializer", offset);
+                }
+
+                var tableType = decodeTableType(in);
+                tables.add(new Table(tableType, decodeConstantExpression(in)));
+            } else {
+                // Tables without an initializer are filled with null references, so they must be nullable
+                var tableType = decodeTableType(in);
+                if (!tableType.refType().isNullable()) {
+                    throw malformed("Table of non-nullable references without an initializer", offset);
+                }
+                var init = ConstantExpression.of(ReferenceInstruction.ref_null(tableType.refType().heapType()));
+                tables.add(new Table(tableType, init));
+            }
+        }
+
+        return tables;
+    }
+
+    List<MemType> decodeMemories(ByteBuffer in) {
+        int count = readCount(in);
+        var mems = new ArrayList<MemType>(count);
+
+        for (int i = 0; i < count; i++) {
+            mems.add(decodeMemType(in));
+        }
+
+        return mems;
+    }
+
+    List<Global> decodeGlobals(ByteBuffer in) {
+        int count = readCount(in);
+        var globals = new ArrayList<Global>(count);
+
+        for (int i = 0; i < count; i++) {
+            var globalType = decodeGlobalType(in);
+            globals.add(new Global(globalType, decodeConstantExpression(in)));
+        }
+
+        return globals;
+    }
+
+    private Export.Descriptor decodeExportDescriptor(ByteBuffer in) {
+        int offset = in.position();
+        byte kind = in.get();
+        int index = LEB128.readUnsignedInt(in);
+
+        switch (kind) {
+            case 0x00:
+                return Export.Descriptor.func(index);
+            case 0x01:
+                return Export.Descriptor.table(index);
+            case 0x02:
+                return Export.Descriptor.mem(index);
+            case 0x03:
+                return Export.Descriptor.global(index);
+            default:
+                throw malformed("Unknown export kind " + kind, offset);
+        }
+    }
+
+    List<Export> decodeExports(ByteBuffer in) {
+        int count = readCount(in);
+        var exports = new ArrayList<Export>(count);
+
+        for (int i = 0; i < count; i++) {
+            var name = readName(in);
+            exports.add(new Export(name, decodeExportDescriptor(in)));
+        }
+
+        return exports;
+    }
+
+    private List<ConstantExpression> decodeFuncIndices(ByteBuffer in) {
+        int count = readCount(in);
+        var init = new ArrayList<ConstantExpression>(count);
+
+        for (int i = 0; i < count; i++) {
+            init.add(ConstantExpression.of(ReferenceInstruction.ref_func(LEB128.readUnsignedInt(in))));
+        }
+
+        return init;
+    }
+
+    private List<ConstantExpression> decodeInitExpressions(ByteBuffer in) {
+        int count = readCount(in);
+        var init = new ArrayList<ConstantExpression>(count);
+
+        for (int i = 0; i < count; i++) {
+            init.add(decodeConstantExpression(in));
+        }
+
+        return init;
+    }
+
+    private void decodeElemKind(ByteBuffer in) {
+        int offset = in.position();
+
+        if (in.get() != 0x00) {
+            throw malformed("Unknown element kind", offset);
+        }
+    }
+
+    List<Elem> decodeElems(ByteBuffer in) {
+        int count = readCount(in);
+        var elems = new ArrayList<Elem>(count);
+
+        // Segments of function indices hold nullable function references
+        var funcRef = RefType.nullable(HeapType.func());
+
+        for (int i = 0; i < count; i++) {
+            int offset = in.position();
+            int indicator = LEB128.readUnsignedInt(in);
+
+            // Bit 0 indicates a non-active segment, bit 1 an explicit table index or a declarative segment,
+            // and bit 2 the use of element types and element expressions
+            switch (indicator) {
+                case 0b000: {
+                    var mode = Elem.Mode.active(0, decodeConstantExpression(in));
+                    elems.add(new Elem(funcRef, decodeFuncIndices(in), mode));
+                    break;
+                }
+                case 0b001: {
+                    decodeElemKind(in);
+                    elems.add(new Elem(funcRef, decodeFuncIndices(in), Elem.Mode.passive()));
+                    break;
+                }
+                case 0b010: {
+                    int tableIndex = LEB128.readUnsignedInt(in);
+                    var mode = Elem.Mode.active(tableIndex, decodeConstantExpression(in));
+                    decodeElemKind(in);
+                    elems.add(new Elem(funcRef, decodeFuncIndices(in), mode));
+                    break;
+                }
+                case 0b011: {
+                    decodeElemKind(in);
+                    elems.add(new Elem(funcRef, decodeFuncIndices(in), Elem.Mode.declarative()));
+                    break;
+                }
+                case 0b100: {
+                    var mode = Elem.Mode.active(0, decodeConstantExpression(in));
+                    elems.add(new Elem(funcRef, decodeInitExpressions(in), mode));
+                    break;
+                }
+                case 0b101: {
+                    var type = decodeRefType(in);
+                    elems.add(new Elem(type, decodeInitExpressions(in), Elem.Mode.passive()));
+                    break;
+                }
+                case 0b110: {
+                    int tableIndex = LEB128.readUnsignedInt(in);
+                    var mode = Elem.Mode.active(tableIndex, decodeConstantExpression(in));
+                    var type = decodeRefType(in);
+                    elems.add(new Elem(type, decodeInitExpressions(in), mode));
+                    break;
+                }
+                case 0b111: {
+                    var type = decodeRefType(in);
+                    elems.add(new Elem(type, decodeInitExpressions(in), Elem.Mode.declarative()));
+                    break;
+                }
+                default:
+                    throw malformed("Unknown element segment indicator " + indicator, offset);
+            }
+        }
+
+        return elems;
+    }
+
+    List<Func> decodeCode(ByteBuffer in, int[] funcTypeIndices) {
+        int offset = in.position();
+        int count = readCount(in);
+
+        if (count != funcTypeIndices.length) {
+            throw malformed("Function and code section lengths differ", offset);
+        }
+
+        if (executor != null && count > WasmBinaryEncoder.PARALLEL_CHUNK_SIZE) {
+            return decodeCodeParallel(in, funcTypeIndices);
+        }
+
+        int sectionEnd = in.limit();
+        var funcs = new ArrayList<Func>(count);
+        // Lazily decoded functions share a view of the input
+        var code = isLazy() ? in.asReadOnlyBuffer() : null;
+
+        for (int i = 0; i < count; i++) {
+            int size = readCount(in);
+            int end = in.position() + size;
+
+            if (isLazy()) {
+                // Only the location of the entry is recorded, so that it can be decoded later
+                funcs.add(new LazyFunc(this, funcTypeIndices[i], code, in.position(), size, bodyDecoding == BodyDecoding.LAZY_SOFT));
+                in.position(end);
+                continue;
+            }
+
+            in.limit(end);
+            funcs.add(decodeFunc(in, funcTypeIndices[i]));
+
+            if (in.position() != end) {
+                throw malformed("Size mismatch in function " + i, end);
+            }
+
+            in.limit(sectionEnd);
+        }
+
+        return funcs;
+    }
+
+    private List<Func> decodeCodeParallel(ByteBuffer in, int[] funcTypeIndices) {
+        int count = funcTypeIndices.length;
+        var offsets = new int[count];
+        var sizes = new int[count];
+
+        // Entries are split up by their size prefixes before any of them are decoded
+        for (int i = 0; i < count; i++) {
+            sizes[i] = readCount(in);
+            offsets[i] = in.position();
+            in.position(offsets[i] + sizes[i]);
+        }
+
+        var code = in.asReadOnlyBuffer();
+        var funcs = new Func[count];
+        var tasks = new ArrayList<CompletableFuture<Void>>();
+
+        for (int from = 0; from < count; from += WasmBinaryEncoder.PARALLEL_CHUNK_SIZE) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(from + WasmBinaryEncoder.PARALLEL_CHUNK_SIZE, count);
+
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    funcs[i] = decodeFunc(code, offsets[i], sizes[i], funcTypeIndices[i]);
+                }
+            }, executor));
+        }
+
+        // Chunks are joined in index order, so the first malformed function is always the one reported
+        try {
+            for (CompletableFuture<Void> task : tasks) {
+                task.join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+
+        return new ArrayList<>(Arrays.asList(funcs));
+    }
+
+    private boolean isLazy() {
+        return bodyDecoding == BodyDecoding.LAZY || bodyDecoding == BodyDecoding.LAZY_SOFT;
+    }
+
+    // Decodes the locals and body of a code entry, excluding its size prefix
+    Func decodeFunc(ByteBuffer in, int typeIndex) {
+        var locals = decodeLocals(in);
+        var body = bodyDecoding == BodyDecoding.PACKED ? PackedExpression.decode(in) : decodeExpression(in);
+        return Func.compressed(typeIndex, locals, body);
+    }
+
+    List<Locals> decodeLocals(ByteBuffer in) {
+        int count = readCount(in);
+        var locals = new ArrayList<Locals>(count);
+
+        long localCount = 0;
+        for (int i = 0; i < count; i++) {
+            int offset = in.position();
+            int n = LEB128.readUnsignedInt(in);
+
+            localCount += Integer.toUnsignedLong(n);
+            if (localCount > Integer.MAX_VALUE) {
+                throw malformed("Too many locals", offset);
+            }
+
+            locals.add(Locals.of(n, decodeValType(in)));
+        }
+
+        return locals;
+    }
+
+    private static ByteBuffer entry(ByteBuffer input, int offset, int length) {
+        var in = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.limit(offset + length).position(offset);
+        return in;
+    }
+
+    // Decodes a code entry whose location was recorded by a LazyFunc
+    Func decodeFunc(ByteBuffer input, int offset, int length, int typeIndex) {
+        var in = entry(input, offset, length);
+
+        try {
+            var func = decodeFunc(in, typeIndex);
+
+            if (in.hasRemaining()) {
+                throw malformed("Size mismatch in function body", offset);
+            }
+
+            return func;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw truncated(in, e);
+        }
+    }
+
+    // Decodes the locals of a code entry whose location was recorded by a LazyFunc, leaving its body encoded
+    List<Locals> decodeLocals(ByteBuffer input, int offset, int length) {
+        var in = entry(input, offset, length);
+
+        try {
+            return decodeLocals(in);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw truncated(in, e);
+        }
+    }
+
+    // Reports the body of a code entry whose location was recorded by a LazyFunc, without decoding it into instructions
+    <T extends Exception> void replayBody(ByteBuffer input, int offset, int length, FlatInstructionVisitor<T> visitor) throws T {
+        var in = entry(input, offset, length);
+
+        try {
+            decodeLocals(in);
+            PackedExpression.replay(in, visitor);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw truncated(in, e);
+        }
+
+        if (in.hasRemaining()) {
+            throw malformed("Size mismatch in function body", offset);
+        }
+    }
+
+    List<Data> decodeData(ByteBuffer in) {
+        int count = readCount(in);
+        var datas = new ArrayList<Data>(count);
+
+        for (int i = 0; i < count; i++) {
+            int offset = in.position();
+            int indicator = LEB128.readUnsignedInt(in);
+
+            Data.Mode mode;
+            switch (indicator) {
+                case 0b00:
+                    mode = Data.Mode.active(0, decodeConstantExpression(in));
+                    break;
+                case 0b01:
+                    mode = Data.Mode.passive();
+                    break;
+                case 0b10: {
+                    int memIndex = LEB128.readUnsignedInt(in);
+                    mode = Data.Mode.active(memIndex, decodeConstantExpression(in));
+                    break;
+                }
+                default:
+                    throw malformed("Unknown data segment indicator " + indicator, offset);
+            }
+
+            int length = readCount(in);
+            datas.add(new Data(readSlice(in, length), mode));
+        }
+
+        return datas;
+    }
+
+    // Instructions
+    Expression decodeExpression(ByteBuffer in) {
+        return new Expression(decodeNested(in, false));
+    }
+
+    ConstantExpression decodeConstantExpression(ByteBuffer in) {
+        var instructions = new ArrayList<ConstantInstruction>();
+
+        while (true) {
+            int offset = in.position();
+            var opcode = readOpcode(in);
+
+            if (opcode == Opcode.END) {
+                return new ConstantExpression(instructions);
+            }
+
+            var instr = decodeInstruction(in, opcode, offset);
+            if (!(instr instanceof ConstantInstruction)) {
+                throw malformed("Non-constant instruction " + opcode + " in constant expression", offset);
+            }
+
+            instructions.add((ConstantInstruction) instr);
+        }
+    }
+
+    // A structured instruction whose instructions are being decoded
+    private static final class OpenBlock {
+        final Opcode opcode;
+        @Nullable
+        final BlockType blockType;
+        // The instructions of the enclosing block, to which this one is added once it ends
+        final List<Instruction> enclosing;
+        @Nullable
+        List<Instruction> consequent;
+
+        OpenBlock(Opcode opcode, @Nullable BlockType blockType, List<Instruction> enclosing) {
+            this.opcode = opcode;
+            this.blockType = blockType;
+            this.enclosing = enclosing;
+        }
+    }
+
+    // Decodes the instructions of an expression up to and including its end, or a single structured instruction if single is set.
+    // Open blocks are kept on a stack in the heap rather than decoded recursively, so that any depth of nesting can be decoded.
+    private List<Instruction> decodeNested(ByteBuffer in, boolean single) {
+        var open = new ArrayDeque<OpenBlock>();
+        List<Instruction> instructions = new ArrayList<>();
+
+        while (true) {
+            int offset = in.position();
+            var opcode = readOpcode(in);
+
+            switch (opcode) {
+                case BLOCK:
+                case LOOP:
+                case IF:
+                    open.push(new OpenBlock(opcode, decodeBlockType(in), instructions));
+                    instructions = new ArrayList<>();
+                    break;
+                case ELSE: {
+                    var block = open.peek();
+                    if (block == null || block.opcode != Opcode.IF || block.consequent != null) {
+                        throw malformed("Unexpected else", offset);
+                    }
+                    block.consequent = instructions;
+                    instructions = new ArrayList<>();
+                    break;
+                }
+                case END: {
+                    var block = open.poll();
+                    if (block == null) {
+                        return instructions;
+                    }
+
+                    Instruction instr;
+                    if (block.opcode == Opcode.BLOCK) {
+                        instr = ControlInstruction.block(block.blockType, instructions);
+                    } else if (block.opcode == Opcode.LOOP) {
+                        instr = ControlInstruction.loop(block.blockType, instructions);
+                    } else if (block.consequent != null) {
+                        instr = ControlInstruction.ifInstr(block.blockType, block.consequent, instructions);
+                    } else {
+                        instr = ControlInstruction.ifInstr(block.blockType, instructions, Collections.emptyList());
+                    }
+
+                    instructions = block.enclosing;
+                    instructions.add(instr);
+
+                    if (single && open.isEmpty()) {
+                        return instructions;
+                    }
+
+                    break;
+                }
+                default:
+                    instructions.add(decodeInstruction(in, opcode, offset));
+            }
+        }
+    }
+
+    Opcode readOpcode(ByteBuffer in) {
+        int offset = in.position();
+        int b = in.get() & 0xFF;
+
+        var opcode = b == Opcode.PREFIX_FC || b == Opcode.PREFIX_FD
+                ? Opcode.fromPrefixed(b, LEB128.readUnsignedInt(in))
+                : Opcode.fromByte(b);
+
+        if (opcode == null) {
+            throw malformed("Unknown opcode 0x" + Integer.toHexString(b), offset);
+        }
+
+        return opcode;
+    }
+
+    private Instruction decodeMemArg(ByteBuffer in, Opcode opcode) {
+        int align = LEB128.readUnsignedInt(in);
+        int offset = LEB128.readUnsignedInt(in);
+
+        switch (opcode) {
+            case I32_LOAD:
+                return MemoryInstruction.i32_load(offset, align);
+            case I64_LOAD:
+                return MemoryInstruction.i64_load(offset, align);
+            case F32_LOAD:
+                return MemoryInstruction.f32_load(offset, align);
+            case F64_LOAD:
+                return MemoryInstruction.f64_load(offset, align);
+            case I32_STORE:
+                return MemoryInstruction.i32_store(offset, align);
+            case I64_STORE:
+                return MemoryInstruction.i64_store(offset, align);
+            case F32_STORE:
+                return MemoryInstruction.f32_store(offset, align);
+            default:
+                return MemoryInstruction.f64_store(offset, align);
+        }
+    }
+
+    Instruction decodeInstruction(ByteBuffer in, Opcode opcode, int offset) {
+        switch (opcode) {
+            // Control instructions
+            case BLOCK:
+            case LOOP:
+            case IF:
+                in.position(offset);
+                return decodeNested(in, true).get(0);
+            case BR:
+                return ControlInstruction.br(LEB128.readUnsignedInt(in));
+            case BR_IF:
+                return ControlInstruction.br_if(LEB128.readUnsignedInt(in));
+            case BR_ON_NULL:
+                return ControlInstruction.br_on_null(LEB128.readUnsignedInt(in));
+            case BR_ON_NON_NULL:
+                return ControlInstruction.br_on_non_null(LEB128.readUnsignedInt(in));
+            case BR_TABLE: {
+                int count = readCount(in);
+                var labels = new int[count];
+                for (int i = 0; i < count; i++) {
+                    labels[i] = LEB128.readUnsignedInt(in);
+                }
+                return ControlInstruction.br_table(labels, LEB128.readUnsignedInt(in));
+            }
+            case CALL:
+                return ControlInstruction.call(LEB128.readUnsignedInt(in));
+            case CALL_INDIRECT: {
+                int typeIndex = LEB128.readUnsignedInt(in);
+                return ControlInstruction.call_indirect(LEB128.readUnsignedInt(in), typeIndex);
+            }
+            case CALL_REF:
+                return ControlInstruction.call_ref(LEB128.readUnsignedInt(in));
+            // Parametric instructions
+            case SELECT:
+                return ParametricInstruction.select();
+            case SELECT_TYPE: {
+                if (readCount(in) != 1) {
+                    throw malformed("Typed select must have exactly one type", offset);
+                }
+                return ParametricInstruction.select(decodeValType(in));
+            }
+            // Variable instructions
+            case LOCAL_GET:
+                return VariableInstruction.local_get(LEB128.readUnsignedInt(in));
+            case LOCAL_SET:
+                return VariableInstruction.local_set(LEB128.readUnsignedInt(in));
+            case LOCAL_TEE:
+                return VariableInstruction.local_tee(LEB128.readUnsignedInt(in));
+            case GLOBAL_GET:
+                return VariableInstruction.global_get(LEB128.readUnsignedInt(in));
+            case GLOBAL_SET:
+                return VariableInstruction.global_set(LEB128.readUnsignedInt(in));
+            // Table instructions
+            case TABLE_GET:
+                return TableInstruction.table_get(LEB128.readUnsignedInt(in));
+            case TABLE_SET:
+                return TableInstruction.table_set(LEB128.readUnsignedInt(in));
+            case TABLE_SIZE:
+                return TableInstruction.table_size(LEB128.readUnsignedInt(in));
+            case TABLE_GROW:
+                return TableInstruction.table_grow(LEB128.readUnsignedInt(in));
+            case TABLE_FILL:
+                return TableInstruction.table_fill(LEB128.readUnsignedInt(in));
+            case TABLE_COPY: {
+                int targetTableIndex = LEB128.readUnsignedInt(in);
+                return TableInstruction.table_copy(targetTableIndex, LEB128.readUnsignedInt(in));
+            }
+            case TABLE_INIT: {
+                int elemIndex = LEB128.readUnsignedInt(in);
+                return TableInstruction.table_init(LEB128.readUnsignedInt(in), elemIndex);
+            }
+            case ELEM_DROP:
+                return TableInstruction.elem_drop(LEB128.readUnsignedInt(in));
+            // Memory instructions
+            case I32_LOAD:
+            case I64_LOAD:
+            case F32_LOAD:
+            case F64_LOAD:
+            case I32_STORE:
+            case I64_STORE:
+            case F32_STORE:
+            case F64_STORE:
+                return decodeMemArg(in, opcode);
+            case MEMORY_SIZE:
+                return new MemorySize(LEB128.readUnsignedInt(in));
+            case MEMORY_GROW:
+                return new MemoryGrow(LEB128.readUnsignedInt(in));
+            case MEMORY_FILL:
+                return new MemoryFill(LEB128.readUnsignedInt(in));
+            case MEMORY_COPY: {
+                int targetMemIndex = LEB128.readUnsignedInt(in);
+                return new MemoryCopy(targetMemIndex, LEB128.readUnsignedInt(in));
+            }
+            case MEMORY_INIT: {
+                int dataIndex = LEB128.readUnsignedInt(in);
+                return new MemoryInit(LEB128.readUnsignedInt(in), dataIndex);
+            }
+            case DATA_DROP:
+                return MemoryInstruction.data_drop(LEB128.readUnsignedInt(in));
+            // Numeric and reference instructions with immediates
+            case I32_CONST:
+                return NumericInstruction.i32_const(LEB128.readSignedInt(in));
+            case I64_CONST:
+                return NumericInstruction.i64_const(LEB128.readSignedLong(in));
+            case F32_CONST:
+                return NumericInstruction.f32_const(Float.intBitsToFloat(in.getInt()));
+            case F64_CONST:
+                return NumericInstruction.f64_const(Double.longBitsToDouble(in.getLong()));
+            case REF_NULL:
+                return ReferenceInstruction.ref_null(decodeHeapType(in));
+            case REF_FUNC:
+                return ReferenceInstruction.ref_func(LEB128.readUnsignedInt(in));
+            // Instructions without immediates
+            case NOP:
+                return ControlInstruction.nop();
+            case RETURN:
+                return ControlInstruction.ret();
+            case UNREACHABLE:
+                return ControlInstruction.unreachable();
+            case I32_CLZ:
+                return NumericInstruction.i32_clz();
+            case I32_CTZ:
+                return NumericInstruction.i32_ctz();
+            case I32_POPCNT:
+                return NumericInstruction.i32_popcnt();
+            case I64_CLZ:
+                return NumericInstruction.i64_clz();
+            case I64_CTZ:
+                return NumericInstruction.i64_ctz();
+            case I64_POPCNT:
+                return NumericInstruction.i64_popcnt();
+            case F32_ABS:
+                return NumericInstruction.f32_abs();
+            case F32_CEIL:
+                return NumericInstruction.f32_ceil();
+            case F32_FLOOR:
+                return NumericInstruction.f32_floor();
+            case F32_NEAREST:
+                return NumericInstruction.f32_nearest();
+            case F32_NEG:
+                return NumericInstruction.f32_neg();
+            case F32_SQRT:
+                return NumericInstruction.f32_sqrt();
+            case F32_TRUNC:
+                return NumericInstruction.f32_trunc();
+            case F64_ABS:
+                return NumericInstruction.f64_abs();
+            case F64_CEIL:
+                return NumericInstruction.f64_ceil();
+            case F64_FLOOR:
+                return NumericInstruction.f64_floor();
+            case F64_NEAREST:
+                return NumericInstruction.f64_nearest();
+            case F64_NEG:
+                return NumericInstruction.f64_neg();
+            case F64_SQRT:
+                return NumericInstruction.f64_sqrt();
+            case F64_TRUNC:
+                return NumericInstruction.f64_trunc();
+            case I32_ADD:
+                return NumericInstruction.i32_add();
+            case I32_AND:
+                return NumericInstruction.i32_and();
+            case I32_DIV_S:
+                return NumericInstruction.i32_div_s();
+            case I32_DIV_U:
+                return NumericInstruction.i32_div_u();
+            case I32_MUL:
+                return NumericInstruction.i32_mul();
+            case I32_OR:
+                return NumericInstruction.i32_or();
+            case I32_REM_S:
+                return NumericInstruction.i32_rem_s();
+            case I32_REM_U:
+                return NumericInstruction.i32_rem_u();
+            case I32_ROTL:
+                return NumericInstruction.i32_rotl();
+            case I32_ROTR:
+                return NumericInstruction.i32_rotr();
+            case I32_SHL:
+                return NumericInstruction.i32_shl();
+            case I32_SHR_S:
+                return NumericInstruction.i32_shr_s();
+            case I32_SHR_U:
+                return NumericInstruction.i32_shr_u();
+            case I32_SUB:
+                return NumericInstruction.i32_sub();
+            case I32_XOR:
+                return NumericInstruction.i32_xor();
+            case I64_ADD:
+                return NumericInstruction.i64_add();
+            case I64_AND:
+                return NumericInstruction.i64_and();
+            case I64_DIV_S:
+                return NumericInstruction.i64_div_s();
+            case I64_DIV_U:
+                return NumericInstruction.i64_div_u();
+            case I64_MUL:
+                return NumericInstruction.i64_mul();
+            case I64_OR:
+                return NumericInstruction.i64_or();
+            case I64_REM_S:
+                return NumericInstruction.i64_rem_s();
+            case I64_REM_U:
+                return NumericInstruction.i64_rem_u();
+            case I64_ROTL:
+                return NumericInstruction.i64_rotl();
+            case I64_ROTR:
+                return NumericInstruction.i64_rotr();
+            case I64_SHL:
+                return NumericInstruction.i64_shl();
+            case I64_SHR_S:
+                return NumericInstruction.i64_shr_s();
+            case I64_SHR_U:
+                return NumericInstruction.i64_shr_u();
+            case I64_SUB:
+                return NumericInstruction.i64_sub();
+            case I64_XOR:
+                return NumericInstruction.i64_xor();
+            case F32_ADD:
+                return NumericInstruction.f32_add();
+            case F32_COPYSIGN:
+                return NumericInstruction.f32_copysign();
+            case F32_DIV:
+                return NumericInstruction.f32_div();
+            case F32_MAX:
+                return NumericInstruction.f32_max();
+            case F32_MIN:
+                return NumericInstruction.f32_min();
+            case F32_MUL:
+                return NumericInstruction.f32_mul();
+            case F32_SUB:
+                return NumericInstruction.f32_sub();
+            case F64_ADD:
+                return NumericInstruction.f64_add();
+            case F64_COPYSIGN:
+                return NumericInstruction.f64_copysign();
+            case F64_DIV:
+                return NumericInstruction.f64_div();
+            case F64_MAX:
+                return NumericInstruction.f64_max();
+            case F64_MIN:
+                return NumericInstruction.f64_min();
+            case F64_MUL:
+                return NumericInstruction.f64_mul();
+            case F64_SUB:
+                return NumericInstruction.f64_sub();
+            case I32_EQZ:
+                return NumericInstruction.i32_eqz();
+            case I64_EQZ:
+                return NumericInstruction.i64_eqz();
+            case I32_EQ:
+                return NumericInstruction.i32_eq();
+            case I32_GE_S:
+                return NumericInstruction.i32_ge_s();
+            case I32_GE_U:
+                return NumericInstruction.i32_ge_u();
+            case I32_GT_S:
+                return NumericInstruction.i32_gt_s();
+            case I32_GT_U:
+                return NumericInstruction.i32_gt_u();
+            case I32_LE_S:
+                return NumericInstruction.i32_le_s();
+            case I32_LE_U:
+                return NumericInstruction.i32_le_u();
+            case I32_LT_S:
+                return NumericInstruction.i32_lt_s();
+            case I32_LT_U:
+                return NumericInstruction.i32_lt_u();
+            case I32_NE:
+                return NumericInstruction.i32_ne();
+            case I64_EQ:
+                return NumericInstruction.i64_eq();
+            case I64_GE_S:
+                return NumericInstruction.i64_ge_s();
+            case I64_GE_U:
+                return NumericInstruction.i64_ge_u();
+            case I64_GT_S:
+                return NumericInstruction.i64_gt_s();
+            case I64_GT_U:
+                return NumericInstruction.i64_gt_u();
+            case I64_LE_S:
+                return NumericInstruction.i64_le_s();
+            case I64_LE_U:
+                return NumericInstruction.i64_le_u();
+            case I64_LT_S:
+                return NumericInstruction.i64_lt_s();
+            case I64_LT_U:
+                return NumericInstruction.i64_lt_u();
+            case I64_NE:
+                return NumericInstruction.i64_ne();
+            case F32_EQ:
+                return NumericInstruction.f32_eq();
+            case F32_GE:
+                return NumericInstruction.f32_ge();
+            case F32_GT:
+                return NumericInstruction.f32_gt();
+            case F32_LE:
+                return NumericInstruction.f32_le();
+            case F32_LT:
+                return NumericInstruction.f32_lt();
+            case F32_NE:
+                return NumericInstruction.f32_ne();
+            case F64_EQ:
+                return NumericInstruction.f64_eq();
+            case F64_GE:
+                return NumericInstruction.f64_ge();
+            case F64_GT:
+                return NumericInstruction.f64_gt();
+            case F64_LE:
+                return NumericInstruction.f64_le();
+            case F64_LT:
+                return NumericInstruction.f64_lt();
+            case F64_NE:
+                return NumericInstruction.f64_ne();
+            case I32_EXTEND8_S:
+                return NumericInstruction.i32_extend8_s();
+            case I64_EXTEND8_S:
+                return NumericInstruction.i64_extend8_s();
+            case I32_EXTEND16_S:
+                return NumericInstruction.i32_extend16_s();
+            case I64_EXTEND16_S:
+                return NumericInstruction.i64_extend16_s();
+            case I64_EXTEND32_S:
+                return NumericInstruction.i64_extend32_s();
+            case I32_WRAP_I64:
+                return NumericInstruction.i32_wrap_i64();
+            case I64_EXTEND_I32_S:
+                return NumericInstruction.i64_extend_i32_s();
+            case I64_EXTEND_I32_U:
+                return NumericInstruction.i64_extend_i32_u();
+            case I32_TRUNC_F32_S:
+                return NumericInstruction.i32_trunc_f32_s();
+            case I32_TRUNC_F32_U:
+                return NumericInstruction.i32_trunc_f32_u();
+            case I32_TRUNC_F64_S:
+                return NumericInstruction.i32_trunc_f64_s();
+            case I32_TRUNC_F64_U:
+                return NumericInstruction.i32_trunc_f64_u();
+            case I64_TRUNC_F32_S:
+                return NumericInstruction.i64_trunc_f32_s();
+            case I64_TRUNC_F32_U:
+                return NumericInstruction.i64_trunc_f32_u();
+            case I64_TRUNC_F64_S:
+                return NumericInstruction.i64_trunc_f64_s();
+            case I64_TRUNC_F64_U:
+                return NumericInstruction.i64_trunc_f64_u();
+            case I32_TRUNC_SAT_F32_S:
+                return NumericInstruction.i32_trunc_sat_f32_s();
+            case I32_TRUNC_SAT_F32_U:
+                return NumericInstruction.i32_trunc_sat_f32_u();
+            case I32_TRUNC_SAT_F64_S:
+                return NumericInstruction.i32_trunc_sat_f64_s();
+            case I32_TRUNC_SAT_F64_U:
+                return NumericInstruction.i32_trunc_sat_f64_u();
+            case I64_TRUNC_SAT_F32_S:
+                return NumericInstruction.i64_trunc_sat_f32_s();
+            case I64_TRUNC_SAT_F32_U:
+                return NumericInstruction.i64_trunc_sat_f32_u();
+            case I64_TRUNC_SAT_F64_S:
+                return NumericInstruction.i64_trunc_sat_f64_s();
+            case I64_TRUNC_SAT_F64_U:
+                return NumericInstruction.i64_trunc_sat_f64_u();
+            case F32_DEMOTE_F64:
+                return NumericInstruction.f32_demote_f64();
+            case F64_PROMOTE_F32:
+                return NumericInstruction.f64_promote_f32();
+            case F32_CONVERT_I32_S:
+                return NumericInstruction.f32_convert_i32_s();
+            case F32_CONVERT_I32_U:
+                return NumericInstruction.f32_convert_i32_u();
+            case F32_CONVERT_I64_S:
+                return NumericInstruction.f32_convert_i64_s();
+            case F32_CONVERT_I64_U:
+                return NumericInstruction.f32_convert_i64_u();
+            case F64_CONVERT_I32_S:
+                return NumericInstruction.f64_convert_i32_s();
+            case F64_CONVERT_I32_U:
+                return NumericInstruction.f64_convert_i32_u();
+            case F64_CONVERT_I64_S:
+                return NumericInstruction.f64_convert_i64_s();
+            case F64_CONVERT_I64_U:
+                return NumericInstruction.f64_convert_i64_u();
+            case I32_REINTERPRET_F32:
+                return NumericInstruction.i32_reinterpret_f32();
+            case I64_REINTERPRET_F64:
+                return NumericInstruction.i64_reinterpret_f64();
+            case F32_REINTERPRET_I32:
+                return NumericInstruction.f32_reinterpret_i32();
+            case F64_REINTERPRET_I64:
+                return NumericInstruction.f64_reinterpret_i64();
+            case DROP:
+                return ParametricInstruction.drop();
+            case REF_AS_NON_NULL:
+                return ReferenceInstruction.ref_as_non_null();
+            case REF_IS_NULL:
+                return ReferenceInstruction.ref_is_null();
+            case END:
+            case ELSE:
+                throw malformed("Unexpected " + opcode, offset);
+            default:
+                throw malformed("Unsupported instruction " + opcode, offset);
+        }
+    }
+}
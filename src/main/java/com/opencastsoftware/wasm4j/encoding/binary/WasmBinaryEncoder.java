@@ -9,23 +9,43 @@ import com.opencastsoftware.wasm4j.Module;
 import com.opencastsoftware.wasm4j.encoding.WasmEncoder;
 import com.opencastsoftware.wasm4j.types.FuncType;
 import com.opencastsoftware.wasm4j.types.MemType;
-import com.opencastsoftware.wasm4j.types.ValType;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public class WasmBinaryEncoder implements WasmEncoder<IOException> {
     static final byte[] WASM_MAGIC = new byte[]{0x00, 0x61, 0x73, 0x6D};
     static final byte[] WASM_BINARY_FORMAT_VERSION = new byte[]{0x01, 0x00, 0x00, 0x00};
 
-    private void encodeSection(OutputStream output, SectionId sectionId, byte[] content) throws IOException {
+    // The number of function bodies encoded by each task when encoding in parallel
+    static final int PARALLEL_CHUNK_SIZE = 64;
+
+    @Nullable
+    private final Executor executor;
+
+    public WasmBinaryEncoder() {
+        this.executor = null;
+    }
+
+    public WasmBinaryEncoder(Executor executor) {
+        this.executor = executor;
+    }
+
+    // Each section is sized up front so that its content can be written straight to the output
+    void encodeSectionHeader(OutputStream output, SectionId sectionId, int size) throws IOException {
         output.write(sectionId.id());
-        LEB128.writeUnsigned(output, content.length);
-        output.write(content);
+        LEB128.writeUnsigned(output, size);
     }
 
     private void encodeString(OutputStream output, String string) throws IOException {
@@ -34,6 +54,25 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
         output.write(bytes);
     }
 
+    // Writes the remaining bytes of a buffer, handing it straight to buffer and channel outputs.
+    // Data segments and lazy bodies are read-only views, so other outputs need them copied in chunks.
+    private void writeBuffer(OutputStream output, ByteBuffer buffer) throws IOException {
+        if (output instanceof ByteChannelOutputStream) {
+            ((ByteChannelOutputStream) output).write(buffer);
+        } else if (output instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) output).write(buffer);
+        } else if (buffer.hasArray()) {
+            output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            var chunk = new byte[Math.min(buffer.remaining(), 8192)];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), chunk.length);
+                buffer.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        }
+    }
+
     public void encodeMagic(OutputStream output) throws IOException {
         output.write(WASM_MAGIC);
     }
@@ -45,36 +84,32 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
     @Override
     public void encodeTypes(OutputStream output, List<FuncType> types) throws IOException {
         if (!types.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+
+            encodeSectionHeader(output, SectionId.TYPE, new WasmBinarySizer().sizeOfTypesContent(types));
 
-            LEB128.writeUnsigned(intermediate, types.size());
+            LEB128.writeUnsigned(output, types.size());
             for (FuncType type : types) {
                 typeVisitor.visitFuncType(type);
             }
-
-            encodeSection(output, SectionId.TYPE, intermediate.toByteArray());
         }
     }
 
-    private void encodeImportDescriptor(OutputStream output, Import.Descriptor descriptor) throws IOException {
+    private void encodeImportDescriptor(OutputStream output, WasmTypeBinaryEncodingVisitor typeVisitor, Import.Descriptor descriptor) throws IOException {
         if (descriptor instanceof Import.Descriptor.Func) {
             var func = (Import.Descriptor.Func) descriptor;
             output.write(0x00);
             LEB128.writeUnsigned(output, func.typeIndex());
         } else if (descriptor instanceof Import.Descriptor.Table) {
             var table = (Import.Descriptor.Table) descriptor;
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
             output.write(0x01);
             typeVisitor.visitTableType(table.tableType());
         } else if (descriptor instanceof Import.Descriptor.Mem) {
             var mem = (Import.Descriptor.Mem) descriptor;
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
             output.write(0x02);
             typeVisitor.visitMemType(mem.memType());
         } else if (descriptor instanceof Import.Descriptor.Global) {
             var global = (Import.Descriptor.Global) descriptor;
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
             output.write(0x03);
             typeVisitor.visitGlobalType(global.globalType());
         }
@@ -83,81 +118,76 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
     @Override
     public void encodeImports(OutputStream output, List<Import> imports) throws IOException {
         if (!imports.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
 
-            LEB128.writeUnsigned(intermediate, imports.size());
+            encodeSectionHeader(output, SectionId.IMPORT, new WasmBinarySizer().sizeOfImportsContent(imports));
+
+            LEB128.writeUnsigned(output, imports.size());
             for (Import imp : imports) {
-                encodeString(intermediate, imp.module());
-                encodeString(intermediate, imp.name());
-                encodeImportDescriptor(intermediate, imp.descriptor());
+                encodeString(output, imp.module());
+                encodeString(output, imp.name());
+                encodeImportDescriptor(output, typeVisitor, imp.descriptor());
             }
-
-            encodeSection(output, SectionId.IMPORT, intermediate.toByteArray());
         }
     }
 
     @Override
     public void encodeFunctions(OutputStream output, List<Func> funcs) throws IOException {
         if (!funcs.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
+            encodeSectionHeader(output, SectionId.FUNCTION, new WasmBinarySizer().sizeOfFunctionsContent(funcs));
 
-            LEB128.writeUnsigned(intermediate, funcs.size());
+            LEB128.writeUnsigned(output, funcs.size());
             for (Func func : funcs) {
-                LEB128.writeUnsigned(intermediate, func.typeIndex());
+                LEB128.writeUnsigned(output, func.typeIndex());
             }
-
-            encodeSection(output, SectionId.FUNCTION, intermediate.toByteArray());
         }
     }
 
     @Override
     public void encodeTables(OutputStream output, List<Table> tables) throws IOException {
         if (!tables.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
-            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(intermediate, typeVisitor);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(output, typeVisitor);
+
+            encodeSectionHeader(output, SectionId.TABLE, new WasmBinarySizer().sizeOfTablesContent(tables));
 
-            LEB128.writeUnsigned(intermediate, tables.size());
+            LEB128.writeUnsigned(output, tables.size());
             for (Table table : tables) {
-                intermediate.write(0x40);
-                intermediate.write(0x00);
+                output.write(0x40);
+                output.write(0x00);
                 table.type().accept(typeVisitor);
                 table.init().accept(constExprVisitor);
             }
-
-            encodeSection(output, SectionId.TABLE, intermediate.toByteArray());
         }
     }
 
     @Override
     public void encodeMemories(OutputStream output, List<MemType> mems) throws IOException {
         if (!mems.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+
+            encodeSectionHeader(output, SectionId.MEMORY, new WasmBinarySizer().sizeOfMemoriesContent(mems));
 
-            LEB128.writeUnsigned(intermediate, mems.size());
+            LEB128.writeUnsigned(output, mems.size());
             for (MemType mem : mems) {
                 typeVisitor.visitMemType(mem);
             }
-
-            encodeSection(output, SectionId.MEMORY, intermediate.toByteArray());
         }
     }
 
     @Override
     public void encodeGlobals(OutputStream output, List<Global> globals) throws IOException {
         if (!globals.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
-            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(intermediate, typeVisitor);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(output, typeVisitor);
+
+            encodeSectionHeader(output, SectionId.GLOBAL, new WasmBinarySizer().sizeOfGlobalsContent(globals));
 
-            LEB128.writeUnsigned(intermediate, globals.size());
+            LEB128.writeUnsigned(output, globals.size());
             for (Global global : globals) {
                 global.type().accept(typeVisitor);
                 global.init().accept(constExprVisitor);
             }
-
-            encodeSection(output, SectionId.GLOBAL, intermediate.toByteArray());
         }
     }
 
@@ -183,35 +213,33 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
     @Override
     public void encodeExports(OutputStream output, List<Export> exports) throws IOException {
         if (!exports.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
+            encodeSectionHeader(output, SectionId.EXPORT, new WasmBinarySizer().sizeOfExportsContent(exports));
 
-            LEB128.writeUnsigned(intermediate, exports.size());
+            LEB128.writeUnsigned(output, exports.size());
             for (Export export : exports) {
-                encodeString(intermediate, export.name());
-                encodeExportDescriptor(intermediate, export.descriptor());
+                encodeString(output, export.name());
+                encodeExportDescriptor(output, export.descriptor());
             }
-
-            encodeSection(output, SectionId.EXPORT, intermediate.toByteArray());
         }
     }
 
     @Override
     public void encodeStart(OutputStream output, @Nullable Integer start) throws IOException {
         if (start != null) {
-            var intermediate = new ByteArrayOutputStream();
-            LEB128.writeUnsigned(intermediate, start);
-            encodeSection(output, SectionId.START, intermediate.toByteArray());
+            encodeSectionHeader(output, SectionId.START, LEB128.sizeOfUnsigned(start));
+            LEB128.writeUnsigned(output, start);
         }
     }
 
     @Override
     public void encodeElems(OutputStream output, List<Elem> elems) throws IOException {
         if (!elems.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
-            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(intermediate, typeVisitor);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(output, typeVisitor);
 
-            LEB128.writeUnsigned(intermediate, elems.size());
+            encodeSectionHeader(output, SectionId.ELEMENT, new WasmBinarySizer().sizeOfElemsContent(elems));
+
+            LEB128.writeUnsigned(output, elems.size());
             for (Elem elem : elems) {
                 // Could be replaced with a bitfield if more flags are added
                 int indicator = 0;
@@ -222,8 +250,8 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
                     // For an active segment, bit 1 indicates that we are using explicit table indices
                     indicator = 0b110;
                     var active = (Elem.Mode.Active) elem.mode();
-                    LEB128.writeUnsigned(intermediate, indicator);
-                    LEB128.writeUnsigned(intermediate, active.tableIndex());
+                    LEB128.writeUnsigned(output, indicator);
+                    LEB128.writeUnsigned(output, active.tableIndex());
                     active.offset().accept(constExprVisitor);
                 } else {
                     // For an non-active segment, bit 1 indicates whether this is a passive or declarative segment
@@ -232,26 +260,23 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
                     } else {
                         indicator = 0b101;
                     }
-                    LEB128.writeUnsigned(intermediate, indicator);
+                    LEB128.writeUnsigned(output, indicator);
                 }
 
                 elem.type().accept(typeVisitor);
 
-                LEB128.writeUnsigned(intermediate, elem.init().size());
+                LEB128.writeUnsigned(output, elem.init().size());
                 for (ConstantExpression initExpr : elem.init()) {
                     initExpr.accept(constExprVisitor);
                 }
             }
-
-            encodeSection(output, SectionId.ELEMENT, intermediate.toByteArray());
         }
     }
 
     public void encodeDataCount(OutputStream output, List<Data> datas) throws IOException {
         if (!datas.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            LEB128.writeUnsigned(intermediate, datas.size());
-            encodeSection(output, SectionId.DATA_COUNT, intermediate.toByteArray());
+            encodeSectionHeader(output, SectionId.DATA_COUNT, LEB128.sizeOfUnsigned(datas.size()));
+            LEB128.writeUnsigned(output, datas.size());
         }
     }
 
@@ -259,42 +284,113 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
         var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
         var visitor = new InstructionBinaryEncodingVisitor(output, typeVisitor);
 
-        // TODO: Use compressed encoding of locals here
-        LEB128.writeUnsigned(output, func.locals().size());
-        for (ValType localType : func.locals()) {
-            LEB128.writeUnsigned(output, 1);
-            localType.accept(typeVisitor);
+        encodeFunc(output, typeVisitor, visitor, func);
+    }
+
+    // Encodes with visitors that already target the output, so that they can be shared by every function in a section
+    void encodeFunc(OutputStream output, WasmTypeBinaryEncodingVisitor typeVisitor, InstructionBinaryEncodingVisitor visitor, Func func) throws IOException {
+        if (func instanceof LazyFunc) {
+            // Lazily decoded functions are written as they were read, without decoding them
+            writeBuffer(output, ((LazyFunc) func).code());
+            return;
+        }
+
+        LEB128.writeUnsigned(output, func.compressedLocals().size());
+        for (Locals locals : func.compressedLocals()) {
+            LEB128.writeUnsigned(output, locals.count());
+            locals.type().accept(typeVisitor);
         }
 
         func.body().accept(visitor);
     }
 
     public void encodeCode(OutputStream output, List<Func> funcs) throws IOException {
-        if (!funcs.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
+        if (executor != null && funcs.size() > PARALLEL_CHUNK_SIZE) {
+            encodeCodeParallel(output, funcs);
+        } else if (!funcs.isEmpty()) {
+            var funcSizes = new int[funcs.size()];
 
-            LEB128.writeUnsigned(intermediate, funcs.size());
-            for (Func func : funcs) {
-                var funcOutput = new ByteArrayOutputStream();
-                encodeFunc(funcOutput, func);
-                var funcBytes = funcOutput.toByteArray();
+            encodeSectionHeader(output, SectionId.CODE, new WasmBinarySizer().sizeOfCodeContent(funcs, funcSizes));
 
-                LEB128.writeUnsigned(intermediate, funcBytes.length);
-                intermediate.write(funcBytes);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+            var visitor = new InstructionBinaryEncodingVisitor(output, typeVisitor);
+
+            LEB128.writeUnsigned(output, funcs.size());
+            for (int i = 0; i < funcs.size(); i++) {
+                LEB128.writeUnsigned(output, funcSizes[i]);
+                encodeFunc(output, typeVisitor, visitor, funcs.get(i));
             }
+        }
+    }
 
-            encodeSection(output, SectionId.CODE, intermediate.toByteArray());
+    private byte[] encodeCodeEntries(List<Func> funcs) throws IOException {
+        var output = new ByteArrayOutputStream();
+        var sizer = new WasmBinarySizer();
+        var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+        var visitor = new InstructionBinaryEncodingVisitor(output, typeVisitor);
+
+        for (Func func : funcs) {
+            LEB128.writeUnsigned(output, sizer.sizeOfFunc(func));
+            encodeFunc(output, typeVisitor, visitor, func);
+        }
+
+        return output.toByteArray();
+    }
+
+    private void encodeCodeParallel(OutputStream output, List<Func> funcs) throws IOException {
+        var tasks = new ArrayList<CompletableFuture<byte[]>>();
+
+        for (int from = 0; from < funcs.size(); from += PARALLEL_CHUNK_SIZE) {
+            var chunk = funcs.subList(from, Math.min(from + PARALLEL_CHUNK_SIZE, funcs.size()));
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return encodeCodeEntries(chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        // Chunks are joined in index order, so the output is identical to the sequential encoding
+        var chunks = new ArrayList<byte[]>(tasks.size());
+        try {
+            for (CompletableFuture<byte[]> task : tasks) {
+                chunks.add(task.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+
+        int size = LEB128.sizeOfUnsigned(funcs.size());
+        for (byte[] chunk : chunks) {
+            size += chunk.length;
+        }
+
+        encodeSectionHeader(output, SectionId.CODE, size);
+
+        LEB128.writeUnsigned(output, funcs.size());
+        for (byte[] chunk : chunks) {
+            output.write(chunk);
         }
     }
 
     @Override
     public void encodeData(OutputStream output, List<Data> datas) throws IOException {
         if (!datas.isEmpty()) {
-            var intermediate = new ByteArrayOutputStream();
-            var typeVisitor = new WasmTypeBinaryEncodingVisitor(intermediate);
-            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(intermediate, typeVisitor);
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+            var constExprVisitor = new ConstantInstructionBinaryEncodingVisitor(output, typeVisitor);
+
+            encodeSectionHeader(output, SectionId.DATA, new WasmBinarySizer().sizeOfDataContent(datas));
 
-            LEB128.writeUnsigned(intermediate, datas.size());
+            LEB128.writeUnsigned(output, datas.size());
             for (Data data : datas) {
                 // Could be replaced with a bitfield if more flags are added
                 int indicator;
@@ -302,7 +398,7 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
                 if (data.mode() instanceof Data.Mode.Passive) {
                     // The 1st bit of the indicator encodes whether this is a passive data segment.
                     indicator = 0b01;
-                    LEB128.writeUnsigned(intermediate, indicator);
+                    LEB128.writeUnsigned(output, indicator);
 
                 } else if (data.mode() instanceof Data.Mode.Active) {
                     var active = (Data.Mode.Active) data.mode();
@@ -311,22 +407,24 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
                         // The 2nd bit of the indicator indicates whether there's an explicit
                         // memory index for an active segment.
                         indicator = 0b10;
-                        LEB128.writeUnsigned(intermediate, indicator);
-                        LEB128.writeUnsigned(intermediate, active.memIndex());
+                        LEB128.writeUnsigned(output, indicator);
+                        LEB128.writeUnsigned(output, active.memIndex());
                     } else {
                         // In this case, we have an active segment with no explicit memory index.
                         indicator = 0b00;
-                        LEB128.writeUnsigned(intermediate, indicator);
+                        LEB128.writeUnsigned(output, indicator);
                     }
 
                     active.offset().accept(constExprVisitor);
                 }
 
-                LEB128.writeUnsigned(intermediate, data.init().length);
-                intermediate.write(data.init());
+                LEB128.writeUnsigned(output, data.initLength());
+                if (data.hasInitArray()) {
+                    output.write(data.init());
+                } else {
+                    writeBuffer(output, data.initBuffer());
+                }
             }
-
-            encodeSection(output, SectionId.DATA, intermediate.toByteArray());
         }
     }
 
@@ -347,4 +445,21 @@ public class WasmBinaryEncoder implements WasmEncoder<IOException> {
         encodeCode(output, module.funcs());
         encodeData(output, module.datas());
     }
+
+    @Override
+    public void encodeModule(ByteBuffer output, Module module) throws IOException {
+        encodeModule(new ByteBufferOutputStream(output), module);
+    }
+
+    @Override
+    public void encodeModule(WritableByteChannel output, Module module) throws IOException {
+        var stream = new ByteChannelOutputStream(output);
+        encodeModule(stream, module);
+        stream.flush();
+    }
+
+    // Allows callers to allocate or map exactly as much space as the encoded module needs
+    public int sizeOfModule(Module module) {
+        return new WasmBinarySizer().sizeOfModule(module);
+    }
 }
@@ -0,0 +1,286 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.MemType;
+import com.opencastsoftware.wasm4j.types.WasmType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+// Computes the exact number of bytes that WasmBinaryEncoder writes for a module, section or function.
+// The sizing visitors are reused between calls, so an instance should not be shared between threads.
+public class WasmBinarySizer {
+    private final WasmTypeBinarySizingVisitor typeSizer = new WasmTypeBinarySizingVisitor();
+    private final ConstantInstructionBinarySizingVisitor constExprSizer = new ConstantInstructionBinarySizingVisitor(typeSizer);
+    private final InstructionBinarySizingVisitor sizer = new InstructionBinarySizingVisitor(typeSizer);
+
+    public int sizeOfType(WasmType type) {
+        return typeSizer.sizeOf(type);
+    }
+
+    public int sizeOfExpression(Expression expression) {
+        return sizer.sizeOf(expression);
+    }
+
+    public int sizeOfConstantExpression(ConstantExpression constExpr) {
+        return constExprSizer.sizeOf(constExpr);
+    }
+
+    int sizeOfString(String string) {
+        int length = 0;
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Unpaired surrogates are replaced by '?' when encoding
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+
+        return LEB128.sizeOfUnsigned(length) + length;
+    }
+
+    // The size of a section's id, content size and content
+    int sizeOfSection(int contentSize) {
+        return 1 + LEB128.sizeOfUnsigned(contentSize) + contentSize;
+    }
+
+    public int sizeOfTypes(List<FuncType> types) {
+        return types.isEmpty() ? 0 : sizeOfSection(sizeOfTypesContent(types));
+    }
+
+    int sizeOfTypesContent(List<FuncType> types) {
+        int size = LEB128.sizeOfUnsigned(types.size());
+        for (FuncType type : types) {
+            size += typeSizer.sizeOf(type);
+        }
+
+        return size;
+    }
+
+    private int sizeOfImportDescriptor(Import.Descriptor descriptor) {
+        if (descriptor instanceof Import.Descriptor.Func) {
+            var func = (Import.Descriptor.Func) descriptor;
+            return 1 + LEB128.sizeOfUnsigned(func.typeIndex());
+        } else if (descriptor instanceof Import.Descriptor.Table) {
+            var table = (Import.Descriptor.Table) descriptor;
+            return 1 + typeSizer.sizeOf(table.tableType());
+        } else if (descriptor instanceof Import.Descriptor.Mem) {
+            var mem = (Import.Descriptor.Mem) descriptor;
+            return 1 + typeSizer.sizeOf(mem.memType());
+        } else if (descriptor instanceof Import.Descriptor.Global) {
+            var global = (Import.Descriptor.Global) descriptor;
+            return 1 + typeSizer.sizeOf(global.globalType());
+        } else {
+            return 0;
+        }
+    }
+
+    public int sizeOfImports(List<Import> imports) {
+        return imports.isEmpty() ? 0 : sizeOfSection(sizeOfImportsContent(imports));
+    }
+
+    int sizeOfImportsContent(List<Import> imports) {
+        int size = LEB128.sizeOfUnsigned(imports.size());
+        for (Import imp : imports) {
+            size += sizeOfString(imp.module());
+            size += sizeOfString(imp.name());
+            size += sizeOfImportDescriptor(imp.descriptor());
+        }
+
+        return size;
+    }
+
+    public int sizeOfFunctions(List<Func> funcs) {
+        return funcs.isEmpty() ? 0 : sizeOfSection(sizeOfFunctionsContent(funcs));
+    }
+
+    int sizeOfFunctionsContent(List<Func> funcs) {
+        int size = LEB128.sizeOfUnsigned(funcs.size());
+        for (Func func : funcs) {
+            size += LEB128.sizeOfUnsigned(func.typeIndex());
+        }
+
+        return size;
+    }
+
+    public int sizeOfTables(List<Table> tables) {
+        return tables.isEmpty() ? 0 : sizeOfSection(sizeOfTablesContent(tables));
+    }
+
+    int sizeOfTablesContent(List<Table> tables) {
+        int size = LEB128.sizeOfUnsigned(tables.size());
+        for (Table table : tables) {
+            size += 2;
+            size += typeSizer.sizeOf(table.type());
+            size += constExprSizer.sizeOf(table.init());
+        }
+
+        return size;
+    }
+
+    public int sizeOfMemories(List<MemType> mems) {
+        return mems.isEmpty() ? 0 : sizeOfSection(sizeOfMemoriesContent(mems));
+    }
+
+    int sizeOfMemoriesContent(List<MemType> mems) {
+        int size = LEB128.sizeOfUnsigned(mems.size());
+        for (MemType mem : mems) {
+            size += typeSizer.sizeOf(mem);
+        }
+
+        return size;
+    }
+
+    public int sizeOfGlobals(List<Global> globals) {
+        return globals.isEmpty() ? 0 : sizeOfSection(sizeOfGlobalsContent(globals));
+    }
+
+    int sizeOfGlobalsContent(List<Global> globals) {
+        int size = LEB128.sizeOfUnsigned(globals.size());
+        for (Global global : globals) {
+            size += typeSizer.sizeOf(global.type());
+            size += constExprSizer.sizeOf(global.init());
+        }
+
+        return size;
+    }
+
+    public int sizeOfExports(List<Export> exports) {
+        return exports.isEmpty() ? 0 : sizeOfSection(sizeOfExportsContent(exports));
+    }
+
+    int sizeOfExportsContent(List<Export> exports) {
+        int size = LEB128.sizeOfUnsigned(exports.size());
+        for (Export export : exports) {
+            size += sizeOfString(export.name());
+            size += 1 + LEB128.sizeOfUnsigned(export.descriptor().index());
+        }
+
+        return size;
+    }
+
+    public int sizeOfStart(@Nullable Integer start) {
+        return start == null ? 0 : sizeOfSection(LEB128.sizeOfUnsigned(start));
+    }
+
+    public int sizeOfElems(List<Elem> elems) {
+        return elems.isEmpty() ? 0 : sizeOfSection(sizeOfElemsContent(elems));
+    }
+
+    int sizeOfElemsContent(List<Elem> elems) {
+        int size = LEB128.sizeOfUnsigned(elems.size());
+        for (Elem elem : elems) {
+            // The indicator always fits into a single byte
+            size += 1;
+
+            if (elem.mode() instanceof Elem.Mode.Active) {
+                var active = (Elem.Mode.Active) elem.mode();
+                size += LEB128.sizeOfUnsigned(active.tableIndex());
+                size += constExprSizer.sizeOf(active.offset());
+            }
+
+            size += typeSizer.sizeOf(elem.type());
+
+            size += LEB128.sizeOfUnsigned(elem.init().size());
+            for (ConstantExpression initExpr : elem.init()) {
+                size += constExprSizer.sizeOf(initExpr);
+            }
+        }
+
+        return size;
+    }
+
+    public int sizeOfDataCount(List<Data> datas) {
+        return datas.isEmpty() ? 0 : sizeOfSection(LEB128.sizeOfUnsigned(datas.size()));
+    }
+
+    // The size of a function's locals and body, excluding the size prefix of its code entry
+    public int sizeOfFunc(Func func) {
+        if (func instanceof LazyFunc) {
+            // Lazily decoded functions are encoded as they were read
+            return ((LazyFunc) func).length();
+        }
+
+        int size = LEB128.sizeOfUnsigned(func.compressedLocals().size());
+        for (Locals locals : func.compressedLocals()) {
+            size += LEB128.sizeOfUnsigned(locals.count());
+            size += typeSizer.sizeOf(locals.type());
+        }
+
+        return size + sizer.sizeOf(func.body());
+    }
+
+    public int sizeOfCode(List<Func> funcs) {
+        return funcs.isEmpty() ? 0 : sizeOfSection(sizeOfCodeContent(funcs, new int[funcs.size()]));
+    }
+
+    // Records the size of each function body, as they are needed for both the section size and each entry's size
+    int sizeOfCodeContent(List<Func> funcs, int[] funcSizes) {
+        int size = LEB128.sizeOfUnsigned(funcs.size());
+        for (int i = 0; i < funcs.size(); i++) {
+            funcSizes[i] = sizeOfFunc(funcs.get(i));
+            size += LEB128.sizeOfUnsigned(funcSizes[i]) + funcSizes[i];
+        }
+
+        return size;
+    }
+
+    public int sizeOfData(List<Data> datas) {
+        return datas.isEmpty() ? 0 : sizeOfSection(sizeOfDataContent(datas));
+    }
+
+    int sizeOfDataContent(List<Data> datas) {
+        int size = LEB128.sizeOfUnsigned(datas.size());
+        for (Data data : datas) {
+            // The indicator always fits into a single byte
+            size += 1;
+
+            if (data.mode() instanceof Data.Mode.Active) {
+                var active = (Data.Mode.Active) data.mode();
+
+                if (active.memIndex() != 0) {
+                    size += LEB128.sizeOfUnsigned(active.memIndex());
+                }
+
+                size += constExprSizer.sizeOf(active.offset());
+            }
+
+            size += LEB128.sizeOfUnsigned(data.initLength()) + data.initLength();
+        }
+
+        return size;
+    }
+
+    public int sizeOfModule(Module module) {
+        int size = WasmBinaryEncoder.WASM_MAGIC.length + WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION.length;
+
+        size += sizeOfTypes(module.types());
+        size += sizeOfImports(module.imports());
+        size += sizeOfFunctions(module.funcs());
+        size += sizeOfTables(module.tables());
+        size += sizeOfMemories(module.mems());
+        size += sizeOfGlobals(module.globals());
+        size += sizeOfExports(module.exports());
+        size += sizeOfStart(module.start());
+        size += sizeOfElems(module.elems());
+        size += sizeOfDataCount(module.datas());
+        size += sizeOfCode(module.funcs());
+        size += sizeOfData(module.datas());
+
+        return size;
+    }
+}
@@ -10,12 +10,16 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 public class WasmTypeBinaryEncodingVisitor implements WasmTypeVisitor<IOException> {
-    private final OutputStream output;
+    private OutputStream output;
 
     public WasmTypeBinaryEncodingVisitor(OutputStream output) {
         this.output = output;
     }
 
+    public void retarget(OutputStream output) {
+        this.output = output;
+    }
+
     @Override
     public void visitTypeId(TypeId typeId) throws IOException {
         LEB128.writeSigned(output, typeId.typeIndex());
@@ -101,16 +105,11 @@ public class WasmTypeBinaryEncodingVisitor implements WasmTypeVisitor<IOExceptio
 
     @Override
     public void visitRefType(RefType ref) throws IOException {
-        if (!ref.isNullable()) {
-            if (ref.heapType() instanceof TypeId) {
-                output.write(TypeOpcode.REF.opcode());
-                visitHeapType(ref.heapType());
-            } else {
-                // Short form for non-index, non-nullable heap type
-                visitHeapType(ref.heapType());
-            }
+        if (ref.isNullable() && !(ref.heapType() instanceof TypeId)) {
+            // Short form for nullable references to abstract heap types, such as funcref and externref
+            visitHeapType(ref.heapType());
         } else {
-            output.write(TypeOpcode.REF_NULLABLE.opcode());
+            output.write(ref.isNullable() ? TypeOpcode.REF_NULLABLE.opcode() : TypeOpcode.REF.opcode());
             visitHeapType(ref.heapType());
         }
     }
@@ -0,0 +1,120 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.types.*;
+
+public class WasmTypeBinarySizingVisitor implements WasmTypeVisitor<RuntimeException> {
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        this.size = 0;
+    }
+
+    public int sizeOf(WasmType type) {
+        reset();
+        type.accept(this);
+        return size;
+    }
+
+    @Override
+    public void visitTypeId(TypeId typeId) {
+        size += LEB128.sizeOfSigned(typeId.typeIndex());
+    }
+
+    @Override
+    public void visitHeapFunc(HeapFuncType heapFunc) {
+        size += 1;
+    }
+
+    @Override
+    public void visitHeapExtern(HeapExternType heapExtern) {
+        size += 1;
+    }
+
+    @Override
+    public void visitLimits(Limits limits) {
+        if (limits.max() == null) {
+            size += 1;
+            size += LEB128.sizeOfUnsigned(limits.min());
+        } else {
+            size += 1;
+            size += LEB128.sizeOfUnsigned(limits.min());
+            size += LEB128.sizeOfUnsigned(limits.max());
+        }
+    }
+
+    @Override
+    public void visitFuncType(FuncType func) {
+        size += 1;
+
+        size += LEB128.sizeOfUnsigned(func.arguments().size());
+        for (ValType valType : func.arguments()) {
+            visitValType(valType);
+        }
+
+        size += LEB128.sizeOfUnsigned(func.results().size());
+        for (ValType valType : func.results()) {
+            visitValType(valType);
+        }
+    }
+
+    @Override
+    public void visitTableType(TableType table) {
+        visitRefType(table.refType());
+        visitLimits(table.limits());
+    }
+
+    @Override
+    public void visitMemType(MemType mem) {
+        visitLimits(mem.limits());
+    }
+
+    @Override
+    public void visitGlobalType(GlobalType global) {
+        visitValType(global.valType());
+        size += 1;
+    }
+
+    @Override
+    public void visitI32Type(I32Type i32) {
+        size += 1;
+    }
+
+    @Override
+    public void visitI64Type(I64Type i64) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF32Type(F32Type f32) {
+        size += 1;
+    }
+
+    @Override
+    public void visitF64Type(F64Type f64) {
+        size += 1;
+    }
+
+    @Override
+    public void visitRefType(RefType ref) {
+        if (ref.isNullable() && !(ref.heapType() instanceof TypeId)) {
+            // Short form for nullable references to abstract heap types, such as funcref and externref
+            visitHeapType(ref.heapType());
+        } else {
+            size += 1;
+            visitHeapType(ref.heapType());
+        }
+    }
+
+    @Override
+    public void visitV128Type(V128Type v128) {
+        size += 1;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+// The binary encoding of a function body, with the side table for its branches and the sizes of the frame it runs in.
+// A frame holds the parameters, then the remaining locals, then the operand stack.
+final class FunctionCode {
+    // Each entry of the side table is for one branch, in the order the branches are encoded.
+    // An if has an entry for when its condition is false, an else has one for the end of the consequent,
+    // and a br_table has one for each of its labels followed by the default label.
+    static final int ENTRY_SIZE = 4;
+    // The offset in the code to continue from
+    static final int TARGET = 0;
+    // The index in the side table of the entry for the next branch after the target
+    static final int NEXT_ENTRY = 1;
+    // The number of values the branch keeps, and the height in the frame to move them down to
+    static final int ARITY = 2;
+    static final int HEIGHT = 3;
+
+    // The code may be part of a larger array, such as the binary encoding of the whole module
+    final byte[] code;
+    final int start;
+    // The offset of the final end
+    final int end;
+    final int[] sideTable;
+    final int paramCount;
+    final int localCount;
+    final int resultCount;
+    // The greatest number of slots the frame uses, including the locals
+    final int frameSize;
+
+    FunctionCode(byte[] code, int start, int end, int[] sideTable, int paramCount, int localCount, int resultCount, int frameSize) {
+        this.code = code;
+        this.start = start;
+        this.end = end;
+        this.sideTable = sideTable;
+        this.paramCount = paramCount;
+        this.localCount = localCount;
+        this.resultCount = resultCount;
+        this.frameSize = frameSize;
+    }
+}
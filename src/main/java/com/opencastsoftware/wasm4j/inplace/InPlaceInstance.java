@@ -0,0 +1,987 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.LEB128;
+import com.opencastsoftware.wasm4j.encoding.binary.TypeOpcode;
+import com.opencastsoftware.wasm4j.runtime.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// An instance whose functions are interpreted from their binary encoding, using a side table for their branches.
+// Every call made from within the instance shares one operand stack, in which each function has a frame
+// holding its locals followed by its operands.
+final class InPlaceInstance extends Instance {
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final int[] paramCounts;
+    private final FunctionCode[] codes;
+
+    // The operand stack of a call from outside the instance, which grows as calls are nested
+    private static final class OperandStack {
+        long[] values = new long[256];
+
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+    }
+
+    // The code of each function defined by the module, with the side table built as the module was validated
+    InPlaceInstance(Module module, Imports imports, FunctionCode[] codes) {
+        super(module, imports);
+
+        this.paramCounts = module.types().stream().mapToInt(type -> type.arguments().size()).toArray();
+        this.codes = codes;
+
+        initialize();
+    }
+
+    private FunctionCode code(int funcIndex) {
+        return codes[funcIndex - importedFuncCount];
+    }
+
+    @Override
+    protected long[] call(int funcIndex, long[] args) {
+        var operands = new OperandStack();
+        operands.ensureCapacity(args.length);
+        System.arraycopy(args, 0, operands.values, 0, args.length);
+
+        // The code of each function is run by a loop, so the stack only grows with the calls it makes
+        int sp;
+        try {
+            sp = call(operands, funcIndex, args.length);
+        } catch (StackOverflowError e) {
+            throw callStackExhausted(e);
+        }
+
+        return Arrays.copyOf(operands.values, sp);
+    }
+
+    // Calls a function whose arguments are at the top of the stack, replacing them with its results and returning the new top
+    private int call(OperandStack operands, int funcIndex, int sp) {
+        if (funcIndex < importedFuncCount) {
+            int params = paramCounts[funcTypeIndices[funcIndex]];
+            int fp = sp - params;
+            var results = importedFuncs[funcIndex].call(Arrays.copyOfRange(operands.values, fp, sp));
+            operands.ensureCapacity(fp + results.length);
+            System.arraycopy(results, 0, operands.values, fp, results.length);
+            return fp + results.length;
+        }
+
+        var code = code(funcIndex);
+        int fp = sp - code.paramCount;
+        operands.ensureCapacity(fp + code.frameSize);
+        Arrays.fill(operands.values, sp, fp + code.localCount, 0L);
+
+        execute(operands, code, fp);
+
+        return fp + code.resultCount;
+    }
+
+    private int indirectTarget(int tableIndex, int typeIndex, int elementIndex) {
+        long ref = tables[tableIndex].get(elementIndex);
+
+        if (ref == Values.NULL) {
+            throw new Trap("uninitialized element " + Integer.toUnsignedString(elementIndex));
+        }
+
+        int funcIndex = Values.asFuncIndex(ref);
+        if (funcIndex >= funcTypeIndices.length || canonicalTypes[funcTypeIndices[funcIndex]] != canonicalTypes[typeIndex]) {
+            throw new Trap("indirect call type mismatch");
+        }
+
+        return funcIndex;
+    }
+
+    private static ByteBuffer buffer(MemoryInstance memory) {
+        return memory != null ? memory.buffer() : null;
+    }
+
+    // Immediates are decoded as they are reached, as they are not stored anywhere else
+
+    private static int skipLeb128(byte[] code, int pc) {
+        return pc + LEB128.encodedLength(code, pc);
+    }
+
+    private static int skipValType(byte[] code, int pc) {
+        byte type = code[pc];
+        if (type == TypeOpcode.REF.opcode() || type == TypeOpcode.REF_NULLABLE.opcode()) {
+            return skipLeb128(code, pc + 1);
+        }
+        return pc + 1;
+    }
+
+    private static int skipBlockType(byte[] code, int pc) {
+        // Empty block types and value types would be negative as signed values, unlike type indices
+        return (code[pc] & 0xC0) == 0x40 ? skipValType(code, pc) : skipLeb128(code, pc);
+    }
+
+    private void execute(OperandStack operands, FunctionCode function, int fp) {
+        final byte[] code = function.code;
+        final int[] sideTable = function.sideTable;
+        final int end = function.end;
+        long[] stack = operands.values;
+        int sp = fp + function.localCount;
+        int pc = function.start;
+        // The entry of the next branch in the side table
+        int stp = 0;
+
+        // Loads and stores use the first memory, whose contents are replaced when it grows
+        final var memory = memories.length > 0 ? memories[0] : null;
+        var buffer = buffer(memory);
+
+        while (true) {
+            switch (code[pc++] & 0xFF) {
+                case WasmOpcodes.UNREACHABLE:
+                    throw new Trap("unreachable");
+                case WasmOpcodes.NOP:
+                    break;
+                case WasmOpcodes.BLOCK:
+                case WasmOpcodes.LOOP:
+                    pc = skipBlockType(code, pc);
+                    break;
+                case WasmOpcodes.IF:
+                    if ((int) stack[--sp] != 0) {
+                        pc = skipBlockType(code, pc);
+                        stp += FunctionCode.ENTRY_SIZE;
+                    } else {
+                        pc = sideTable[stp + FunctionCode.TARGET];
+                        stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    }
+                    break;
+                case WasmOpcodes.ELSE:
+                    // The consequent has finished, leaving its results where the end expects them
+                    pc = sideTable[stp + FunctionCode.TARGET];
+                    stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    break;
+                case WasmOpcodes.END:
+                    if (pc > end) {
+                        int results = function.resultCount;
+                        System.arraycopy(stack, sp - results, stack, fp, results);
+                        return;
+                    }
+                    break;
+                case WasmOpcodes.BR: {
+                    int arity = sideTable[stp + FunctionCode.ARITY];
+                    int height = fp + sideTable[stp + FunctionCode.HEIGHT];
+                    System.arraycopy(stack, sp - arity, stack, height, arity);
+                    sp = height + arity;
+                    pc = sideTable[stp + FunctionCode.TARGET];
+                    stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    break;
+                }
+                case WasmOpcodes.BR_IF:
+                    if ((int) stack[--sp] != 0) {
+                        int arity = sideTable[stp + FunctionCode.ARITY];
+                        int height = fp + sideTable[stp + FunctionCode.HEIGHT];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = sideTable[stp + FunctionCode.TARGET];
+                        stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    } else {
+                        pc = skipLeb128(code, pc);
+                        stp += FunctionCode.ENTRY_SIZE;
+                    }
+                    break;
+                case WasmOpcodes.BR_TABLE: {
+                    int count = LEB128.readUnsignedInt(code, pc);
+                    int index = (int) stack[--sp];
+                    // Out of range indices, including negative ones, select the default label
+                    stp += FunctionCode.ENTRY_SIZE * (Integer.compareUnsigned(index, count) < 0 ? index : count);
+                    int arity = sideTable[stp + FunctionCode.ARITY];
+                    int height = fp + sideTable[stp + FunctionCode.HEIGHT];
+                    System.arraycopy(stack, sp - arity, stack, height, arity);
+                    sp = height + arity;
+                    pc = sideTable[stp + FunctionCode.TARGET];
+                    stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    break;
+                }
+                case WasmOpcodes.BR_ON_NULL:
+                    if (stack[sp - 1] == Values.NULL) {
+                        sp--;
+                        int arity = sideTable[stp + FunctionCode.ARITY];
+                        int height = fp + sideTable[stp + FunctionCode.HEIGHT];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = sideTable[stp + FunctionCode.TARGET];
+                        stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    } else {
+                        pc = skipLeb128(code, pc);
+                        stp += FunctionCode.ENTRY_SIZE;
+                    }
+                    break;
+                case WasmOpcodes.BR_ON_NON_NULL:
+                    if (stack[sp - 1] != Values.NULL) {
+                        int arity = sideTable[stp + FunctionCode.ARITY];
+                        int height = fp + sideTable[stp + FunctionCode.HEIGHT];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = sideTable[stp + FunctionCode.TARGET];
+                        stp = sideTable[stp + FunctionCode.NEXT_ENTRY];
+                    } else {
+                        sp--;
+                        pc = skipLeb128(code, pc);
+                        stp += FunctionCode.ENTRY_SIZE;
+                    }
+                    break;
+                case WasmOpcodes.RETURN: {
+                    int results = function.resultCount;
+                    System.arraycopy(stack, sp - results, stack, fp, results);
+                    return;
+                }
+                case WasmOpcodes.CALL: {
+                    long funcIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(funcIndex);
+                    sp = call(operands, LEB128.decodedValue(funcIndex), sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                }
+                case WasmOpcodes.CALL_INDIRECT: {
+                    long typeIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(typeIndex);
+                    long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(tableIndex);
+                    int funcIndex = indirectTarget(LEB128.decodedValue(tableIndex), LEB128.decodedValue(typeIndex), (int) stack[--sp]);
+                    sp = call(operands, funcIndex, sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                }
+                case WasmOpcodes.CALL_REF: {
+                    pc = skipLeb128(code, pc);
+                    long ref = stack[--sp];
+                    if (ref == Values.NULL) {
+                        throw new Trap("null function reference");
+                    }
+                    sp = call(operands, Values.asFuncIndex(ref), sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                }
+                case WasmOpcodes.DROP:
+                    sp--;
+                    break;
+                case WasmOpcodes.SELECT:
+                    sp -= 2;
+                    if ((int) stack[sp + 1] == 0) {
+                        stack[sp - 1] = stack[sp];
+                    }
+                    break;
+                case WasmOpcodes.SELECT_TYPE: {
+                    int count = LEB128.readUnsignedInt(code, pc);
+                    pc = skipLeb128(code, pc);
+                    for (int i = 0; i < count; i++) {
+                        pc = skipValType(code, pc);
+                    }
+                    sp -= 2;
+                    if ((int) stack[sp + 1] == 0) {
+                        stack[sp - 1] = stack[sp];
+                    }
+                    break;
+                }
+                case WasmOpcodes.LOCAL_GET: {
+                    long index = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(index);
+                    stack[sp++] = stack[fp + LEB128.decodedValue(index)];
+                    break;
+                }
+                case WasmOpcodes.LOCAL_SET: {
+                    long index = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(index);
+                    stack[fp + LEB128.decodedValue(index)] = stack[--sp];
+                    break;
+                }
+                case WasmOpcodes.LOCAL_TEE: {
+                    long index = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(index);
+                    stack[fp + LEB128.decodedValue(index)] = stack[sp - 1];
+                    break;
+                }
+                case WasmOpcodes.GLOBAL_GET: {
+                    long index = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(index);
+                    stack[sp++] = globals[LEB128.decodedValue(index)].get();
+                    break;
+                }
+                case WasmOpcodes.GLOBAL_SET: {
+                    long index = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(index);
+                    globals[LEB128.decodedValue(index)].set(stack[--sp]);
+                    break;
+                }
+                case WasmOpcodes.I32_LOAD:
+                case WasmOpcodes.F32_LOAD: {
+                    // The alignment is only a hint
+                    pc = skipLeb128(code, pc);
+                    long offset = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(offset);
+                    stack[sp - 1] = buffer.getInt(memory.effectiveAddress((int) stack[sp - 1], LEB128.decodedValue(offset), 4));
+                    break;
+                }
+                case WasmOpcodes.I64_LOAD:
+                case WasmOpcodes.F64_LOAD: {
+                    pc = skipLeb128(code, pc);
+                    long offset = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(offset);
+                    stack[sp - 1] = buffer.getLong(memory.effectiveAddress((int) stack[sp - 1], LEB128.decodedValue(offset), 8));
+                    break;
+                }
+                case WasmOpcodes.I32_STORE:
+                case WasmOpcodes.F32_STORE: {
+                    pc = skipLeb128(code, pc);
+                    long offset = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(offset);
+                    buffer.putInt(memory.effectiveAddress((int) stack[sp - 2], LEB128.decodedValue(offset), 4), (int) stack[sp - 1]);
+                    sp -= 2;
+                    break;
+                }
+                case WasmOpcodes.I64_STORE:
+                case WasmOpcodes.F64_STORE: {
+                    pc = skipLeb128(code, pc);
+                    long offset = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(offset);
+                    buffer.putLong(memory.effectiveAddress((int) stack[sp - 2], LEB128.decodedValue(offset), 8), stack[sp - 1]);
+                    sp -= 2;
+                    break;
+                }
+                case WasmOpcodes.MEMORY_SIZE: {
+                    long memIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(memIndex);
+                    stack[sp++] = memories[LEB128.decodedValue(memIndex)].size();
+                    break;
+                }
+                case WasmOpcodes.MEMORY_GROW: {
+                    long memIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(memIndex);
+                    stack[sp - 1] = memories[LEB128.decodedValue(memIndex)].grow((int) stack[sp - 1]);
+                    buffer = buffer(memory);
+                    break;
+                }
+                case WasmOpcodes.REF_NULL:
+                    pc = skipLeb128(code, pc);
+                    stack[sp++] = Values.NULL;
+                    break;
+                case WasmOpcodes.REF_FUNC: {
+                    long funcIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(funcIndex);
+                    stack[sp++] = Values.funcRef(LEB128.decodedValue(funcIndex));
+                    break;
+                }
+                case WasmOpcodes.REF_IS_NULL:
+                    stack[sp - 1] = stack[sp - 1] == Values.NULL ? 1 : 0;
+                    break;
+                case WasmOpcodes.REF_AS_NON_NULL:
+                    if (stack[sp - 1] == Values.NULL) {
+                        throw new Trap("null reference");
+                    }
+                    break;
+                case WasmOpcodes.TABLE_GET: {
+                    long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(tableIndex);
+                    stack[sp - 1] = tables[LEB128.decodedValue(tableIndex)].get((int) stack[sp - 1]);
+                    break;
+                }
+                case WasmOpcodes.TABLE_SET: {
+                    long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(tableIndex);
+                    sp -= 2;
+                    tables[LEB128.decodedValue(tableIndex)].set((int) stack[sp], stack[sp + 1]);
+                    break;
+                }
+                case WasmOpcodes.I32_CONST: {
+                    long value = LEB128.decodeSignedInt(code, pc);
+                    pc += LEB128.decodedLength(value);
+                    stack[sp++] = LEB128.decodedValue(value);
+                    break;
+                }
+                case WasmOpcodes.I64_CONST:
+                    stack[sp++] = LEB128.readSignedLong(code, pc);
+                    pc = skipLeb128(code, pc);
+                    break;
+                case WasmOpcodes.F32_CONST:
+                    stack[sp++] = (int) INT_LE.get(code, pc);
+                    pc += Float.BYTES;
+                    break;
+                case WasmOpcodes.F64_CONST:
+                    stack[sp++] = (long) LONG_LE.get(code, pc);
+                    pc += Double.BYTES;
+                    break;
+                // Values are represented by their bits, so reinterpreting them leaves them as they are
+                case WasmOpcodes.I32_REINTERPRET_F32:
+                case WasmOpcodes.I64_REINTERPRET_F64:
+                case WasmOpcodes.F32_REINTERPRET_I32:
+                case WasmOpcodes.F64_REINTERPRET_I64:
+                    break;
+                case WasmOpcodes.PREFIX_FC: {
+                    long opcode = LEB128.decodeUnsignedInt(code, pc);
+                    pc += LEB128.decodedLength(opcode);
+                    switch (LEB128.decodedValue(opcode)) {
+                        case WasmOpcodes.MEMORY_INIT: {
+                            long dataIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(dataIndex);
+                            long memIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(memIndex);
+                            sp -= 3;
+                            memories[LEB128.decodedValue(memIndex)].init((int) stack[sp], datas[LEB128.decodedValue(dataIndex)], (int) stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.DATA_DROP: {
+                            long dataIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(dataIndex);
+                            dropData(LEB128.decodedValue(dataIndex));
+                            break;
+                        }
+                        case WasmOpcodes.MEMORY_COPY: {
+                            long target = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(target);
+                            long source = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(source);
+                            sp -= 3;
+                            memories[LEB128.decodedValue(target)].copy((int) stack[sp], memories[LEB128.decodedValue(source)], (int) stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.MEMORY_FILL: {
+                            long memIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(memIndex);
+                            sp -= 3;
+                            memories[LEB128.decodedValue(memIndex)].fill((int) stack[sp], (byte) stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.TABLE_INIT: {
+                            long elemIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(elemIndex);
+                            long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(tableIndex);
+                            sp -= 3;
+                            tables[LEB128.decodedValue(tableIndex)].init((int) stack[sp], elems[LEB128.decodedValue(elemIndex)], (int) stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.ELEM_DROP: {
+                            long elemIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(elemIndex);
+                            dropElem(LEB128.decodedValue(elemIndex));
+                            break;
+                        }
+                        case WasmOpcodes.TABLE_COPY: {
+                            long target = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(target);
+                            long source = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(source);
+                            sp -= 3;
+                            tables[LEB128.decodedValue(target)].copy((int) stack[sp], tables[LEB128.decodedValue(source)], (int) stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.TABLE_GROW: {
+                            long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(tableIndex);
+                            sp--;
+                            stack[sp - 1] = tables[LEB128.decodedValue(tableIndex)].grow((int) stack[sp], stack[sp - 1]);
+                            break;
+                        }
+                        case WasmOpcodes.TABLE_SIZE: {
+                            long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(tableIndex);
+                            stack[sp++] = tables[LEB128.decodedValue(tableIndex)].size();
+                            break;
+                        }
+                        case WasmOpcodes.TABLE_FILL: {
+                            long tableIndex = LEB128.decodeUnsignedInt(code, pc);
+                            pc += LEB128.decodedLength(tableIndex);
+                            sp -= 3;
+                            tables[LEB128.decodedValue(tableIndex)].fill((int) stack[sp], stack[sp + 1], (int) stack[sp + 2]);
+                            break;
+                        }
+                        case WasmOpcodes.I32_TRUNC_SAT_F32_S:
+                            stack[sp - 1] = (int) Float.intBitsToFloat((int) stack[sp - 1]);
+                            break;
+                        case WasmOpcodes.I32_TRUNC_SAT_F32_U:
+                            stack[sp - 1] = Numerics.i32TruncSatF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                            break;
+                        case WasmOpcodes.I32_TRUNC_SAT_F64_S:
+                            stack[sp - 1] = (int) Double.longBitsToDouble(stack[sp - 1]);
+                            break;
+                        case WasmOpcodes.I32_TRUNC_SAT_F64_U:
+                            stack[sp - 1] = Numerics.i32TruncSatF64U(Double.longBitsToDouble(stack[sp - 1]));
+                            break;
+                        case WasmOpcodes.I64_TRUNC_SAT_F32_S:
+                            stack[sp - 1] = (long) Float.intBitsToFloat((int) stack[sp - 1]);
+                            break;
+                        case WasmOpcodes.I64_TRUNC_SAT_F32_U:
+                            stack[sp - 1] = Numerics.i64TruncSatF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                            break;
+                        case WasmOpcodes.I64_TRUNC_SAT_F64_S:
+                            stack[sp - 1] = (long) Double.longBitsToDouble(stack[sp - 1]);
+                            break;
+                        case WasmOpcodes.I64_TRUNC_SAT_F64_U:
+                            stack[sp - 1] = Numerics.i64TruncSatF64U(Double.longBitsToDouble(stack[sp - 1]));
+                            break;
+                        default:
+                            throw new IllegalStateException("unknown opcode 0xFC " + LEB128.decodedValue(opcode));
+                    }
+                    break;
+                }
+                case WasmOpcodes.I32_CLZ:
+                    stack[sp - 1] = Integer.numberOfLeadingZeros((int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I32_CTZ:
+                    stack[sp - 1] = Integer.numberOfTrailingZeros((int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I32_POPCNT:
+                    stack[sp - 1] = Integer.bitCount((int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I64_CLZ:
+                    stack[sp - 1] = Long.numberOfLeadingZeros(stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I64_CTZ:
+                    stack[sp - 1] = Long.numberOfTrailingZeros(stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I64_POPCNT:
+                    stack[sp - 1] = Long.bitCount(stack[sp - 1]);
+                    break;
+                case WasmOpcodes.F32_ABS:
+                    stack[sp - 1] = (int) stack[sp - 1] & 0x7FFF_FFFF;
+                    break;
+                case WasmOpcodes.F32_CEIL:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.ceil(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F32_FLOOR:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.floor(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F32_NEAREST:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32Nearest(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F32_NEG:
+                    stack[sp - 1] = (int) stack[sp - 1] ^ 0x8000_0000;
+                    break;
+                case WasmOpcodes.F32_SQRT:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.sqrt(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F32_TRUNC:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32Trunc(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F64_ABS:
+                    stack[sp - 1] = stack[sp - 1] & 0x7FFF_FFFF_FFFF_FFFFL;
+                    break;
+                case WasmOpcodes.F64_CEIL:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.ceil(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F64_FLOOR:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.floor(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F64_NEAREST:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.rint(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F64_NEG:
+                    stack[sp - 1] = stack[sp - 1] ^ 0x8000_0000_0000_0000L;
+                    break;
+                case WasmOpcodes.F64_SQRT:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.sqrt(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case WasmOpcodes.F64_TRUNC:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Numerics.f64Trunc(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case WasmOpcodes.I32_ADD:
+                    stack[sp - 2] = (int) stack[sp - 2] + (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_AND:
+                    stack[sp - 2] = (int) stack[sp - 2] & (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_DIV_S:
+                    stack[sp - 2] = Numerics.i32DivS((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_DIV_U:
+                    stack[sp - 2] = Numerics.i32DivU((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_MUL:
+                    stack[sp - 2] = (int) stack[sp - 2] * (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_OR:
+                    stack[sp - 2] = (int) stack[sp - 2] | (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_REM_S:
+                    stack[sp - 2] = Numerics.i32RemS((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_REM_U:
+                    stack[sp - 2] = Numerics.i32RemU((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_ROTL:
+                    stack[sp - 2] = Integer.rotateLeft((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_ROTR:
+                    stack[sp - 2] = Integer.rotateRight((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_SHL:
+                    stack[sp - 2] = (int) stack[sp - 2] << (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_SHR_S:
+                    stack[sp - 2] = (int) stack[sp - 2] >> (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_SHR_U:
+                    stack[sp - 2] = (int) stack[sp - 2] >>> (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_SUB:
+                    stack[sp - 2] = (int) stack[sp - 2] - (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_XOR:
+                    stack[sp - 2] = (int) stack[sp - 2] ^ (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_ADD:
+                    stack[sp - 2] = stack[sp - 2] + stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_AND:
+                    stack[sp - 2] = stack[sp - 2] & stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_DIV_S:
+                    stack[sp - 2] = Numerics.i64DivS(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_DIV_U:
+                    stack[sp - 2] = Numerics.i64DivU(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_MUL:
+                    stack[sp - 2] = stack[sp - 2] * stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_OR:
+                    stack[sp - 2] = stack[sp - 2] | stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_REM_S:
+                    stack[sp - 2] = Numerics.i64RemS(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_REM_U:
+                    stack[sp - 2] = Numerics.i64RemU(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_ROTL:
+                    stack[sp - 2] = Long.rotateLeft(stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_ROTR:
+                    stack[sp - 2] = Long.rotateRight(stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_SHL:
+                    stack[sp - 2] = stack[sp - 2] << stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_SHR_S:
+                    stack[sp - 2] = stack[sp - 2] >> stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_SHR_U:
+                    stack[sp - 2] = stack[sp - 2] >>> stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_SUB:
+                    stack[sp - 2] = stack[sp - 2] - stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_XOR:
+                    stack[sp - 2] = stack[sp - 2] ^ stack[sp - 1];
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_ADD:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) + Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_COPYSIGN:
+                    stack[sp - 2] = ((int) stack[sp - 2] & 0x7FFF_FFFF) | ((int) stack[sp - 1] & 0x8000_0000);
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_DIV:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) / Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_MAX:
+                    stack[sp - 2] = Float.floatToRawIntBits(Math.max(Float.intBitsToFloat((int) stack[sp - 2]), Float.intBitsToFloat((int) stack[sp - 1])));
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_MIN:
+                    stack[sp - 2] = Float.floatToRawIntBits(Math.min(Float.intBitsToFloat((int) stack[sp - 2]), Float.intBitsToFloat((int) stack[sp - 1])));
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_MUL:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) * Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_SUB:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) - Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_ADD:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) + Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_COPYSIGN:
+                    stack[sp - 2] = (stack[sp - 2] & 0x7FFF_FFFF_FFFF_FFFFL) | (stack[sp - 1] & 0x8000_0000_0000_0000L);
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_DIV:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) / Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_MAX:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(stack[sp - 2]), Double.longBitsToDouble(stack[sp - 1])));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_MIN:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(stack[sp - 2]), Double.longBitsToDouble(stack[sp - 1])));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_MUL:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) * Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_SUB:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) - Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_EQZ:
+                    stack[sp - 1] = (int) stack[sp - 1] == 0 ? 1 : 0;
+                    break;
+                case WasmOpcodes.I64_EQZ:
+                    stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                    break;
+                case WasmOpcodes.I32_EQ:
+                    stack[sp - 2] = (int) stack[sp - 2] == (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_GE_S:
+                    stack[sp - 2] = (int) stack[sp - 2] >= (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_GE_U:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) >= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_GT_S:
+                    stack[sp - 2] = (int) stack[sp - 2] > (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_GT_U:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) > 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_LE_S:
+                    stack[sp - 2] = (int) stack[sp - 2] <= (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_LE_U:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) <= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_LT_S:
+                    stack[sp - 2] = (int) stack[sp - 2] < (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_LT_U:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) < 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_NE:
+                    stack[sp - 2] = (int) stack[sp - 2] != (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_EQ:
+                    stack[sp - 2] = stack[sp - 2] == stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_GE_S:
+                    stack[sp - 2] = stack[sp - 2] >= stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_GE_U:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) >= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_GT_S:
+                    stack[sp - 2] = stack[sp - 2] > stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_GT_U:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) > 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_LE_S:
+                    stack[sp - 2] = stack[sp - 2] <= stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_LE_U:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) <= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_LT_S:
+                    stack[sp - 2] = stack[sp - 2] < stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_LT_U:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) < 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I64_NE:
+                    stack[sp - 2] = stack[sp - 2] != stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_EQ:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) == Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_GE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) >= Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_GT:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) > Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_LE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) <= Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_LT:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) < Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F32_NE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) != Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_EQ:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) == Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_GE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) >= Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_GT:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) > Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_LE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) <= Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_LT:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) < Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.F64_NE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) != Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case WasmOpcodes.I32_EXTEND8_S:
+                    stack[sp - 1] = (byte) (int) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I64_EXTEND8_S:
+                    stack[sp - 1] = (byte) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I32_EXTEND16_S:
+                    stack[sp - 1] = (short) (int) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I64_EXTEND16_S:
+                    stack[sp - 1] = (short) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I64_EXTEND32_S:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I32_WRAP_I64:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I64_EXTEND_I32_S:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case WasmOpcodes.I64_EXTEND_I32_U:
+                    stack[sp - 1] = Integer.toUnsignedLong((int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.I32_TRUNC_F32_S:
+                    stack[sp - 1] = Numerics.i32TruncF32S(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I32_TRUNC_F32_U:
+                    stack[sp - 1] = Numerics.i32TruncF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I32_TRUNC_F64_S:
+                    stack[sp - 1] = Numerics.i32TruncF64S(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I32_TRUNC_F64_U:
+                    stack[sp - 1] = Numerics.i32TruncF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I64_TRUNC_F32_S:
+                    stack[sp - 1] = Numerics.i64TruncF32S(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I64_TRUNC_F32_U:
+                    stack[sp - 1] = Numerics.i64TruncF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I64_TRUNC_F64_S:
+                    stack[sp - 1] = Numerics.i64TruncF64S(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.I64_TRUNC_F64_U:
+                    stack[sp - 1] = Numerics.i64TruncF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F32_DEMOTE_F64:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F64_PROMOTE_F32:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F32_CONVERT_I32_S:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) (int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.F32_CONVERT_I32_U:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Integer.toUnsignedLong((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F32_CONVERT_I64_S:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.F32_CONVERT_I64_U:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32ConvertI64U(stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F64_CONVERT_I32_S:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) (int) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.F64_CONVERT_I32_U:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) Integer.toUnsignedLong((int) stack[sp - 1]));
+                    break;
+                case WasmOpcodes.F64_CONVERT_I64_S:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) stack[sp - 1]);
+                    break;
+                case WasmOpcodes.F64_CONVERT_I64_U:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Numerics.f64ConvertI64U(stack[sp - 1]));
+                    break;
+                default:
+                    throw new IllegalStateException("unknown opcode " + (code[pc - 1] & 0xFF));
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import com.opencastsoftware.wasm4j.validation.ModuleValidator;
+
+// Instantiates modules whose functions are interpreted directly from their binary encoding.
+// Each function is scanned once, as it is validated, to build a side table of where its branches go,
+// so that nothing else is allocated for it. Functions of modules decoded lazily run from the module's own bytes.
+public final class InPlaceInterpreter {
+    private InPlaceInterpreter() {
+    }
+
+    public static Instance instantiate(Module module) {
+        return instantiate(module, Imports.empty());
+    }
+
+    public static Instance instantiate(Module module, Imports imports) {
+        var sideTables = new SideTableBuilder(module);
+        ModuleValidator.validate(module, sideTables);
+        return new InPlaceInstance(module, imports, sideTables.codes());
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Import;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.LEB128;
+import com.opencastsoftware.wasm4j.encoding.binary.LazyFunc;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.encoding.binary.TypeOpcode;
+import com.opencastsoftware.wasm4j.validation.ControlFlowListener;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+// Builds the side tables of a module's functions from the control flow reported as each body is validated,
+// so that validating a function and finding where each of its branches goes and which values it keeps take one pass.
+// Unreachable code is skipped, as it is never run.
+final class SideTableBuilder implements ControlFlowListener {
+    private final List<Func> funcs;
+    private final int importedFuncCount;
+    private final int[] paramCounts;
+    private final FunctionCode[] codes;
+
+    private byte[] code;
+    private int pc;
+    private int start;
+    // The offset of the instruction being validated
+    private int offset;
+
+    private int[] sideTable = new int[64];
+    private int size;
+
+    private int funcIndex;
+    private int localCount;
+
+    private int[] frameKinds = new int[16];
+    private int[] frameHeights = new int[16];
+    private int[] frameParams = new int[16];
+    private int[] frameResults = new int[16];
+    // The start of each loop and the first entry after it, which branches to the loop go back to
+    private int[] frameStarts = new int[16];
+    private int[] frameStartEntries = new int[16];
+    // The entries for branches to the end of each frame which are yet to be patched, chained through their targets
+    private int[] frameFixups = new int[16];
+    // The entry of an if for when its condition is false, which is patched at its else or end
+    private int[] frameElseFixups = new int[16];
+    private boolean[] frameUnreachable = new boolean[16];
+    private int depth;
+    // The number of structured instructions entered within unreachable code
+    private int skipDepth;
+    // Whether a loop has just started, which branches to it go back to the instruction after
+    private boolean loopStarted;
+    // The position of the last end, which is the final end once the function is complete
+    private int lastEnd;
+
+    SideTableBuilder(Module module) {
+        this.funcs = module.funcs();
+        this.importedFuncCount = (int) module.imports().stream()
+                .filter(imp -> imp.descriptor() instanceof Import.Descriptor.Func)
+                .count();
+        this.paramCounts = module.types().stream().mapToInt(type -> type.arguments().size()).toArray();
+        this.codes = new FunctionCode[funcs.size()];
+    }
+
+    // The code of each function defined by the module, once the module has been validated
+    FunctionCode[] codes() {
+        return codes;
+    }
+
+    @Override
+    public void startFunction(int funcIndex, int localCount, int resultCount, @Nullable PackedExpression body) {
+        var func = funcs.get(funcIndex - importedFuncCount);
+
+        if (body == null) {
+            // The locals are skipped in the code entry, so that the function is never decoded
+            use(((LazyFunc) func).code());
+            int runs = u32();
+            for (int i = 0; i < runs; i++) {
+                skipLeb128();
+                skipValType();
+            }
+        } else {
+            use(body.code());
+        }
+
+        // Validation does not limit the number of locals, but a frame must fit in an array
+        if (localCount > Integer.MAX_VALUE - 1024) {
+            throw new IllegalArgumentException("too many locals in function");
+        }
+
+        this.funcIndex = funcIndex;
+        this.localCount = localCount;
+        this.start = pc;
+        this.size = 0;
+        this.depth = 0;
+        this.skipDepth = 0;
+        this.loopStarted = false;
+
+        pushFrame(BLOCK, localCount, 0, resultCount);
+    }
+
+    @Override
+    public void endFunction(int maxHeight) {
+        int typeIndex = funcs.get(funcIndex - importedFuncCount).typeIndex();
+        codes[funcIndex - importedFuncCount] = new FunctionCode(code, start, lastEnd, Arrays.copyOf(sideTable, size),
+                paramCounts[typeIndex], localCount, frameResults[0], localCount + maxHeight);
+    }
+
+    // Runs the code where it is when the buffer has an accessible array, and otherwise copies it once
+    private void use(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.code = buffer.array();
+            this.pc = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.code = new byte[buffer.remaining()];
+            buffer.duplicate().get(code);
+            this.pc = 0;
+        }
+    }
+
+    private int u32() {
+        long decoded = LEB128.decodeUnsignedInt(code, pc);
+        pc += LEB128.decodedLength(decoded);
+        return LEB128.decodedValue(decoded);
+    }
+
+    private void skipLeb128() {
+        pc += LEB128.encodedLength(code, pc);
+    }
+
+    private void skipValType() {
+        byte type = code[pc++];
+        if (type == TypeOpcode.REF.opcode() || type == TypeOpcode.REF_NULLABLE.opcode()) {
+            // The heap type is a single byte or a type index
+            skipLeb128();
+        }
+    }
+
+    // Frames
+
+    private void pushFrame(int kind, int height, int params, int results) {
+        if (depth == frameKinds.length) {
+            int length = depth * 2;
+            frameKinds = Arrays.copyOf(frameKinds, length);
+            frameHeights = Arrays.copyOf(frameHeights, length);
+            frameParams = Arrays.copyOf(frameParams, length);
+            frameResults = Arrays.copyOf(frameResults, length);
+            frameStarts = Arrays.copyOf(frameStarts, length);
+            frameStartEntries = Arrays.copyOf(frameStartEntries, length);
+            frameFixups = Arrays.copyOf(frameFixups, length);
+            frameElseFixups = Arrays.copyOf(frameElseFixups, length);
+            frameUnreachable = Arrays.copyOf(frameUnreachable, length);
+        }
+
+        frameKinds[depth] = kind;
+        frameHeights[depth] = height;
+        frameParams[depth] = params;
+        frameResults[depth] = results;
+        frameStarts[depth] = -1;
+        frameStartEntries[depth] = size;
+        frameFixups[depth] = -1;
+        frameElseFixups[depth] = -1;
+        frameUnreachable[depth] = false;
+        depth++;
+    }
+
+    private boolean reachable() {
+        return !frameUnreachable[depth - 1];
+    }
+
+    // Events
+
+    @Override
+    public void instruction(int offset) {
+        this.offset = offset;
+
+        if (loopStarted) {
+            frameStarts[depth - 1] = start + offset;
+            loopStarted = false;
+        }
+    }
+
+    @Override
+    public void startBlock(int kind, int height, int params, int results) {
+        if (!reachable()) {
+            skipDepth++;
+        } else if (kind == IF) {
+            int entry = entry();
+            sideTable[entry + FunctionCode.TARGET] = -1;
+            sideTable[entry + FunctionCode.ARITY] = 0;
+            pushFrame(IF, localCount + height, params, results);
+            frameElseFixups[depth - 1] = entry;
+        } else {
+            pushFrame(kind, localCount + height, params, results);
+            loopStarted = kind == LOOP;
+        }
+    }
+
+    @Override
+    public void startElse() {
+        if (skipDepth > 0) {
+            return;
+        }
+
+        int frame = depth - 1;
+
+        if (!frameUnreachable[frame]) {
+            addBranch(0);
+        }
+
+        // The alternative starts after the else, which is a single byte
+        int entry = frameElseFixups[frame];
+        sideTable[entry + FunctionCode.TARGET] = start + offset + 1;
+        sideTable[entry + FunctionCode.NEXT_ENTRY] = size;
+        frameElseFixups[frame] = -1;
+        frameUnreachable[frame] = false;
+    }
+
+    @Override
+    public void end() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+
+        int frame = depth - 1;
+        // Branches go to the end itself, which returns from the function at the outermost level
+        int end = start + offset;
+        this.lastEnd = end;
+
+        // An if without an else goes to its end when the condition is false
+        if (frameElseFixups[frame] != -1) {
+            patch(frameElseFixups[frame], end);
+        }
+
+        patch(frameFixups[frame], end);
+        depth--;
+    }
+
+    @Override
+    public void branch(int labelIndex) {
+        if (reachable()) {
+            addBranch(labelIndex);
+        }
+    }
+
+    @Override
+    public void unreachable() {
+        if (reachable()) {
+            frameUnreachable[depth - 1] = true;
+        }
+    }
+
+    // Entries
+
+    private int entry() {
+        if (size + FunctionCode.ENTRY_SIZE > sideTable.length) {
+            sideTable = Arrays.copyOf(sideTable, sideTable.length * 2);
+        }
+
+        int entry = size;
+        size += FunctionCode.ENTRY_SIZE;
+        return entry;
+    }
+
+    private void patch(int fixup, int target) {
+        while (fixup != -1) {
+            int next = sideTable[fixup + FunctionCode.TARGET];
+            sideTable[fixup + FunctionCode.TARGET] = target;
+            sideTable[fixup + FunctionCode.NEXT_ENTRY] = size;
+            fixup = next;
+        }
+    }
+
+    // Adds an entry for a branch to a label, which is patched later for a branch forwards
+    private void addBranch(int labelIndex) {
+        int frame = depth - 1 - labelIndex;
+        int entry = entry();
+
+        if (frameKinds[frame] == LOOP) {
+            sideTable[entry + FunctionCode.TARGET] = frameStarts[frame];
+            sideTable[entry + FunctionCode.NEXT_ENTRY] = frameStartEntries[frame];
+            sideTable[entry + FunctionCode.ARITY] = frameParams[frame];
+        } else {
+            sideTable[entry + FunctionCode.TARGET] = frameFixups[frame];
+            frameFixups[frame] = entry;
+            sideTable[entry + FunctionCode.ARITY] = frameResults[frame];
+        }
+
+        sideTable[entry + FunctionCode.HEIGHT] = frameHeights[frame];
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.instructions;
+
+import com.opencastsoftware.wasm4j.types.BlockType;
+import org.jetbrains.annotations.Nullable;
+
+// Visits the instructions of an expression in the order they are encoded, without the nesting of structured instructions.
+// Blocks, loops and conditionals are delimited by start, else and end events, and every other instruction is visited as usual.
+// The end of the expression itself is visited as a final end event.
+public interface FlatInstructionVisitor<T extends Exception> extends InstructionVisitor<T> {
+    void visitBlockStart(@Nullable BlockType blockType) throws T;
+
+    void visitLoopStart(@Nullable BlockType blockType) throws T;
+
+    void visitIfStart(@Nullable BlockType blockType) throws T;
+
+    void visitElse() throws T;
+
+    void visitEnd() throws T;
+
+    // Expressions replayed from their encoding report where each instruction starts before visiting it,
+    // as an offset from the start of the expression
+    default void visitOffset(int offset) throws T {
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.instructions;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.instructions.control.Block;
+import com.opencastsoftware.wasm4j.instructions.control.If;
+import com.opencastsoftware.wasm4j.instructions.control.Loop;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Walks nested instructions in the order they are encoded, reporting them to a FlatInstructionVisitor.
+// The instructions enclosing the current position are kept on a stack in the heap rather than the Java call stack,
+// so that any depth of nesting can be walked.
+// The else of an if is always visited, even when its alternative is empty.
+public final class InstructionWalker {
+    // The instructions being visited at one level of nesting
+    private static final class Frame {
+        List<Instruction> instructions;
+        int position;
+        // The if whose consequent is being visited, which is followed by its alternative
+        @Nullable
+        If ifInstr;
+
+        void reset(List<Instruction> instructions, @Nullable If ifInstr) {
+            this.instructions = instructions;
+            this.position = 0;
+            this.ifInstr = ifInstr;
+        }
+    }
+
+    // Frames are reused as the walk enters and leaves structured instructions
+    private final List<Frame> frames = new ArrayList<>();
+    private int depth = 0;
+
+    private InstructionWalker() {
+    }
+
+    // Visits the instructions of an expression, followed by the end of the expression
+    public static <T extends Exception> void walk(Expression expression, FlatInstructionVisitor<T> visitor) throws T {
+        walk(expression.instructions(), visitor);
+        visitor.visitEnd();
+    }
+
+    public static <T extends Exception> void walk(Instruction instruction, FlatInstructionVisitor<T> visitor) throws T {
+        walk(Collections.singletonList(instruction), visitor);
+    }
+
+    public static <T extends Exception> void walk(List<Instruction> instructions, FlatInstructionVisitor<T> visitor) throws T {
+        new InstructionWalker().walkAll(instructions, visitor);
+    }
+
+    private void push(List<Instruction> instructions, @Nullable If ifInstr) {
+        if (depth == frames.size()) {
+            frames.add(new Frame());
+        }
+
+        frames.get(depth++).reset(instructions, ifInstr);
+    }
+
+    private <T extends Exception> void walkAll(List<Instruction> instructions, FlatInstructionVisitor<T> visitor) throws T {
+        push(instructions, null);
+
+        while (depth > 0) {
+            var frame = frames.get(depth - 1);
+
+            if (frame.position == frame.instructions.size()) {
+                depth--;
+
+                // The outermost list is not a structured instruction, so it has no end
+                if (depth > 0) {
+                    var ifInstr = frame.ifInstr;
+
+                    if (ifInstr != null) {
+                        visitor.visitElse();
+                        push(ifInstr.alternative(), null);
+                    } else {
+                        visitor.visitEnd();
+                    }
+                }
+
+                continue;
+            }
+
+            var instr = frame.instructions.get(frame.position++);
+
+            if (instr instanceof Block) {
+                var block = (Block) instr;
+                visitor.visitBlockStart(block.blockType());
+                push(block.instructions(), null);
+            } else if (instr instanceof Loop) {
+                var loop = (Loop) instr;
+                visitor.visitLoopStart(loop.blockType());
+                push(loop.instructions(), null);
+            } else if (instr instanceof If) {
+                var ifInstr = (If) instr;
+                visitor.visitIfStart(ifInstr.blockType());
+                push(ifInstr.consequent(), ifInstr);
+            } else {
+                visitor.visitInstruction(instr);
+            }
+        }
+    }
+}
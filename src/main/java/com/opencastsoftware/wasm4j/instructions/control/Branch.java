@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.control;
 
 public class Branch implements ControlInstruction {
+    // Instances for the most common label indices are shared
+    private static final Branch[] CACHE = new Branch[64];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Branch(i);
+        }
+    }
+
     private final int labelIndex;
 
     public Branch(int labelIndex) {
         this.labelIndex = labelIndex;
     }
 
+    public static Branch of(int labelIndex) {
+        return labelIndex >= 0 && labelIndex < CACHE.length ? CACHE[labelIndex] : new Branch(labelIndex);
+    }
+
     public int labelIndex() {
         return labelIndex;
     }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.control;
 
 public class BranchIf implements ControlInstruction {
+    // Instances for the most common label indices are shared
+    private static final BranchIf[] CACHE = new BranchIf[64];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new BranchIf(i);
+        }
+    }
+
     private final int labelIndex;
 
     public BranchIf(int labelIndex) {
         this.labelIndex = labelIndex;
     }
 
+    public static BranchIf of(int labelIndex) {
+        return labelIndex >= 0 && labelIndex < CACHE.length ? CACHE[labelIndex] : new BranchIf(labelIndex);
+    }
+
     public int labelIndex() {
         return labelIndex;
     }
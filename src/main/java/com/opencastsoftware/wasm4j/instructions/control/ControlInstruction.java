@@ -66,11 +66,11 @@ public interface ControlInstruction extends Instruction {
     }
 
     static Branch br(int labelIndex) {
-        return new Branch(labelIndex);
+        return Branch.of(labelIndex);
     }
 
     static BranchIf br_if(int labelIndex) {
-        return new BranchIf(labelIndex);
+        return BranchIf.of(labelIndex);
     }
 
     static BranchTable br_table(int[] labels, int defaultLabel) {
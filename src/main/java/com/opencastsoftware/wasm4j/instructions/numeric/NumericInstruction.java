@@ -29,11 +29,11 @@ public interface NumericInstruction extends Instruction {
 
     // Integer constant operations
     static I32Const i32_const(int value) {
-        return new I32Const(value);
+        return I32Const.of(value);
     }
 
     static I64Const i64_const(long value) {
-        return new I64Const(value);
+        return I64Const.of(value);
     }
 
     // Float constant operations
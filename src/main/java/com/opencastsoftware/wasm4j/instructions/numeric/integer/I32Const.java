@@ -10,12 +10,27 @@ import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
 import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstructionVisitor;
 
 public class I32Const implements NumericInstruction, ConstantInstruction {
+    // Instances for the constants from -128 to 1023 are shared
+    private static final int LOW = -128;
+    private static final I32Const[] CACHE = new I32Const[1152];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new I32Const(i + LOW);
+        }
+    }
+
     private final int value;
 
     public I32Const(int value) {
         this.value = value;
     }
 
+    public static I32Const of(int value) {
+        int offset = value - LOW;
+        return offset >= 0 && offset < CACHE.length ? CACHE[offset] : new I32Const(value);
+    }
+
     public int value() {
         return value;
     }
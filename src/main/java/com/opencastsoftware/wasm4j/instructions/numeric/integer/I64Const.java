@@ -10,12 +10,27 @@ import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
 import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstructionVisitor;
 
 public class I64Const implements NumericInstruction, ConstantInstruction {
+    // Instances for the constants from -128 to 1023 are shared
+    private static final int LOW = -128;
+    private static final I64Const[] CACHE = new I64Const[1152];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new I64Const(i + LOW);
+        }
+    }
+
     private final long value;
 
     public I64Const(long value) {
         this.value = value;
     }
 
+    public static I64Const of(long value) {
+        long offset = value - LOW;
+        return offset >= 0 && offset < CACHE.length ? CACHE[(int) offset] : new I64Const(value);
+    }
+
     public long value() {
         return value;
     }
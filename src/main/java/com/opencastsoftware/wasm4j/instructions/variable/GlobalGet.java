@@ -8,12 +8,25 @@ import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
 import com.opencastsoftware.wasm4j.instructions.ConstantInstructionVisitor;
 
 public class GlobalGet implements VariableInstruction, ConstantInstruction {
+    // Instances for the most common global indices are shared
+    private static final GlobalGet[] CACHE = new GlobalGet[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new GlobalGet(i);
+        }
+    }
+
     private final int globalIndex;
 
     public GlobalGet(int globalIndex) {
         this.globalIndex = globalIndex;
     }
 
+    public static GlobalGet of(int globalIndex) {
+        return globalIndex >= 0 && globalIndex < CACHE.length ? CACHE[globalIndex] : new GlobalGet(globalIndex);
+    }
+
     public int globalIndex() {
         return globalIndex;
     }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.variable;
 
 public class GlobalSet implements VariableInstruction {
+    // Instances for the most common global indices are shared
+    private static final GlobalSet[] CACHE = new GlobalSet[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new GlobalSet(i);
+        }
+    }
+
     private final int globalIndex;
 
     public GlobalSet(int globalIndex) {
         this.globalIndex = globalIndex;
     }
 
+    public static GlobalSet of(int globalIndex) {
+        return globalIndex >= 0 && globalIndex < CACHE.length ? CACHE[globalIndex] : new GlobalSet(globalIndex);
+    }
+
     public int globalIndex() {
         return globalIndex;
     }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.variable;
 
 public class LocalGet implements VariableInstruction {
+    // Instances for the most common local indices are shared
+    private static final LocalGet[] CACHE = new LocalGet[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new LocalGet(i);
+        }
+    }
+
     private final int localIndex;
 
     public LocalGet(int localIndex) {
         this.localIndex = localIndex;
     }
 
+    public static LocalGet of(int localIndex) {
+        return localIndex >= 0 && localIndex < CACHE.length ? CACHE[localIndex] : new LocalGet(localIndex);
+    }
+
     public int localIndex() {
         return localIndex;
     }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.variable;
 
 public class LocalSet implements VariableInstruction {
+    // Instances for the most common local indices are shared
+    private static final LocalSet[] CACHE = new LocalSet[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new LocalSet(i);
+        }
+    }
+
     private final int localIndex;
 
     public LocalSet(int localIndex) {
         this.localIndex = localIndex;
     }
 
+    public static LocalSet of(int localIndex) {
+        return localIndex >= 0 && localIndex < CACHE.length ? CACHE[localIndex] : new LocalSet(localIndex);
+    }
+
     public int localIndex() {
         return localIndex;
     }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.instructions.variable;
 
 public class LocalTee implements VariableInstruction {
+    // Instances for the most common local indices are shared
+    private static final LocalTee[] CACHE = new LocalTee[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new LocalTee(i);
+        }
+    }
+
     private final int localIndex;
 
     public LocalTee(int localIndex) {
         this.localIndex = localIndex;
     }
 
+    public static LocalTee of(int localIndex) {
+        return localIndex >= 0 && localIndex < CACHE.length ? CACHE[localIndex] : new LocalTee(localIndex);
+    }
+
     public int localIndex() {
         return localIndex;
     }
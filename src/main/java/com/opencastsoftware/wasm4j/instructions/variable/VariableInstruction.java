@@ -15,22 +15,22 @@ public interface VariableInstruction extends Instruction {
     }
 
     static LocalGet local_get(int localIndex) {
-        return new LocalGet(localIndex);
+        return LocalGet.of(localIndex);
     }
 
     static LocalSet local_set(int localIndex) {
-        return new LocalSet(localIndex);
+        return LocalSet.of(localIndex);
     }
 
     static LocalTee local_tee(int localIndex) {
-        return new LocalTee(localIndex);
+        return LocalTee.of(localIndex);
     }
 
     static GlobalGet global_get(int globalIndex) {
-        return new GlobalGet(globalIndex);
+        return GlobalGet.of(globalIndex);
     }
 
     static GlobalSet global_set(int globalIndex) {
-        return new GlobalSet(globalIndex);
+        return GlobalSet.of(globalIndex);
     }
 }
@@ -0,0 +1,24 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+// The lowered code of a function, with the sizes of the frame it runs in.
+// A frame holds the parameters, then the remaining locals, then the operand stack.
+final class FunctionCode {
+    final int[] code;
+    final int paramCount;
+    final int localCount;
+    final int resultCount;
+    // The greatest number of slots the frame uses, including the locals
+    final int frameSize;
+
+    FunctionCode(int[] code, int paramCount, int localCount, int resultCount, int frameSize) {
+        this.code = code;
+        this.paramCount = paramCount;
+        this.localCount = localCount;
+        this.resultCount = resultCount;
+        this.frameSize = frameSize;
+    }
+}
@@ -0,0 +1,1341 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Locals;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.unary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.conversion.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I32Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I64Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.unary.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.Drop;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefAsNonNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefIsNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.table.*;
+import com.opencastsoftware.wasm4j.instructions.variable.*;
+import com.opencastsoftware.wasm4j.runtime.Values;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.TypeId;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+// Lowers the body of a validated function to a flat array of opcodes and immediates.
+// Each operand has a slot in the frame that is known while lowering, so branches record the height
+// they unwind the operand stack to, and only move values when there are other operands below them.
+// Unreachable code is skipped, as validation has already checked it.
+final class FunctionLowering implements FlatInstructionVisitor<RuntimeException> {
+    private static final int BLOCK = 0;
+    private static final int LOOP = 1;
+    private static final int IF = 2;
+
+    // The number of parameters and results of each type, and the type index of each function
+    private final int[] paramCounts;
+    private final int[] resultCounts;
+    private final int[] funcTypeIndices;
+    private final boolean countInstructions;
+
+    private int[] code = new int[64];
+    private int pc;
+
+    // The number of slots in use in the frame, starting with the locals
+    private int height;
+    private int maxHeight;
+
+    private int[] frameKinds = new int[16];
+    private int[] frameHeights = new int[16];
+    private int[] frameParams = new int[16];
+    private int[] frameResults = new int[16];
+    // The start of each loop, which branches to the loop jump back to
+    private int[] frameStarts = new int[16];
+    // The branches to the end of each frame which are yet to be patched, chained through their targets in the code
+    private int[] frameFixups = new int[16];
+    // The branch over the consequent of an if, which is patched at its else or end
+    private int[] frameElseFixups = new int[16];
+    private boolean[] frameUnreachable = new boolean[16];
+    private int depth;
+    // The number of structured instructions entered within unreachable code
+    private int skipDepth;
+
+    FunctionLowering(int[] paramCounts, int[] resultCounts, int[] funcTypeIndices, boolean countInstructions) {
+        this.paramCounts = paramCounts;
+        this.resultCounts = resultCounts;
+        this.funcTypeIndices = funcTypeIndices;
+        this.countInstructions = countInstructions;
+    }
+
+    FunctionCode lower(Func func) {
+        int typeIndex = func.typeIndex();
+        int params = paramCounts[typeIndex];
+        int results = resultCounts[typeIndex];
+
+        long locals = params;
+        for (Locals run : func.compressedLocals()) {
+            locals += Integer.toUnsignedLong(run.count());
+        }
+
+        // Validation does not limit the number of locals, but a frame must fit in an array
+        if (locals > Integer.MAX_VALUE - 1024) {
+            throw new IllegalArgumentException("too many locals in function");
+        }
+
+        this.pc = 0;
+        this.height = (int) locals;
+        this.maxHeight = height;
+        this.depth = 0;
+        this.skipDepth = 0;
+
+        pushFrame(BLOCK, 0, results);
+        visitExpression(func.body());
+
+        return new FunctionCode(Arrays.copyOf(code, pc), params, (int) locals, results, maxHeight);
+    }
+
+    private void emit(int value) {
+        if (pc == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[pc++] = value;
+    }
+
+    private void emit(int op, int immediate) {
+        emit(op);
+        emit(immediate);
+    }
+
+    private void pushFrame(int kind, int params, int results) {
+        if (depth == frameKinds.length) {
+            int length = depth * 2;
+            frameKinds = Arrays.copyOf(frameKinds, length);
+            frameHeights = Arrays.copyOf(frameHeights, length);
+            frameParams = Arrays.copyOf(frameParams, length);
+            frameResults = Arrays.copyOf(frameResults, length);
+            frameStarts = Arrays.copyOf(frameStarts, length);
+            frameFixups = Arrays.copyOf(frameFixups, length);
+            frameElseFixups = Arrays.copyOf(frameElseFixups, length);
+            frameUnreachable = Arrays.copyOf(frameUnreachable, length);
+        }
+
+        frameKinds[depth] = kind;
+        frameHeights[depth] = height - params;
+        frameParams[depth] = params;
+        frameResults[depth] = results;
+        frameStarts[depth] = pc;
+        frameFixups[depth] = -1;
+        frameElseFixups[depth] = -1;
+        frameUnreachable[depth] = false;
+        depth++;
+    }
+
+    private void startFrame(int kind, @Nullable BlockType blockType) {
+        if (blockType == null) {
+            pushFrame(kind, 0, 0);
+        } else if (blockType instanceof TypeId) {
+            int typeIndex = ((TypeId) blockType).typeIndex();
+            pushFrame(kind, paramCounts[typeIndex], resultCounts[typeIndex]);
+        } else {
+            pushFrame(kind, 0, 1);
+        }
+    }
+
+    private void patch(int fixup, int target) {
+        while (fixup != -1) {
+            int next = code[fixup];
+            code[fixup] = target;
+            fixup = next;
+        }
+    }
+
+    private void unreachable() {
+        frameUnreachable[depth - 1] = true;
+    }
+
+    private int labelArity(int frame) {
+        return frameKinds[frame] == LOOP ? frameParams[frame] : frameResults[frame];
+    }
+
+    // Emits the target of a branch to a label, which is patched later for a branch forwards
+    private void emitTarget(int frame) {
+        if (frameKinds[frame] == LOOP) {
+            emit(frameStarts[frame]);
+        } else {
+            emit(frameFixups[frame]);
+            frameFixups[frame] = pc - 1;
+        }
+    }
+
+    private void branch(int op, int moveOp, int labelIndex) {
+        int frame = depth - 1 - labelIndex;
+        int arity = labelArity(frame);
+
+        if (height - arity == frameHeights[frame]) {
+            emit(op);
+            emitTarget(frame);
+        } else {
+            emit(moveOp);
+            emitTarget(frame);
+            emit(arity);
+            emit(frameHeights[frame]);
+        }
+    }
+
+    // Emits a branch which always records its arity and height, as its operands depend on the value it tests
+    private void conditionalBranch(int op, int labelIndex, int arity) {
+        int frame = depth - 1 - labelIndex;
+        emit(op);
+        emitTarget(frame);
+        emit(arity);
+        emit(frameHeights[frame]);
+    }
+
+    private void unary(int op) {
+        emit(op);
+    }
+
+    private void binary(int op) {
+        emit(op);
+        height--;
+    }
+
+    @Override
+    public void visitInstruction(Instruction instruction) {
+        if (frameUnreachable[depth - 1]) {
+            return;
+        }
+
+        if (countInstructions) {
+            emit(Ops.COUNT);
+        }
+
+        instruction.accept(this);
+        maxHeight = Math.max(maxHeight, height);
+    }
+
+    @Override
+    public void visitExpression(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            ((PackedExpression) expression).replay(this);
+        } else {
+            InstructionWalker.walk(expression, this);
+        }
+    }
+
+    @Override
+    public void visitConstantExpression(ConstantExpression constExpr) {
+        throw new UnsupportedOperationException("Constant expressions are evaluated during instantiation");
+    }
+
+    @Override
+    public void visitBlockStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        startFrame(BLOCK, blockType);
+    }
+
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        startFrame(LOOP, blockType);
+    }
+
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) {
+        if (frameUnreachable[depth - 1]) {
+            skipDepth++;
+            return;
+        }
+
+        height--;
+        emit(Ops.BR_UNLESS, -1);
+        startFrame(IF, blockType);
+        frameElseFixups[depth - 1] = pc - 1;
+    }
+
+    @Override
+    public void visitElse() {
+        if (skipDepth > 0) {
+            return;
+        }
+
+        int frame = depth - 1;
+
+        if (!frameUnreachable[frame]) {
+            emit(Ops.BR);
+            emitTarget(frame);
+        }
+
+        code[frameElseFixups[frame]] = pc;
+        frameElseFixups[frame] = -1;
+        frameUnreachable[frame] = false;
+        height = frameHeights[frame] + frameParams[frame];
+    }
+
+    @Override
+    public void visitEnd() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+
+        int frame = depth - 1;
+
+        // An if without an else falls through to its end when the condition is false
+        if (frameElseFixups[frame] != -1) {
+            code[frameElseFixups[frame]] = pc;
+        }
+
+        patch(frameFixups[frame], pc);
+        height = frameHeights[frame] + frameResults[frame];
+        depth--;
+
+        if (depth == 0) {
+            emit(Ops.RETURN);
+        }
+    }
+
+    // Control instructions
+
+    @Override
+    public void visitBlock(Block block) {
+        InstructionWalker.walk(block, this);
+    }
+
+    @Override
+    public void visitLoop(Loop loop) {
+        InstructionWalker.walk(loop, this);
+    }
+
+    @Override
+    public void visitIf(If ifInstr) {
+        InstructionWalker.walk(ifInstr, this);
+    }
+
+    @Override
+    public void visitBranch(Branch branch) {
+        branch(Ops.BR, Ops.BR_MOVE, branch.labelIndex());
+        unreachable();
+    }
+
+    @Override
+    public void visitBranchIf(BranchIf branchIf) {
+        height--;
+        branch(Ops.BR_IF, Ops.BR_IF_MOVE, branchIf.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNull(BranchOnNull branchOnNull) {
+        int frame = depth - 1 - branchOnNull.labelIndex();
+        conditionalBranch(Ops.BR_ON_NULL, branchOnNull.labelIndex(), labelArity(frame));
+    }
+
+    @Override
+    public void visitBranchOnNonNull(BranchOnNonNull branchOnNonNull) {
+        int frame = depth - 1 - branchOnNonNull.labelIndex();
+        conditionalBranch(Ops.BR_ON_NON_NULL, branchOnNonNull.labelIndex(), labelArity(frame));
+        height--;
+    }
+
+    @Override
+    public void visitBranchTable(BranchTable branchTable) {
+        height--;
+
+        var labels = branchTable.labels();
+        emit(Ops.BR_TABLE, labels.length);
+        emit(labelArity(depth - 1 - branchTable.defaultLabel()));
+
+        for (int labelIndex : labels) {
+            int frame = depth - 1 - labelIndex;
+            emitTarget(frame);
+            emit(frameHeights[frame]);
+        }
+
+        int defaultFrame = depth - 1 - branchTable.defaultLabel();
+        emitTarget(defaultFrame);
+        emit(frameHeights[defaultFrame]);
+
+        unreachable();
+    }
+
+    private void call(int typeIndex) {
+        height += resultCounts[typeIndex] - paramCounts[typeIndex];
+    }
+
+    @Override
+    public void visitCall(Call call) {
+        emit(Ops.CALL, call.funcIndex());
+        call(funcTypeIndices[call.funcIndex()]);
+    }
+
+    @Override
+    public void visitCallIndirect(CallIndirect callIndirect) {
+        emit(Ops.CALL_INDIRECT, callIndirect.tableIndex());
+        emit(callIndirect.typeIndex());
+        height--;
+        call(callIndirect.typeIndex());
+    }
+
+    @Override
+    public void visitCallRef(CallRef callRef) {
+        emit(Ops.CALL_REF);
+        height--;
+        call(callRef.typeIndex());
+    }
+
+    @Override
+    public void visitNop(Nop nop) {
+    }
+
+    @Override
+    public void visitReturn(Return ret) {
+        emit(Ops.RETURN);
+        unreachable();
+    }
+
+    @Override
+    public void visitUnreachable(Unreachable unreachable) {
+        emit(Ops.UNREACHABLE);
+        unreachable();
+    }
+
+    // Memory instructions
+
+    private void load(int op, MemArgInstruction instr) {
+        emit(op, instr.offset());
+    }
+
+    private void store(int op, MemArgInstruction instr) {
+        emit(op, instr.offset());
+        height -= 2;
+    }
+
+    @Override
+    public void visitI32Load(I32Load i32Load) {
+        load(Ops.I32_LOAD, i32Load);
+    }
+
+    @Override
+    public void visitI64Load(I64Load i64Load) {
+        load(Ops.I64_LOAD, i64Load);
+    }
+
+    @Override
+    public void visitF32Load(F32Load f32Load) {
+        load(Ops.F32_LOAD, f32Load);
+    }
+
+    @Override
+    public void visitF64Load(F64Load f64Load) {
+        load(Ops.F64_LOAD, f64Load);
+    }
+
+    @Override
+    public void visitI32Store(I32Store i32Store) {
+        store(Ops.I32_STORE, i32Store);
+    }
+
+    @Override
+    public void visitI64Store(I64Store i64Store) {
+        store(Ops.I64_STORE, i64Store);
+    }
+
+    @Override
+    public void visitF32Store(F32Store f32Store) {
+        store(Ops.F32_STORE, f32Store);
+    }
+
+    @Override
+    public void visitF64Store(F64Store f64Store) {
+        store(Ops.F64_STORE, f64Store);
+    }
+
+    @Override
+    public void visitMemorySize(MemorySize memorySize) {
+        emit(Ops.MEMORY_SIZE, memorySize.memIndex());
+        height++;
+    }
+
+    @Override
+    public void visitMemoryGrow(MemoryGrow memoryGrow) {
+        emit(Ops.MEMORY_GROW, memoryGrow.memIndex());
+    }
+
+    @Override
+    public void visitMemoryFill(MemoryFill memoryFill) {
+        emit(Ops.MEMORY_FILL, memoryFill.memIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitMemoryCopy(MemoryCopy memoryCopy) {
+        emit(Ops.MEMORY_COPY, memoryCopy.targetMemIndex());
+        emit(memoryCopy.sourceMemIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitMemoryInit(MemoryInit memoryInit) {
+        emit(Ops.MEMORY_INIT, memoryInit.memIndex());
+        emit(memoryInit.dataIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitDataDrop(DataDrop dataDrop) {
+        emit(Ops.DATA_DROP, dataDrop.dataIndex());
+    }
+
+    // Numeric instructions
+
+    private void i32Const(int value) {
+        emit(Ops.I32_CONST, value);
+        height++;
+    }
+
+    private void i64Const(long value) {
+        emit(Ops.I64_CONST, (int) (value >>> 32));
+        emit((int) value);
+        height++;
+    }
+
+    @Override
+    public void visitI32Const(I32Const i32Const) {
+        i32Const(i32Const.value());
+    }
+
+    @Override
+    public void visitI64Const(I64Const i64Const) {
+        i64Const(i64Const.value());
+    }
+
+    @Override
+    public void visitF32Const(F32Const f32Const) {
+        i32Const(Float.floatToRawIntBits(f32Const.value()));
+    }
+
+    @Override
+    public void visitF64Const(F64Const f64Const) {
+        i64Const(Double.doubleToRawLongBits(f64Const.value()));
+    }
+
+    @Override
+    public void visitI32Clz(I32Clz i32Clz) {
+        unary(Ops.I32_CLZ);
+    }
+
+    @Override
+    public void visitI32Ctz(I32Ctz i32Ctz) {
+        unary(Ops.I32_CTZ);
+    }
+
+    @Override
+    public void visitI32Popcnt(I32Popcnt i32Popcnt) {
+        unary(Ops.I32_POPCNT);
+    }
+
+    @Override
+    public void visitI64Clz(I64Clz i64Clz) {
+        unary(Ops.I64_CLZ);
+    }
+
+    @Override
+    public void visitI64Ctz(I64Ctz i64Ctz) {
+        unary(Ops.I64_CTZ);
+    }
+
+    @Override
+    public void visitI64Popcnt(I64Popcnt i64Popcnt) {
+        unary(Ops.I64_POPCNT);
+    }
+
+    @Override
+    public void visitF32Abs(F32Abs f32Abs) {
+        unary(Ops.F32_ABS);
+    }
+
+    @Override
+    public void visitF32Ceil(F32Ceil f32Ceil) {
+        unary(Ops.F32_CEIL);
+    }
+
+    @Override
+    public void visitF32Floor(F32Floor f32Floor) {
+        unary(Ops.F32_FLOOR);
+    }
+
+    @Override
+    public void visitF32Nearest(F32Nearest f32Nearest) {
+        unary(Ops.F32_NEAREST);
+    }
+
+    @Override
+    public void visitF32Neg(F32Neg f32Neg) {
+        unary(Ops.F32_NEG);
+    }
+
+    @Override
+    public void visitF32Sqrt(F32Sqrt f32Sqrt) {
+        unary(Ops.F32_SQRT);
+    }
+
+    @Override
+    public void visitF32Trunc(F32Trunc f32Trunc) {
+        unary(Ops.F32_TRUNC);
+    }
+
+    @Override
+    public void visitF64Abs(F64Abs f64Abs) {
+        unary(Ops.F64_ABS);
+    }
+
+    @Override
+    public void visitF64Ceil(F64Ceil f64Ceil) {
+        unary(Ops.F64_CEIL);
+    }
+
+    @Override
+    public void visitF64Floor(F64Floor f64Floor) {
+        unary(Ops.F64_FLOOR);
+    }
+
+    @Override
+    public void visitF64Nearest(F64Nearest f64Nearest) {
+        unary(Ops.F64_NEAREST);
+    }
+
+    @Override
+    public void visitF64Neg(F64Neg f64Neg) {
+        unary(Ops.F64_NEG);
+    }
+
+    @Override
+    public void visitF64Sqrt(F64Sqrt f64Sqrt) {
+        unary(Ops.F64_SQRT);
+    }
+
+    @Override
+    public void visitF64Trunc(F64Trunc f64Trunc) {
+        unary(Ops.F64_TRUNC);
+    }
+
+    @Override
+    public void visitI32Add(I32Add i32Add) {
+        binary(Ops.I32_ADD);
+    }
+
+    @Override
+    public void visitI32And(I32And i32And) {
+        binary(Ops.I32_AND);
+    }
+
+    @Override
+    public void visitI32DivSigned(I32DivSigned i32DivSigned) {
+        binary(Ops.I32_DIV_SIGNED);
+    }
+
+    @Override
+    public void visitI32DivUnsigned(I32DivUnsigned i32DivUnsigned) {
+        binary(Ops.I32_DIV_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32Mul(I32Mul i32Mul) {
+        binary(Ops.I32_MUL);
+    }
+
+    @Override
+    public void visitI32Or(I32Or i32Or) {
+        binary(Ops.I32_OR);
+    }
+
+    @Override
+    public void visitI32RemSigned(I32RemSigned i32RemSigned) {
+        binary(Ops.I32_REM_SIGNED);
+    }
+
+    @Override
+    public void visitI32RemUnsigned(I32RemUnsigned i32RemUnsigned) {
+        binary(Ops.I32_REM_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32Rotl(I32Rotl i32Rotl) {
+        binary(Ops.I32_ROTL);
+    }
+
+    @Override
+    public void visitI32Rotr(I32Rotr i32Rotr) {
+        binary(Ops.I32_ROTR);
+    }
+
+    @Override
+    public void visitI32Shl(I32Shl i32Shl) {
+        binary(Ops.I32_SHL);
+    }
+
+    @Override
+    public void visitI32ShrSigned(I32ShrSigned i32ShrSigned) {
+        binary(Ops.I32_SHR_SIGNED);
+    }
+
+    @Override
+    public void visitI32ShrUnsigned(I32ShrUnsigned i32ShrUnsigned) {
+        binary(Ops.I32_SHR_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32Sub(I32Sub i32Sub) {
+        binary(Ops.I32_SUB);
+    }
+
+    @Override
+    public void visitI32Xor(I32Xor i32Xor) {
+        binary(Ops.I32_XOR);
+    }
+
+    @Override
+    public void visitI64Add(I64Add i64Add) {
+        binary(Ops.I64_ADD);
+    }
+
+    @Override
+    public void visitI64And(I64And i64And) {
+        binary(Ops.I64_AND);
+    }
+
+    @Override
+    public void visitI64DivSigned(I64DivSigned i64DivSigned) {
+        binary(Ops.I64_DIV_SIGNED);
+    }
+
+    @Override
+    public void visitI64DivUnsigned(I64DivUnsigned i64DivUnsigned) {
+        binary(Ops.I64_DIV_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64Mul(I64Mul i64Mul) {
+        binary(Ops.I64_MUL);
+    }
+
+    @Override
+    public void visitI64Or(I64Or i64Or) {
+        binary(Ops.I64_OR);
+    }
+
+    @Override
+    public void visitI64RemSigned(I64RemSigned i64RemSigned) {
+        binary(Ops.I64_REM_SIGNED);
+    }
+
+    @Override
+    public void visitI64RemUnsigned(I64RemUnsigned i64RemUnsigned) {
+        binary(Ops.I64_REM_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64Rotl(I64Rotl i64Rotl) {
+        binary(Ops.I64_ROTL);
+    }
+
+    @Override
+    public void visitI64Rotr(I64Rotr i64Rotr) {
+        binary(Ops.I64_ROTR);
+    }
+
+    @Override
+    public void visitI64Shl(I64Shl i64Shl) {
+        binary(Ops.I64_SHL);
+    }
+
+    @Override
+    public void visitI64ShrSigned(I64ShrSigned i64ShrSigned) {
+        binary(Ops.I64_SHR_SIGNED);
+    }
+
+    @Override
+    public void visitI64ShrUnsigned(I64ShrUnsigned i64ShrUnsigned) {
+        binary(Ops.I64_SHR_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64Sub(I64Sub i64Sub) {
+        binary(Ops.I64_SUB);
+    }
+
+    @Override
+    public void visitI64Xor(I64Xor i64Xor) {
+        binary(Ops.I64_XOR);
+    }
+
+    @Override
+    public void visitF32Add(F32Add f32Add) {
+        binary(Ops.F32_ADD);
+    }
+
+    @Override
+    public void visitF32Copysign(F32Copysign f32Copysign) {
+        binary(Ops.F32_COPYSIGN);
+    }
+
+    @Override
+    public void visitF32Div(F32Div f32Div) {
+        binary(Ops.F32_DIV);
+    }
+
+    @Override
+    public void visitF32Max(F32Max f32Max) {
+        binary(Ops.F32_MAX);
+    }
+
+    @Override
+    public void visitF32Min(F32Min f32Min) {
+        binary(Ops.F32_MIN);
+    }
+
+    @Override
+    public void visitF32Mul(F32Mul f32Mul) {
+        binary(Ops.F32_MUL);
+    }
+
+    @Override
+    public void visitF32Sub(F32Sub f32Sub) {
+        binary(Ops.F32_SUB);
+    }
+
+    @Override
+    public void visitF64Add(F64Add f64Add) {
+        binary(Ops.F64_ADD);
+    }
+
+    @Override
+    public void visitF64Copysign(F64Copysign f64Copysign) {
+        binary(Ops.F64_COPYSIGN);
+    }
+
+    @Override
+    public void visitF64Div(F64Div f64Div) {
+        binary(Ops.F64_DIV);
+    }
+
+    @Override
+    public void visitF64Max(F64Max f64Max) {
+        binary(Ops.F64_MAX);
+    }
+
+    @Override
+    public void visitF64Min(F64Min f64Min) {
+        binary(Ops.F64_MIN);
+    }
+
+    @Override
+    public void visitF64Mul(F64Mul f64Mul) {
+        binary(Ops.F64_MUL);
+    }
+
+    @Override
+    public void visitF64Sub(F64Sub f64Sub) {
+        binary(Ops.F64_SUB);
+    }
+
+    @Override
+    public void visitI32Eqz(I32Eqz i32Eqz) {
+        unary(Ops.I32_EQZ);
+    }
+
+    @Override
+    public void visitI64Eqz(I64Eqz i64Eqz) {
+        unary(Ops.I64_EQZ);
+    }
+
+    @Override
+    public void visitI32Eq(I32Eq i32Eq) {
+        binary(Ops.I32_EQ);
+    }
+
+    @Override
+    public void visitI32GeSigned(I32GeSigned i32GeSigned) {
+        binary(Ops.I32_GE_SIGNED);
+    }
+
+    @Override
+    public void visitI32GeUnsigned(I32GeUnsigned i32GeUnsigned) {
+        binary(Ops.I32_GE_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32GtSigned(I32GtSigned i32GtSigned) {
+        binary(Ops.I32_GT_SIGNED);
+    }
+
+    @Override
+    public void visitI32GtUnsigned(I32GtUnsigned i32GtUnsigned) {
+        binary(Ops.I32_GT_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32LeSigned(I32LeSigned i32LeSigned) {
+        binary(Ops.I32_LE_SIGNED);
+    }
+
+    @Override
+    public void visitI32LeUnsigned(I32LeUnsigned i32LeUnsigned) {
+        binary(Ops.I32_LE_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32LtSigned(I32LtSigned i32LtSigned) {
+        binary(Ops.I32_LT_SIGNED);
+    }
+
+    @Override
+    public void visitI32LtUnsigned(I32LtUnsigned i32LtUnsigned) {
+        binary(Ops.I32_LT_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32Ne(I32Ne i32Ne) {
+        binary(Ops.I32_NE);
+    }
+
+    @Override
+    public void visitI64Eq(I64Eq i64Eq) {
+        binary(Ops.I64_EQ);
+    }
+
+    @Override
+    public void visitI64GeSigned(I64GeSigned i64GeSigned) {
+        binary(Ops.I64_GE_SIGNED);
+    }
+
+    @Override
+    public void visitI64GeUnsigned(I64GeUnsigned i64GeUnsigned) {
+        binary(Ops.I64_GE_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64GtSigned(I64GtSigned i64GtSigned) {
+        binary(Ops.I64_GT_SIGNED);
+    }
+
+    @Override
+    public void visitI64GtUnsigned(I64GtUnsigned i64GtUnsigned) {
+        binary(Ops.I64_GT_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64LeSigned(I64LeSigned i64LeSigned) {
+        binary(Ops.I64_LE_SIGNED);
+    }
+
+    @Override
+    public void visitI64LeUnsigned(I64LeUnsigned i64LeUnsigned) {
+        binary(Ops.I64_LE_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64LtSigned(I64LtSigned i64LtSigned) {
+        binary(Ops.I64_LT_SIGNED);
+    }
+
+    @Override
+    public void visitI64LtUnsigned(I64LtUnsigned i64LtUnsigned) {
+        binary(Ops.I64_LT_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64Ne(I64Ne i64Ne) {
+        binary(Ops.I64_NE);
+    }
+
+    @Override
+    public void visitF32Eq(F32Eq f32Eq) {
+        binary(Ops.F32_EQ);
+    }
+
+    @Override
+    public void visitF32Ge(F32Ge f32Ge) {
+        binary(Ops.F32_GE);
+    }
+
+    @Override
+    public void visitF32Gt(F32Gt f32Gt) {
+        binary(Ops.F32_GT);
+    }
+
+    @Override
+    public void visitF32Le(F32Le f32Le) {
+        binary(Ops.F32_LE);
+    }
+
+    @Override
+    public void visitF32Lt(F32Lt f32Lt) {
+        binary(Ops.F32_LT);
+    }
+
+    @Override
+    public void visitF32Ne(F32Ne f32Ne) {
+        binary(Ops.F32_NE);
+    }
+
+    @Override
+    public void visitF64Eq(F64Eq f64Eq) {
+        binary(Ops.F64_EQ);
+    }
+
+    @Override
+    public void visitF64Ge(F64Ge f64Ge) {
+        binary(Ops.F64_GE);
+    }
+
+    @Override
+    public void visitF64Gt(F64Gt f64Gt) {
+        binary(Ops.F64_GT);
+    }
+
+    @Override
+    public void visitF64Le(F64Le f64Le) {
+        binary(Ops.F64_LE);
+    }
+
+    @Override
+    public void visitF64Lt(F64Lt f64Lt) {
+        binary(Ops.F64_LT);
+    }
+
+    @Override
+    public void visitF64Ne(F64Ne f64Ne) {
+        binary(Ops.F64_NE);
+    }
+
+    @Override
+    public void visitI32Extend8Signed(I32Extend8Signed i32Extend8Signed) {
+        unary(Ops.I32_EXTEND8_SIGNED);
+    }
+
+    @Override
+    public void visitI64Extend8Signed(I64Extend8Signed i64Extend8Signed) {
+        unary(Ops.I64_EXTEND8_SIGNED);
+    }
+
+    @Override
+    public void visitI32Extend16Signed(I32Extend16Signed i32Extend16Signed) {
+        unary(Ops.I32_EXTEND16_SIGNED);
+    }
+
+    @Override
+    public void visitI64Extend16Signed(I64Extend16Signed i64Extend16Signed) {
+        unary(Ops.I64_EXTEND16_SIGNED);
+    }
+
+    @Override
+    public void visitI64Extend32Signed(I64Extend32Signed i64Extend32Signed) {
+        unary(Ops.I64_EXTEND32_SIGNED);
+    }
+
+    @Override
+    public void visitI32WrapI64(I32WrapI64 i32WrapI64) {
+        unary(Ops.I32_WRAP_I64);
+    }
+
+    @Override
+    public void visitI64ExtendI32Signed(I64ExtendI32Signed i64ExtendI32Signed) {
+        unary(Ops.I64_EXTEND_I32_SIGNED);
+    }
+
+    @Override
+    public void visitI64ExtendI32Unsigned(I64ExtendI32Unsigned i64ExtendI32Unsigned) {
+        unary(Ops.I64_EXTEND_I32_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32TruncF32Signed(I32TruncF32Signed i32TruncF32Signed) {
+        unary(Ops.I32_TRUNC_F32_SIGNED);
+    }
+
+    @Override
+    public void visitI32TruncF32Unsigned(I32TruncF32Unsigned i32TruncF32Unsigned) {
+        unary(Ops.I32_TRUNC_F32_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32TruncF64Signed(I32TruncF64Signed i32TruncF64Signed) {
+        unary(Ops.I32_TRUNC_F64_SIGNED);
+    }
+
+    @Override
+    public void visitI32TruncF64Unsigned(I32TruncF64Unsigned i32TruncF64Unsigned) {
+        unary(Ops.I32_TRUNC_F64_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64TruncF32Signed(I64TruncF32Signed i64TruncF32Signed) {
+        unary(Ops.I64_TRUNC_F32_SIGNED);
+    }
+
+    @Override
+    public void visitI64TruncF32Unsigned(I64TruncF32Unsigned i64TruncF32Unsigned) {
+        unary(Ops.I64_TRUNC_F32_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64TruncF64Signed(I64TruncF64Signed i64TruncF64Signed) {
+        unary(Ops.I64_TRUNC_F64_SIGNED);
+    }
+
+    @Override
+    public void visitI64TruncF64Unsigned(I64TruncF64Unsigned i64TruncF64Unsigned) {
+        unary(Ops.I64_TRUNC_F64_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Signed(I32TruncSatF32Signed i32TruncSatF32Signed) {
+        unary(Ops.I32_TRUNC_SAT_F32_SIGNED);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Unsigned(I32TruncSatF32Unsigned i32TruncSatF32Unsigned) {
+        unary(Ops.I32_TRUNC_SAT_F32_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Signed(I32TruncSatF64Signed i32TruncSatF64Signed) {
+        unary(Ops.I32_TRUNC_SAT_F64_SIGNED);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Unsigned(I32TruncSatF64Unsigned i32TruncSatF64Unsigned) {
+        unary(Ops.I32_TRUNC_SAT_F64_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Signed(I64TruncSatF32Signed i64TruncSatF32Signed) {
+        unary(Ops.I64_TRUNC_SAT_F32_SIGNED);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Unsigned(I64TruncSatF32Unsigned i64TruncSatF32Unsigned) {
+        unary(Ops.I64_TRUNC_SAT_F32_UNSIGNED);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Signed(I64TruncSatF64Signed i64TruncSatF64Signed) {
+        unary(Ops.I64_TRUNC_SAT_F64_SIGNED);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Unsigned(I64TruncSatF64Unsigned i64TruncSatF64Unsigned) {
+        unary(Ops.I64_TRUNC_SAT_F64_UNSIGNED);
+    }
+
+    @Override
+    public void visitF32DemoteF64(F32DemoteF64 f32DemoteF64) {
+        unary(Ops.F32_DEMOTE_F64);
+    }
+
+    @Override
+    public void visitF64PromoteF32(F64PromoteF32 f64PromoteF32) {
+        unary(Ops.F64_PROMOTE_F32);
+    }
+
+    @Override
+    public void visitF32ConvertI32Signed(F32ConvertI32Signed f32ConvertI32Signed) {
+        unary(Ops.F32_CONVERT_I32_SIGNED);
+    }
+
+    @Override
+    public void visitF32ConvertI32Unsigned(F32ConvertI32Unsigned f32ConvertI32Unsigned) {
+        unary(Ops.F32_CONVERT_I32_UNSIGNED);
+    }
+
+    @Override
+    public void visitF32ConvertI64Signed(F32ConvertI64Signed f32ConvertI64Signed) {
+        unary(Ops.F32_CONVERT_I64_SIGNED);
+    }
+
+    @Override
+    public void visitF32ConvertI64Unsigned(F32ConvertI64Unsigned f32ConvertI64Unsigned) {
+        unary(Ops.F32_CONVERT_I64_UNSIGNED);
+    }
+
+    @Override
+    public void visitF64ConvertI32Signed(F64ConvertI32Signed f64ConvertI32Signed) {
+        unary(Ops.F64_CONVERT_I32_SIGNED);
+    }
+
+    @Override
+    public void visitF64ConvertI32Unsigned(F64ConvertI32Unsigned f64ConvertI32Unsigned) {
+        unary(Ops.F64_CONVERT_I32_UNSIGNED);
+    }
+
+    @Override
+    public void visitF64ConvertI64Signed(F64ConvertI64Signed f64ConvertI64Signed) {
+        unary(Ops.F64_CONVERT_I64_SIGNED);
+    }
+
+    @Override
+    public void visitF64ConvertI64Unsigned(F64ConvertI64Unsigned f64ConvertI64Unsigned) {
+        unary(Ops.F64_CONVERT_I64_UNSIGNED);
+    }
+
+    @Override
+    public void visitI32ReinterpretF32(I32ReinterpretF32 i32ReinterpretF32) {
+    }
+
+    @Override
+    public void visitI64ReinterpretF64(I64ReinterpretF64 i64ReinterpretF64) {
+    }
+
+    @Override
+    public void visitF32ReinterpretI32(F32ReinterpretI32 f32ReinterpretI32) {
+    }
+
+    @Override
+    public void visitF64ReinterpretI64(F64ReinterpretI64 f64ReinterpretI64) {
+    }
+
+    // Parametric instructions
+
+    @Override
+    public void visitDrop(Drop drop) {
+        emit(Ops.DROP);
+        height--;
+    }
+
+    @Override
+    public void visitSelect(Select select) {
+        emit(Ops.SELECT);
+        height -= 2;
+    }
+
+    // Reference instructions
+
+    @Override
+    public void visitRefNull(RefNull refNull) {
+        i32Const((int) Values.NULL);
+    }
+
+    @Override
+    public void visitRefFunc(RefFunc refFunc) {
+        i64Const(Values.funcRef(refFunc.funcIndex()));
+    }
+
+    @Override
+    public void visitRefIsNull(RefIsNull refIsNull) {
+        emit(Ops.REF_IS_NULL);
+    }
+
+    @Override
+    public void visitRefAsNonNull(RefAsNonNull refAsNonNull) {
+        emit(Ops.REF_AS_NON_NULL);
+    }
+
+    // Table instructions
+
+    @Override
+    public void visitTableGet(TableGet tableGet) {
+        emit(Ops.TABLE_GET, tableGet.tableIndex());
+    }
+
+    @Override
+    public void visitTableSet(TableSet tableSet) {
+        emit(Ops.TABLE_SET, tableSet.tableIndex());
+        height -= 2;
+    }
+
+    @Override
+    public void visitTableSize(TableSize tableSize) {
+        emit(Ops.TABLE_SIZE, tableSize.tableIndex());
+        height++;
+    }
+
+    @Override
+    public void visitTableGrow(TableGrow tableGrow) {
+        emit(Ops.TABLE_GROW, tableGrow.tableIndex());
+        height--;
+    }
+
+    @Override
+    public void visitTableFill(TableFill tableFill) {
+        emit(Ops.TABLE_FILL, tableFill.tableIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitTableCopy(TableCopy tableCopy) {
+        emit(Ops.TABLE_COPY, tableCopy.targetTableIndex());
+        emit(tableCopy.sourceTableIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitTableInit(TableInit tableInit) {
+        emit(Ops.TABLE_INIT, tableInit.tableIndex());
+        emit(tableInit.elemIndex());
+        height -= 3;
+    }
+
+    @Override
+    public void visitElemDrop(ElemDrop elemDrop) {
+        emit(Ops.ELEM_DROP, elemDrop.elemIndex());
+    }
+
+    // Variable instructions
+
+    @Override
+    public void visitGlobalGet(GlobalGet globalGet) {
+        emit(Ops.GLOBAL_GET, globalGet.globalIndex());
+        height++;
+    }
+
+    @Override
+    public void visitGlobalSet(GlobalSet globalSet) {
+        emit(Ops.GLOBAL_SET, globalSet.globalIndex());
+        height--;
+    }
+
+    @Override
+    public void visitLocalGet(LocalGet localGet) {
+        emit(Ops.LOCAL_GET, localGet.localIndex());
+        height++;
+    }
+
+    @Override
+    public void visitLocalSet(LocalSet localSet) {
+        emit(Ops.LOCAL_SET, localSet.localIndex());
+        height--;
+    }
+
+    @Override
+    public void visitLocalTee(LocalTee localTee) {
+        emit(Ops.LOCAL_TEE, localTee.localIndex());
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import com.opencastsoftware.wasm4j.validation.ModuleValidator;
+
+// Instantiates modules whose functions are run by an interpreter.
+// Each function is lowered to a compact array of opcodes the first time it is called,
+// so that running it does not dispatch on instruction objects.
+public final class Interpreter {
+    private Interpreter() {
+    }
+
+    public static Instance instantiate(Module module) {
+        return instantiate(module, Imports.empty());
+    }
+
+    public static Instance instantiate(Module module, Imports imports) {
+        ModuleValidator.validate(module);
+        return new InterpreterInstance(module, imports, false);
+    }
+
+    // Runs the functions of an instance created by another engine, sharing its memories, tables, globals and segments,
+    // for functions that engine cannot run itself
+    public static Instance share(Instance instance) {
+        return new InterpreterInstance(instance);
+    }
+}
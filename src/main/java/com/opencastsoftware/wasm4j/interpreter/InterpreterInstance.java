@@ -0,0 +1,840 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+// An instance whose functions are lowered to compact code the first time they are called, and then interpreted.
+// Every call made from within the instance shares one operand stack, in which each function has a frame
+// holding its locals followed by its operands.
+final class InterpreterInstance extends Instance {
+    private final List<Func> funcs;
+    private final int[] paramCounts;
+    private final int[] resultCounts;
+    private final FunctionCode[] codes;
+    private final boolean countInstructions;
+    private long instructionCount;
+
+    // The operand stack of a call from outside the instance, which grows as calls are nested
+    private static final class OperandStack {
+        long[] values = new long[256];
+
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+    }
+
+    InterpreterInstance(Module module, Imports imports, boolean countInstructions) {
+        super(module, imports);
+
+        this.paramCounts = paramCounts(module);
+        this.resultCounts = resultCounts(module);
+        this.funcs = module.funcs();
+        this.codes = new FunctionCode[funcs.size()];
+        this.countInstructions = countInstructions;
+
+        initialize();
+    }
+
+    // Runs the functions of another instance, which has already been initialised
+    InterpreterInstance(Instance instance) {
+        super(instance);
+
+        this.paramCounts = paramCounts(instance.module());
+        this.resultCounts = resultCounts(instance.module());
+        this.funcs = instance.module().funcs();
+        this.codes = new FunctionCode[funcs.size()];
+        this.countInstructions = false;
+    }
+
+    private static int[] paramCounts(Module module) {
+        return module.types().stream().mapToInt(type -> type.arguments().size()).toArray();
+    }
+
+    private static int[] resultCounts(Module module) {
+        return module.types().stream().mapToInt(type -> type.results().size()).toArray();
+    }
+
+    // The number of instructions run so far, when the instance was created to count them
+    long instructionCount() {
+        return instructionCount;
+    }
+
+    private FunctionCode code(int funcIndex) {
+        int index = funcIndex - importedFuncCount;
+        var code = codes[index];
+
+        if (code == null) {
+            code = new FunctionLowering(paramCounts, resultCounts, funcTypeIndices, countInstructions).lower(funcs.get(index));
+            codes[index] = code;
+        }
+
+        return code;
+    }
+
+    @Override
+    protected long[] call(int funcIndex, long[] args) {
+        var operands = new OperandStack();
+        operands.ensureCapacity(args.length);
+        System.arraycopy(args, 0, operands.values, 0, args.length);
+
+        // The code of each function is run by a loop, so the stack only grows with the calls it makes
+        int sp;
+        try {
+            sp = call(operands, funcIndex, args.length);
+        } catch (StackOverflowError e) {
+            throw callStackExhausted(e);
+        }
+
+        return Arrays.copyOf(operands.values, sp);
+    }
+
+    // Calls a function whose arguments are at the top of the stack, replacing them with its results and returning the new top
+    private int call(OperandStack operands, int funcIndex, int sp) {
+        if (funcIndex < importedFuncCount) {
+            int params = paramCounts[funcTypeIndices[funcIndex]];
+            int fp = sp - params;
+            var results = importedFuncs[funcIndex].call(Arrays.copyOfRange(operands.values, fp, sp));
+            operands.ensureCapacity(fp + results.length);
+            System.arraycopy(results, 0, operands.values, fp, results.length);
+            return fp + results.length;
+        }
+
+        var code = code(funcIndex);
+        int fp = sp - code.paramCount;
+        operands.ensureCapacity(fp + code.frameSize);
+        Arrays.fill(operands.values, sp, fp + code.localCount, 0L);
+
+        execute(operands, code, fp);
+
+        return fp + code.resultCount;
+    }
+
+    private int indirectTarget(int tableIndex, int typeIndex, int elementIndex) {
+        long ref = tables[tableIndex].get(elementIndex);
+
+        if (ref == Values.NULL) {
+            throw new Trap("uninitialized element " + Integer.toUnsignedString(elementIndex));
+        }
+
+        int funcIndex = Values.asFuncIndex(ref);
+        if (funcIndex >= funcTypeIndices.length || canonicalTypes[funcTypeIndices[funcIndex]] != canonicalTypes[typeIndex]) {
+            throw new Trap("indirect call type mismatch");
+        }
+
+        return funcIndex;
+    }
+
+    private static ByteBuffer buffer(MemoryInstance memory) {
+        return memory != null ? memory.buffer() : null;
+    }
+
+    private void execute(OperandStack operands, FunctionCode function, int fp) {
+        final int[] code = function.code;
+        long[] stack = operands.values;
+        int sp = fp + function.localCount;
+        int pc = 0;
+
+        // Loads and stores use the first memory, whose contents are replaced when it grows
+        final var memory = memories.length > 0 ? memories[0] : null;
+        var buffer = buffer(memory);
+
+        while (true) {
+            switch (code[pc++]) {
+                case Ops.UNREACHABLE:
+                    throw new Trap("unreachable");
+                case Ops.BR:
+                    pc = code[pc];
+                    break;
+                case Ops.BR_MOVE: {
+                    int arity = code[pc + 1];
+                    int height = fp + code[pc + 2];
+                    System.arraycopy(stack, sp - arity, stack, height, arity);
+                    sp = height + arity;
+                    pc = code[pc];
+                    break;
+                }
+                case Ops.BR_IF:
+                    pc = (int) stack[--sp] != 0 ? code[pc] : pc + 1;
+                    break;
+                case Ops.BR_IF_MOVE:
+                    if ((int) stack[--sp] != 0) {
+                        int arity = code[pc + 1];
+                        int height = fp + code[pc + 2];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = code[pc];
+                    } else {
+                        pc += 3;
+                    }
+                    break;
+                case Ops.BR_UNLESS:
+                    pc = (int) stack[--sp] == 0 ? code[pc] : pc + 1;
+                    break;
+                case Ops.BR_TABLE: {
+                    int count = code[pc];
+                    int arity = code[pc + 1];
+                    int index = (int) stack[--sp];
+                    // Out of range indices, including negative ones, select the default label
+                    int label = pc + 2 + 2 * (Integer.compareUnsigned(index, count) < 0 ? index : count);
+                    int height = fp + code[label + 1];
+                    System.arraycopy(stack, sp - arity, stack, height, arity);
+                    sp = height + arity;
+                    pc = code[label];
+                    break;
+                }
+                case Ops.BR_ON_NULL:
+                    if (stack[sp - 1] == Values.NULL) {
+                        sp--;
+                        int arity = code[pc + 1];
+                        int height = fp + code[pc + 2];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = code[pc];
+                    } else {
+                        pc += 3;
+                    }
+                    break;
+                case Ops.BR_ON_NON_NULL:
+                    if (stack[sp - 1] != Values.NULL) {
+                        int arity = code[pc + 1];
+                        int height = fp + code[pc + 2];
+                        System.arraycopy(stack, sp - arity, stack, height, arity);
+                        sp = height + arity;
+                        pc = code[pc];
+                    } else {
+                        sp--;
+                        pc += 3;
+                    }
+                    break;
+                case Ops.RETURN: {
+                    int results = function.resultCount;
+                    System.arraycopy(stack, sp - results, stack, fp, results);
+                    return;
+                }
+                case Ops.CALL:
+                    sp = call(operands, code[pc++], sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                case Ops.CALL_INDIRECT: {
+                    int funcIndex = indirectTarget(code[pc], code[pc + 1], (int) stack[--sp]);
+                    pc += 2;
+                    sp = call(operands, funcIndex, sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                }
+                case Ops.CALL_REF: {
+                    long ref = stack[--sp];
+                    if (ref == Values.NULL) {
+                        throw new Trap("null function reference");
+                    }
+                    sp = call(operands, Values.asFuncIndex(ref), sp);
+                    stack = operands.values;
+                    buffer = buffer(memory);
+                    break;
+                }
+                case Ops.DROP:
+                    sp--;
+                    break;
+                case Ops.SELECT:
+                    sp -= 2;
+                    if ((int) stack[sp + 1] == 0) {
+                        stack[sp - 1] = stack[sp];
+                    }
+                    break;
+                case Ops.LOCAL_GET:
+                    stack[sp++] = stack[fp + code[pc++]];
+                    break;
+                case Ops.LOCAL_SET:
+                    stack[fp + code[pc++]] = stack[--sp];
+                    break;
+                case Ops.LOCAL_TEE:
+                    stack[fp + code[pc++]] = stack[sp - 1];
+                    break;
+                case Ops.GLOBAL_GET:
+                    stack[sp++] = globals[code[pc++]].get();
+                    break;
+                case Ops.GLOBAL_SET:
+                    globals[code[pc++]].set(stack[--sp]);
+                    break;
+                case Ops.I32_LOAD:
+                case Ops.F32_LOAD:
+                    stack[sp - 1] = buffer.getInt(memory.effectiveAddress((int) stack[sp - 1], code[pc++], 4));
+                    break;
+                case Ops.I64_LOAD:
+                case Ops.F64_LOAD:
+                    stack[sp - 1] = buffer.getLong(memory.effectiveAddress((int) stack[sp - 1], code[pc++], 8));
+                    break;
+                case Ops.I32_STORE:
+                case Ops.F32_STORE:
+                    buffer.putInt(memory.effectiveAddress((int) stack[sp - 2], code[pc++], 4), (int) stack[sp - 1]);
+                    sp -= 2;
+                    break;
+                case Ops.I64_STORE:
+                case Ops.F64_STORE:
+                    buffer.putLong(memory.effectiveAddress((int) stack[sp - 2], code[pc++], 8), stack[sp - 1]);
+                    sp -= 2;
+                    break;
+                case Ops.MEMORY_SIZE:
+                    stack[sp++] = memories[code[pc++]].size();
+                    break;
+                case Ops.MEMORY_GROW:
+                    stack[sp - 1] = memories[code[pc++]].grow((int) stack[sp - 1]);
+                    buffer = buffer(memory);
+                    break;
+                case Ops.MEMORY_FILL:
+                    sp -= 3;
+                    memories[code[pc++]].fill((int) stack[sp], (byte) stack[sp + 1], (int) stack[sp + 2]);
+                    break;
+                case Ops.MEMORY_COPY:
+                    sp -= 3;
+                    memories[code[pc]].copy((int) stack[sp], memories[code[pc + 1]], (int) stack[sp + 1], (int) stack[sp + 2]);
+                    pc += 2;
+                    break;
+                case Ops.MEMORY_INIT:
+                    sp -= 3;
+                    memories[code[pc]].init((int) stack[sp], datas[code[pc + 1]], (int) stack[sp + 1], (int) stack[sp + 2]);
+                    pc += 2;
+                    break;
+                case Ops.DATA_DROP:
+                    dropData(code[pc++]);
+                    break;
+                case Ops.REF_IS_NULL:
+                    stack[sp - 1] = stack[sp - 1] == Values.NULL ? 1 : 0;
+                    break;
+                case Ops.REF_AS_NON_NULL:
+                    if (stack[sp - 1] == Values.NULL) {
+                        throw new Trap("null reference");
+                    }
+                    break;
+                case Ops.TABLE_GET:
+                    stack[sp - 1] = tables[code[pc++]].get((int) stack[sp - 1]);
+                    break;
+                case Ops.TABLE_SET:
+                    sp -= 2;
+                    tables[code[pc++]].set((int) stack[sp], stack[sp + 1]);
+                    break;
+                case Ops.TABLE_SIZE:
+                    stack[sp++] = tables[code[pc++]].size();
+                    break;
+                case Ops.TABLE_GROW:
+                    sp--;
+                    stack[sp - 1] = tables[code[pc++]].grow((int) stack[sp], stack[sp - 1]);
+                    break;
+                case Ops.TABLE_FILL:
+                    sp -= 3;
+                    tables[code[pc++]].fill((int) stack[sp], stack[sp + 1], (int) stack[sp + 2]);
+                    break;
+                case Ops.TABLE_COPY:
+                    sp -= 3;
+                    tables[code[pc]].copy((int) stack[sp], tables[code[pc + 1]], (int) stack[sp + 1], (int) stack[sp + 2]);
+                    pc += 2;
+                    break;
+                case Ops.TABLE_INIT:
+                    sp -= 3;
+                    tables[code[pc]].init((int) stack[sp], elems[code[pc + 1]], (int) stack[sp + 1], (int) stack[sp + 2]);
+                    pc += 2;
+                    break;
+                case Ops.ELEM_DROP:
+                    dropElem(code[pc++]);
+                    break;
+                case Ops.I32_CONST:
+                    stack[sp++] = code[pc++];
+                    break;
+                case Ops.I64_CONST:
+                    stack[sp++] = ((long) code[pc] << 32) | Integer.toUnsignedLong(code[pc + 1]);
+                    pc += 2;
+                    break;
+                case Ops.COUNT:
+                    instructionCount++;
+                    break;
+                case Ops.I32_CLZ:
+                    stack[sp - 1] = Integer.numberOfLeadingZeros((int) stack[sp - 1]);
+                    break;
+                case Ops.I32_CTZ:
+                    stack[sp - 1] = Integer.numberOfTrailingZeros((int) stack[sp - 1]);
+                    break;
+                case Ops.I32_POPCNT:
+                    stack[sp - 1] = Integer.bitCount((int) stack[sp - 1]);
+                    break;
+                case Ops.I64_CLZ:
+                    stack[sp - 1] = Long.numberOfLeadingZeros(stack[sp - 1]);
+                    break;
+                case Ops.I64_CTZ:
+                    stack[sp - 1] = Long.numberOfTrailingZeros(stack[sp - 1]);
+                    break;
+                case Ops.I64_POPCNT:
+                    stack[sp - 1] = Long.bitCount(stack[sp - 1]);
+                    break;
+                case Ops.F32_ABS:
+                    stack[sp - 1] = (int) stack[sp - 1] & 0x7FFF_FFFF;
+                    break;
+                case Ops.F32_CEIL:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.ceil(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case Ops.F32_FLOOR:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.floor(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case Ops.F32_NEAREST:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32Nearest(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case Ops.F32_NEG:
+                    stack[sp - 1] = (int) stack[sp - 1] ^ 0x8000_0000;
+                    break;
+                case Ops.F32_SQRT:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Math.sqrt(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case Ops.F32_TRUNC:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32Trunc(Float.intBitsToFloat((int) stack[sp - 1])));
+                    break;
+                case Ops.F64_ABS:
+                    stack[sp - 1] = stack[sp - 1] & 0x7FFF_FFFF_FFFF_FFFFL;
+                    break;
+                case Ops.F64_CEIL:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.ceil(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case Ops.F64_FLOOR:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.floor(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case Ops.F64_NEAREST:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.rint(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case Ops.F64_NEG:
+                    stack[sp - 1] = stack[sp - 1] ^ 0x8000_0000_0000_0000L;
+                    break;
+                case Ops.F64_SQRT:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Math.sqrt(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case Ops.F64_TRUNC:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Numerics.f64Trunc(Double.longBitsToDouble(stack[sp - 1])));
+                    break;
+                case Ops.I32_ADD:
+                    stack[sp - 2] = (int) stack[sp - 2] + (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_AND:
+                    stack[sp - 2] = (int) stack[sp - 2] & (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_DIV_SIGNED:
+                    stack[sp - 2] = Numerics.i32DivS((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_DIV_UNSIGNED:
+                    stack[sp - 2] = Numerics.i32DivU((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_MUL:
+                    stack[sp - 2] = (int) stack[sp - 2] * (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_OR:
+                    stack[sp - 2] = (int) stack[sp - 2] | (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_REM_SIGNED:
+                    stack[sp - 2] = Numerics.i32RemS((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_REM_UNSIGNED:
+                    stack[sp - 2] = Numerics.i32RemU((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_ROTL:
+                    stack[sp - 2] = Integer.rotateLeft((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_ROTR:
+                    stack[sp - 2] = Integer.rotateRight((int) stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I32_SHL:
+                    stack[sp - 2] = (int) stack[sp - 2] << (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_SHR_SIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] >> (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_SHR_UNSIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] >>> (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_SUB:
+                    stack[sp - 2] = (int) stack[sp - 2] - (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I32_XOR:
+                    stack[sp - 2] = (int) stack[sp - 2] ^ (int) stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_ADD:
+                    stack[sp - 2] = stack[sp - 2] + stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_AND:
+                    stack[sp - 2] = stack[sp - 2] & stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_DIV_SIGNED:
+                    stack[sp - 2] = Numerics.i64DivS(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_DIV_UNSIGNED:
+                    stack[sp - 2] = Numerics.i64DivU(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_MUL:
+                    stack[sp - 2] = stack[sp - 2] * stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_OR:
+                    stack[sp - 2] = stack[sp - 2] | stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_REM_SIGNED:
+                    stack[sp - 2] = Numerics.i64RemS(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_REM_UNSIGNED:
+                    stack[sp - 2] = Numerics.i64RemU(stack[sp - 2], stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_ROTL:
+                    stack[sp - 2] = Long.rotateLeft(stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_ROTR:
+                    stack[sp - 2] = Long.rotateRight(stack[sp - 2], (int) stack[sp - 1]);
+                    sp--;
+                    break;
+                case Ops.I64_SHL:
+                    stack[sp - 2] = stack[sp - 2] << stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_SHR_SIGNED:
+                    stack[sp - 2] = stack[sp - 2] >> stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_SHR_UNSIGNED:
+                    stack[sp - 2] = stack[sp - 2] >>> stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_SUB:
+                    stack[sp - 2] = stack[sp - 2] - stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.I64_XOR:
+                    stack[sp - 2] = stack[sp - 2] ^ stack[sp - 1];
+                    sp--;
+                    break;
+                case Ops.F32_ADD:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) + Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F32_COPYSIGN:
+                    stack[sp - 2] = ((int) stack[sp - 2] & 0x7FFF_FFFF) | ((int) stack[sp - 1] & 0x8000_0000);
+                    sp--;
+                    break;
+                case Ops.F32_DIV:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) / Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F32_MAX:
+                    stack[sp - 2] = Float.floatToRawIntBits(Math.max(Float.intBitsToFloat((int) stack[sp - 2]), Float.intBitsToFloat((int) stack[sp - 1])));
+                    sp--;
+                    break;
+                case Ops.F32_MIN:
+                    stack[sp - 2] = Float.floatToRawIntBits(Math.min(Float.intBitsToFloat((int) stack[sp - 2]), Float.intBitsToFloat((int) stack[sp - 1])));
+                    sp--;
+                    break;
+                case Ops.F32_MUL:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) * Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F32_SUB:
+                    stack[sp - 2] = Float.floatToRawIntBits(Float.intBitsToFloat((int) stack[sp - 2]) - Float.intBitsToFloat((int) stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F64_ADD:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) + Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F64_COPYSIGN:
+                    stack[sp - 2] = (stack[sp - 2] & 0x7FFF_FFFF_FFFF_FFFFL) | (stack[sp - 1] & 0x8000_0000_0000_0000L);
+                    sp--;
+                    break;
+                case Ops.F64_DIV:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) / Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F64_MAX:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(stack[sp - 2]), Double.longBitsToDouble(stack[sp - 1])));
+                    sp--;
+                    break;
+                case Ops.F64_MIN:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(stack[sp - 2]), Double.longBitsToDouble(stack[sp - 1])));
+                    sp--;
+                    break;
+                case Ops.F64_MUL:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) * Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.F64_SUB:
+                    stack[sp - 2] = Double.doubleToRawLongBits(Double.longBitsToDouble(stack[sp - 2]) - Double.longBitsToDouble(stack[sp - 1]));
+                    sp--;
+                    break;
+                case Ops.I32_EQZ:
+                    stack[sp - 1] = (int) stack[sp - 1] == 0 ? 1 : 0;
+                    break;
+                case Ops.I64_EQZ:
+                    stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                    break;
+                case Ops.I32_EQ:
+                    stack[sp - 2] = (int) stack[sp - 2] == (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_GE_SIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] >= (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_GE_UNSIGNED:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) >= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_GT_SIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] > (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_GT_UNSIGNED:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) > 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_LE_SIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] <= (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_LE_UNSIGNED:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) <= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_LT_SIGNED:
+                    stack[sp - 2] = (int) stack[sp - 2] < (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_LT_UNSIGNED:
+                    stack[sp - 2] = Integer.compareUnsigned((int) stack[sp - 2], (int) stack[sp - 1]) < 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_NE:
+                    stack[sp - 2] = (int) stack[sp - 2] != (int) stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_EQ:
+                    stack[sp - 2] = stack[sp - 2] == stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_GE_SIGNED:
+                    stack[sp - 2] = stack[sp - 2] >= stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_GE_UNSIGNED:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) >= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_GT_SIGNED:
+                    stack[sp - 2] = stack[sp - 2] > stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_GT_UNSIGNED:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) > 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_LE_SIGNED:
+                    stack[sp - 2] = stack[sp - 2] <= stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_LE_UNSIGNED:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) <= 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_LT_SIGNED:
+                    stack[sp - 2] = stack[sp - 2] < stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_LT_UNSIGNED:
+                    stack[sp - 2] = Long.compareUnsigned(stack[sp - 2], stack[sp - 1]) < 0 ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I64_NE:
+                    stack[sp - 2] = stack[sp - 2] != stack[sp - 1] ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_EQ:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) == Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_GE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) >= Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_GT:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) > Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_LE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) <= Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_LT:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) < Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F32_NE:
+                    stack[sp - 2] = Float.intBitsToFloat((int) stack[sp - 2]) != Float.intBitsToFloat((int) stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_EQ:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) == Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_GE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) >= Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_GT:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) > Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_LE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) <= Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_LT:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) < Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.F64_NE:
+                    stack[sp - 2] = Double.longBitsToDouble(stack[sp - 2]) != Double.longBitsToDouble(stack[sp - 1]) ? 1 : 0;
+                    sp--;
+                    break;
+                case Ops.I32_EXTEND8_SIGNED:
+                    stack[sp - 1] = (byte) (int) stack[sp - 1];
+                    break;
+                case Ops.I64_EXTEND8_SIGNED:
+                    stack[sp - 1] = (byte) stack[sp - 1];
+                    break;
+                case Ops.I32_EXTEND16_SIGNED:
+                    stack[sp - 1] = (short) (int) stack[sp - 1];
+                    break;
+                case Ops.I64_EXTEND16_SIGNED:
+                    stack[sp - 1] = (short) stack[sp - 1];
+                    break;
+                case Ops.I64_EXTEND32_SIGNED:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case Ops.I32_WRAP_I64:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case Ops.I64_EXTEND_I32_SIGNED:
+                    stack[sp - 1] = (int) stack[sp - 1];
+                    break;
+                case Ops.I64_EXTEND_I32_UNSIGNED:
+                    stack[sp - 1] = Integer.toUnsignedLong((int) stack[sp - 1]);
+                    break;
+                case Ops.I32_TRUNC_F32_SIGNED:
+                    stack[sp - 1] = Numerics.i32TruncF32S(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I32_TRUNC_F32_UNSIGNED:
+                    stack[sp - 1] = Numerics.i32TruncF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I32_TRUNC_F64_SIGNED:
+                    stack[sp - 1] = Numerics.i32TruncF64S(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.I32_TRUNC_F64_UNSIGNED:
+                    stack[sp - 1] = Numerics.i32TruncF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_F32_SIGNED:
+                    stack[sp - 1] = Numerics.i64TruncF32S(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_F32_UNSIGNED:
+                    stack[sp - 1] = Numerics.i64TruncF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_F64_SIGNED:
+                    stack[sp - 1] = Numerics.i64TruncF64S(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_F64_UNSIGNED:
+                    stack[sp - 1] = Numerics.i64TruncF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.I32_TRUNC_SAT_F32_SIGNED:
+                    stack[sp - 1] = (int) Float.intBitsToFloat((int) stack[sp - 1]);
+                    break;
+                case Ops.I32_TRUNC_SAT_F32_UNSIGNED:
+                    stack[sp - 1] = Numerics.i32TruncSatF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I32_TRUNC_SAT_F64_SIGNED:
+                    stack[sp - 1] = (int) Double.longBitsToDouble(stack[sp - 1]);
+                    break;
+                case Ops.I32_TRUNC_SAT_F64_UNSIGNED:
+                    stack[sp - 1] = Numerics.i32TruncSatF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_SAT_F32_SIGNED:
+                    stack[sp - 1] = (long) Float.intBitsToFloat((int) stack[sp - 1]);
+                    break;
+                case Ops.I64_TRUNC_SAT_F32_UNSIGNED:
+                    stack[sp - 1] = Numerics.i64TruncSatF32U(Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.I64_TRUNC_SAT_F64_SIGNED:
+                    stack[sp - 1] = (long) Double.longBitsToDouble(stack[sp - 1]);
+                    break;
+                case Ops.I64_TRUNC_SAT_F64_UNSIGNED:
+                    stack[sp - 1] = Numerics.i64TruncSatF64U(Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.F32_DEMOTE_F64:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case Ops.F64_PROMOTE_F32:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) Float.intBitsToFloat((int) stack[sp - 1]));
+                    break;
+                case Ops.F32_CONVERT_I32_SIGNED:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) (int) stack[sp - 1]);
+                    break;
+                case Ops.F32_CONVERT_I32_UNSIGNED:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) Integer.toUnsignedLong((int) stack[sp - 1]));
+                    break;
+                case Ops.F32_CONVERT_I64_SIGNED:
+                    stack[sp - 1] = Float.floatToRawIntBits((float) stack[sp - 1]);
+                    break;
+                case Ops.F32_CONVERT_I64_UNSIGNED:
+                    stack[sp - 1] = Float.floatToRawIntBits(Numerics.f32ConvertI64U(stack[sp - 1]));
+                    break;
+                case Ops.F64_CONVERT_I32_SIGNED:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) (int) stack[sp - 1]);
+                    break;
+                case Ops.F64_CONVERT_I32_UNSIGNED:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) Integer.toUnsignedLong((int) stack[sp - 1]));
+                    break;
+                case Ops.F64_CONVERT_I64_SIGNED:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) stack[sp - 1]);
+                    break;
+                case Ops.F64_CONVERT_I64_UNSIGNED:
+                    stack[sp - 1] = Double.doubleToRawLongBits(Numerics.f64ConvertI64U(stack[sp - 1]));
+                    break;
+                default:
+                    throw new IllegalStateException("unknown opcode " + code[pc - 1]);
+            }
+        }
+    }
+}
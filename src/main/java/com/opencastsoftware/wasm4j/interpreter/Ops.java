@@ -0,0 +1,217 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+// The opcodes of lowered code, each followed by its immediates.
+// Reinterpretations, nops and blocks have no opcode, as they do nothing at runtime.
+final class Ops {
+    // Control, where branch targets are indices into the code and stack heights are relative to the frame
+    static final int UNREACHABLE = 0;
+    // target
+    static final int BR = 1;
+    // target, arity, height: moves the values of the label down to the height
+    static final int BR_MOVE = 2;
+    // target
+    static final int BR_IF = 3;
+    // target, arity, height
+    static final int BR_IF_MOVE = 4;
+    // target: branches if the condition is zero, for if
+    static final int BR_UNLESS = 5;
+    // count, arity, and then a target and height for each label followed by the default label
+    static final int BR_TABLE = 6;
+    // target, arity, height
+    static final int BR_ON_NULL = 7;
+    // target, arity, height
+    static final int BR_ON_NON_NULL = 8;
+    static final int RETURN = 9;
+    static final int CALL = 10;
+    static final int CALL_INDIRECT = 11;
+    static final int CALL_REF = 12;
+
+    // Parametric
+    static final int DROP = 13;
+    static final int SELECT = 14;
+
+    // Variables, by index
+    static final int LOCAL_GET = 15;
+    static final int LOCAL_SET = 16;
+    static final int LOCAL_TEE = 17;
+    static final int GLOBAL_GET = 18;
+    static final int GLOBAL_SET = 19;
+
+    // Memory, where loads and stores are followed by their offset
+    static final int I32_LOAD = 20;
+    static final int I64_LOAD = 21;
+    static final int F32_LOAD = 22;
+    static final int F64_LOAD = 23;
+    static final int I32_STORE = 24;
+    static final int I64_STORE = 25;
+    static final int F32_STORE = 26;
+    static final int F64_STORE = 27;
+    static final int MEMORY_SIZE = 28;
+    static final int MEMORY_GROW = 29;
+    static final int MEMORY_FILL = 30;
+    static final int MEMORY_COPY = 31;
+    static final int MEMORY_INIT = 32;
+    static final int DATA_DROP = 33;
+
+    // References, where null and function references are pushed as constants
+    static final int REF_IS_NULL = 34;
+    static final int REF_AS_NON_NULL = 35;
+
+    // Tables
+    static final int TABLE_GET = 36;
+    static final int TABLE_SET = 37;
+    static final int TABLE_SIZE = 38;
+    static final int TABLE_GROW = 39;
+    static final int TABLE_FILL = 40;
+    static final int TABLE_COPY = 41;
+    static final int TABLE_INIT = 42;
+    static final int ELEM_DROP = 43;
+
+    // Constants, where floating point constants are pushed as their raw bits and 64-bit constants take two ints, high first
+    static final int I32_CONST = 44;
+    static final int I64_CONST = 45;
+
+    // Numeric operations
+    static final int I32_CLZ = 46;
+    static final int I32_CTZ = 47;
+    static final int I32_POPCNT = 48;
+    static final int I64_CLZ = 49;
+    static final int I64_CTZ = 50;
+    static final int I64_POPCNT = 51;
+    static final int F32_ABS = 52;
+    static final int F32_CEIL = 53;
+    static final int F32_FLOOR = 54;
+    static final int F32_NEAREST = 55;
+    static final int F32_NEG = 56;
+    static final int F32_SQRT = 57;
+    static final int F32_TRUNC = 58;
+    static final int F64_ABS = 59;
+    static final int F64_CEIL = 60;
+    static final int F64_FLOOR = 61;
+    static final int F64_NEAREST = 62;
+    static final int F64_NEG = 63;
+    static final int F64_SQRT = 64;
+    static final int F64_TRUNC = 65;
+    static final int I32_ADD = 66;
+    static final int I32_AND = 67;
+    static final int I32_DIV_SIGNED = 68;
+    static final int I32_DIV_UNSIGNED = 69;
+    static final int I32_MUL = 70;
+    static final int I32_OR = 71;
+    static final int I32_REM_SIGNED = 72;
+    static final int I32_REM_UNSIGNED = 73;
+    static final int I32_ROTL = 74;
+    static final int I32_ROTR = 75;
+    static final int I32_SHL = 76;
+    static final int I32_SHR_SIGNED = 77;
+    static final int I32_SHR_UNSIGNED = 78;
+    static final int I32_SUB = 79;
+    static final int I32_XOR = 80;
+    static final int I64_ADD = 81;
+    static final int I64_AND = 82;
+    static final int I64_DIV_SIGNED = 83;
+    static final int I64_DIV_UNSIGNED = 84;
+    static final int I64_MUL = 85;
+    static final int I64_OR = 86;
+    static final int I64_REM_SIGNED = 87;
+    static final int I64_REM_UNSIGNED = 88;
+    static final int I64_ROTL = 89;
+    static final int I64_ROTR = 90;
+    static final int I64_SHL = 91;
+    static final int I64_SHR_SIGNED = 92;
+    static final int I64_SHR_UNSIGNED = 93;
+    static final int I64_SUB = 94;
+    static final int I64_XOR = 95;
+    static final int F32_ADD = 96;
+    static final int F32_COPYSIGN = 97;
+    static final int F32_DIV = 98;
+    static final int F32_MAX = 99;
+    static final int F32_MIN = 100;
+    static final int F32_MUL = 101;
+    static final int F32_SUB = 102;
+    static final int F64_ADD = 103;
+    static final int F64_COPYSIGN = 104;
+    static final int F64_DIV = 105;
+    static final int F64_MAX = 106;
+    static final int F64_MIN = 107;
+    static final int F64_MUL = 108;
+    static final int F64_SUB = 109;
+    static final int I32_EQZ = 110;
+    static final int I64_EQZ = 111;
+    static final int I32_EQ = 112;
+    static final int I32_GE_SIGNED = 113;
+    static final int I32_GE_UNSIGNED = 114;
+    static final int I32_GT_SIGNED = 115;
+    static final int I32_GT_UNSIGNED = 116;
+    static final int I32_LE_SIGNED = 117;
+    static final int I32_LE_UNSIGNED = 118;
+    static final int I32_LT_SIGNED = 119;
+    static final int I32_LT_UNSIGNED = 120;
+    static final int I32_NE = 121;
+    static final int I64_EQ = 122;
+    static final int I64_GE_SIGNED = 123;
+    static final int I64_GE_UNSIGNED = 124;
+    static final int I64_GT_SIGNED = 125;
+    static final int I64_GT_UNSIGNED = 126;
+    static final int I64_LE_SIGNED = 127;
+    static final int I64_LE_UNSIGNED = 128;
+    static final int I64_LT_SIGNED = 129;
+    static final int I64_LT_UNSIGNED = 130;
+    static final int I64_NE = 131;
+    static final int F32_EQ = 132;
+    static final int F32_GE = 133;
+    static final int F32_GT = 134;
+    static final int F32_LE = 135;
+    static final int F32_LT = 136;
+    static final int F32_NE = 137;
+    static final int F64_EQ = 138;
+    static final int F64_GE = 139;
+    static final int F64_GT = 140;
+    static final int F64_LE = 141;
+    static final int F64_LT = 142;
+    static final int F64_NE = 143;
+    static final int I32_EXTEND8_SIGNED = 144;
+    static final int I64_EXTEND8_SIGNED = 145;
+    static final int I32_EXTEND16_SIGNED = 146;
+    static final int I64_EXTEND16_SIGNED = 147;
+    static final int I64_EXTEND32_SIGNED = 148;
+    static final int I32_WRAP_I64 = 149;
+    static final int I64_EXTEND_I32_SIGNED = 150;
+    static final int I64_EXTEND_I32_UNSIGNED = 151;
+    static final int I32_TRUNC_F32_SIGNED = 152;
+    static final int I32_TRUNC_F32_UNSIGNED = 153;
+    static final int I32_TRUNC_F64_SIGNED = 154;
+    static final int I32_TRUNC_F64_UNSIGNED = 155;
+    static final int I64_TRUNC_F32_SIGNED = 156;
+    static final int I64_TRUNC_F32_UNSIGNED = 157;
+    static final int I64_TRUNC_F64_SIGNED = 158;
+    static final int I64_TRUNC_F64_UNSIGNED = 159;
+    static final int I32_TRUNC_SAT_F32_SIGNED = 160;
+    static final int I32_TRUNC_SAT_F32_UNSIGNED = 161;
+    static final int I32_TRUNC_SAT_F64_SIGNED = 162;
+    static final int I32_TRUNC_SAT_F64_UNSIGNED = 163;
+    static final int I64_TRUNC_SAT_F32_SIGNED = 164;
+    static final int I64_TRUNC_SAT_F32_UNSIGNED = 165;
+    static final int I64_TRUNC_SAT_F64_SIGNED = 166;
+    static final int I64_TRUNC_SAT_F64_UNSIGNED = 167;
+    static final int F32_DEMOTE_F64 = 168;
+    static final int F64_PROMOTE_F32 = 169;
+    static final int F32_CONVERT_I32_SIGNED = 170;
+    static final int F32_CONVERT_I32_UNSIGNED = 171;
+    static final int F32_CONVERT_I64_SIGNED = 172;
+    static final int F32_CONVERT_I64_UNSIGNED = 173;
+    static final int F64_CONVERT_I32_SIGNED = 174;
+    static final int F64_CONVERT_I32_UNSIGNED = 175;
+    static final int F64_CONVERT_I64_SIGNED = 176;
+    static final int F64_CONVERT_I64_UNSIGNED = 177;
+
+    // Counts an instruction, which is only emitted when instructions are being counted
+    static final int COUNT = 178;
+
+    private Ops() {
+    }
+}
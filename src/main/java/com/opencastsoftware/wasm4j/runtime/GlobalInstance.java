@@ -0,0 +1,30 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.types.GlobalType;
+
+// A global variable, holding the raw bits of its value as described in Values
+public final class GlobalInstance {
+    private final GlobalType type;
+    private long value;
+
+    public GlobalInstance(GlobalType type, long value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public GlobalType type() {
+        return type;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+}
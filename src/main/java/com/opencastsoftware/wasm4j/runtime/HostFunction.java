@@ -0,0 +1,11 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+// A function which can be imported by an instance, receiving and returning the raw bits of values as described in Values
+@FunctionalInterface
+public interface HostFunction {
+    long[] call(long... args);
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.types.FuncType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The values provided for the imports of a module when it is instantiated, by module name and import name
+public class Imports {
+    private static final Imports EMPTY = new Imports(Map.of());
+
+    private final Map<String, Map<String, Object>> values;
+
+    private Imports(Map<String, Map<String, Object>> values) {
+        this.values = values;
+    }
+
+    public static Imports empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nullable
+    Object get(String module, String name) {
+        var moduleValues = values.get(module);
+        return moduleValues != null ? moduleValues.get(name) : null;
+    }
+
+    // A host function along with the type it is imported with
+    static class Func {
+        private final FuncType type;
+        private final HostFunction function;
+
+        Func(FuncType type, HostFunction function) {
+            this.type = type;
+            this.function = function;
+        }
+
+        FuncType type() {
+            return type;
+        }
+
+        HostFunction function() {
+            return function;
+        }
+    }
+
+    public static class Builder {
+        private final Map<String, Map<String, Object>> values = new HashMap<>();
+
+        private Builder with(String module, String name, Object value) {
+            values.computeIfAbsent(module, m -> new HashMap<>()).put(name, value);
+            return this;
+        }
+
+        public Builder withFunc(String module, String name, FuncType type, HostFunction function) {
+            return with(module, name, new Func(type, function));
+        }
+
+        public Builder withMemory(String module, String name, MemoryInstance memory) {
+            return with(module, name, memory);
+        }
+
+        public Builder withTable(String module, String name, TableInstance table) {
+            return with(module, name, table);
+        }
+
+        public Builder withGlobal(String module, String name, GlobalInstance global) {
+            return with(module, name, global);
+        }
+
+        // Provides every export of an instance under the given module name
+        public Builder withExports(String module, Instance instance) {
+            instance.exports().forEach((name, value) -> with(module, name, value));
+            return this;
+        }
+
+        public Imports build() {
+            return new Imports(values);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.variable.GlobalGet;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.Limits;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+// An instantiated module, with the functions it defines run by an execution engine.
+// Instantiation allocates the module's memories, tables and globals and resolves its imports,
+// and the engine calls initialize once it is ready to run the start function.
+public abstract class Instance {
+    private static final long[] EMPTY_ELEM = new long[0];
+    private static final ByteBuffer EMPTY_DATA = ByteBuffer.allocate(0);
+
+    private final Module module;
+    protected final int importedFuncCount;
+    // The type index of each function, starting with the imported functions
+    protected final int[] funcTypeIndices;
+    // Structurally identical function types are identified by the index of the first of them
+    protected final int[] canonicalTypes;
+    protected final HostFunction[] importedFuncs;
+    protected final MemoryInstance[] memories;
+    protected final TableInstance[] tables;
+    protected final GlobalInstance[] globals;
+    // Segments are replaced by empty segments when they are dropped
+    protected final long[][] elems;
+    protected final ByteBuffer[] datas;
+    private final Map<String, Object> exports = new LinkedHashMap<>();
+
+    // The module has been validated by the engine, which only needs to do so once for any number of instances
+    protected Instance(Module module, Imports imports) {
+        this.module = module;
+
+        var types = module.types();
+        this.canonicalTypes = new int[types.size()];
+        var firstIndices = new HashMap<FuncType, Integer>();
+        for (int i = 0; i < types.size(); i++) {
+            var firstIndex = firstIndices.putIfAbsent(types.get(i), i);
+            canonicalTypes[i] = firstIndex != null ? firstIndex : i;
+        }
+
+        var funcTypeIndices = new ArrayList<Integer>();
+        var importedFuncs = new ArrayList<HostFunction>();
+        var memories = new ArrayList<MemoryInstance>();
+        var tables = new ArrayList<TableInstance>();
+        var globals = new ArrayList<GlobalInstance>();
+
+        for (Import imp : module.imports()) {
+            var descriptor = imp.descriptor();
+            var value = imports.get(imp.module(), imp.name());
+            var importName = imp.module() + "." + imp.name();
+
+            if (value == null) {
+                throw new IllegalArgumentException("unknown import " + importName);
+            }
+
+            if (descriptor instanceof Import.Descriptor.Func) {
+                int typeIndex = ((Import.Descriptor.Func) descriptor).typeIndex();
+                if (!(value instanceof Imports.Func) || !((Imports.Func) value).type().equals(types.get(typeIndex))) {
+                    throw incompatibleImport(importName);
+                }
+                funcTypeIndices.add(typeIndex);
+                importedFuncs.add(((Imports.Func) value).function());
+            } else if (descriptor instanceof Import.Descriptor.Mem) {
+                var limits = ((Import.Descriptor.Mem) descriptor).memType().limits();
+                if (!(value instanceof MemoryInstance) || !matches(((MemoryInstance) value).size(), ((MemoryInstance) value).maxSize(), limits)) {
+                    throw incompatibleImport(importName);
+                }
+                memories.add((MemoryInstance) value);
+            } else if (descriptor instanceof Import.Descriptor.Table) {
+                var tableType = ((Import.Descriptor.Table) descriptor).tableType();
+                if (!(value instanceof TableInstance)
+                        || !((TableInstance) value).elementType().equals(tableType.refType())
+                        || !matches(((TableInstance) value).size(), ((TableInstance) value).maxSize(), tableType.limits())) {
+                    throw incompatibleImport(importName);
+                }
+                tables.add((TableInstance) value);
+            } else {
+                var globalType = ((Import.Descriptor.Global) descriptor).globalType();
+                if (!(value instanceof GlobalInstance)
+                        || ((GlobalInstance) value).type().isMutable() != globalType.isMutable()
+                        || !((GlobalInstance) value).type().valType().equals(globalType.valType())) {
+                    throw incompatibleImport(importName);
+                }
+                globals.add((GlobalInstance) value);
+            }
+        }
+
+        this.importedFuncCount = importedFuncs.size();
+        this.importedFuncs = importedFuncs.toArray(new HostFunction[0]);
+
+        for (Func func : module.funcs()) {
+            funcTypeIndices.add(func.typeIndex());
+        }
+        this.funcTypeIndices = funcTypeIndices.stream().mapToInt(Integer::intValue).toArray();
+
+        for (var memType : module.mems()) {
+            memories.add(new MemoryInstance(memType));
+        }
+        this.memories = memories.toArray(new MemoryInstance[0]);
+
+        // Globals are initialised in order, as each may refer to the globals before it
+        this.globals = new GlobalInstance[globals.size() + module.globals().size()];
+        globals.toArray(this.globals);
+        for (int i = 0; i < module.globals().size(); i++) {
+            var global = module.globals().get(i);
+            this.globals[globals.size() + i] = new GlobalInstance(global.type(), evaluate(global.init()));
+        }
+
+        for (Table table : module.tables()) {
+            long initialValue = table.init().instructions().isEmpty() ? Values.NULL : evaluate(table.init());
+            tables.add(new TableInstance(table.type(), initialValue));
+        }
+        this.tables = tables.toArray(new TableInstance[0]);
+
+        var moduleElems = module.elems();
+        this.elems = new long[moduleElems.size()][];
+        for (int i = 0; i < elems.length; i++) {
+            var init = moduleElems.get(i).init();
+            elems[i] = new long[init.size()];
+            for (int j = 0; j < init.size(); j++) {
+                elems[i][j] = evaluate(init.get(j));
+            }
+        }
+
+        var moduleDatas = module.datas();
+        this.datas = new ByteBuffer[moduleDatas.size()];
+        for (int i = 0; i < datas.length; i++) {
+            datas[i] = moduleDatas.get(i).initBuffer();
+        }
+
+        for (Export export : module.exports()) {
+            int index = export.descriptor().index();
+            switch (export.descriptor().indexType()) {
+                case FUNC:
+                    exports.put(export.name(), new Imports.Func(types.get(this.funcTypeIndices[index]), args -> invoke(index, args)));
+                    break;
+                case TABLE:
+                    exports.put(export.name(), this.tables[index]);
+                    break;
+                case MEM:
+                    exports.put(export.name(), this.memories[index]);
+                    break;
+                default:
+                    exports.put(export.name(), this.globals[index]);
+            }
+        }
+    }
+
+    // Shares the state of another instance, so that a different engine can run some of its functions
+    protected Instance(Instance instance) {
+        this.module = instance.module;
+        this.importedFuncCount = instance.importedFuncCount;
+        this.funcTypeIndices = instance.funcTypeIndices;
+        this.canonicalTypes = instance.canonicalTypes;
+        this.importedFuncs = instance.importedFuncs;
+        this.memories = instance.memories;
+        this.tables = instance.tables;
+        this.globals = instance.globals;
+        this.elems = instance.elems;
+        this.datas = instance.datas;
+        this.exports.putAll(instance.exports);
+    }
+
+    private static IllegalArgumentException incompatibleImport(String importName) {
+        return new IllegalArgumentException("incompatible import type for " + importName);
+    }
+
+    private static boolean matches(int size, int maxSize, Limits limits) {
+        if (Integer.compareUnsigned(size, limits.min()) < 0) {
+            return false;
+        }
+        return limits.max() == null || Integer.compareUnsigned(maxSize, limits.max()) <= 0;
+    }
+
+    // Evaluates a constant expression, which validation has ensured produces a single value
+    protected final long evaluate(ConstantExpression expression) {
+        ConstantInstruction instr = expression.instructions().get(0);
+
+        if (instr instanceof I32Const) {
+            return Values.i32(((I32Const) instr).value());
+        } else if (instr instanceof I64Const) {
+            return Values.i64(((I64Const) instr).value());
+        } else if (instr instanceof F32Const) {
+            return Values.f32(((F32Const) instr).value());
+        } else if (instr instanceof F64Const) {
+            return Values.f64(((F64Const) instr).value());
+        } else if (instr instanceof RefFunc) {
+            return Values.funcRef(((RefFunc) instr).funcIndex());
+        } else if (instr instanceof GlobalGet) {
+            return globals[((GlobalGet) instr).globalIndex()].get();
+        } else {
+            return Values.NULL;
+        }
+    }
+
+    // Copies the active segments into tables and memories, and then runs the start function
+    protected final void initialize() {
+        var moduleElems = module.elems();
+        for (int i = 0; i < elems.length; i++) {
+            var mode = moduleElems.get(i).mode();
+            if (mode instanceof Elem.Mode.Active) {
+                var active = (Elem.Mode.Active) mode;
+                tables[active.tableIndex()].init((int) evaluate(active.offset()), elems[i], 0, elems[i].length);
+                elems[i] = EMPTY_ELEM;
+            } else if (mode instanceof Elem.Mode.Declarative) {
+                elems[i] = EMPTY_ELEM;
+            }
+        }
+
+        var moduleDatas = module.datas();
+        for (int i = 0; i < datas.length; i++) {
+            var mode = moduleDatas.get(i).mode();
+            if (mode instanceof Data.Mode.Active) {
+                var active = (Data.Mode.Active) mode;
+                memories[active.memIndex()].init((int) evaluate(active.offset()), datas[i], 0, datas[i].remaining());
+                datas[i] = EMPTY_DATA;
+            }
+        }
+
+        if (module.start() != null) {
+            invoke(module.start());
+        }
+    }
+
+    protected final void dropElem(int elemIndex) {
+        elems[elemIndex] = EMPTY_ELEM;
+    }
+
+    protected final void dropData(int dataIndex) {
+        datas[dataIndex] = EMPTY_DATA;
+    }
+
+    public Module module() {
+        return module;
+    }
+
+    public FuncType funcType(int funcIndex) {
+        return module.types().get(funcTypeIndices[funcIndex]);
+    }
+
+    public long[] invoke(int funcIndex, long... args) {
+        if (funcIndex < 0 || funcIndex >= funcTypeIndices.length) {
+            throw new IllegalArgumentException("unknown function " + funcIndex);
+        }
+
+        int paramCount = funcType(funcIndex).arguments().size();
+        if (args.length != paramCount) {
+            throw new IllegalArgumentException("function " + funcIndex + " takes " + paramCount + " arguments but was given " + args.length);
+        }
+
+        return funcIndex < importedFuncCount ? importedFuncs[funcIndex].call(args) : call(funcIndex, args);
+    }
+
+    public long[] invoke(String exportName, long... args) {
+        var export = exports.get(exportName);
+        if (!(export instanceof Imports.Func)) {
+            throw new IllegalArgumentException("unknown function export " + exportName);
+        }
+        return ((Imports.Func) export).function().call(args);
+    }
+
+    // Calls a function defined by the module, with arguments that match its type
+    protected abstract long[] call(int funcIndex, long[] args);
+
+    // Engines report running out of stack as a trap only where the stack grows with the guest calls they make,
+    // so that a stack overflow within the engine itself is not mistaken for one
+    protected static Trap callStackExhausted(StackOverflowError e) {
+        return new Trap("call stack exhausted", e);
+    }
+
+    private <T> T export(String exportName, Class<T> type, String kind) {
+        var export = exports.get(exportName);
+        if (!type.isInstance(export)) {
+            throw new IllegalArgumentException("unknown " + kind + " export " + exportName);
+        }
+        return type.cast(export);
+    }
+
+    public MemoryInstance memory(String exportName) {
+        return export(exportName, MemoryInstance.class, "memory");
+    }
+
+    public TableInstance table(String exportName) {
+        return export(exportName, TableInstance.class, "table");
+    }
+
+    public GlobalInstance global(String exportName) {
+        return export(exportName, GlobalInstance.class, "global");
+    }
+
+    Map<String, Object> exports() {
+        return exports;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.types.MemType;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// A linear memory, stored in a little-endian heap buffer which is replaced whenever the memory grows.
+// A buffer can hold less than 2GiB, so memories are limited to MAX_PAGES rather than 4GiB.
+public final class MemoryInstance {
+    public static final int PAGE_SIZE = 65536;
+    public static final int MAX_PAGES = Integer.MAX_VALUE / PAGE_SIZE;
+
+    private final int maxPages;
+    private ByteBuffer buffer;
+
+    public MemoryInstance(int pages, @Nullable Integer maxPages) {
+        this.maxPages = maxPages != null ? (int) Math.min(Integer.toUnsignedLong(maxPages), MAX_PAGES) : MAX_PAGES;
+
+        if (Integer.compareUnsigned(pages, this.maxPages) > 0) {
+            throw new Trap("memory of " + Integer.toUnsignedString(pages) + " pages is too large");
+        }
+
+        this.buffer = allocate(pages);
+    }
+
+    public MemoryInstance(MemType type) {
+        this(type.limits().min(), type.limits().max());
+    }
+
+    private static ByteBuffer allocate(int pages) {
+        return ByteBuffer.allocate(pages * PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // The current contents of the memory, which are no longer used once the memory grows
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return buffer.capacity() / PAGE_SIZE;
+    }
+
+    public int maxSize() {
+        return maxPages;
+    }
+
+    // Returns the previous size in pages, or -1 if the memory cannot grow by that many pages
+    public int grow(int deltaPages) {
+        int pages = size();
+        long newPages = pages + Integer.toUnsignedLong(deltaPages);
+
+        if (newPages > maxPages) {
+            return -1;
+        }
+
+        if (deltaPages != 0) {
+            var grown = allocate((int) newPages);
+            System.arraycopy(buffer.array(), 0, grown.array(), 0, buffer.capacity());
+            buffer = grown;
+        }
+
+        return pages;
+    }
+
+    // Returns the index of the bytes accessed at an address and offset, or traps if any of them are out of bounds
+    public int effectiveAddress(int address, int offset, int size) {
+        long effective = Integer.toUnsignedLong(address) + Integer.toUnsignedLong(offset);
+
+        if (effective > buffer.capacity() - size) {
+            throw outOfBounds();
+        }
+
+        return (int) effective;
+    }
+
+    private static Trap outOfBounds() {
+        return new Trap("out of bounds memory access");
+    }
+
+    private void checkRange(int offset, int length, int limit) {
+        if (Integer.toUnsignedLong(offset) + Integer.toUnsignedLong(length) > limit) {
+            throw outOfBounds();
+        }
+    }
+
+    public void fill(int offset, byte value, int length) {
+        checkRange(offset, length, buffer.capacity());
+
+        Arrays.fill(buffer.array(), offset, offset + length, value);
+    }
+
+    public void copy(int targetOffset, MemoryInstance source, int sourceOffset, int length) {
+        checkRange(targetOffset, length, buffer.capacity());
+        checkRange(sourceOffset, length, source.buffer.capacity());
+
+        // System.arraycopy copies overlapping ranges as if through a temporary array
+        System.arraycopy(source.buffer.array(), sourceOffset, buffer.array(), targetOffset, length);
+    }
+
+    public void init(int targetOffset, ByteBuffer data, int sourceOffset, int length) {
+        checkRange(targetOffset, length, buffer.capacity());
+        checkRange(sourceOffset, length, data.remaining());
+
+        data.duplicate()
+                .position(data.position() + sourceOffset)
+                .limit(data.position() + sourceOffset + length)
+                .get(buffer.array(), targetOffset, length);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+// The numeric operations which can trap, or which have no direct equivalent in Java
+public final class Numerics {
+    private static final float TWO_POW_31_F = 2147483648f;
+    private static final float TWO_POW_32_F = 4294967296f;
+    private static final float TWO_POW_63_F = 9223372036854775808f;
+    private static final float TWO_POW_64_F = 18446744073709551616f;
+    private static final double TWO_POW_31 = 2147483648d;
+    private static final double TWO_POW_32 = 4294967296d;
+    private static final double TWO_POW_63 = 9223372036854775808d;
+    private static final double TWO_POW_64 = 18446744073709551616d;
+
+    private Numerics() {
+    }
+
+    private static Trap divideByZero() {
+        return new Trap("integer divide by zero");
+    }
+
+    private static Trap overflow() {
+        return new Trap("integer overflow");
+    }
+
+    private static Trap invalidConversion() {
+        return new Trap("invalid conversion to integer");
+    }
+
+    public static int i32DivS(int a, int b) {
+        if (b == 0) {
+            throw divideByZero();
+        } else if (a == Integer.MIN_VALUE && b == -1) {
+            throw overflow();
+        }
+        return a / b;
+    }
+
+    public static int i32DivU(int a, int b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        return Integer.divideUnsigned(a, b);
+    }
+
+    public static int i32RemS(int a, int b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        // The remainder of the most negative value divided by -1 is zero in Java too
+        return a % b;
+    }
+
+    public static int i32RemU(int a, int b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        return Integer.remainderUnsigned(a, b);
+    }
+
+    public static long i64DivS(long a, long b) {
+        if (b == 0) {
+            throw divideByZero();
+        } else if (a == Long.MIN_VALUE && b == -1) {
+            throw overflow();
+        }
+        return a / b;
+    }
+
+    public static long i64DivU(long a, long b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        return Long.divideUnsigned(a, b);
+    }
+
+    public static long i64RemS(long a, long b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        return a % b;
+    }
+
+    public static long i64RemU(long a, long b) {
+        if (b == 0) {
+            throw divideByZero();
+        }
+        return Long.remainderUnsigned(a, b);
+    }
+
+    public static float f32Trunc(float a) {
+        return (float) (a < 0 ? Math.ceil(a) : Math.floor(a));
+    }
+
+    public static double f64Trunc(double a) {
+        return a < 0 ? Math.ceil(a) : Math.floor(a);
+    }
+
+    public static float f32Nearest(float a) {
+        return (float) Math.rint(a);
+    }
+
+    // Conversions that trap when the value is out of range
+
+    public static int i32TruncF32S(float a) {
+        if (Float.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a < -TWO_POW_31_F || a >= TWO_POW_31_F) {
+            throw overflow();
+        }
+        return (int) a;
+    }
+
+    public static int i32TruncF32U(float a) {
+        if (Float.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a <= -1f || a >= TWO_POW_32_F) {
+            throw overflow();
+        }
+        return (int) (long) a;
+    }
+
+    public static int i32TruncF64S(double a) {
+        if (Double.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a <= -TWO_POW_31 - 1 || a >= TWO_POW_31) {
+            throw overflow();
+        }
+        return (int) a;
+    }
+
+    public static int i32TruncF64U(double a) {
+        if (Double.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a <= -1d || a >= TWO_POW_32) {
+            throw overflow();
+        }
+        return (int) (long) a;
+    }
+
+    public static long i64TruncF32S(float a) {
+        if (Float.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a < -TWO_POW_63_F || a >= TWO_POW_63_F) {
+            throw overflow();
+        }
+        return (long) a;
+    }
+
+    public static long i64TruncF32U(float a) {
+        if (Float.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a <= -1f || a >= TWO_POW_64_F) {
+            throw overflow();
+        }
+        return a < TWO_POW_63_F ? (long) a : (long) (a - TWO_POW_63_F) + Long.MIN_VALUE;
+    }
+
+    public static long i64TruncF64S(double a) {
+        if (Double.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a < -TWO_POW_63 || a >= TWO_POW_63) {
+            throw overflow();
+        }
+        return (long) a;
+    }
+
+    public static long i64TruncF64U(double a) {
+        if (Double.isNaN(a)) {
+            throw invalidConversion();
+        } else if (a <= -1d || a >= TWO_POW_64) {
+            throw overflow();
+        }
+        return a < TWO_POW_63 ? (long) a : (long) (a - TWO_POW_63) + Long.MIN_VALUE;
+    }
+
+    // Saturating conversions, where Java's casts already saturate signed values and convert NaN to zero
+
+    public static int i32TruncSatF32U(float a) {
+        if (Float.isNaN(a) || a <= 0) {
+            return 0;
+        } else if (a >= TWO_POW_32_F) {
+            return -1;
+        }
+        return (int) (long) a;
+    }
+
+    public static int i32TruncSatF64U(double a) {
+        if (Double.isNaN(a) || a <= 0) {
+            return 0;
+        } else if (a >= TWO_POW_32) {
+            return -1;
+        }
+        return (int) (long) a;
+    }
+
+    public static long i64TruncSatF32U(float a) {
+        if (Float.isNaN(a) || a <= 0) {
+            return 0;
+        } else if (a >= TWO_POW_64_F) {
+            return -1;
+        }
+        return a < TWO_POW_63_F ? (long) a : (long) (a - TWO_POW_63_F) + Long.MIN_VALUE;
+    }
+
+    public static long i64TruncSatF64U(double a) {
+        if (Double.isNaN(a) || a <= 0) {
+            return 0;
+        } else if (a >= TWO_POW_64) {
+            return -1;
+        }
+        return a < TWO_POW_63 ? (long) a : (long) (a - TWO_POW_63) + Long.MIN_VALUE;
+    }
+
+    // Unsigned 64-bit conversions, which halve the value while keeping its lowest bit so that it rounds correctly
+
+    public static float f32ConvertI64U(long a) {
+        if (a >= 0) {
+            return (float) a;
+        }
+        return (float) ((a >>> 1) | (a & 1)) * 2f;
+    }
+
+    public static double f64ConvertI64U(long a) {
+        if (a >= 0) {
+            return (double) a;
+        }
+        return (double) ((a >>> 1) | (a & 1)) * 2d;
+    }
+}
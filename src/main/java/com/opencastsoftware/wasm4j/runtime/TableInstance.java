@@ -0,0 +1,105 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.types.RefType;
+import com.opencastsoftware.wasm4j.types.TableType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+// A table of references, using the representation of references in Values.
+// Function references refer to functions by their index in the instance that uses the table.
+public final class TableInstance {
+    private final RefType elementType;
+    private final int maxSize;
+    private long[] elements;
+
+    public TableInstance(RefType elementType, int size, @Nullable Integer maxSize, long initialValue) {
+        this.elementType = elementType;
+        this.maxSize = maxSize != null ? (int) Math.min(Integer.toUnsignedLong(maxSize), Integer.MAX_VALUE) : Integer.MAX_VALUE;
+
+        if (Integer.compareUnsigned(size, this.maxSize) > 0) {
+            throw new Trap("table of " + Integer.toUnsignedString(size) + " elements is too large");
+        }
+
+        this.elements = new long[size];
+        if (initialValue != Values.NULL) {
+            Arrays.fill(elements, initialValue);
+        }
+    }
+
+    public TableInstance(TableType type, long initialValue) {
+        this(type.refType(), type.limits().min(), type.limits().max(), initialValue);
+    }
+
+    public RefType elementType() {
+        return elementType;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    private static Trap outOfBounds() {
+        return new Trap("out of bounds table access");
+    }
+
+    private void checkRange(int offset, int length, int limit) {
+        if (Integer.toUnsignedLong(offset) + Integer.toUnsignedLong(length) > limit) {
+            throw outOfBounds();
+        }
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= elements.length) {
+            throw outOfBounds();
+        }
+        return elements[index];
+    }
+
+    public void set(int index, long value) {
+        if (index < 0 || index >= elements.length) {
+            throw outOfBounds();
+        }
+        elements[index] = value;
+    }
+
+    // Returns the previous size, or -1 if the table cannot grow by that many elements
+    public int grow(int delta, long initialValue) {
+        int size = elements.length;
+        long newSize = size + Integer.toUnsignedLong(delta);
+
+        if (newSize > maxSize) {
+            return -1;
+        }
+
+        elements = Arrays.copyOf(elements, (int) newSize);
+        Arrays.fill(elements, size, (int) newSize, initialValue);
+
+        return size;
+    }
+
+    public void fill(int offset, long value, int length) {
+        checkRange(offset, length, elements.length);
+        Arrays.fill(elements, offset, offset + length, value);
+    }
+
+    public void copy(int targetOffset, TableInstance source, int sourceOffset, int length) {
+        checkRange(targetOffset, length, elements.length);
+        checkRange(sourceOffset, length, source.elements.length);
+        System.arraycopy(source.elements, sourceOffset, elements, targetOffset, length);
+    }
+
+    public void init(int targetOffset, long[] segment, int sourceOffset, int length) {
+        checkRange(targetOffset, length, elements.length);
+        checkRange(sourceOffset, length, segment.length);
+        System.arraycopy(segment, sourceOffset, elements, targetOffset, length);
+    }
+}
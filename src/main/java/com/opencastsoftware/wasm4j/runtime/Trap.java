@@ -0,0 +1,18 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+// Thrown when the execution of WebAssembly code cannot continue, such as on an out of bounds memory access
+public class Trap extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public Trap(String message) {
+        super(message);
+    }
+
+    public Trap(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
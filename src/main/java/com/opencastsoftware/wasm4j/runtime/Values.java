@@ -0,0 +1,56 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+// Converts between Java values and the raw bits which represent WebAssembly values.
+// 32-bit values are sign extended to 64 bits, and a null reference is zero.
+public final class Values {
+    public static final long NULL = 0;
+
+    private Values() {
+    }
+
+    public static long i32(int value) {
+        return value;
+    }
+
+    public static long i64(long value) {
+        return value;
+    }
+
+    public static long f32(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    public static long f64(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    // A reference to the function with the given index in an instance
+    public static long funcRef(int funcIndex) {
+        return funcIndex + 1L;
+    }
+
+    public static int asI32(long bits) {
+        return (int) bits;
+    }
+
+    public static long asI64(long bits) {
+        return bits;
+    }
+
+    public static float asF32(long bits) {
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    public static double asF64(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    // Returns -1 for a null reference
+    public static int asFuncIndex(long bits) {
+        return (int) (bits - 1);
+    }
+}
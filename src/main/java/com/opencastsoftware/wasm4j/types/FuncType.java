@@ -5,6 +5,7 @@
 package com.opencastsoftware.wasm4j.types;
 
 import java.util.List;
+import java.util.Objects;
 
 public class FuncType implements ExternType {
     private final List<ValType> arguments;
@@ -27,4 +28,17 @@ public class FuncType implements ExternType {
     public <T extends Exception> void accept(WasmTypeVisitor<T> visitor) throws T {
         visitor.visitFuncType(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FuncType funcType = (FuncType) o;
+        return Objects.equals(arguments, funcType.arguments) && Objects.equals(results, funcType.results);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(arguments, results);
+    }
 }
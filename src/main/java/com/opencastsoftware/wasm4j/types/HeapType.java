@@ -14,6 +14,6 @@ public interface HeapType extends WasmType {
     }
 
     static TypeId typeId(int typeIndex) {
-        return new TypeId(typeIndex);
+        return TypeId.of(typeIndex);
     }
 }
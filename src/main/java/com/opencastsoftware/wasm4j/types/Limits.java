@@ -6,6 +6,8 @@ package com.opencastsoftware.wasm4j.types;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
+
 public class Limits implements WasmType {
     private final int min;
 
@@ -43,4 +45,17 @@ public class Limits implements WasmType {
     public <T extends Exception> void accept(WasmTypeVisitor<T> visitor) throws T {
         visitor.visitLimits(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Limits limits = (Limits) o;
+        return min == limits.min && Objects.equals(max, limits.max);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(min, max);
+    }
 }
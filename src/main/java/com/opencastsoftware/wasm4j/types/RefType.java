@@ -4,7 +4,15 @@
  */
 package com.opencastsoftware.wasm4j.types;
 
+import java.util.Objects;
+
 public class RefType implements ValType {
+    // The references to functions and extern values are shared
+    private static final RefType NULLABLE_FUNC = new RefType(true, HeapType.func());
+    private static final RefType NULLABLE_EXTERN = new RefType(true, HeapType.extern());
+    private static final RefType NON_NULLABLE_FUNC = new RefType(false, HeapType.func());
+    private static final RefType NON_NULLABLE_EXTERN = new RefType(false, HeapType.extern());
+
     private final boolean nullable;
     private final HeapType heapType;
 
@@ -22,23 +30,48 @@ public class RefType implements ValType {
     }
 
     public static RefType nullable(HeapType heapType) {
-        return new RefType(true, heapType);
+        if (heapType == HeapType.func()) {
+            return NULLABLE_FUNC;
+        } else if (heapType == HeapType.extern()) {
+            return NULLABLE_EXTERN;
+        } else {
+            return new RefType(true, heapType);
+        }
     }
 
     public static RefType nonNullable(HeapType heapType) {
-        return new RefType(false, heapType);
+        if (heapType == HeapType.func()) {
+            return NON_NULLABLE_FUNC;
+        } else if (heapType == HeapType.extern()) {
+            return NON_NULLABLE_EXTERN;
+        } else {
+            return new RefType(false, heapType);
+        }
     }
 
     public static RefType heapFunc() {
-        return new RefType(false, HeapType.func());
+        return NON_NULLABLE_FUNC;
     }
 
     public static RefType heapExtern() {
-        return new RefType(false, HeapType.extern());
+        return NON_NULLABLE_EXTERN;
     }
 
     @Override
     public <T extends Exception> void accept(WasmTypeVisitor<T> visitor) throws T {
         visitor.visitRefType(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RefType refType = (RefType) o;
+        return nullable == refType.nullable && Objects.equals(heapType, refType.heapType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nullable, heapType);
+    }
 }
@@ -5,12 +5,25 @@
 package com.opencastsoftware.wasm4j.types;
 
 public class TypeId implements HeapType, BlockType {
+    // Instances for the most common type indices are shared
+    private static final TypeId[] CACHE = new TypeId[1024];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new TypeId(i);
+        }
+    }
+
     private final int typeIndex;
 
     public TypeId(int typeIndex) {
         this.typeIndex = typeIndex;
     }
 
+    public static TypeId of(int typeIndex) {
+        return typeIndex >= 0 && typeIndex < CACHE.length ? CACHE[typeIndex] : new TypeId(typeIndex);
+    }
+
     public int typeIndex() {
         return typeIndex;
     }
@@ -19,4 +32,17 @@ public class TypeId implements HeapType, BlockType {
     public <T extends Exception> void accept(WasmTypeVisitor<T> visitor) throws T {
         visitor.visitTypeId(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TypeId typeId = (TypeId) o;
+        return typeIndex == typeId.typeIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(typeIndex);
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Returns a canonical instance for each structurally distinct function, reference and limits type it is given,
+// so that identical types can share one instance and be compared by identity.
+// Canonical function types have unmodifiable parameter and result lists made of canonical types.
+// Every canonical instance is retained for as long as the interner is in use.
+public class TypeInterner {
+    private final ConcurrentHashMap<FuncType, FuncType> funcTypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RefType, RefType> refTypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Limits, Limits> limits = new ConcurrentHashMap<>();
+
+    public FuncType intern(FuncType funcType) {
+        var canonical = funcTypes.get(funcType);
+
+        if (canonical == null) {
+            canonical = new FuncType(internAll(funcType.arguments()), internAll(funcType.results()));
+            var existing = funcTypes.putIfAbsent(canonical, canonical);
+            if (existing != null) {
+                canonical = existing;
+            }
+        }
+
+        return canonical;
+    }
+
+    public RefType intern(RefType refType) {
+        var canonical = refTypes.putIfAbsent(refType, refType);
+        return canonical != null ? canonical : refType;
+    }
+
+    public Limits intern(Limits limits) {
+        var canonical = this.limits.putIfAbsent(limits, limits);
+        return canonical != null ? canonical : limits;
+    }
+
+    public ValType intern(ValType valType) {
+        // Number and vector types are already singletons
+        return valType instanceof RefType ? intern((RefType) valType) : valType;
+    }
+
+    public int size() {
+        return funcTypes.size() + refTypes.size() + limits.size();
+    }
+
+    private List<ValType> internAll(List<ValType> valTypes) {
+        var canonical = new ArrayList<ValType>(valTypes.size());
+
+        for (ValType valType : valTypes) {
+            canonical.add(intern(valType));
+        }
+
+        return Collections.unmodifiableList(canonical);
+    }
+}
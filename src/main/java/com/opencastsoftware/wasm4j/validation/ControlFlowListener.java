@@ -0,0 +1,40 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import org.jetbrains.annotations.Nullable;
+
+// Follows the control flow of each function body as it is validated, so that an engine can prepare the function
+// in the same pass over its body.
+// Every instruction is reported, including unreachable ones, which are checked by validation even though they never run.
+// Offsets are from the start of the encoding of the body, and heights count the operands on the stack but not the locals.
+public interface ControlFlowListener {
+    int BLOCK = 0;
+    int LOOP = 1;
+    int IF = 2;
+
+    // The body is replayed from its packed expression, or from the code entry of a lazily decoded function when it is null
+    void startFunction(int funcIndex, int localCount, int resultCount, @Nullable PackedExpression body);
+
+    // Called before each instruction, including the start, else and end of each structured instruction
+    void instruction(int offset);
+
+    // The height is that of the operands below the parameters of the block, once the condition of an if has been popped
+    void startBlock(int kind, int height, int params, int results);
+
+    void startElse();
+
+    void end();
+
+    // Called for each label of a br_table, with the default label last
+    void branch(int labelIndex);
+
+    // The rest of the innermost block cannot be reached, following an unconditional branch, a return or unreachable
+    void unreachable();
+
+    // The height is the greatest the operand stack reached in the function
+    void endFunction(int maxHeight);
+}
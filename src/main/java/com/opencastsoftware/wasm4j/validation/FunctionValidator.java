@@ -0,0 +1,1661 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Locals;
+import com.opencastsoftware.wasm4j.encoding.binary.LazyFunc;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.InstructionWalker;
+import com.opencastsoftware.wasm4j.instructions.control.*;
+import com.opencastsoftware.wasm4j.instructions.memory.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.unary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.binary.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.conversion.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.relational.*;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I32Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.test.I64Eqz;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.unary.*;
+import com.opencastsoftware.wasm4j.instructions.parametric.Drop;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefAsNonNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefIsNull;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.table.*;
+import com.opencastsoftware.wasm4j.instructions.variable.*;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.TypeId;
+import com.opencastsoftware.wasm4j.types.ValType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static com.opencastsoftware.wasm4j.validation.ValTypes.*;
+
+// Type-checks function bodies using the algorithm in the appendix of the specification.
+// The operand and control stacks are arrays of ints which are reused from one function to the next,
+// so that validating an instruction does not allocate.
+// A validator is not thread-safe, but the context it validates against can be shared.
+final class FunctionValidator implements FlatInstructionVisitor<RuntimeException> {
+    private static final int BLOCK = 0;
+    private static final int LOOP = 1;
+    private static final int IF = 2;
+    private static final int ELSE = 3;
+
+    private final ModuleContext context;
+    @Nullable
+    private final ControlFlowListener listener;
+
+    private int funcIndex;
+    // The index of the instruction being validated, counting the start, else and end of each structured instruction
+    private int position;
+
+    private int[] operands = new int[64];
+    private int height;
+    private int maxHeight;
+    // The height of the operand stack at the start of the innermost frame, below which operands cannot be popped
+    private int floor;
+
+    // The control frames, with the parameter types followed by the result types of each frame kept in the type pool
+    private int[] frameKinds = new int[16];
+    private int[] frameHeights = new int[16];
+    private boolean[] frameUnreachable = new boolean[16];
+    private int[] frameTypes = new int[16];
+    private int[] frameParams = new int[16];
+    private int[] frameResults = new int[16];
+    private int depth;
+
+    private int[] typePool = new int[64];
+    private int typePoolSize;
+    // The number of results of the block type most recently written to the pool
+    private int blockResults;
+
+    // The parameters and locals as runs of the same type, with the index after the last local of each run
+    private int[] localEnds = new int[16];
+    private int[] localTypes = new int[16];
+    private int localRuns;
+    private int localCount;
+
+    FunctionValidator(ModuleContext context) {
+        this(context, null);
+    }
+
+    FunctionValidator(ModuleContext context, @Nullable ControlFlowListener listener) {
+        this.context = context;
+        this.listener = listener;
+    }
+
+    void validate(int funcIndex, Func func) {
+        this.funcIndex = funcIndex;
+        this.position = -1;
+        this.height = 0;
+        this.maxHeight = 0;
+        this.floor = 0;
+        this.depth = 0;
+        this.typePoolSize = 0;
+        this.localRuns = 0;
+        this.localCount = 0;
+
+        try {
+            int typeIndex = context.funcType(funcIndex);
+
+            for (int param : context.typeParams(typeIndex)) {
+                addLocals(1, param);
+            }
+
+            // Lazily decoded functions are validated from their encoding, so that validating them does not decode them
+            var lazy = func instanceof LazyFunc ? (LazyFunc) func : null;
+
+            for (Locals locals : lazy != null ? lazy.decodeLocals() : func.compressedLocals()) {
+                addLocals(locals.count(), context.valType(locals.type()));
+            }
+
+            var results = context.typeResults(typeIndex);
+            int offset = reserveTypes(results.length);
+            System.arraycopy(results, 0, typePool, offset, results.length);
+            pushFrame(BLOCK, offset, 0, results.length);
+
+            if (lazy != null) {
+                if (listener != null) {
+                    listener.startFunction(funcIndex, localCount, results.length, null);
+                }
+                lazy.replayBody(this);
+            } else if (listener != null) {
+                // The listener needs the offset of each instruction, so the body is replayed from its encoding
+                var body = PackedExpression.of(func.body());
+                listener.startFunction(funcIndex, localCount, results.length, body);
+                body.replay(this);
+            } else {
+                visitExpression(func.body());
+            }
+
+            if (depth > 0) {
+                throw error("missing end of function");
+            }
+
+            if (listener != null) {
+                listener.endFunction(maxHeight);
+            }
+        } catch (ValidationException e) {
+            // Errors found while resolving types in the context have no position of their own
+            if (e.funcIndex() < 0) {
+                throw new ValidationException(e.getMessage(), funcIndex, Math.max(position, 0));
+            }
+            throw e;
+        }
+    }
+
+    private ValidationException error(String message) {
+        return new ValidationException(message, funcIndex, Math.max(position, 0));
+    }
+
+    private ValidationException mismatch(int expected, int actual) {
+        return error("type mismatch: expected " + ValTypes.toString(expected) + " but found " + ValTypes.toString(actual));
+    }
+
+    private void next() {
+        position++;
+
+        if (depth == 0) {
+            throw error("unexpected instruction after the end of the function");
+        }
+    }
+
+    // Locals
+
+    private void addLocals(int count, int type) {
+        if (count == 0) {
+            return;
+        }
+
+        long end = localCount + Integer.toUnsignedLong(count);
+        if (end > Integer.MAX_VALUE) {
+            throw error("too many locals");
+        }
+
+        if (localRuns > 0 && localTypes[localRuns - 1] == type) {
+            localEnds[localRuns - 1] = (int) end;
+        } else {
+            if (localRuns == localEnds.length) {
+                localEnds = Arrays.copyOf(localEnds, localRuns * 2);
+                localTypes = Arrays.copyOf(localTypes, localRuns * 2);
+            }
+            localEnds[localRuns] = (int) end;
+            localTypes[localRuns++] = type;
+        }
+
+        localCount = (int) end;
+    }
+
+    private int local(int localIndex) {
+        if (localIndex < 0 || localIndex >= localCount) {
+            throw error("unknown local " + Integer.toUnsignedString(localIndex));
+        }
+
+        int run = Arrays.binarySearch(localEnds, 0, localRuns, localIndex + 1);
+        return localTypes[run >= 0 ? run : -run - 1];
+    }
+
+    // Operands
+
+    private void push(int type) {
+        if (height == operands.length) {
+            operands = Arrays.copyOf(operands, height * 2);
+        }
+        operands[height++] = type;
+        maxHeight = Math.max(maxHeight, height);
+    }
+
+    private int pop() {
+        if (height == floor) {
+            if (frameUnreachable[depth - 1]) {
+                return UNKNOWN;
+            }
+            throw error("type mismatch: expected a value but the stack is empty");
+        }
+        return operands[--height];
+    }
+
+    private int pop(int expected) {
+        if (height == floor) {
+            if (frameUnreachable[depth - 1]) {
+                return expected;
+            }
+            throw error("type mismatch: expected " + ValTypes.toString(expected) + " but the stack is empty");
+        }
+
+        int actual = operands[--height];
+        if (!isSubtype(actual, expected)) {
+            throw mismatch(expected, actual);
+        }
+        return actual;
+    }
+
+    private int popRef() {
+        int actual = pop();
+        if (actual != UNKNOWN && !isRef(actual)) {
+            throw error("type mismatch: expected a reference but found " + ValTypes.toString(actual));
+        }
+        return actual;
+    }
+
+    private void popTypes(int[] types, int offset, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            pop(types[offset + i]);
+        }
+    }
+
+    private void pushTypes(int[] types, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            push(types[offset + i]);
+        }
+    }
+
+    private void unary(int operand, int result) {
+        pop(operand);
+        push(result);
+    }
+
+    private void binary(int operand, int result) {
+        pop(operand);
+        pop(operand);
+        push(result);
+    }
+
+    private void ternary(int first, int second, int third) {
+        pop(third);
+        pop(second);
+        pop(first);
+    }
+
+    // Control frames
+
+    private int reserveTypes(int count) {
+        int offset = typePoolSize;
+        if (offset + count > typePool.length) {
+            typePool = Arrays.copyOf(typePool, Math.max(typePool.length * 2, offset + count));
+        }
+        return offset;
+    }
+
+    private void pushFrame(int kind, int types, int params, int results) {
+        if (depth == frameKinds.length) {
+            int capacity = depth * 2;
+            frameKinds = Arrays.copyOf(frameKinds, capacity);
+            frameHeights = Arrays.copyOf(frameHeights, capacity);
+            frameUnreachable = Arrays.copyOf(frameUnreachable, capacity);
+            frameTypes = Arrays.copyOf(frameTypes, capacity);
+            frameParams = Arrays.copyOf(frameParams, capacity);
+            frameResults = Arrays.copyOf(frameResults, capacity);
+        }
+
+        frameKinds[depth] = kind;
+        frameHeights[depth] = height;
+        frameUnreachable[depth] = false;
+        frameTypes[depth] = types;
+        frameParams[depth] = params;
+        frameResults[depth] = results;
+        depth++;
+        floor = height;
+
+        typePoolSize = types + params + results;
+        pushTypes(typePool, types, params);
+    }
+
+    private void popFrame() {
+        int frame = depth - 1;
+        popTypes(typePool, frameTypes[frame] + frameParams[frame], frameResults[frame]);
+
+        if (height != frameHeights[frame]) {
+            throw error("type mismatch: " + (height - frameHeights[frame]) + " values remain at the end of the block");
+        }
+
+        depth--;
+        floor = depth > 0 ? frameHeights[depth - 1] : 0;
+        // The types of the frame are left in the pool until another frame is pushed
+        typePoolSize = frameTypes[frame];
+    }
+
+    private void unreachable() {
+        height = floor;
+        frameUnreachable[depth - 1] = true;
+
+        if (listener != null) {
+            listener.unreachable();
+        }
+    }
+
+    // Writes the parameter and result types of a block type to the pool, returning the number of parameters
+    private int blockType(@Nullable BlockType blockType, int offset) {
+        if (blockType == null) {
+            blockResults = 0;
+            return 0;
+        } else if (blockType instanceof TypeId) {
+            int typeIndex = context.typeIndex(((TypeId) blockType).typeIndex());
+            var params = context.typeParams(typeIndex);
+            var results = context.typeResults(typeIndex);
+            reserveTypes(params.length + results.length);
+            System.arraycopy(params, 0, typePool, offset, params.length);
+            System.arraycopy(results, 0, typePool, offset + params.length, results.length);
+            blockResults = results.length;
+            return params.length;
+        } else {
+            reserveTypes(1);
+            typePool[offset] = context.valType((ValType) blockType);
+            blockResults = 1;
+            return 0;
+        }
+    }
+
+    private void startFrame(int kind, @Nullable BlockType blockType) {
+        int offset = typePoolSize;
+        int params = blockType(blockType, offset);
+        popTypes(typePool, offset, params);
+        pushFrame(kind, offset, params, blockResults);
+
+        if (listener != null) {
+            listener.startBlock(kind == LOOP ? ControlFlowListener.LOOP : kind == IF ? ControlFlowListener.IF : ControlFlowListener.BLOCK,
+                    height - params, params, blockResults);
+        }
+    }
+
+    private int label(int labelIndex) {
+        if (labelIndex < 0 || labelIndex >= depth) {
+            throw error("unknown label " + Integer.toUnsignedString(labelIndex));
+        }
+        return depth - 1 - labelIndex;
+    }
+
+    // A branch to a loop passes values to the start of the loop, and a branch to any other frame passes values to its end
+    private int labelTypes(int frame) {
+        return frameKinds[frame] == LOOP ? frameTypes[frame] : frameTypes[frame] + frameParams[frame];
+    }
+
+    private int labelArity(int frame) {
+        return frameKinds[frame] == LOOP ? frameParams[frame] : frameResults[frame];
+    }
+
+    private void branched(int labelIndex) {
+        if (listener != null) {
+            listener.branch(labelIndex);
+        }
+    }
+
+    // Checks the operands against the types of a label without popping them
+    private void peekLabel(int frame) {
+        int types = labelTypes(frame);
+        int arity = labelArity(frame);
+
+        for (int i = 0; i < arity; i++) {
+            int expected = typePool[types + arity - 1 - i];
+            int index = height - 1 - i;
+
+            if (index < floor) {
+                if (frameUnreachable[depth - 1]) {
+                    continue;
+                }
+                throw error("type mismatch: expected " + ValTypes.toString(expected) + " but the stack is empty");
+            }
+
+            if (!isSubtype(operands[index], expected)) {
+                throw mismatch(expected, operands[index]);
+            }
+        }
+    }
+
+    @Override
+    public void visitInstruction(Instruction instruction) {
+        next();
+        instruction.accept(this);
+    }
+
+    @Override
+    public void visitExpression(Expression expression) {
+        if (expression instanceof PackedExpression) {
+            ((PackedExpression) expression).replay(this);
+        } else {
+            InstructionWalker.walk(expression, this);
+        }
+    }
+
+    @Override
+    public void visitConstantExpression(ConstantExpression constExpr) {
+        throw new UnsupportedOperationException("Constant expressions are validated by the module validator");
+    }
+
+    @Override
+    public void visitOffset(int offset) {
+        if (listener != null) {
+            listener.instruction(offset);
+        }
+    }
+
+    @Override
+    public void visitBlockStart(@Nullable BlockType blockType) {
+        next();
+        startFrame(BLOCK, blockType);
+    }
+
+    @Override
+    public void visitLoopStart(@Nullable BlockType blockType) {
+        next();
+        startFrame(LOOP, blockType);
+    }
+
+    @Override
+    public void visitIfStart(@Nullable BlockType blockType) {
+        next();
+        pop(I32);
+        startFrame(IF, blockType);
+    }
+
+    @Override
+    public void visitElse() {
+        next();
+
+        int frame = depth - 1;
+        if (frameKinds[frame] != IF) {
+            throw error("else without a matching if");
+        }
+
+        int types = frameTypes[frame];
+        int params = frameParams[frame];
+        int results = frameResults[frame];
+
+        popFrame();
+        pushFrame(ELSE, types, params, results);
+
+        if (listener != null) {
+            listener.startElse();
+        }
+    }
+
+    @Override
+    public void visitEnd() {
+        next();
+
+        int frame = depth - 1;
+        int kind = frameKinds[frame];
+        int types = frameTypes[frame];
+        int params = frameParams[frame];
+        int results = frameResults[frame];
+
+        popFrame();
+
+        // An if without an else passes its parameters through when the condition is false
+        if (kind == IF) {
+            if (params != results) {
+                throw error("type mismatch: if without else must have as many results as parameters");
+            }
+            for (int i = 0; i < params; i++) {
+                if (!isSubtype(typePool[types + i], typePool[types + params + i])) {
+                    throw mismatch(typePool[types + params + i], typePool[types + i]);
+                }
+            }
+        }
+
+        pushTypes(typePool, types + params, results);
+
+        if (listener != null) {
+            listener.end();
+        }
+    }
+
+    // Control instructions
+
+    @Override
+    public void visitBlock(Block block) {
+        // The block was counted as an instruction, and each of its events is counted again by the walk
+        position--;
+        InstructionWalker.walk(block, this);
+    }
+
+    @Override
+    public void visitLoop(Loop loop) {
+        position--;
+        InstructionWalker.walk(loop, this);
+    }
+
+    @Override
+    public void visitIf(If ifInstr) {
+        position--;
+        InstructionWalker.walk(ifInstr, this);
+    }
+
+    @Override
+    public void visitBranch(Branch branch) {
+        int frame = label(branch.labelIndex());
+        popTypes(typePool, labelTypes(frame), labelArity(frame));
+        branched(branch.labelIndex());
+        unreachable();
+    }
+
+    @Override
+    public void visitBranchIf(BranchIf branchIf) {
+        pop(I32);
+        int frame = label(branchIf.labelIndex());
+        int types = labelTypes(frame);
+        int arity = labelArity(frame);
+        popTypes(typePool, types, arity);
+        pushTypes(typePool, types, arity);
+        branched(branchIf.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNull(BranchOnNull branchOnNull) {
+        int refType = popRef();
+        int frame = label(branchOnNull.labelIndex());
+        int types = labelTypes(frame);
+        int arity = labelArity(frame);
+        popTypes(typePool, types, arity);
+        pushTypes(typePool, types, arity);
+        push(asNonNullable(refType));
+        branched(branchOnNull.labelIndex());
+    }
+
+    @Override
+    public void visitBranchOnNonNull(BranchOnNonNull branchOnNonNull) {
+        int refType = popRef();
+        int frame = label(branchOnNonNull.labelIndex());
+        int types = labelTypes(frame);
+        int arity = labelArity(frame);
+
+        // The reference is passed to the label as its last value when it is not null
+        if (arity == 0 || !isRef(typePool[types + arity - 1])) {
+            throw error("type mismatch: br_on_non_null target must take a reference as its last value");
+        }
+
+        int expected = typePool[types + arity - 1];
+        if (!isSubtype(asNonNullable(refType), expected)) {
+            throw mismatch(expected, asNonNullable(refType));
+        }
+
+        popTypes(typePool, types, arity - 1);
+        pushTypes(typePool, types, arity - 1);
+        branched(branchOnNonNull.labelIndex());
+    }
+
+    @Override
+    public void visitBranchTable(BranchTable branchTable) {
+        pop(I32);
+
+        int defaultFrame = label(branchTable.defaultLabel());
+        int arity = labelArity(defaultFrame);
+
+        for (int labelIndex : branchTable.labels()) {
+            int frame = label(labelIndex);
+            if (labelArity(frame) != arity) {
+                throw error("type mismatch: br_table targets must have the same number of values");
+            }
+            peekLabel(frame);
+        }
+
+        popTypes(typePool, labelTypes(defaultFrame), arity);
+
+        if (listener != null) {
+            for (int labelIndex : branchTable.labels()) {
+                listener.branch(labelIndex);
+            }
+            listener.branch(branchTable.defaultLabel());
+        }
+        unreachable();
+    }
+
+    @Override
+    public void visitCall(Call call) {
+        int typeIndex = context.funcType(call.funcIndex());
+        if (typeIndex < 0) {
+            throw error("unknown function " + Integer.toUnsignedString(call.funcIndex()));
+        }
+        call(typeIndex);
+    }
+
+    private void call(int typeIndex) {
+        var params = context.typeParams(typeIndex);
+        var results = context.typeResults(typeIndex);
+        popTypes(params, 0, params.length);
+        pushTypes(results, 0, results.length);
+    }
+
+    @Override
+    public void visitCallIndirect(CallIndirect callIndirect) {
+        if (!isSubtype(table(callIndirect.tableIndex()), FUNCREF)) {
+            throw error("type mismatch: call_indirect requires a table of function references");
+        }
+
+        int typeIndex = context.typeIndex(callIndirect.typeIndex());
+        pop(I32);
+        call(typeIndex);
+    }
+
+    @Override
+    public void visitCallRef(CallRef callRef) {
+        int typeIndex = context.typeIndex(callRef.typeIndex());
+        pop(ref(true, TYPE + context.canonicalType(typeIndex)));
+        call(typeIndex);
+    }
+
+    @Override
+    public void visitNop(Nop nop) {
+    }
+
+    @Override
+    public void visitReturn(Return ret) {
+        popTypes(typePool, labelTypes(0), labelArity(0));
+        unreachable();
+    }
+
+    @Override
+    public void visitUnreachable(Unreachable unreachable) {
+        unreachable();
+    }
+
+    // Memory instructions
+
+    private void memory(int memIndex) {
+        if (memIndex < 0 || memIndex >= context.memCount()) {
+            throw error("unknown memory " + Integer.toUnsignedString(memIndex));
+        }
+    }
+
+    private void memArg(MemArgInstruction instr, int naturalAlign) {
+        memory(0);
+
+        if (Integer.compareUnsigned(instr.align(), naturalAlign) > 0) {
+            throw error("alignment must not be larger than natural");
+        }
+    }
+
+    private void data(int dataIndex) {
+        if (dataIndex < 0 || dataIndex >= context.dataCount()) {
+            throw error("unknown data segment " + Integer.toUnsignedString(dataIndex));
+        }
+    }
+
+    @Override
+    public void visitI32Load(I32Load i32Load) {
+        memArg(i32Load, 2);
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Load(I64Load i64Load) {
+        memArg(i64Load, 3);
+        unary(I32, I64);
+    }
+
+    @Override
+    public void visitF32Load(F32Load f32Load) {
+        memArg(f32Load, 2);
+        unary(I32, F32);
+    }
+
+    @Override
+    public void visitF64Load(F64Load f64Load) {
+        memArg(f64Load, 3);
+        unary(I32, F64);
+    }
+
+    @Override
+    public void visitI32Store(I32Store i32Store) {
+        memArg(i32Store, 2);
+        pop(I32);
+        pop(I32);
+    }
+
+    @Override
+    public void visitI64Store(I64Store i64Store) {
+        memArg(i64Store, 3);
+        pop(I64);
+        pop(I32);
+    }
+
+    @Override
+    public void visitF32Store(F32Store f32Store) {
+        memArg(f32Store, 2);
+        pop(F32);
+        pop(I32);
+    }
+
+    @Override
+    public void visitF64Store(F64Store f64Store) {
+        memArg(f64Store, 3);
+        pop(F64);
+        pop(I32);
+    }
+
+    @Override
+    public void visitMemorySize(MemorySize memorySize) {
+        memory(memorySize.memIndex());
+        push(I32);
+    }
+
+    @Override
+    public void visitMemoryGrow(MemoryGrow memoryGrow) {
+        memory(memoryGrow.memIndex());
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitMemoryFill(MemoryFill memoryFill) {
+        memory(memoryFill.memIndex());
+        ternary(I32, I32, I32);
+    }
+
+    @Override
+    public void visitMemoryCopy(MemoryCopy memoryCopy) {
+        memory(memoryCopy.targetMemIndex());
+        memory(memoryCopy.sourceMemIndex());
+        ternary(I32, I32, I32);
+    }
+
+    @Override
+    public void visitMemoryInit(MemoryInit memoryInit) {
+        memory(memoryInit.memIndex());
+        data(memoryInit.dataIndex());
+        ternary(I32, I32, I32);
+    }
+
+    @Override
+    public void visitDataDrop(DataDrop dataDrop) {
+        data(dataDrop.dataIndex());
+    }
+
+    // Numeric instructions
+
+    @Override
+    public void visitI32Const(I32Const i32Const) {
+        push(I32);
+    }
+
+    @Override
+    public void visitI64Const(I64Const i64Const) {
+        push(I64);
+    }
+
+    @Override
+    public void visitF32Const(F32Const f32Const) {
+        push(F32);
+    }
+
+    @Override
+    public void visitF64Const(F64Const f64Const) {
+        push(F64);
+    }
+
+    @Override
+    public void visitI32Clz(I32Clz i32Clz) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Ctz(I32Ctz i32Ctz) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Popcnt(I32Popcnt i32Popcnt) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Clz(I64Clz i64Clz) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Ctz(I64Ctz i64Ctz) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Popcnt(I64Popcnt i64Popcnt) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitF32Abs(F32Abs f32Abs) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Ceil(F32Ceil f32Ceil) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Floor(F32Floor f32Floor) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Nearest(F32Nearest f32Nearest) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Neg(F32Neg f32Neg) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Sqrt(F32Sqrt f32Sqrt) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Trunc(F32Trunc f32Trunc) {
+        unary(F32, F32);
+    }
+
+    @Override
+    public void visitF64Abs(F64Abs f64Abs) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Ceil(F64Ceil f64Ceil) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Floor(F64Floor f64Floor) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Nearest(F64Nearest f64Nearest) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Neg(F64Neg f64Neg) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Sqrt(F64Sqrt f64Sqrt) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Trunc(F64Trunc f64Trunc) {
+        unary(F64, F64);
+    }
+
+    @Override
+    public void visitI32Add(I32Add i32Add) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32And(I32And i32And) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32DivSigned(I32DivSigned i32DivSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32DivUnsigned(I32DivUnsigned i32DivUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Mul(I32Mul i32Mul) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Or(I32Or i32Or) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32RemSigned(I32RemSigned i32RemSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32RemUnsigned(I32RemUnsigned i32RemUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Rotl(I32Rotl i32Rotl) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Rotr(I32Rotr i32Rotr) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Shl(I32Shl i32Shl) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32ShrSigned(I32ShrSigned i32ShrSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32ShrUnsigned(I32ShrUnsigned i32ShrUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Sub(I32Sub i32Sub) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Xor(I32Xor i32Xor) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Add(I64Add i64Add) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64And(I64And i64And) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64DivSigned(I64DivSigned i64DivSigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64DivUnsigned(I64DivUnsigned i64DivUnsigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Mul(I64Mul i64Mul) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Or(I64Or i64Or) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64RemSigned(I64RemSigned i64RemSigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64RemUnsigned(I64RemUnsigned i64RemUnsigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Rotl(I64Rotl i64Rotl) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Rotr(I64Rotr i64Rotr) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Shl(I64Shl i64Shl) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64ShrSigned(I64ShrSigned i64ShrSigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64ShrUnsigned(I64ShrUnsigned i64ShrUnsigned) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Sub(I64Sub i64Sub) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Xor(I64Xor i64Xor) {
+        binary(I64, I64);
+    }
+
+    @Override
+    public void visitF32Add(F32Add f32Add) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Copysign(F32Copysign f32Copysign) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Div(F32Div f32Div) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Max(F32Max f32Max) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Min(F32Min f32Min) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Mul(F32Mul f32Mul) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF32Sub(F32Sub f32Sub) {
+        binary(F32, F32);
+    }
+
+    @Override
+    public void visitF64Add(F64Add f64Add) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Copysign(F64Copysign f64Copysign) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Div(F64Div f64Div) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Max(F64Max f64Max) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Min(F64Min f64Min) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Mul(F64Mul f64Mul) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitF64Sub(F64Sub f64Sub) {
+        binary(F64, F64);
+    }
+
+    @Override
+    public void visitI32Eqz(I32Eqz i32Eqz) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Eqz(I64Eqz i64Eqz) {
+        unary(I64, I32);
+    }
+
+    @Override
+    public void visitI32Eq(I32Eq i32Eq) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32GeSigned(I32GeSigned i32GeSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32GeUnsigned(I32GeUnsigned i32GeUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32GtSigned(I32GtSigned i32GtSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32GtUnsigned(I32GtUnsigned i32GtUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32LeSigned(I32LeSigned i32LeSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32LeUnsigned(I32LeUnsigned i32LeUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32LtSigned(I32LtSigned i32LtSigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32LtUnsigned(I32LtUnsigned i32LtUnsigned) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI32Ne(I32Ne i32Ne) {
+        binary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Eq(I64Eq i64Eq) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64GeSigned(I64GeSigned i64GeSigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64GeUnsigned(I64GeUnsigned i64GeUnsigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64GtSigned(I64GtSigned i64GtSigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64GtUnsigned(I64GtUnsigned i64GtUnsigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64LeSigned(I64LeSigned i64LeSigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64LeUnsigned(I64LeUnsigned i64LeUnsigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64LtSigned(I64LtSigned i64LtSigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64LtUnsigned(I64LtUnsigned i64LtUnsigned) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitI64Ne(I64Ne i64Ne) {
+        binary(I64, I32);
+    }
+
+    @Override
+    public void visitF32Eq(F32Eq f32Eq) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF32Ge(F32Ge f32Ge) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF32Gt(F32Gt f32Gt) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF32Le(F32Le f32Le) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF32Lt(F32Lt f32Lt) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF32Ne(F32Ne f32Ne) {
+        binary(F32, I32);
+    }
+
+    @Override
+    public void visitF64Eq(F64Eq f64Eq) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitF64Ge(F64Ge f64Ge) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitF64Gt(F64Gt f64Gt) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitF64Le(F64Le f64Le) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitF64Lt(F64Lt f64Lt) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitF64Ne(F64Ne f64Ne) {
+        binary(F64, I32);
+    }
+
+    @Override
+    public void visitI32Extend8Signed(I32Extend8Signed i32Extend8Signed) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Extend8Signed(I64Extend8Signed i64Extend8Signed) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitI32Extend16Signed(I32Extend16Signed i32Extend16Signed) {
+        unary(I32, I32);
+    }
+
+    @Override
+    public void visitI64Extend16Signed(I64Extend16Signed i64Extend16Signed) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitI64Extend32Signed(I64Extend32Signed i64Extend32Signed) {
+        unary(I64, I64);
+    }
+
+    @Override
+    public void visitI32WrapI64(I32WrapI64 i32WrapI64) {
+        unary(I64, I32);
+    }
+
+    @Override
+    public void visitI64ExtendI32Signed(I64ExtendI32Signed i64ExtendI32Signed) {
+        unary(I32, I64);
+    }
+
+    @Override
+    public void visitI64ExtendI32Unsigned(I64ExtendI32Unsigned i64ExtendI32Unsigned) {
+        unary(I32, I64);
+    }
+
+    @Override
+    public void visitI32TruncF32Signed(I32TruncF32Signed i32TruncF32Signed) {
+        unary(F32, I32);
+    }
+
+    @Override
+    public void visitI32TruncF32Unsigned(I32TruncF32Unsigned i32TruncF32Unsigned) {
+        unary(F32, I32);
+    }
+
+    @Override
+    public void visitI32TruncF64Signed(I32TruncF64Signed i32TruncF64Signed) {
+        unary(F64, I32);
+    }
+
+    @Override
+    public void visitI32TruncF64Unsigned(I32TruncF64Unsigned i32TruncF64Unsigned) {
+        unary(F64, I32);
+    }
+
+    @Override
+    public void visitI64TruncF32Signed(I64TruncF32Signed i64TruncF32Signed) {
+        unary(F32, I64);
+    }
+
+    @Override
+    public void visitI64TruncF32Unsigned(I64TruncF32Unsigned i64TruncF32Unsigned) {
+        unary(F32, I64);
+    }
+
+    @Override
+    public void visitI64TruncF64Signed(I64TruncF64Signed i64TruncF64Signed) {
+        unary(F64, I64);
+    }
+
+    @Override
+    public void visitI64TruncF64Unsigned(I64TruncF64Unsigned i64TruncF64Unsigned) {
+        unary(F64, I64);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Signed(I32TruncSatF32Signed i32TruncSatF32Signed) {
+        unary(F32, I32);
+    }
+
+    @Override
+    public void visitI32TruncSatF32Unsigned(I32TruncSatF32Unsigned i32TruncSatF32Unsigned) {
+        unary(F32, I32);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Signed(I32TruncSatF64Signed i32TruncSatF64Signed) {
+        unary(F64, I32);
+    }
+
+    @Override
+    public void visitI32TruncSatF64Unsigned(I32TruncSatF64Unsigned i32TruncSatF64Unsigned) {
+        unary(F64, I32);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Signed(I64TruncSatF32Signed i64TruncSatF32Signed) {
+        unary(F32, I64);
+    }
+
+    @Override
+    public void visitI64TruncSatF32Unsigned(I64TruncSatF32Unsigned i64TruncSatF32Unsigned) {
+        unary(F32, I64);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Signed(I64TruncSatF64Signed i64TruncSatF64Signed) {
+        unary(F64, I64);
+    }
+
+    @Override
+    public void visitI64TruncSatF64Unsigned(I64TruncSatF64Unsigned i64TruncSatF64Unsigned) {
+        unary(F64, I64);
+    }
+
+    @Override
+    public void visitF32DemoteF64(F32DemoteF64 f32DemoteF64) {
+        unary(F64, F32);
+    }
+
+    @Override
+    public void visitF64PromoteF32(F64PromoteF32 f64PromoteF32) {
+        unary(F32, F64);
+    }
+
+    @Override
+    public void visitF32ConvertI32Signed(F32ConvertI32Signed f32ConvertI32Signed) {
+        unary(I32, F32);
+    }
+
+    @Override
+    public void visitF32ConvertI32Unsigned(F32ConvertI32Unsigned f32ConvertI32Unsigned) {
+        unary(I32, F32);
+    }
+
+    @Override
+    public void visitF32ConvertI64Signed(F32ConvertI64Signed f32ConvertI64Signed) {
+        unary(I64, F32);
+    }
+
+    @Override
+    public void visitF32ConvertI64Unsigned(F32ConvertI64Unsigned f32ConvertI64Unsigned) {
+        unary(I64, F32);
+    }
+
+    @Override
+    public void visitF64ConvertI32Signed(F64ConvertI32Signed f64ConvertI32Signed) {
+        unary(I32, F64);
+    }
+
+    @Override
+    public void visitF64ConvertI32Unsigned(F64ConvertI32Unsigned f64ConvertI32Unsigned) {
+        unary(I32, F64);
+    }
+
+    @Override
+    public void visitF64ConvertI64Signed(F64ConvertI64Signed f64ConvertI64Signed) {
+        unary(I64, F64);
+    }
+
+    @Override
+    public void visitF64ConvertI64Unsigned(F64ConvertI64Unsigned f64ConvertI64Unsigned) {
+        unary(I64, F64);
+    }
+
+    @Override
+    public void visitI32ReinterpretF32(I32ReinterpretF32 i32ReinterpretF32) {
+        unary(F32, I32);
+    }
+
+    @Override
+    public void visitI64ReinterpretF64(I64ReinterpretF64 i64ReinterpretF64) {
+        unary(F64, I64);
+    }
+
+    @Override
+    public void visitF32ReinterpretI32(F32ReinterpretI32 f32ReinterpretI32) {
+        unary(I32, F32);
+    }
+
+    @Override
+    public void visitF64ReinterpretI64(F64ReinterpretI64 f64ReinterpretI64) {
+        unary(I64, F64);
+    }
+
+    // Parametric instructions
+
+    @Override
+    public void visitDrop(Drop drop) {
+        pop();
+    }
+
+    @Override
+    public void visitSelect(Select select) {
+        var valTypes = select.valTypes();
+
+        if (valTypes.isEmpty()) {
+            pop(I32);
+            int first = pop();
+            int second = pop();
+
+            if (isRef(first) || isRef(second)) {
+                throw error("type mismatch: select without a type requires numeric or vector operands");
+            } else if (first != second && first != UNKNOWN && second != UNKNOWN) {
+                throw mismatch(second, first);
+            }
+
+            push(first == UNKNOWN ? second : first);
+        } else if (valTypes.size() == 1) {
+            int type = context.valType(valTypes.get(0));
+            pop(I32);
+            pop(type);
+            pop(type);
+            push(type);
+        } else {
+            throw error("invalid result arity");
+        }
+    }
+
+    // Reference instructions
+
+    @Override
+    public void visitRefNull(RefNull refNull) {
+        push(ref(true, context.heapType(refNull.heapType())));
+    }
+
+    @Override
+    public void visitRefFunc(RefFunc refFunc) {
+        int funcIndex = refFunc.funcIndex();
+        int typeIndex = context.funcType(funcIndex);
+
+        if (typeIndex < 0) {
+            throw error("unknown function " + Integer.toUnsignedString(funcIndex));
+        } else if (!context.isDeclaredFunc(funcIndex)) {
+            throw error("undeclared function reference " + funcIndex);
+        }
+
+        push(ref(false, TYPE + context.canonicalType(typeIndex)));
+    }
+
+    @Override
+    public void visitRefIsNull(RefIsNull refIsNull) {
+        popRef();
+        push(I32);
+    }
+
+    @Override
+    public void visitRefAsNonNull(RefAsNonNull refAsNonNull) {
+        push(asNonNullable(popRef()));
+    }
+
+    // Table instructions
+
+    private int table(int tableIndex) {
+        if (tableIndex < 0 || tableIndex >= context.tableCount()) {
+            throw error("unknown table " + Integer.toUnsignedString(tableIndex));
+        }
+        return context.tableType(tableIndex);
+    }
+
+    private int elem(int elemIndex) {
+        if (elemIndex < 0 || elemIndex >= context.elemCount()) {
+            throw error("unknown elem segment " + Integer.toUnsignedString(elemIndex));
+        }
+        return context.elemType(elemIndex);
+    }
+
+    @Override
+    public void visitTableGet(TableGet tableGet) {
+        unary(I32, table(tableGet.tableIndex()));
+    }
+
+    @Override
+    public void visitTableSet(TableSet tableSet) {
+        pop(table(tableSet.tableIndex()));
+        pop(I32);
+    }
+
+    @Override
+    public void visitTableSize(TableSize tableSize) {
+        table(tableSize.tableIndex());
+        push(I32);
+    }
+
+    @Override
+    public void visitTableGrow(TableGrow tableGrow) {
+        int type = table(tableGrow.tableIndex());
+        pop(I32);
+        pop(type);
+        push(I32);
+    }
+
+    @Override
+    public void visitTableFill(TableFill tableFill) {
+        ternary(I32, table(tableFill.tableIndex()), I32);
+    }
+
+    @Override
+    public void visitTableCopy(TableCopy tableCopy) {
+        int targetType = table(tableCopy.targetTableIndex());
+        int sourceType = table(tableCopy.sourceTableIndex());
+
+        if (!isSubtype(sourceType, targetType)) {
+            throw mismatch(targetType, sourceType);
+        }
+
+        ternary(I32, I32, I32);
+    }
+
+    @Override
+    public void visitTableInit(TableInit tableInit) {
+        int tableType = table(tableInit.tableIndex());
+        int elemType = elem(tableInit.elemIndex());
+
+        if (!isSubtype(elemType, tableType)) {
+            throw mismatch(tableType, elemType);
+        }
+
+        ternary(I32, I32, I32);
+    }
+
+    @Override
+    public void visitElemDrop(ElemDrop elemDrop) {
+        elem(elemDrop.elemIndex());
+    }
+
+    // Variable instructions
+
+    private int global(int globalIndex) {
+        if (globalIndex < 0 || globalIndex >= context.globalCount()) {
+            throw error("unknown global " + Integer.toUnsignedString(globalIndex));
+        }
+        return context.globalType(globalIndex);
+    }
+
+    @Override
+    public void visitGlobalGet(GlobalGet globalGet) {
+        push(global(globalGet.globalIndex()));
+    }
+
+    @Override
+    public void visitGlobalSet(GlobalSet globalSet) {
+        int type = global(globalSet.globalIndex());
+
+        if (!context.isGlobalMutable(globalSet.globalIndex())) {
+            throw error("global " + globalSet.globalIndex() + " is immutable");
+        }
+
+        pop(type);
+    }
+
+    @Override
+    public void visitLocalGet(LocalGet localGet) {
+        push(local(localGet.localIndex()));
+    }
+
+    @Override
+    public void visitLocalSet(LocalSet localSet) {
+        pop(local(localSet.localIndex()));
+    }
+
+    @Override
+    public void visitLocalTee(LocalTee localTee) {
+        int type = local(localTee.localIndex());
+        pop(type);
+        push(type);
+    }
+}
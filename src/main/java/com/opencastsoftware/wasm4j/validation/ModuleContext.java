@@ -0,0 +1,264 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.types.*;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.opencastsoftware.wasm4j.validation.ValTypes.*;
+
+// The types of everything in a module's index spaces, encoded as ints for the function validators.
+// It is not modified once it is created, so it can be shared by validators running on different threads.
+final class ModuleContext {
+    // Structurally identical function types are identified by the index of the first of them
+    private final int[] canonicalTypes;
+    private final int[][] typeParams;
+    private final int[][] typeResults;
+    // The type index of each function, starting with the imported functions
+    private final int[] funcTypes;
+    private final int importedFuncCount;
+    // The element type of each table
+    private final int[] tableTypes;
+    private final int memCount;
+    private final int[] globalTypes;
+    private final boolean[] globalMutable;
+    private final int importedGlobalCount;
+    private final int[] elemTypes;
+    private final int dataCount;
+    // The functions that may be referenced by ref.func within function bodies
+    private final BitSet declaredFuncs;
+
+    ModuleContext(Module module) {
+        var types = module.types();
+        this.canonicalTypes = new int[types.size()];
+
+        var firstIndices = new HashMap<FuncType, Integer>();
+        for (int i = 0; i < types.size(); i++) {
+            var firstIndex = firstIndices.putIfAbsent(types.get(i), i);
+            canonicalTypes[i] = firstIndex != null ? firstIndex : i;
+        }
+
+        this.typeParams = new int[types.size()][];
+        this.typeResults = new int[types.size()][];
+        for (int i = 0; i < types.size(); i++) {
+            typeParams[i] = valTypes(types.get(i).arguments());
+            typeResults[i] = valTypes(types.get(i).results());
+        }
+
+        int funcImports = 0, tableImports = 0, memImports = 0, globalImports = 0;
+        for (Import imp : module.imports()) {
+            var descriptor = imp.descriptor();
+            if (descriptor instanceof Import.Descriptor.Func) {
+                funcImports++;
+            } else if (descriptor instanceof Import.Descriptor.Table) {
+                tableImports++;
+            } else if (descriptor instanceof Import.Descriptor.Mem) {
+                memImports++;
+            } else {
+                globalImports++;
+            }
+        }
+
+        this.importedFuncCount = funcImports;
+        this.importedGlobalCount = globalImports;
+        this.funcTypes = new int[funcImports + module.funcs().size()];
+        this.tableTypes = new int[tableImports + module.tables().size()];
+        this.memCount = memImports + module.mems().size();
+        this.globalTypes = new int[globalImports + module.globals().size()];
+        this.globalMutable = new boolean[globalTypes.length];
+
+        int funcs = 0, tables = 0, globals = 0;
+        for (Import imp : module.imports()) {
+            var descriptor = imp.descriptor();
+            if (descriptor instanceof Import.Descriptor.Func) {
+                funcTypes[funcs++] = typeIndex(((Import.Descriptor.Func) descriptor).typeIndex());
+            } else if (descriptor instanceof Import.Descriptor.Table) {
+                tableTypes[tables++] = refType(((Import.Descriptor.Table) descriptor).tableType().refType());
+            } else if (descriptor instanceof Import.Descriptor.Global) {
+                var globalType = ((Import.Descriptor.Global) descriptor).globalType();
+                globalMutable[globals] = globalType.isMutable();
+                globalTypes[globals++] = valType(globalType.valType());
+            }
+        }
+
+        for (Func func : module.funcs()) {
+            funcTypes[funcs++] = typeIndex(func.typeIndex());
+        }
+
+        for (Table table : module.tables()) {
+            tableTypes[tables++] = refType(table.type().refType());
+        }
+
+        for (Global global : module.globals()) {
+            globalMutable[globals] = global.type().isMutable();
+            globalTypes[globals++] = valType(global.type().valType());
+        }
+
+        var elems = module.elems();
+        this.elemTypes = new int[elems.size()];
+        for (int i = 0; i < elems.size(); i++) {
+            elemTypes[i] = refType(elems.get(i).type());
+        }
+
+        this.dataCount = module.datas().size();
+
+        this.declaredFuncs = new BitSet(funcTypes.length);
+        for (Table table : module.tables()) {
+            declareFuncs(table.init());
+        }
+        for (Global global : module.globals()) {
+            declareFuncs(global.init());
+        }
+        for (Elem elem : elems) {
+            for (ConstantExpression init : elem.init()) {
+                declareFuncs(init);
+            }
+        }
+        for (Export export : module.exports()) {
+            var descriptor = export.descriptor();
+            if (descriptor.indexType() == IndexType.FUNC && descriptor.index() >= 0 && descriptor.index() < funcTypes.length) {
+                declaredFuncs.set(descriptor.index());
+            }
+        }
+    }
+
+    private void declareFuncs(ConstantExpression expression) {
+        for (ConstantInstruction instr : expression.instructions()) {
+            if (instr instanceof RefFunc) {
+                int funcIndex = ((RefFunc) instr).funcIndex();
+                if (funcIndex >= 0 && funcIndex < funcTypes.length) {
+                    declaredFuncs.set(funcIndex);
+                }
+            }
+        }
+    }
+
+    private int[] valTypes(List<ValType> valTypes) {
+        var codes = new int[valTypes.size()];
+
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = valType(valTypes.get(i));
+        }
+
+        return codes;
+    }
+
+    int valType(ValType valType) {
+        if (valType == NumType.i32()) {
+            return I32;
+        } else if (valType == NumType.i64()) {
+            return I64;
+        } else if (valType == NumType.f32()) {
+            return F32;
+        } else if (valType == NumType.f64()) {
+            return F64;
+        } else if (valType == VecType.v128()) {
+            return V128;
+        } else if (valType instanceof RefType) {
+            return refType((RefType) valType);
+        } else {
+            throw new ValidationException("unknown value type " + valType);
+        }
+    }
+
+    int refType(RefType refType) {
+        return ref(refType.isNullable(), heapType(refType.heapType()));
+    }
+
+    int heapType(HeapType heapType) {
+        if (heapType == HeapType.func()) {
+            return FUNC;
+        } else if (heapType == HeapType.extern()) {
+            return EXTERN;
+        } else if (heapType instanceof TypeId) {
+            return TYPE + canonicalTypes[typeIndex(((TypeId) heapType).typeIndex())];
+        } else {
+            throw new ValidationException("unknown heap type " + heapType);
+        }
+    }
+
+    int typeIndex(int typeIndex) {
+        if (typeIndex < 0 || typeIndex >= canonicalTypes.length) {
+            throw new ValidationException("unknown type " + Integer.toUnsignedString(typeIndex));
+        }
+        return typeIndex;
+    }
+
+    int[] typeParams(int typeIndex) {
+        return typeParams[typeIndex];
+    }
+
+    int[] typeResults(int typeIndex) {
+        return typeResults[typeIndex];
+    }
+
+    int canonicalType(int typeIndex) {
+        return canonicalTypes[typeIndex];
+    }
+
+    int funcCount() {
+        return funcTypes.length;
+    }
+
+    int importedFuncCount() {
+        return importedFuncCount;
+    }
+
+    // Returns -1 for an unknown function, so that callers can report the error where it occurs
+    int funcType(int funcIndex) {
+        return funcIndex >= 0 && funcIndex < funcTypes.length ? funcTypes[funcIndex] : -1;
+    }
+
+    boolean isDeclaredFunc(int funcIndex) {
+        return declaredFuncs.get(funcIndex);
+    }
+
+    int tableCount() {
+        return tableTypes.length;
+    }
+
+    int tableType(int tableIndex) {
+        return tableTypes[tableIndex];
+    }
+
+    int memCount() {
+        return memCount;
+    }
+
+    int globalCount() {
+        return globalTypes.length;
+    }
+
+    int importedGlobalCount() {
+        return importedGlobalCount;
+    }
+
+    int globalType(int globalIndex) {
+        return globalTypes[globalIndex];
+    }
+
+    boolean isGlobalMutable(int globalIndex) {
+        return globalMutable[globalIndex];
+    }
+
+    int elemCount() {
+        return elemTypes.length;
+    }
+
+    int elemType(int elemIndex) {
+        return elemTypes[elemIndex];
+    }
+
+    int dataCount() {
+        return dataCount;
+    }
+}
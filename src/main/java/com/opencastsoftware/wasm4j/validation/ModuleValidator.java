@@ -0,0 +1,281 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.ConstantInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.floating.F64Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I32Const;
+import com.opencastsoftware.wasm4j.instructions.numeric.integer.I64Const;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.variable.GlobalGet;
+import com.opencastsoftware.wasm4j.types.Limits;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static com.opencastsoftware.wasm4j.validation.ValTypes.*;
+
+// Checks that a module is valid according to the specification, throwing a ValidationException if it is not.
+public final class ModuleValidator {
+    private static final long MAX_PAGES = 65536;
+    private static final long MAX_TABLE_SIZE = 0xFFFF_FFFFL;
+
+    // The number of function bodies validated by each task when validating in parallel
+    static final int PARALLEL_CHUNK_SIZE = 64;
+
+    private ModuleValidator() {
+    }
+
+    public static void validate(Module module) {
+        validateFuncs(validateModule(module), module.funcs(), null);
+    }
+
+    // Reports the control flow of each function body to the listener as it is validated, one function at a time
+    public static void validate(Module module, ControlFlowListener listener) {
+        validateFuncs(validateModule(module), module.funcs(), listener);
+    }
+
+    // Function bodies are validated in chunks of PARALLEL_CHUNK_SIZE on the executor, against a context shared by every chunk
+    public static void validate(Module module, Executor executor) {
+        var context = validateModule(module);
+        var funcs = module.funcs();
+
+        if (funcs.size() > PARALLEL_CHUNK_SIZE) {
+            validateParallel(context, funcs, executor);
+        } else {
+            validateFuncs(context, funcs, null);
+        }
+    }
+
+    private static void validateFuncs(ModuleContext context, List<Func> funcs, @Nullable ControlFlowListener listener) {
+        var validator = new FunctionValidator(context, listener);
+        int funcIndex = context.importedFuncCount();
+
+        for (Func func : funcs) {
+            validator.validate(funcIndex++, func);
+        }
+    }
+
+    private static void validateParallel(ModuleContext context, List<Func> funcs, Executor executor) {
+        var tasks = new ArrayList<CompletableFuture<Void>>();
+
+        for (int from = 0; from < funcs.size(); from += PARALLEL_CHUNK_SIZE) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(from + PARALLEL_CHUNK_SIZE, funcs.size());
+
+            tasks.add(CompletableFuture.runAsync(() -> {
+                var validator = new FunctionValidator(context);
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    validator.validate(context.importedFuncCount() + i, funcs.get(i));
+                }
+            }, executor));
+        }
+
+        // Chunks are joined in index order, so the first invalid function is always the one reported
+        try {
+            for (CompletableFuture<Void> task : tasks) {
+                task.join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    // Validates everything but the function bodies, returning the context they are validated against
+    private static ModuleContext validateModule(Module module) {
+        var context = new ModuleContext(module);
+
+        for (Import imp : module.imports()) {
+            var descriptor = imp.descriptor();
+            if (descriptor instanceof Import.Descriptor.Table) {
+                validateLimits(((Import.Descriptor.Table) descriptor).tableType().limits(), MAX_TABLE_SIZE, "table");
+            } else if (descriptor instanceof Import.Descriptor.Mem) {
+                validateLimits(((Import.Descriptor.Mem) descriptor).memType().limits(), MAX_PAGES, "memory");
+            }
+        }
+
+        for (Table table : module.tables()) {
+            validateLimits(table.type().limits(), MAX_TABLE_SIZE, "table");
+
+            int refType = context.refType(table.type().refType());
+            if (!table.init().instructions().isEmpty()) {
+                validateConstant(context, table.init(), refType, context.globalCount(), "table initialiser");
+            } else if (!isNullable(refType)) {
+                throw new ValidationException("type mismatch: a table of non-nullable references requires an initialiser");
+            }
+        }
+
+        for (var mem : module.mems()) {
+            validateLimits(mem.limits(), MAX_PAGES, "memory");
+        }
+
+        for (int i = 0; i < module.globals().size(); i++) {
+            int globalIndex = context.importedGlobalCount() + i;
+            // Globals may only refer to the globals before them
+            validateConstant(context, module.globals().get(i).init(), context.globalType(globalIndex), globalIndex, "initialiser of global " + globalIndex);
+        }
+
+        for (int i = 0; i < module.elems().size(); i++) {
+            var elem = module.elems().get(i);
+            int elemType = context.elemType(i);
+
+            for (ConstantExpression init : elem.init()) {
+                validateConstant(context, init, elemType, context.globalCount(), "initialiser of elem segment " + i);
+            }
+
+            if (elem.mode() instanceof Elem.Mode.Active) {
+                var active = (Elem.Mode.Active) elem.mode();
+                int tableIndex = active.tableIndex();
+
+                if (tableIndex < 0 || tableIndex >= context.tableCount()) {
+                    throw new ValidationException("unknown table " + Integer.toUnsignedString(tableIndex));
+                } else if (!isSubtype(elemType, context.tableType(tableIndex))) {
+                    throw mismatch("elem segment " + i, context.tableType(tableIndex), elemType);
+                }
+
+                validateConstant(context, active.offset(), I32, context.globalCount(), "offset of elem segment " + i);
+            }
+        }
+
+        for (int i = 0; i < module.datas().size(); i++) {
+            var data = module.datas().get(i);
+
+            if (data.mode() instanceof Data.Mode.Active) {
+                var active = (Data.Mode.Active) data.mode();
+                int memIndex = active.memIndex();
+
+                if (memIndex < 0 || memIndex >= context.memCount()) {
+                    throw new ValidationException("unknown memory " + Integer.toUnsignedString(memIndex));
+                }
+
+                validateConstant(context, active.offset(), I32, context.globalCount(), "offset of data segment " + i);
+            }
+        }
+
+        var start = module.start();
+        if (start != null) {
+            int typeIndex = context.funcType(start);
+            if (typeIndex < 0) {
+                throw new ValidationException("unknown function " + Integer.toUnsignedString(start));
+            } else if (context.typeParams(typeIndex).length > 0 || context.typeResults(typeIndex).length > 0) {
+                throw new ValidationException("start function must not take parameters or return results");
+            }
+        }
+
+        var exportNames = new HashSet<String>();
+        for (Export export : module.exports()) {
+            if (!exportNames.add(export.name())) {
+                throw new ValidationException("duplicate export name " + export.name());
+            }
+            validateExport(context, export.descriptor());
+        }
+
+        return context;
+    }
+
+    private static void validateLimits(Limits limits, long maxSize, String kind) {
+        long min = Integer.toUnsignedLong(limits.min());
+
+        if (min > maxSize) {
+            throw new ValidationException(kind + " size must be at most " + maxSize);
+        }
+
+        if (limits.max() != null) {
+            long max = Integer.toUnsignedLong(limits.max());
+            if (max > maxSize) {
+                throw new ValidationException(kind + " size must be at most " + maxSize);
+            } else if (min > max) {
+                throw new ValidationException(kind + " size minimum must not be greater than maximum");
+            }
+        }
+    }
+
+    private static void validateExport(ModuleContext context, Export.Descriptor descriptor) {
+        int index = descriptor.index();
+        int count;
+
+        switch (descriptor.indexType()) {
+            case FUNC:
+                count = context.funcCount();
+                break;
+            case TABLE:
+                count = context.tableCount();
+                break;
+            case MEM:
+                count = context.memCount();
+                break;
+            default:
+                count = context.globalCount();
+        }
+
+        if (index < 0 || index >= count) {
+            throw new ValidationException("unknown " + descriptor.indexType().name().toLowerCase() + " " + Integer.toUnsignedString(index));
+        }
+    }
+
+    // Constant expressions may only get the values of immutable globals before the given index
+    private static void validateConstant(ModuleContext context, ConstantExpression expression, int expected, int globalLimit, String where) {
+        var instructions = expression.instructions();
+
+        if (instructions.size() != 1) {
+            throw new ValidationException("type mismatch: " + where + " must produce exactly one value");
+        }
+
+        int actual;
+        ConstantInstruction instr = instructions.get(0);
+
+        if (instr instanceof I32Const) {
+            actual = I32;
+        } else if (instr instanceof I64Const) {
+            actual = I64;
+        } else if (instr instanceof F32Const) {
+            actual = F32;
+        } else if (instr instanceof F64Const) {
+            actual = F64;
+        } else if (instr instanceof RefNull) {
+            actual = ref(true, context.heapType(((RefNull) instr).heapType()));
+        } else if (instr instanceof RefFunc) {
+            int funcIndex = ((RefFunc) instr).funcIndex();
+            int typeIndex = context.funcType(funcIndex);
+            if (typeIndex < 0) {
+                throw new ValidationException("unknown function " + Integer.toUnsignedString(funcIndex));
+            }
+            actual = ref(false, TYPE + context.canonicalType(typeIndex));
+        } else if (instr instanceof GlobalGet) {
+            int globalIndex = ((GlobalGet) instr).globalIndex();
+            if (globalIndex < 0 || globalIndex >= globalLimit) {
+                throw new ValidationException("unknown global " + Integer.toUnsignedString(globalIndex) + " in " + where);
+            } else if (context.isGlobalMutable(globalIndex)) {
+                throw new ValidationException("constant expression required, but global " + globalIndex + " is mutable");
+            }
+            actual = context.globalType(globalIndex);
+        } else {
+            throw new ValidationException("constant expression required in " + where);
+        }
+
+        if (!isSubtype(actual, expected)) {
+            throw mismatch(where, expected, actual);
+        }
+    }
+
+    private static ValidationException mismatch(String where, int expected, int actual) {
+        return new ValidationException("type mismatch in " + where + ": expected " + ValTypes.toString(expected) + " but found " + ValTypes.toString(actual));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+// Value types encoded as ints, so that operand stacks can be arrays of primitives.
+// A reference type is REF plus its heap type shifted left by one, plus one if it is nullable,
+// where the heap type is FUNC, EXTERN, or TYPE plus the index of a function type.
+final class ValTypes {
+    // The type of an operand popped from the polymorphic stack of unreachable code, which matches any type
+    static final int UNKNOWN = 0;
+    static final int I32 = 1;
+    static final int I64 = 2;
+    static final int F32 = 3;
+    static final int F64 = 4;
+    static final int V128 = 5;
+    static final int REF = 8;
+
+    static final int FUNC = 0;
+    static final int EXTERN = 1;
+    static final int TYPE = 2;
+
+    static final int FUNCREF = ref(true, FUNC);
+    static final int EXTERNREF = ref(true, EXTERN);
+
+    private ValTypes() {
+    }
+
+    static int ref(boolean nullable, int heapType) {
+        return REF + (heapType << 1) + (nullable ? 1 : 0);
+    }
+
+    static boolean isRef(int type) {
+        return type >= REF;
+    }
+
+    static boolean isNullable(int type) {
+        return ((type - REF) & 1) != 0;
+    }
+
+    static int heapType(int type) {
+        return (type - REF) >>> 1;
+    }
+
+    static int asNonNullable(int type) {
+        return isRef(type) ? ref(false, heapType(type)) : type;
+    }
+
+    static boolean isDefaultable(int type) {
+        return !isRef(type) || isNullable(type);
+    }
+
+    static boolean isHeapSubtype(int heapType, int superHeapType) {
+        // Every typed function reference is a function reference
+        return heapType == superHeapType || (heapType >= TYPE && superHeapType == FUNC);
+    }
+
+    static boolean isSubtype(int type, int superType) {
+        if (type == superType || type == UNKNOWN) {
+            return true;
+        } else if (!isRef(type) || !isRef(superType)) {
+            return false;
+        } else if (isNullable(type) && !isNullable(superType)) {
+            return false;
+        } else {
+            return isHeapSubtype(heapType(type), heapType(superType));
+        }
+    }
+
+    static String toString(int type) {
+        switch (type) {
+            case UNKNOWN:
+                return "unknown";
+            case I32:
+                return "i32";
+            case I64:
+                return "i64";
+            case F32:
+                return "f32";
+            case F64:
+                return "f64";
+            case V128:
+                return "v128";
+            default:
+                int heapType = heapType(type);
+                var heap = heapType == FUNC ? "func" : heapType == EXTERN ? "extern" : Integer.toString(heapType - TYPE);
+                return isNullable(type) ? "(ref null " + heap + ")" : "(ref " + heap + ")";
+        }
+    }
+}
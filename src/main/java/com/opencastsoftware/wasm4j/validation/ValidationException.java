@@ -0,0 +1,33 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+// Thrown when a module is well-formed but not valid.
+// The function index and instruction index are -1 when the error is not within a function body.
+public class ValidationException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int funcIndex;
+    private final int instructionIndex;
+
+    public ValidationException(String message) {
+        this(message, -1, -1);
+    }
+
+    public ValidationException(String message, int funcIndex, int instructionIndex) {
+        super(funcIndex < 0 ? message : message + " in function " + funcIndex + " at instruction " + instructionIndex);
+        this.funcIndex = funcIndex;
+        this.instructionIndex = instructionIndex;
+    }
+
+    public int funcIndex() {
+        return funcIndex;
+    }
+
+    // The position of the instruction in the order it is encoded, counting each block, loop, if, else and end
+    public int instructionIndex() {
+        return instructionIndex;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.types.HeapType;
+import com.opencastsoftware.wasm4j.types.NumType;
+import com.opencastsoftware.wasm4j.types.RefType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FuncTest {
+    @Test
+    void compressesLocals() {
+        var func = new Func(0, List.of(
+                NumType.i32(), NumType.i32(),
+                RefType.nullable(HeapType.typeId(2)), RefType.nullable(HeapType.typeId(2)),
+                RefType.nullable(HeapType.typeId(3)),
+                NumType.i32()), Expression.of());
+
+        assertThat(func.compressedLocals(), contains(
+                Locals.of(2, NumType.i32()),
+                Locals.of(2, RefType.nullable(HeapType.typeId(2))),
+                Locals.of(1, RefType.nullable(HeapType.typeId(3))),
+                Locals.of(1, NumType.i32())));
+    }
+
+    @Test
+    void mergesCompressedLocals() {
+        var func = Func.compressed(0, List.of(
+                Locals.of(0, NumType.f64()),
+                Locals.of(3, NumType.i64()),
+                Locals.of(4, NumType.i64()),
+                Locals.of(0, NumType.f32()),
+                Locals.of(1, NumType.i64())), Expression.of());
+
+        assertThat(func.compressedLocals(), contains(Locals.of(8, NumType.i64())));
+    }
+
+    @Test
+    void expandsCompressedLocals() {
+        var func = Func.compressed(0, List.of(
+                Locals.of(100000, NumType.i64()),
+                Locals.of(2, NumType.f32()),
+                Locals.of(1, NumType.i32())), Expression.of());
+
+        var locals = func.locals();
+
+        assertThat(locals, hasSize(100003));
+        assertThat(locals.get(0), is(NumType.i64()));
+        assertThat(locals.get(99999), is(NumType.i64()));
+        assertThat(locals.get(100000), is(NumType.f32()));
+        assertThat(locals.get(100001), is(NumType.f32()));
+        assertThat(locals.get(100002), is(NumType.i32()));
+        assertThrows(IndexOutOfBoundsException.class, () -> locals.get(100003));
+        assertThrows(UnsupportedOperationException.class, () -> locals.add(NumType.i32()));
+    }
+
+    @Test
+    void emptyLocals() {
+        var func = new Func(0, Collections.emptyList(), Expression.of());
+        assertThat(func.locals(), is(empty()));
+        assertThat(func.compressedLocals(), is(empty()));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j;
+
+import com.opencastsoftware.wasm4j.instructions.control.Block;
+import com.opencastsoftware.wasm4j.instructions.control.CallIndirect;
+import com.opencastsoftware.wasm4j.instructions.control.CallRef;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.control.If;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.Select;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TypeDeduplicatorTest {
+    private static FuncType unary() {
+        return ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+    }
+
+    private static FuncType nullary() {
+        return ExternType.func(List.of(), List.of());
+    }
+
+    @Test
+    void builderDeduplicatesTypes() {
+        var builder = Module.builder().withTypeDeduplication();
+
+        int first = builder.typeIndex(unary());
+        int second = builder.typeIndex(nullary());
+
+        assertThat(builder.typeIndex(unary()), equalTo(first));
+        assertThat(builder.typeIndex(nullary()), equalTo(second));
+
+        var module = builder
+                .withFunc(unary(), Expression.empty())
+                .withFunc(nullary(), Expression.empty())
+                .withType(unary())
+                .build();
+
+        assertThat(module.types(), contains(unary(), nullary()));
+        assertThat(module.funcs().get(0).typeIndex(), equalTo(first));
+        assertThat(module.funcs().get(1).typeIndex(), equalTo(second));
+    }
+
+    @Test
+    void builderKeepsExistingTypes() {
+        var builder = Module.builder().withType(unary()).withType(unary());
+
+        assertThat(builder.typeIndex(unary()), equalTo(2));
+        assertThat(builder.withTypeDeduplication().typeIndex(unary()), equalTo(0));
+        assertThat(builder.build().types(), hasSize(3));
+    }
+
+    @Test
+    void deduplicatesModule() {
+        var ref = RefType.nullable(HeapType.typeId(2));
+
+        var module = Module.builder()
+                .withType(unary())
+                .withType(nullary())
+                .withType(unary())
+                .withType(ExternType.func(List.of(ref), List.of()))
+                .withImport(new Import("env", "f", Import.Descriptor.func(2)))
+                .withImport(new Import("env", "g", Import.Descriptor.global(GlobalType.immutable(ref))))
+                .withCompressedFunc(unary(), List.of(Locals.of(2, ref)), Expression.of(
+                        ControlInstruction.block(HeapType.typeId(2), List.of(
+                                ControlInstruction.call_indirect(0, 2),
+                                ControlInstruction.ifInstr(
+                                        List.of(ControlInstruction.call_ref(2)),
+                                        List.of(ParametricInstruction.select(ref))))),
+                        ReferenceInstruction.ref_null(HeapType.typeId(2)),
+                        NumericInstruction.i32_const(1)))
+                .withTable(new Table(ExternType.table(Limits.of(1), ref), ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.typeId(2)))))
+                .withElem(new Elem(ref, List.of(), Elem.Mode.declarative()))
+                .build();
+
+        var deduplicated = module.deduplicateTypes();
+
+        // The function type added along with the function is identical to the first type as well
+        assertThat(deduplicated.types(), contains(unary(), nullary(), ExternType.func(List.of(RefType.nullable(HeapType.typeId(0))), List.of())));
+
+        var renumbered = RefType.nullable(HeapType.typeId(0));
+        assertThat(((Import.Descriptor.Func) deduplicated.imports().get(0).descriptor()).typeIndex(), equalTo(0));
+        assertThat(((Import.Descriptor.Global) deduplicated.imports().get(1).descriptor()).globalType().valType(), equalTo(renumbered));
+
+        var func = deduplicated.funcs().get(0);
+        assertThat(func.typeIndex(), equalTo(0));
+        assertThat(func.compressedLocals(), contains(Locals.of(2, renumbered)));
+
+        var body = func.body().instructions();
+        var block = (Block) body.get(0);
+        assertThat(block.blockType(), equalTo(HeapType.typeId(0)));
+        assertThat(((CallIndirect) block.instructions().get(0)).typeIndex(), equalTo(0));
+        var ifInstr = (If) block.instructions().get(1);
+        assertThat(((CallRef) ifInstr.consequent().get(0)).typeIndex(), equalTo(0));
+        assertThat(((Select) ifInstr.alternative().get(0)).valTypes(), contains(renumbered));
+        assertThat(((RefNull) body.get(1)).heapType(), equalTo(HeapType.typeId(0)));
+        assertThat(body.get(2), sameInstance(module.funcs().get(0).body().instructions().get(2)));
+
+        assertThat(deduplicated.tables().get(0).type().refType(), equalTo(renumbered));
+        assertThat(((RefNull) deduplicated.tables().get(0).init().instructions().get(0)).heapType(), equalTo(HeapType.typeId(0)));
+        assertThat(deduplicated.elems().get(0).type(), equalTo(renumbered));
+    }
+
+    @Test
+    void deduplicatesTypesMadeIdenticalByRenumbering() {
+        var module = Module.builder()
+                .withType(nullary())
+                .withType(nullary())
+                .withType(ExternType.func(List.of(RefType.nullable(HeapType.typeId(0))), List.of()))
+                .withType(ExternType.func(List.of(RefType.nullable(HeapType.typeId(1))), List.of()))
+                .withFunc(ExternType.func(List.of(RefType.nullable(HeapType.typeId(1))), List.of()), Expression.empty())
+                .build();
+
+        var deduplicated = module.deduplicateTypes();
+
+        assertThat(deduplicated.types(), hasSize(2));
+        assertThat(deduplicated.funcs().get(0).typeIndex(), equalTo(1));
+    }
+
+    @Test
+    void returnsModuleWithoutDuplicates() {
+        var module = Module.builder()
+                .withFunc(unary(), Expression.of(ControlInstruction.call_indirect(0, 0)))
+                .build();
+
+        assertThat(module.deduplicateTypes(), sameInstance(module));
+        assertThat(Module.empty().deduplicateTypes().types(), empty());
+    }
+
+    @Test
+    void rejectsUnknownTypeIndices() {
+        var module = Module.builder()
+                .withType(unary())
+                .withType(unary())
+                .withImport(new Import("env", "f", Import.Descriptor.func(5)))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, module::deduplicateTypes);
+    }
+}
@@ -0,0 +1,17 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.closure;
+
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.EngineConformanceTest;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+
+class ClosureCompilerTest extends EngineConformanceTest {
+    @Override
+    protected Instance instantiate(Module module, Imports imports) {
+        return ClosureCompiler.instantiate(module, imports);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.compiler;
+
+import com.opencastsoftware.wasm4j.Export;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.runtime.EngineConformanceTest;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerTest extends EngineConformanceTest {
+    @Override
+    protected Instance instantiate(Module module, Imports imports) {
+        return Compiler.compile(module).instantiate(imports);
+    }
+
+    @Test
+    void testInstancesShareCompiledCode() {
+        var compiled = Compiler.compile(Module.builder()
+                .withFunc(UNARY, new Expression(FIB))
+                .withExport(new Export("fib", Export.Descriptor.func(0)))
+                .build());
+
+        // Each instance of a compiled module has its own state, but shares the compiled code
+        var instance = compiled.instantiate();
+        assertNotSame(instance, compiled.instantiate());
+        assertSame(instance.getClass(), compiled.instantiate().getClass());
+        assertArrayEquals(new long[]{6765}, instance.invoke("fib", 20));
+    }
+
+    @Test
+    void testFunctionsTooLargeToCompileAreInterpreted() {
+        int length = 30_000;
+
+        // Adds one to its argument for each addition, then calls back into compiled code
+        var large = new ArrayList<Instruction>();
+        large.add(VariableInstruction.local_get(0));
+        for (int i = 0; i < length; i++) {
+            large.add(NumericInstruction.i32_const(1));
+            large.add(NumericInstruction.i32_add());
+        }
+        large.add(ControlInstruction.call(2));
+
+        var instance = instantiate(Module.builder()
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.call(1),
+                        NumericInstruction.i32_const(1),
+                        NumericInstruction.i32_add()))
+                .withFunc(UNARY, new Expression(large))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(2),
+                        NumericInstruction.i32_mul()))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .build());
+
+        assertArrayEquals(new long[]{(5 + length) * 2 + 1}, instance.invoke("f", 5));
+        assertArrayEquals(new long[]{(5 + length) * 2}, instance.invoke(1, 5));
+    }
+}
@@ -13,10 +13,13 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class LEB128Test {
     void testUnsignedEncoding(int input, byte[] expected) throws IOException {
@@ -155,4 +158,211 @@ public class LEB128Test {
         var actual = LEB128.readSignedLong(bytes);
         assertThat(actual, is(equalTo(expected)));
     }
+
+    @Property
+    void unsignedIntSize(@ForAll @IntRange(min = Integer.MIN_VALUE, max = Integer.MAX_VALUE) int input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeUnsigned(output, input);
+        assertThat(LEB128.sizeOfUnsigned(input), is(equalTo(output.size())));
+    }
+
+    @Property
+    void unsignedLongSize(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeUnsigned(output, input);
+        assertThat(LEB128.sizeOfUnsigned(input), is(equalTo(output.size())));
+    }
+
+    @Property
+    void signedIntSize(@ForAll @IntRange(min = Integer.MIN_VALUE, max = Integer.MAX_VALUE) int input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeSigned(output, input);
+        assertThat(LEB128.sizeOfSigned(input), is(equalTo(output.size())));
+    }
+
+    @Property
+    void signedLongSize(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeSigned(output, input);
+        assertThat(LEB128.sizeOfSigned(input), is(equalTo(output.size())));
+    }
+
+    private byte[] unsignedBytes(long input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeUnsigned(output, input);
+        return output.toByteArray();
+    }
+
+    private byte[] signedBytes(long input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        LEB128.writeSigned(output, input);
+        return output.toByteArray();
+    }
+
+    // Writes at an offset into a buffer with trailing bytes, so that both the word-at-a-time and bytewise paths are used
+    private byte[] withPadding(int offset, byte[] bytes, int trailing) {
+        var padded = new byte[offset + bytes.length + trailing];
+        System.arraycopy(bytes, 0, padded, offset, bytes.length);
+        return padded;
+    }
+
+    @Property
+    void writeUnsignedIntToArray(@ForAll @IntRange(min = Integer.MIN_VALUE, max = Integer.MAX_VALUE) int input) throws IOException {
+        var expected = unsignedBytes(Integer.toUnsignedLong(input));
+        var output = new byte[3 + LEB128.sizeOfUnsigned(input)];
+        assertThat(LEB128.writeUnsigned(output, 3, input), is(equalTo(output.length)));
+        assertArrayEquals(withPadding(3, expected, 0), output);
+
+        var buffer = ByteBuffer.allocateDirect(output.length);
+        assertThat(LEB128.writeUnsigned(buffer, 3, input), is(equalTo(output.length)));
+        assertThat(buffer, is(equalTo(ByteBuffer.wrap(output))));
+    }
+
+    @Property
+    void writeUnsignedLongToArray(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long input) throws IOException {
+        var expected = unsignedBytes(input);
+        var output = new byte[3 + LEB128.sizeOfUnsigned(input)];
+        assertThat(LEB128.writeUnsigned(output, 3, input), is(equalTo(output.length)));
+        assertArrayEquals(withPadding(3, expected, 0), output);
+
+        var buffer = ByteBuffer.allocate(output.length);
+        assertThat(LEB128.writeUnsigned(buffer, 3, input), is(equalTo(output.length)));
+        assertArrayEquals(output, buffer.array());
+    }
+
+    @Property
+    void writeSignedLongToArray(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long input) throws IOException {
+        var expected = signedBytes(input);
+        var output = new byte[3 + LEB128.sizeOfSigned(input)];
+        assertThat(LEB128.writeSigned(output, 3, input), is(equalTo(output.length)));
+        assertArrayEquals(withPadding(3, expected, 0), output);
+
+        var buffer = ByteBuffer.allocate(output.length);
+        assertThat(LEB128.writeSigned(buffer, 3, input), is(equalTo(output.length)));
+        assertArrayEquals(output, buffer.array());
+    }
+
+    @Property
+    void decodeUnsignedIntAtOffset(@ForAll @IntRange(min = Integer.MIN_VALUE, max = Integer.MAX_VALUE) int expected) throws IOException {
+        var bytes = unsignedBytes(Integer.toUnsignedLong(expected));
+        for (int trailing : new int[]{0, 8}) {
+            var input = withPadding(5, bytes, trailing);
+            var decoded = LEB128.decodeUnsignedInt(input, 5);
+            assertThat(LEB128.decodedValue(decoded), is(equalTo(expected)));
+            assertThat(LEB128.decodedLength(decoded), is(equalTo(bytes.length)));
+            assertThat(LEB128.readUnsignedInt(input, 5), is(equalTo(expected)));
+            assertThat(LEB128.encodedLength(input, 5), is(equalTo(bytes.length)));
+
+            var buffer = ByteBuffer.wrap(input).position(5);
+            assertThat(LEB128.readUnsignedInt(buffer), is(equalTo(expected)));
+            assertThat(buffer.position(), is(equalTo(5 + bytes.length)));
+        }
+    }
+
+    @Property
+    void decodeSignedIntAtOffset(@ForAll @IntRange(min = Integer.MIN_VALUE, max = Integer.MAX_VALUE) int expected) throws IOException {
+        var bytes = signedBytes(expected);
+        for (int trailing : new int[]{0, 8}) {
+            var input = withPadding(5, bytes, trailing);
+            var decoded = LEB128.decodeSignedInt(input, 5);
+            assertThat(LEB128.decodedValue(decoded), is(equalTo(expected)));
+            assertThat(LEB128.decodedLength(decoded), is(equalTo(bytes.length)));
+            assertThat(LEB128.readSignedInt(input, 5), is(equalTo(expected)));
+
+            var buffer = ByteBuffer.allocateDirect(input.length).put(input).position(5);
+            assertThat(LEB128.readSignedInt(buffer), is(equalTo(expected)));
+            assertThat(buffer.position(), is(equalTo(5 + bytes.length)));
+        }
+    }
+
+    @Property
+    void decodeUnsignedLongAtOffset(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long expected) throws IOException {
+        var bytes = unsignedBytes(expected);
+        for (int trailing : new int[]{0, 8}) {
+            var input = withPadding(5, bytes, trailing);
+            assertThat(LEB128.readUnsignedLong(input, 5), is(equalTo(expected)));
+            assertThat(LEB128.encodedLength(input, 5), is(equalTo(bytes.length)));
+
+            var buffer = ByteBuffer.allocateDirect(input.length).put(input).position(5);
+            assertThat(LEB128.readUnsignedLong(buffer), is(equalTo(expected)));
+            assertThat(buffer.position(), is(equalTo(5 + bytes.length)));
+        }
+    }
+
+    @Property
+    void decodeSignedLongAtOffset(@ForAll @LongRange(min = Long.MIN_VALUE, max = Long.MAX_VALUE) long expected) throws IOException {
+        var bytes = signedBytes(expected);
+        for (int trailing : new int[]{0, 8}) {
+            var input = withPadding(5, bytes, trailing);
+            assertThat(LEB128.readSignedLong(input, 5), is(equalTo(expected)));
+            assertThat(LEB128.encodedLength(input, 5), is(equalTo(bytes.length)));
+
+            var buffer = ByteBuffer.wrap(input).position(5);
+            assertThat(LEB128.readSignedLong(buffer), is(equalTo(expected)));
+            assertThat(buffer.position(), is(equalTo(5 + bytes.length)));
+        }
+    }
+
+    @Test
+    void decodePaddedValues() {
+        // Non-minimal encodings are allowed, as long as they don't exceed the maximum length
+        var paddedZero = new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00};
+        assertThat(LEB128.decodedLength(LEB128.decodeUnsignedInt(paddedZero, 0)), is(equalTo(5)));
+        assertThat(LEB128.readUnsignedInt(paddedZero, 0), is(equalTo(0)));
+        assertThat(LEB128.readSignedInt(paddedZero, 0), is(equalTo(0)));
+
+        var paddedMinusOne = new byte[]{(byte) 0xFF, (byte) 0xFF, 0x7F};
+        assertThat(LEB128.readSignedInt(paddedMinusOne, 0), is(equalTo(-1)));
+        assertThat(LEB128.readSignedLong(paddedMinusOne, 0), is(equalTo(-1L)));
+    }
+
+    @Test
+    void decodeMalformedValues() {
+        // Longer than the maximum length
+        var tooLongInt = new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00, 0x00, 0x00, 0x00};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeUnsignedInt(tooLongInt, 0));
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeSignedInt(tooLongInt, 0));
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeUnsignedInt(ByteBuffer.wrap(tooLongInt), 0));
+
+        var tooLongLong = new byte[11];
+        Arrays.fill(tooLongLong, 0, 10, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> LEB128.readUnsignedLong(tooLongLong, 0));
+        assertThrows(IllegalArgumentException.class, () -> LEB128.encodedLength(tooLongLong, 0));
+
+        // Ends before the final byte
+        var truncated = new byte[]{(byte) 0x80, (byte) 0x80};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeUnsignedInt(truncated, 0));
+        assertThrows(IllegalArgumentException.class, () -> LEB128.readSignedLong(truncated, 0));
+        assertThrows(IllegalArgumentException.class, () -> LEB128.readSignedLong(ByteBuffer.wrap(truncated)));
+
+        // Unused bits of the final byte are set
+        var tooLargeUnsignedInt = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x1F};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeUnsignedInt(tooLargeUnsignedInt, 0));
+
+        var tooLargeSignedInt = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x4F};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.decodeSignedInt(tooLargeSignedInt, 0));
+
+        var tooLargeUnsignedLong = new byte[]{
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x03};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.readUnsignedLong(tooLargeUnsignedLong, 0));
+
+        var tooLargeSignedLong = new byte[]{
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> LEB128.readSignedLong(tooLargeSignedLong, 0));
+    }
+
+    @Test
+    void writePaddedUnsigned() {
+        var output = new byte[6];
+        assertThat(LEB128.writeUnsignedPadded(output, 1, 5, 5), is(equalTo(6)));
+        assertArrayEquals(new byte[]{0x00, (byte) 0x85, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00}, output);
+        assertThat(LEB128.readUnsignedInt(output, 1), is(equalTo(5)));
+
+        assertThat(LEB128.writeUnsignedPadded(output, 0, -1, 5), is(equalTo(5)));
+        assertThat(LEB128.readUnsignedInt(output, 0), is(equalTo(-1)));
+
+        assertThrows(IllegalArgumentException.class, () -> LEB128.writeUnsignedPadded(output, 0, 128, 1));
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.FuncType;
+import com.opencastsoftware.wasm4j.types.Limits;
+import com.opencastsoftware.wasm4j.types.MemType;
+import com.opencastsoftware.wasm4j.types.NumType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class IncrementalModuleEncoderTest {
+    // Sections are cached by the identity of their items, so the module parts are shared between encodes
+    private final FuncType type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+    private final List<Export> exports = List.of(new Export("f0", Export.Descriptor.func(0)));
+    private final List<MemType> mems = List.of(ExternType.mem(Limits.of(1)));
+    private final List<Data> datas = List.of(new Data(new byte[]{1, 2, 3}, Data.Mode.passive()));
+
+    private Func func(int constant) {
+        return new Func(0, List.of(NumType.i64()), Expression.of(
+                VariableInstruction.local_get(0),
+                NumericInstruction.i32_const(constant),
+                NumericInstruction.i32_add()));
+    }
+
+    private Module module(List<Func> funcs, List<Export> exports) {
+        return new Module(
+                List.of(type), funcs, List.of(), mems, List.of(),
+                List.of(), datas, null, List.of(), exports);
+    }
+
+    private byte[] encode(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    private byte[] encode(IncrementalModuleEncoder encoder, Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        encoder.encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    @Test
+    void reusesUnchangedFunctionsAndSections() throws IOException {
+        var encoder = new IncrementalModuleEncoder();
+
+        var funcs = new ArrayList<Func>();
+        for (int i = 0; i < 100; i++) {
+            funcs.add(func(i));
+        }
+
+        var first = module(new ArrayList<>(funcs), exports);
+        assertArrayEquals(encode(first), encode(encoder, first));
+        assertThat(encoder.encodedFuncs(), is(equalTo(100)));
+        assertThat(encoder.reusedFuncs(), is(equalTo(0)));
+
+        // Rebuilding the module around the same objects reuses everything
+        var same = module(new ArrayList<>(funcs), exports);
+        assertArrayEquals(encode(same), encode(encoder, same));
+        assertThat(encoder.encodedFuncs(), is(equalTo(0)));
+        assertThat(encoder.reusedFuncs(), is(equalTo(100)));
+        assertThat(encoder.encodedSections(), is(equalTo(0)));
+
+        // Replacing a function with a larger body only re-encodes that function
+        funcs.set(42, func(1_000_000));
+        var changed = module(new ArrayList<>(funcs), exports);
+        assertArrayEquals(encode(changed), encode(encoder, changed));
+        assertThat(encoder.encodedFuncs(), is(equalTo(1)));
+        assertThat(encoder.reusedFuncs(), is(equalTo(99)));
+
+        // Only the function section depends on the identity of the functions
+        assertThat(encoder.encodedSections(), is(equalTo(1)));
+    }
+
+    @Test
+    void reencodesChangedSections() throws IOException {
+        var encoder = new IncrementalModuleEncoder();
+        var funcs = List.of(func(1), func(2));
+
+        encode(encoder, module(funcs, exports));
+
+        var renamed = module(funcs, List.of(new Export("renamed", Export.Descriptor.func(1))));
+        assertArrayEquals(encode(renamed), encode(encoder, renamed));
+        assertThat(encoder.encodedSections(), is(equalTo(1)));
+        assertThat(encoder.reusedFuncs(), is(equalTo(2)));
+
+        // Removing every function drops the code and function sections
+        var empty = module(List.of(), List.of());
+        assertArrayEquals(encode(empty), encode(encoder, empty));
+
+        // Evicted functions are encoded again
+        var restored = module(funcs, exports);
+        assertArrayEquals(encode(restored), encode(encoder, restored));
+        assertThat(encoder.encodedFuncs(), is(equalTo(2)));
+    }
+}
@@ -4,6 +4,8 @@
  */
 package com.opencastsoftware.wasm4j.encoding.binary;
 
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
 import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
 import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
 import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
@@ -18,8 +20,13 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 public class InstructionBinaryEncodingVisitorTest {
@@ -2136,4 +2143,71 @@ public class InstructionBinaryEncodingVisitorTest {
 
         assertArrayEquals(new byte[]{Opcode.LOCAL_TEE.opcode(), 0x03}, output.toByteArray());
     }
+
+    @Test
+    void testRetargetVisitor() throws IOException {
+        var first = new ByteArrayOutputStream();
+        var second = new ByteArrayOutputStream();
+        var typeVisitor = new WasmTypeBinaryEncodingVisitor(first);
+        var visitor = new InstructionBinaryEncodingVisitor(first, typeVisitor);
+
+        ControlInstruction.block(NumType.f64(), NumericInstruction.f64_const(1.5)).accept(visitor);
+
+        visitor.retarget(second);
+
+        ControlInstruction.block(NumType.f32(), NumericInstruction.f32_const(1.5f)).accept(visitor);
+
+        assertArrayEquals(new byte[]{
+                Opcode.BLOCK.opcode(),
+                TypeOpcode.F64.opcode(),
+                Opcode.F64_CONST.opcode(), 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xF8, 0x3F,
+                Opcode.END.opcode(),
+        }, first.toByteArray());
+
+        assertArrayEquals(new byte[]{
+                Opcode.BLOCK.opcode(),
+                TypeOpcode.F32.opcode(),
+                Opcode.F32_CONST.opcode(), 0x00, 0x00, (byte) 0xC0, 0x3F,
+                Opcode.END.opcode(),
+        }, second.toByteArray());
+    }
+
+    @Test
+    void testFloatConstantsDoNotAllocate() throws IOException {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        var allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        int instructionCount = 100_000;
+        var instructions = new ArrayList<Instruction>(instructionCount);
+        for (int i = 0; i < instructionCount; i += 4) {
+            instructions.add(NumericInstruction.f64_const(i * 0.25));
+            instructions.add(NumericInstruction.f32_const(i * 0.5f));
+            instructions.add(NumericInstruction.f32_demote_f64());
+            instructions.add(ParametricInstruction.drop());
+        }
+        var expression = new Expression(instructions);
+
+        var output = OutputStream.nullOutputStream();
+        var visitor = new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output));
+
+        // Warm up, so that the allocations of class loading and compilation aren't counted
+        for (int i = 0; i < 20; i++) {
+            expression.accept(visitor);
+        }
+
+        var threadId = Thread.currentThread().getId();
+        var before = allocations.getThreadAllocatedBytes(threadId);
+        expression.accept(visitor);
+        var allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // Anything proportional to the number of instructions would be at least a byte per instruction
+        assertThat(allocated, is(lessThan((long) instructionCount / 100)));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.ConstantExpression;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.table.TableInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.HeapType;
+import com.opencastsoftware.wasm4j.types.NumType;
+import com.opencastsoftware.wasm4j.types.RefType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class InstructionBinarySizingVisitorTest {
+    void testExpressionSize(Instruction... instructions) throws IOException {
+        var expression = Expression.of(instructions);
+
+        var output = new ByteArrayOutputStream();
+        var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+        var visitor = new InstructionBinaryEncodingVisitor(output, typeVisitor);
+        expression.accept(visitor);
+
+        var sizer = new InstructionBinarySizingVisitor(new WasmTypeBinarySizingVisitor());
+        assertEquals(output.size(), sizer.sizeOf(expression));
+    }
+
+    void testConstantExpressionSize(ConstantExpression constExpr) throws IOException {
+        var output = new ByteArrayOutputStream();
+        var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+        var visitor = new ConstantInstructionBinaryEncodingVisitor(output, typeVisitor);
+        constExpr.accept(visitor);
+
+        var sizer = new ConstantInstructionBinarySizingVisitor(new WasmTypeBinarySizingVisitor());
+        assertEquals(output.size(), sizer.sizeOf(constExpr));
+    }
+
+    @Test
+    void testEmptyExpressionSize() throws IOException {
+        testExpressionSize();
+    }
+
+    @Test
+    void testControlInstructionSize() throws IOException {
+        testExpressionSize(
+                ControlInstruction.block(
+                        ControlInstruction.loop(
+                                NumType.f64(),
+                                ControlInstruction.br(0),
+                                ControlInstruction.br_if(200)),
+                        ControlInstruction.ifInstr(
+                                HeapType.typeId(-1),
+                                List.of(ControlInstruction.call(1234567)),
+                                List.of(ControlInstruction.nop()))),
+                ControlInstruction.block(RefType.nullable(HeapType.typeId(70)), ControlInstruction.unreachable()),
+                ControlInstruction.br_table(new int[]{0, 1, 128, 16384}, 3),
+                ControlInstruction.br_on_null(1),
+                ControlInstruction.br_on_non_null(300),
+                ControlInstruction.call_indirect(1, 1000),
+                ControlInstruction.call_ref(64),
+                ControlInstruction.ret());
+    }
+
+    @Test
+    void testMemoryInstructionSize() throws IOException {
+        testExpressionSize(
+                MemoryInstruction.i32_load(0, 2),
+                MemoryInstruction.i64_load(128, 3),
+                MemoryInstruction.f32_store(Integer.MAX_VALUE, 2),
+                MemoryInstruction.f64_store(-1, 3),
+                MemoryInstruction.memory_size(),
+                MemoryInstruction.memory_grow(),
+                MemoryInstruction.memory_fill(),
+                MemoryInstruction.memory_copy(),
+                MemoryInstruction.memory_init(200),
+                MemoryInstruction.data_drop(5));
+    }
+
+    @Test
+    void testNumericInstructionSize() throws IOException {
+        testExpressionSize(
+                NumericInstruction.i32_const(-64),
+                NumericInstruction.i32_const(64),
+                NumericInstruction.i32_const(Integer.MIN_VALUE),
+                NumericInstruction.i64_const(Long.MAX_VALUE),
+                NumericInstruction.f32_const(Float.NaN),
+                NumericInstruction.f64_const(-0.0),
+                NumericInstruction.i32_add(),
+                NumericInstruction.i64_rotl(),
+                NumericInstruction.f64_copysign(),
+                NumericInstruction.i32_trunc_sat_f32_s(),
+                NumericInstruction.i64_trunc_sat_f64_u(),
+                NumericInstruction.i64_extend32_s());
+    }
+
+    @Test
+    void testOtherInstructionSize() throws IOException {
+        testExpressionSize(
+                ParametricInstruction.drop(),
+                ParametricInstruction.select(),
+                ParametricInstruction.select(RefType.nullable(HeapType.typeId(1000))),
+                ReferenceInstruction.ref_null(HeapType.extern()),
+                ReferenceInstruction.ref_func(129),
+                ReferenceInstruction.ref_is_null(),
+                ReferenceInstruction.ref_as_non_null(),
+                TableInstruction.table_get(1),
+                TableInstruction.table_copy(2, 300),
+                TableInstruction.table_init(4, 5),
+                TableInstruction.elem_drop(1 << 21),
+                VariableInstruction.local_get(127),
+                VariableInstruction.local_tee(128),
+                VariableInstruction.global_get(0),
+                VariableInstruction.global_set(1 << 14));
+    }
+
+    @Test
+    void testConstantExpressionSize() throws IOException {
+        testConstantExpressionSize(ConstantExpression.empty());
+        testConstantExpressionSize(ConstantExpression.of(
+                NumericInstruction.i32_const(-12345),
+                NumericInstruction.i64_const(Long.MIN_VALUE),
+                NumericInstruction.f32_const(1.5f),
+                NumericInstruction.f64_const(2.5),
+                ReferenceInstruction.ref_null(HeapType.typeId(300)),
+                ReferenceInstruction.ref_func(1 << 28),
+                VariableInstruction.global_get(42)));
+    }
+}
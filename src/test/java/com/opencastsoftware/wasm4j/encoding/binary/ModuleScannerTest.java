@@ -0,0 +1,138 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleScannerTest {
+    @TempDir
+    Path tmpDir;
+
+    private Module sampleModule() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+
+        return Module.builder()
+                .withImport(new Import("env", "mem", Import.Descriptor.mem(ExternType.mem(Limits.of(1)))))
+                .withImport(new Import("env", "log", Import.Descriptor.func(0)))
+                .withFunc(type, List.of(NumType.i64()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(1),
+                        NumericInstruction.i32_add()))
+                .withTable(new Table(
+                        ExternType.table(Limits.of(1), RefType.nullable(HeapType.func())),
+                        ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withMemory(ExternType.mem(Limits.of(4, 16)))
+                .withExport(new Export("f", Export.Descriptor.func(1)))
+                .withExport(new Export("m", Export.Descriptor.mem(1)))
+                .withData(new Data(new byte[10_000], Data.Mode.passive()))
+                .build();
+    }
+
+    private byte[] encode(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    @Test
+    void testScan() throws IOException {
+        var module = sampleModule();
+        var encoded = encode(module);
+        var file = Files.write(tmpDir.resolve("module.wasm"), encoded);
+
+        var summary = new ModuleScanner().scan(file);
+
+        assertEquals(module.types().size(), summary.types().size());
+        assertEquals(List.of("mem", "log"), List.of(summary.imports().get(0).name(), summary.imports().get(1).name()));
+        assertEquals(1, summary.tables().size());
+        assertEquals(4, summary.mems().get(0).limits().min());
+        assertEquals(List.of("f", "m"), List.of(summary.exports().get(0).name(), summary.exports().get(1).name()));
+
+        var ids = new ArrayList<SectionId>();
+        for (ModuleSummary.Section section : summary.sections()) {
+            ids.add(section.id());
+        }
+        assertEquals(List.of(
+                SectionId.TYPE, SectionId.IMPORT, SectionId.FUNCTION, SectionId.TABLE, SectionId.MEMORY,
+                SectionId.EXPORT, SectionId.DATA_COUNT, SectionId.CODE, SectionId.DATA), ids);
+
+        // Each section's offset and size locate its content within the file
+        var code = summary.sections().get(7);
+        var codeContent = Arrays.copyOfRange(encoded, (int) code.offset(), (int) code.offset() + code.size());
+        var expected = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeCode(expected, module.funcs());
+        var expectedBytes = expected.toByteArray();
+        assertArrayEquals(Arrays.copyOfRange(expectedBytes, expectedBytes.length - code.size(), expectedBytes.length), codeContent);
+
+        var data = summary.sections().get(8);
+        assertEquals(encoded.length, data.offset() + data.size());
+    }
+
+    @Test
+    void testScanFromPosition() throws IOException {
+        var encoded = encode(sampleModule());
+        var file = tmpDir.resolve("offset.wasm");
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            channel.write(ByteBuffer.wrap(new byte[100]));
+            channel.write(ByteBuffer.wrap(encoded));
+            channel.position(100);
+
+            var summary = new ModuleScanner().scan(channel);
+
+            assertEquals(2, summary.exports().size());
+            assertEquals(8 + 2, summary.sections().get(0).offset());
+        }
+    }
+
+    @Test
+    void testScannerIsReusable() throws IOException {
+        var scanner = new ModuleScanner();
+        var first = Files.write(tmpDir.resolve("first.wasm"), encode(sampleModule()));
+        var second = Files.write(tmpDir.resolve("second.wasm"), encode(Module.empty()));
+
+        assertEquals(9, scanner.scan(first).sections().size());
+        assertTrue(scanner.scan(second).sections().isEmpty());
+        assertEquals(2, scanner.scan(first).exports().size());
+    }
+
+    @Test
+    void testScanMalformed() throws IOException {
+        var encoded = encode(sampleModule());
+        var scanner = new ModuleScanner();
+
+        // A data section which extends beyond the end of the file
+        var truncated = Files.write(tmpDir.resolve("truncated.wasm"), Arrays.copyOf(encoded, encoded.length - 1));
+        assertThrows(IllegalArgumentException.class, () -> scanner.scan(truncated));
+
+        var badMagic = encoded.clone();
+        badMagic[1] = 0;
+        var badMagicFile = Files.write(tmpDir.resolve("magic.wasm"), badMagic);
+        assertThrows(IllegalArgumentException.class, () -> scanner.scan(badMagicFile));
+
+        var empty = Files.write(tmpDir.resolve("empty.wasm"), new byte[0]);
+        assertThrows(IllegalArgumentException.class, () -> scanner.scan(empty));
+    }
+}
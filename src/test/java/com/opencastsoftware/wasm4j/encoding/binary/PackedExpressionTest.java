@@ -0,0 +1,148 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Func;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.control.If;
+import com.opencastsoftware.wasm4j.instructions.control.Loop;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.NumType;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedExpressionTest {
+    private Expression sampleExpression() {
+        return Expression.of(
+                VariableInstruction.local_get(0),
+                ControlInstruction.ifInstr(NumType.i32(),
+                        List.of(ControlInstruction.block(NumType.i32(), List.of(NumericInstruction.i32_const(1)))),
+                        List.of(ControlInstruction.loop(List.of(ControlInstruction.br_if(0))), NumericInstruction.i32_const(2))),
+                ControlInstruction.ifInstr(List.of(ParametricInstruction.drop()), List.of()),
+                MemoryInstruction.i32_load(4, 2),
+                NumericInstruction.f64_const(Math.PI),
+                ParametricInstruction.select(NumType.i32()));
+    }
+
+    private byte[] encode(Expression expression) throws IOException {
+        var output = new ByteArrayOutputStream();
+        expression.accept(new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output)));
+        return output.toByteArray();
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        var expression = sampleExpression();
+        var packed = PackedExpression.of(expression);
+        var expected = encode(expression);
+
+        assertArrayEquals(expected, encode(packed));
+        assertEquals(expected.length, packed.encodedSize());
+        assertEquals(expected.length, new InstructionBinarySizingVisitor(new WasmTypeBinarySizingVisitor()).sizeOf(packed));
+        assertSame(packed, PackedExpression.of(packed));
+    }
+
+    @Test
+    void testInstructions() throws IOException {
+        var expression = sampleExpression();
+        var packed = PackedExpression.of(expression);
+        var instructions = packed.instructions();
+
+        assertEquals(expression.instructions().size(), instructions.size());
+        assertArrayEquals(encode(expression), encode(new Expression(new ArrayList<>(instructions))));
+
+        var ifInstr = (If) instructions.get(1);
+        assertEquals(1, ifInstr.consequent().size());
+        assertEquals(2, ifInstr.alternative().size());
+        assertInstanceOf(Loop.class, ifInstr.alternative().get(0));
+        assertTrue(((If) instructions.get(2)).alternative().isEmpty());
+
+        // Instructions which are not needed as part of the traversal are never decoded
+        assertEquals(List.of(), PackedExpression.of(Expression.empty()).instructions());
+        assertThrows(UnsupportedOperationException.class, () -> instructions.add(ParametricInstruction.drop()));
+    }
+
+    @Test
+    void testReplay() throws IOException {
+        var expression = sampleExpression();
+        var packed = PackedExpression.of(expression);
+        var output = new ByteArrayOutputStream();
+
+        packed.replay(new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output)));
+
+        assertArrayEquals(encode(expression), output.toByteArray());
+    }
+
+    @Test
+    void testDecodeMalformed() {
+        var unexpectedElse = ByteBuffer.wrap(new byte[]{0x02, 0x40, 0x05, 0x0B, 0x0B});
+        var e = assertThrows(IllegalArgumentException.class, () -> PackedExpression.decode(unexpectedElse));
+        assertEquals("Unexpected else at offset 2", e.getMessage());
+
+        var secondElse = ByteBuffer.wrap(new byte[]{0x41, 0x00, 0x04, 0x40, 0x05, 0x05, 0x0B, 0x0B});
+        assertThrows(IllegalArgumentException.class, () -> PackedExpression.decode(secondElse));
+
+        var unterminated = ByteBuffer.wrap(new byte[]{0x02, 0x40, 0x0B});
+        assertThrows(RuntimeException.class, () -> PackedExpression.decode(unterminated));
+    }
+
+    @Test
+    void testDecodePackedBodies() throws IOException {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+        var module = Module.builder()
+                .withFunc(type, List.of(NumType.i64()), sampleExpression())
+                .withFunc(type, List.of(), Expression.of(VariableInstruction.local_get(0)))
+                .build();
+
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        var encoded = output.toByteArray();
+
+        var decoded = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.PACKED).decodeModule(ByteBuffer.wrap(encoded));
+
+        for (Func func : decoded.funcs()) {
+            assertInstanceOf(PackedExpression.class, func.body());
+        }
+
+        var reencoded = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(reencoded, decoded);
+        assertArrayEquals(encoded, reencoded.toByteArray());
+    }
+
+    @Test
+    void testFootprint() {
+        var instructions = new ArrayList<Instruction>();
+        for (int i = 0; i < 1000; i++) {
+            instructions.add(ControlInstruction.block(List.of(
+                    VariableInstruction.local_get(i),
+                    NumericInstruction.i32_const(i),
+                    NumericInstruction.i32_add(),
+                    MemoryInstruction.i32_store(i, 2),
+                    ControlInstruction.br_if(0))));
+        }
+        var expression = new Expression(instructions);
+        var packed = PackedExpression.of(expression);
+
+        long expressionSize = GraphLayout.parseInstance(expression).totalSize();
+        long packedSize = GraphLayout.parseInstance(packed).totalSize();
+
+        assertTrue(packedSize * 4 < expressionSize, "Packed size " + packedSize + " vs " + expressionSize);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.FlatInstructionVisitor;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingModuleParserTest {
+    private Module sampleModule() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+
+        return Module.builder()
+                .withImport(new Import("env", "mem", Import.Descriptor.mem(ExternType.mem(Limits.of(1)))))
+                .withFunc(type, List.of(NumType.i64(), NumType.i64(), NumType.f32()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.ifInstr(NumType.i32(),
+                                List.of(ControlInstruction.block(NumType.i32(), List.of(NumericInstruction.i32_const(1)))),
+                                List.of(ControlInstruction.loop(List.of(ControlInstruction.br_if(0))), NumericInstruction.i32_const(2))),
+                        MemoryInstruction.i32_load(4, 2),
+                        ParametricInstruction.select(NumType.i32())))
+                .withFunc(type, List.of(), Expression.of(
+                        NumericInstruction.f64_const(Math.PI),
+                        ParametricInstruction.drop(),
+                        VariableInstruction.local_get(0)))
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(42))))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .withExport(new Export("g", Export.Descriptor.func(1)))
+                .withElem(new Elem(
+                        RefType.nullable(HeapType.func()),
+                        List.of(ConstantExpression.of(ReferenceInstruction.ref_func(0))),
+                        Elem.Mode.declarative()))
+                .withData(new Data(new byte[]{1, 2, 3}, Data.Mode.passive()))
+                .build();
+    }
+
+    private byte[] encode(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    // Re-encodes each function from the parser's events
+    private static class RecordingVisitor implements StreamingModuleVisitor<IOException> {
+        final List<String> events = new ArrayList<>();
+        final List<byte[]> funcs = new ArrayList<>();
+        final boolean visitBodies;
+
+        private ByteArrayOutputStream output;
+
+        RecordingVisitor(boolean visitBodies) {
+            this.visitBodies = visitBodies;
+        }
+
+        @Override
+        public void visitSection(SectionId sectionId, long offset, int size) {
+            events.add("section " + sectionId);
+        }
+
+        @Override
+        public void visitType(int typeIndex, FuncType type) {
+            events.add("type " + typeIndex);
+        }
+
+        @Override
+        public void visitImport(Import imp) {
+            events.add("import " + imp.name());
+        }
+
+        @Override
+        public void visitExport(Export export) {
+            events.add("export " + export.name());
+        }
+
+        @Override
+        public void visitData(Data data) {
+            events.add("data " + data.initLength());
+        }
+
+        @Override
+        public void visitCustomSection(CustomSection section) {
+            events.add("custom " + section.name());
+        }
+
+        @Override
+        public @Nullable FlatInstructionVisitor<IOException> visitFuncStart(int funcIndex, int typeIndex, List<Locals> locals) throws IOException {
+            events.add("func " + funcIndex);
+
+            if (!visitBodies) {
+                return null;
+            }
+
+            output = new ByteArrayOutputStream();
+            var typeVisitor = new WasmTypeBinaryEncodingVisitor(output);
+
+            LEB128.writeUnsigned(output, locals.size());
+            for (Locals run : locals) {
+                LEB128.writeUnsigned(output, run.count());
+                run.type().accept(typeVisitor);
+            }
+
+            return new InstructionBinaryEncodingVisitor(output, typeVisitor);
+        }
+
+        @Override
+        public void visitFuncEnd(int funcIndex) {
+            events.add("end " + funcIndex);
+            if (visitBodies) {
+                funcs.add(output.toByteArray());
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            events.add("end");
+        }
+    }
+
+    private RecordingVisitor parse(byte[] input, int chunkSize, boolean visitBodies) throws IOException {
+        var visitor = new RecordingVisitor(visitBodies);
+        var parser = new StreamingModuleParser<>(visitor);
+
+        for (int offset = 0; offset < input.length; offset += chunkSize) {
+            parser.feed(ByteBuffer.wrap(input, offset, Math.min(chunkSize, input.length - offset)));
+        }
+
+        parser.finish();
+        assertEquals(input.length, parser.offset());
+
+        return visitor;
+    }
+
+    @Test
+    void testParseInChunks() throws IOException {
+        var module = sampleModule();
+        var input = encode(module);
+
+        var expectedFuncs = new ArrayList<byte[]>();
+        for (Func func : module.funcs()) {
+            var output = new ByteArrayOutputStream();
+            new WasmBinaryEncoder().encodeFunc(output, func);
+            expectedFuncs.add(output.toByteArray());
+        }
+
+        var expectedEvents = new ArrayList<String>();
+        expectedEvents.add("section TYPE");
+        for (int i = 0; i < module.types().size(); i++) {
+            expectedEvents.add("type " + i);
+        }
+        expectedEvents.addAll(List.of(
+                "section IMPORT", "import mem",
+                "section FUNCTION",
+                "section GLOBAL",
+                "section EXPORT", "export f", "export g",
+                "section ELEMENT",
+                "section DATA_COUNT",
+                "section CODE", "func 0", "end 0", "func 1", "end 1",
+                "section DATA", "data 3",
+                "end"));
+
+        for (int chunkSize : new int[]{1, 2, 7, 64, input.length}) {
+            var visitor = parse(input, chunkSize, true);
+
+            assertEquals(expectedEvents, visitor.events);
+            assertEquals(expectedFuncs.size(), visitor.funcs.size());
+            for (int i = 0; i < expectedFuncs.size(); i++) {
+                assertArrayEquals(expectedFuncs.get(i), visitor.funcs.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testSkipBodies() throws IOException {
+        var visitor = parse(encode(sampleModule()), 5, false);
+
+        assertTrue(visitor.events.contains("func 1"));
+        assertTrue(visitor.funcs.isEmpty());
+    }
+
+    @Test
+    void testParseCustomSections() throws IOException {
+        var input = new ByteArrayOutputStream();
+        input.writeBytes(encode(Module.empty()));
+        input.writeBytes(new byte[]{0x00, 0x03, 0x02, 'h', 'i'});
+
+        var visitor = parse(input.toByteArray(), 1, true);
+
+        assertEquals(List.of("section CUSTOM", "custom hi", "end"), visitor.events);
+    }
+
+    @Test
+    void testIncompleteInput() throws IOException {
+        var input = encode(sampleModule());
+        var parser = new StreamingModuleParser<>(new RecordingVisitor(true));
+
+        parser.feed(ByteBuffer.wrap(input, 0, input.length - 1));
+
+        var e = assertThrows(IllegalArgumentException.class, parser::finish);
+        assertEquals("Unexpected end of input at offset " + (input.length - 1), e.getMessage());
+    }
+
+    @Test
+    void testMalformedBody() throws IOException {
+        var input = new ByteArrayOutputStream();
+        input.writeBytes(encode(Module.empty()));
+        input.writeBytes(new byte[]{0x01, 0x04, 0x01, 0x60, 0x00, 0x00});
+        input.writeBytes(new byte[]{0x03, 0x02, 0x01, 0x00});
+        input.writeBytes(new byte[]{0x0A, 0x06, 0x01, 0x04, 0x00, 0x05, 0x0B, 0x0B});
+
+        var parser = new StreamingModuleParser<>(new RecordingVisitor(true));
+
+        var e = assertThrows(IllegalArgumentException.class, () -> parser.feed(ByteBuffer.wrap(input.toByteArray())));
+        assertEquals("Malformed body of function 0 at offset 21", e.getMessage());
+        assertEquals("Unexpected else at offset 23", e.getCause().getMessage());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.Limits;
+import com.opencastsoftware.wasm4j.types.NumType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingModuleWriterTest {
+    @TempDir
+    Path tmpDir;
+
+    private Module header() {
+        return Module.builder()
+                .withType(ExternType.func(List.of(NumType.i32()), List.of(NumType.i32())))
+                .withType(ExternType.func(List.of(), List.of()))
+                .withMemory(ExternType.mem(Limits.of(1)))
+                .withExport(new Export("f0", Export.Descriptor.func(0)))
+                .withData(new Data(new byte[]{1, 2, 3, 4}, Data.Mode.passive()))
+                .build();
+    }
+
+    private List<Func> funcs(int count) {
+        var funcs = new ArrayList<Func>(count);
+
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                funcs.add(new Func(0, List.of(NumType.i64()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(i),
+                        NumericInstruction.i32_add())));
+            } else {
+                funcs.add(new Func(1, List.of(), Expression.of()));
+            }
+        }
+
+        return funcs;
+    }
+
+    private byte[] expectedEncoding(Module header, List<Func> funcs) throws IOException {
+        var encoder = new WasmBinaryEncoder();
+        var output = new ByteArrayOutputStream();
+
+        encoder.encodeMagic(output);
+        encoder.encodeVersion(output);
+        encoder.encodeTypes(output, header.types());
+        encoder.encodeImports(output, header.imports());
+        encoder.encodeFunctions(output, funcs);
+        encoder.encodeTables(output, header.tables());
+        encoder.encodeMemories(output, header.mems());
+        encoder.encodeGlobals(output, header.globals());
+        encoder.encodeExports(output, header.exports());
+        encoder.encodeStart(output, header.start());
+        encoder.encodeElems(output, header.elems());
+        encoder.encodeDataCount(output, header.datas());
+
+        // The streaming writer pads the code section size to its maximum length
+        var code = new ByteArrayOutputStream();
+        encoder.encodeCode(code, funcs);
+        var codeBytes = code.toByteArray();
+        var codeSize = LEB128.decodeUnsignedInt(codeBytes, 1);
+        var padded = new byte[LEB128.MAX_INT_LENGTH];
+        LEB128.writeUnsignedPadded(padded, 0, LEB128.decodedValue(codeSize), padded.length);
+
+        output.write(SectionId.CODE.id());
+        output.write(padded);
+        output.write(codeBytes, 1 + LEB128.decodedLength(codeSize), codeBytes.length - 1 - LEB128.decodedLength(codeSize));
+
+        encoder.encodeData(output, header.datas());
+
+        return output.toByteArray();
+    }
+
+    private int[] typeIndices(List<Func> funcs) {
+        return funcs.stream().mapToInt(Func::typeIndex).toArray();
+    }
+
+    @Test
+    void writesFunctionsOneByOne() throws IOException {
+        var header = header();
+        var funcs = funcs(1000);
+        var wasmFile = tmpDir.resolve("streamed.wasm");
+
+        try (var channel = FileChannel.open(wasmFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var writer = new StreamingModuleWriter(channel, header, typeIndices(funcs));
+            for (Func func : funcs) {
+                writer.writeFunc(func);
+            }
+            writer.finish();
+        }
+
+        assertArrayEquals(expectedEncoding(header, funcs), Files.readAllBytes(wasmFile));
+    }
+
+    @Test
+    void writesModuleWithoutFunctions() throws IOException {
+        var header = header();
+        var wasmFile = tmpDir.resolve("empty.wasm");
+
+        try (var channel = FileChannel.open(wasmFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            new StreamingModuleWriter(channel, header, new int[0]).finish();
+        }
+
+        var expected = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(expected, header);
+
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(wasmFile));
+    }
+
+    @Test
+    void rejectsUnexpectedFunctions() throws IOException {
+        var wasmFile = tmpDir.resolve("invalid.wasm");
+
+        try (var channel = FileChannel.open(wasmFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var writer = new StreamingModuleWriter(channel, header(), new int[]{0, 1});
+            var funcs = funcs(2);
+
+            // Type index mismatch
+            assertThrows(IllegalArgumentException.class, () -> writer.writeFunc(funcs.get(1)));
+
+            writer.writeFunc(funcs.get(0));
+
+            // Not all functions have been written
+            assertThrows(IllegalStateException.class, writer::finish);
+
+            writer.writeFunc(funcs.get(1));
+
+            // Too many functions
+            assertThrows(IllegalStateException.class, () -> writer.writeFunc(funcs.get(1)));
+
+            writer.finish();
+        }
+    }
+
+    @Test
+    void rejectsHeaderWithFunctionBodies() throws IOException {
+        var wasmFile = tmpDir.resolve("invalid.wasm");
+        var header = Module.builder()
+                .withFunc(ExternType.func(List.of(), List.of()), Expression.of())
+                .build();
+
+        try (var channel = FileChannel.open(wasmFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            assertThrows(IllegalArgumentException.class, () -> new StreamingModuleWriter(channel, header, new int[]{0}));
+        }
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.control.If;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.RefFunc;
+import com.opencastsoftware.wasm4j.instructions.reference.RefNull;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.table.TableInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WasmBinaryDecoderTest {
+    private final WasmBinaryDecoder decoder = new WasmBinaryDecoder();
+
+    private Module sampleModule() {
+        var type = ExternType.func(List.of(NumType.i32(), NumType.i64()), List.of(NumType.i32()));
+
+        return Module.builder()
+                .withImport(new Import("env", "mem", Import.Descriptor.mem(ExternType.mem(Limits.of(1)))))
+                .withImport(new Import("env", "tbl", Import.Descriptor.table(ExternType.table(Limits.of(1, 2), RefType.nullable(HeapType.extern())))))
+                .withImport(new Import("env", "g", Import.Descriptor.global(GlobalType.immutable(NumType.f64()))))
+                .withImport(new Import("env", "ƒ", Import.Descriptor.func(0)))
+                .withFunc(type, List.of(NumType.i64(), NumType.i64(), NumType.f32(), VecType.v128()), Expression.of(
+                        ControlInstruction.block(NumType.i32(), List.of(
+                                ControlInstruction.loop(HeapType.typeId(0), List.of(
+                                        ControlInstruction.br(1),
+                                        ControlInstruction.br_if(0),
+                                        ControlInstruction.br_table(new int[]{0, 1, 200}, 1))),
+                                ControlInstruction.ifInstr(RefType.nullable(HeapType.func()),
+                                        List.of(ControlInstruction.nop(), ControlInstruction.br_on_null(0)),
+                                        List.of(ControlInstruction.unreachable(), ControlInstruction.br_on_non_null(0))),
+                                ControlInstruction.call(300),
+                                ControlInstruction.call_indirect(2, 0),
+                                ControlInstruction.call_ref(0),
+                                ControlInstruction.ret())),
+                        ParametricInstruction.drop(),
+                        ParametricInstruction.select(),
+                        ParametricInstruction.select(NumType.f64()),
+                        VariableInstruction.local_get(0),
+                        VariableInstruction.local_set(1),
+                        VariableInstruction.local_tee(2),
+                        VariableInstruction.global_get(0),
+                        VariableInstruction.global_set(1),
+                        TableInstruction.table_get(0),
+                        TableInstruction.table_set(1),
+                        TableInstruction.table_size(0),
+                        TableInstruction.table_grow(0),
+                        TableInstruction.table_fill(0),
+                        TableInstruction.table_copy(1, 0),
+                        TableInstruction.table_init(1, 0),
+                        TableInstruction.elem_drop(0),
+                        MemoryInstruction.i32_load(4, 2),
+                        MemoryInstruction.i64_load(8, 3),
+                        MemoryInstruction.f32_load(12, 2),
+                        MemoryInstruction.f64_load(1 << 20, 3),
+                        MemoryInstruction.i32_store(4, 2),
+                        MemoryInstruction.i64_store(8, 3),
+                        MemoryInstruction.f32_store(12, 2),
+                        MemoryInstruction.f64_store(16, 3),
+                        MemoryInstruction.memory_size(),
+                        MemoryInstruction.memory_grow(),
+                        MemoryInstruction.memory_fill(),
+                        MemoryInstruction.memory_copy(),
+                        MemoryInstruction.memory_init(0),
+                        MemoryInstruction.data_drop(0),
+                        NumericInstruction.i32_const(Integer.MIN_VALUE),
+                        NumericInstruction.i64_const(Long.MAX_VALUE),
+                        NumericInstruction.f32_const(Float.intBitsToFloat(0x7FA00001)),
+                        NumericInstruction.f64_const(-0.0),
+                        NumericInstruction.i32_add(),
+                        NumericInstruction.i64_rotr(),
+                        NumericInstruction.f32_copysign(),
+                        NumericInstruction.f64_nearest(),
+                        NumericInstruction.i32_eqz(),
+                        NumericInstruction.i64_ge_u(),
+                        NumericInstruction.f64_ne(),
+                        NumericInstruction.i64_extend32_s(),
+                        NumericInstruction.i32_trunc_sat_f32_s(),
+                        NumericInstruction.i64_trunc_sat_f64_u(),
+                        NumericInstruction.f64_reinterpret_i64(),
+                        ReferenceInstruction.ref_null(HeapType.extern()),
+                        ReferenceInstruction.ref_null(HeapType.typeId(130)),
+                        ReferenceInstruction.ref_func(1),
+                        ReferenceInstruction.ref_is_null(),
+                        ReferenceInstruction.ref_as_non_null()))
+                .withTable(new Table(
+                        ExternType.table(Limits.of(1), RefType.nullable(HeapType.func())),
+                        ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withMemory(ExternType.mem(Limits.of(4, 16)))
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(42))))
+                .withGlobal(new Global(GlobalType.immutable(NumType.f32()), ConstantExpression.of(NumericInstruction.f32_const(1.5f))))
+                .withExport(new Export("f", Export.Descriptor.func(1)))
+                .withExport(new Export("t", Export.Descriptor.table(0)))
+                .withExport(new Export("m", Export.Descriptor.mem(0)))
+                .withExport(new Export("g", Export.Descriptor.global(0)))
+                .withStart(1)
+                .withElem(new Elem(
+                        RefType.nullable(HeapType.func()),
+                        List.of(ConstantExpression.of(ReferenceInstruction.ref_func(1))),
+                        Elem.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .withElem(new Elem(RefType.heapFunc(), List.of(), Elem.Mode.passive()))
+                .withElem(new Elem(RefType.heapFunc(), List.of(ConstantExpression.of(VariableInstruction.global_get(0))), Elem.Mode.declarative()))
+                .withData(new Data(new byte[]{1, 2, 3}, Data.Mode.passive()))
+                .withData(new Data(new byte[300], Data.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(16)))))
+                .withData(new Data(new byte[]{4}, Data.Mode.active(1, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .build();
+    }
+
+    private byte[] encode(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        var output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.writeBytes(part);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] header() {
+        return concat(WasmBinaryEncoder.WASM_MAGIC, WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION);
+    }
+
+    private static byte[] bytes(int... values) {
+        var bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    void testOpcodeLookup() {
+        for (Opcode opcode : Opcode.values()) {
+            var bytes = opcode.bytes();
+            if (bytes.length == 1) {
+                assertSame(opcode, Opcode.fromByte(bytes[0]));
+            } else {
+                assertSame(opcode, Opcode.fromPrefixed(bytes[0], LEB128.readUnsignedInt(bytes, 1)));
+            }
+        }
+
+        assertNull(Opcode.fromByte(0x06));
+        assertNull(Opcode.fromByte(0xFC));
+        assertNull(Opcode.fromPrefixed(0xFC, 0x12));
+        assertNull(Opcode.fromPrefixed(0xFC, 1000));
+    }
+
+    @Test
+    void testDecodeEmptyModule() throws IOException {
+        var module = decoder.decodeModule(ByteBuffer.wrap(encode(Module.empty())));
+
+        assertTrue(module.types().isEmpty());
+        assertTrue(module.funcs().isEmpty());
+        assertNull(module.start());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        var encoded = encode(sampleModule());
+        var module = decoder.decodeModule(ByteBuffer.wrap(encoded));
+
+        assertArrayEquals(encoded, encode(module));
+
+        assertEquals(1, module.types().size());
+        assertEquals(4, module.imports().size());
+        assertEquals("ƒ", module.imports().get(3).name());
+        assertEquals(1, module.funcs().size());
+        assertEquals(List.of(NumType.i64(), NumType.i64(), NumType.f32(), VecType.v128()), module.funcs().get(0).locals());
+        assertEquals(Integer.valueOf(1), module.start());
+        assertEquals(3, module.elems().size());
+        assertEquals(3, module.datas().size());
+    }
+
+    @Test
+    void testDecodedValuesAreShared() throws IOException {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(RefType.nullable(HeapType.func())));
+        var module = Module.builder()
+                .withFunc(type, List.of(), Expression.of(VariableInstruction.local_get(0), ReferenceInstruction.ref_null(HeapType.func())))
+                .withFunc(type, List.of(), Expression.of(VariableInstruction.local_get(0), ReferenceInstruction.ref_null(HeapType.func())))
+                .build();
+
+        var decoded = decoder.decodeModule(ByteBuffer.wrap(encode(module)));
+
+        // Identical types and small immediates decode to the same instances
+        var types = decoded.types();
+        assertSame(types.get(0), types.get(types.size() - 1));
+        assertSame(RefType.nullable(HeapType.func()), types.get(0).results().get(0));
+        assertSame(
+                decoded.funcs().get(0).body().instructions().get(0),
+                decoded.funcs().get(1).body().instructions().get(0));
+    }
+
+    @Test
+    void testRoundTripFromDirectBuffer() throws IOException {
+        var encoded = encode(sampleModule());
+        var input = ByteBuffer.allocateDirect(encoded.length + 3);
+        input.put(new byte[3]).put(encoded).flip().position(3);
+
+        var module = decoder.decodeModule(input);
+
+        assertArrayEquals(encoded, encode(module));
+        // The input buffer is left untouched
+        assertEquals(3, input.position());
+    }
+
+    @Test
+    void testDataIsAViewOfTheInput() throws IOException {
+        var encoded = encode(sampleModule());
+        var input = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+
+        var data = decoder.decodeModule(input).datas().get(1);
+
+        assertEquals(300, data.initLength());
+        assertTrue(data.initBuffer().isDirect());
+        assertTrue(data.initBuffer().isReadOnly());
+
+        // Changes to the input are visible until the payload is copied
+        // The payload is followed by the final segment, which is 7 bytes long
+        int payloadOffset = encoded.length - 7 - 300;
+        input.put(payloadOffset, (byte) 7);
+        assertEquals(7, data.initBuffer().get(0));
+        assertEquals(7, data.init()[0]);
+
+        input.put(payloadOffset, (byte) 8);
+        assertEquals(7, data.init()[0]);
+        assertEquals(7, data.initBuffer().get(0));
+    }
+
+    @Test
+    void testDecodeCustomSections() throws IOException {
+        var name = "name".getBytes(StandardCharsets.UTF_8);
+        var content = bytes(1, 2, 3, 4);
+        var input = concat(
+                header(),
+                bytes(SectionId.CUSTOM.id(), 1 + name.length + content.length, name.length), name, content,
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.CUSTOM.id(), 0x02, 0x01, 'x'));
+
+        var module = decoder.decodeModule(ByteBuffer.wrap(input));
+        assertEquals(1, module.types().size());
+
+        var sections = decoder.decodeCustomSections(ByteBuffer.wrap(input));
+        assertEquals(2, sections.size());
+        assertEquals("name", sections.get(0).name());
+        assertEquals(ByteBuffer.wrap(content), sections.get(0).content());
+        assertEquals("x", sections.get(1).name());
+        assertEquals(0, sections.get(1).content().remaining());
+
+        // The content is a view of the input
+        input[WasmBinaryEncoder.WASM_MAGIC.length + WasmBinaryEncoder.WASM_BINARY_FORMAT_VERSION.length + 3 + name.length] = 9;
+        assertEquals(9, sections.get(0).content().get(0));
+    }
+
+    @Test
+    void testDecodeStandardForms() {
+        var input = concat(
+                header(),
+                // One function type () -> ()
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                // A table without an initializer
+                bytes(SectionId.TABLE.id(), 0x04, 0x01, 0x70, 0x00, 0x01),
+                bytes(SectionId.MEMORY.id(), 0x03, 0x01, 0x00, 0x01),
+                // An active segment of function indices for table 0
+                bytes(SectionId.ELEMENT.id(), 0x07, 0x01, 0x00, 0x41, 0x00, 0x0B, 0x01, 0x00),
+                bytes(SectionId.DATA_COUNT.id(), 0x01, 0x01),
+                // An if without an else
+                bytes(SectionId.CODE.id(), 0x0A, 0x01, 0x08, 0x00, 0x41, 0x01, 0x04, 0x40, 0x01, 0x0B, 0x0B),
+                // An active segment with an explicit memory index
+                bytes(SectionId.DATA.id(), 0x08, 0x01, 0x02, 0x00, 0x41, 0x00, 0x0B, 0x01, 0x2A));
+
+        var module = decoder.decodeModule(ByteBuffer.wrap(input));
+
+        var table = module.tables().get(0);
+        assertEquals(HeapType.func(), table.type().refType().heapType());
+        assertEquals(HeapType.func(), ((RefNull) table.init().instructions().get(0)).heapType());
+
+        var elem = module.elems().get(0);
+        assertEquals(RefType.nullable(HeapType.func()), elem.type());
+        assertEquals(0, ((RefFunc) elem.init().get(0).instructions().get(0)).funcIndex());
+        assertEquals(0, ((Elem.Mode.Active) elem.mode()).tableIndex());
+
+        var ifInstr = (If) module.funcs().get(0).body().instructions().get(1);
+        assertEquals(1, ifInstr.consequent().size());
+        assertTrue(ifInstr.alternative().isEmpty());
+
+        var data = module.datas().get(0);
+        assertEquals(0, ((Data.Mode.Active) data.mode()).memIndex());
+        assertArrayEquals(bytes(0x2A), data.init());
+    }
+
+    @Test
+    void testShortFormReferenceTypesAreNullable() {
+        // (module (type (func)) (func) (table 1 funcref) (elem (i32.const 0) 0))
+        var input = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                bytes(SectionId.TABLE.id(), 0x04, 0x01, 0x70, 0x00, 0x01),
+                bytes(SectionId.ELEMENT.id(), 0x07, 0x01, 0x00, 0x41, 0x00, 0x0B, 0x01, 0x00),
+                bytes(SectionId.CODE.id(), 0x04, 0x01, 0x02, 0x00, 0x0B));
+
+        var module = decoder.decodeModule(ByteBuffer.wrap(input));
+        assertEquals(RefType.nullable(HeapType.func()), module.tables().get(0).type().refType());
+        assertEquals(RefType.nullable(HeapType.func()), module.elems().get(0).type());
+
+        // Tables without an initializer are filled with null references, which a non-nullable table cannot hold
+        var nonNullable = concat(
+                header(),
+                bytes(SectionId.TABLE.id(), 0x05, 0x01, 0x64, 0x70, 0x00, 0x01));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(nonNullable)));
+    }
+
+    @Test
+    void testRejectsMalformedModules() throws IOException {
+        var encoded = encode(sampleModule());
+
+        // Bad magic number
+        var badMagic = encoded.clone();
+        badMagic[0] = 1;
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(badMagic)));
+
+        // Truncated at every length
+        for (int length = 0; length < encoded.length; length += 7) {
+            var truncated = Arrays.copyOf(encoded, length);
+            if (length != 8) {
+                assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(truncated)));
+            }
+        }
+
+        // Sections out of order
+        var outOfOrder = concat(
+                header(),
+                bytes(SectionId.MEMORY.id(), 0x03, 0x01, 0x00, 0x01),
+                bytes(SectionId.TYPE.id(), 0x01, 0x00));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(outOfOrder)));
+
+        // A function without a body
+        var missingCode = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(missingCode)));
+
+        // An unknown opcode
+        var unknownOpcode = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                bytes(SectionId.CODE.id(), 0x05, 0x01, 0x03, 0x00, 0x06, 0x0B));
+        var e = assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(unknownOpcode)));
+        assertEquals("Unknown opcode 0x6 at offset 23", e.getMessage());
+
+        // A section whose content is shorter than its size
+        var sizeMismatch = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x05, 0x01, 0x60, 0x00, 0x00, 0x00));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(sizeMismatch)));
+
+        // A vector length larger than the input
+        var hugeVector = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x05, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(hugeVector)));
+    }
+
+    private byte[] encodeFunc(Func func) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeFunc(output, func);
+        return output.toByteArray();
+    }
+
+    @Test
+    void testLazyBodyDecoding() throws IOException {
+        var encoded = encode(sampleModule());
+        var eager = decoder.decodeModule(ByteBuffer.wrap(encoded)).funcs().get(0);
+        var module = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY).decodeModule(ByteBuffer.wrap(encoded));
+
+        var func = (LazyFunc) module.funcs().get(0);
+        assertEquals(eager.typeIndex(), func.typeIndex());
+        assertFalse(func.isDecoded());
+
+        // Lazy functions are re-encoded from their original bytes
+        assertArrayEquals(encoded, encode(module));
+        assertEquals(encodeFunc(eager).length, func.length());
+        assertFalse(func.isDecoded());
+
+        assertEquals(eager.locals(), func.locals());
+        assertTrue(func.isDecoded());
+        assertSame(func.body(), func.body());
+        assertArrayEquals(encodeFunc(eager), encodeFunc(new Func(func.typeIndex(), func.locals(), func.body())));
+    }
+
+    @Test
+    void testSoftLazyBodyDecoding() throws IOException {
+        var encoded = encode(sampleModule());
+        var eager = decoder.decodeModule(ByteBuffer.wrap(encoded)).funcs().get(0);
+        var input = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+        var module = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY_SOFT).decodeModule(input);
+
+        var func = (LazyFunc) module.funcs().get(0);
+        assertFalse(func.isDecoded());
+        assertTrue(func.code().isDirect());
+
+        var body = func.body();
+        assertArrayEquals(encodeFunc(eager), encodeFunc(new Func(func.typeIndex(), func.locals(), body)));
+        assertArrayEquals(encoded, encode(module));
+    }
+
+    @Test
+    void testLazyBodyReplay() throws IOException {
+        var encoded = encode(sampleModule());
+        var eager = decoder.decodeModule(ByteBuffer.wrap(encoded)).funcs().get(0);
+        var module = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY).decodeModule(ByteBuffer.wrap(encoded));
+        var func = (LazyFunc) module.funcs().get(0);
+
+        var output = new ByteArrayOutputStream();
+        func.replayBody(new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output)));
+
+        var packed = PackedExpression.of(eager.body()).code();
+        var expected = new byte[packed.remaining()];
+        packed.get(expected);
+
+        assertArrayEquals(expected, output.toByteArray());
+        assertEquals(eager.compressedLocals(), func.decodeLocals());
+        assertFalse(func.isDecoded());
+
+        // Errors in the body are reported by replaying it, as they are by decoding it
+        var input = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                bytes(SectionId.CODE.id(), 0x06, 0x01, 0x04, 0x00, 0x0B, 0x01, 0x0B));
+        var trailing = (LazyFunc) new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY).decodeModule(ByteBuffer.wrap(input)).funcs().get(0);
+        var discarded = new ByteArrayOutputStream();
+        var e = assertThrows(IllegalArgumentException.class, () -> trailing.replayBody(new InstructionBinaryEncodingVisitor(discarded, new WasmTypeBinaryEncodingVisitor(discarded))));
+        assertEquals("Size mismatch in function body at offset 22", e.getMessage());
+    }
+
+    @Test
+    void testLazyBodyErrorsAreReportedOnAccess() {
+        var input = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                bytes(SectionId.CODE.id(), 0x05, 0x01, 0x03, 0x00, 0x06, 0x0B));
+
+        var module = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY).decodeModule(ByteBuffer.wrap(input));
+
+        var e = assertThrows(IllegalArgumentException.class, () -> module.funcs().get(0).body());
+        assertEquals("Unknown opcode 0x6 at offset 23", e.getMessage());
+
+        // A code entry which ends before its body does
+        var truncated = concat(
+                header(),
+                bytes(SectionId.TYPE.id(), 0x04, 0x01, 0x60, 0x00, 0x00),
+                bytes(SectionId.FUNCTION.id(), 0x02, 0x01, 0x00),
+                bytes(SectionId.CODE.id(), 0x04, 0x01, 0x02, 0x00, 0x01));
+        var unterminated = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY).decodeModule(ByteBuffer.wrap(truncated));
+        assertThrows(IllegalArgumentException.class, () -> unterminated.funcs().get(0).body());
+    }
+
+    private Module manyFuncsModule(int funcCount) {
+        var builder = Module.builder();
+        var type = ExternType.func(List.of(NumType.i32()), List.of());
+
+        for (int i = 0; i < funcCount; i++) {
+            if (i % 50 == 0) {
+                builder.withFunc(type, Expression.of(ControlInstruction.nop()));
+            } else {
+                builder.withFunc(type, List.of(NumType.i64()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(i),
+                        NumericInstruction.i32_add(),
+                        ParametricInstruction.drop()));
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Test
+    void testParallelDecoding() throws IOException {
+        var encoded = encode(manyFuncsModule(1000));
+        var module = new WasmBinaryDecoder(ForkJoinPool.commonPool()).decodeModule(ByteBuffer.wrap(encoded));
+
+        assertEquals(1000, module.funcs().size());
+        assertArrayEquals(encoded, encode(module));
+    }
+
+    @Test
+    void testParallelDecodingReportsTheFirstMalformedFunction() throws IOException {
+        var encoded = encode(manyFuncsModule(300));
+
+        // Replace the nop in each function whose body is only a nop with an unknown opcode
+        var nopEntry = bytes(0x03, 0x00, Opcode.NOP.opcode(), Opcode.END.opcode());
+        for (int i = 0; i + nopEntry.length <= encoded.length; i++) {
+            if (Arrays.equals(encoded, i, i + nopEntry.length, nopEntry, 0, nopEntry.length)) {
+                encoded[i + 2] = 0x06;
+            }
+        }
+
+        var sequential = assertThrows(IllegalArgumentException.class, () -> decoder.decodeModule(ByteBuffer.wrap(encoded)));
+        var parallel = assertThrows(IllegalArgumentException.class,
+                () -> new WasmBinaryDecoder(ForkJoinPool.commonPool()).decodeModule(ByteBuffer.wrap(encoded)));
+
+        assertEquals(sequential.getMessage(), parallel.getMessage());
+    }
+}
@@ -11,15 +11,32 @@ import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
 import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
 import com.opencastsoftware.wasm4j.types.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class WasmBinaryEncoderTest {
+    @TempDir
+    Path tmpDir;
+
     @Test
     void testEncodeMagic() throws IOException {
         var encoder = new WasmBinaryEncoder();
@@ -86,7 +103,7 @@ class WasmBinaryEncoderTest {
 
         encoder.encodeImports(output, List.of(
                 new Import("A", "a", Import.Descriptor.func(16)),
-                new Import("B", "b", Import.Descriptor.table(ExternType.table(Limits.of(1), RefType.heapExtern()))),
+                new Import("B", "b", Import.Descriptor.table(ExternType.table(Limits.of(1), RefType.nullable(HeapType.extern())))),
                 new Import("C", "c", Import.Descriptor.mem(ExternType.mem(Limits.of(1, 5)))),
                 new Import("D", "d", Import.Descriptor.global(ExternType.global(false, NumType.i32())))
         ));
@@ -191,12 +208,12 @@ class WasmBinaryEncoderTest {
                 // Section ID
                 SectionId.TABLE.id(),
                 // Section size (LEB128 u32)
-                0x14,
+                0x13,
                 // Tables vec length (LEB128 u32)
                 0x02,
                 // Entry 1
                 0x40, 0x00, // Table definition prolog
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(), // Nullable heap function reference type
+                TypeOpcode.HEAP_FUNC.opcode(), // Ref type shorthand for nullable function references
                 0x00, 0x01, // Limits
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_FUNC.opcode(), Opcode.END.opcode(), // Initializer expression
                 // Entry 2
@@ -262,7 +279,7 @@ class WasmBinaryEncoderTest {
                 // Section ID
                 SectionId.GLOBAL.id(),
                 // Section size (LEB128 u32)
-                0x18,
+                0x17,
                 // Globals vec length (LEB128 u32)
                 0x03,
                 // Entry 1
@@ -275,7 +292,7 @@ class WasmBinaryEncoderTest {
                 (byte) 0xB8, (byte) 0x1E, (byte) 0x09, (byte) 0x40,
                 Opcode.END.opcode(),
                 // Entry 3
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_EXTERN.opcode(), 0x01, // var
+                TypeOpcode.HEAP_EXTERN.opcode(), 0x01, // var
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_EXTERN.opcode(), Opcode.END.opcode()
         }, output.toByteArray());
     }
@@ -404,31 +421,31 @@ class WasmBinaryEncoderTest {
                 // Section ID
                 SectionId.ELEMENT.id(),
                 // Section size (LEB128 u32)
-                0x25,
+                0x21,
                 // Elements vec length (LEB128 u32)
                 0x04,
                 // Entry 1
                 0x05, // Passive segment declared with element type
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(), // Nullable heap function type
+                TypeOpcode.HEAP_FUNC.opcode(), // Ref type shorthand for nullable function references
                 0x01, // Initialiser instruction vec length (LEB128 u32)
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_FUNC.opcode(), Opcode.END.opcode(), // Init expression
                 // Entry 2
                 0x07, // Declarative segment declared with element type
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(), // Nullable heap function type
+                TypeOpcode.HEAP_FUNC.opcode(), // Ref type shorthand for nullable function references
                 0x01, // Initialiser instruction vec length (LEB128 u32)
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_FUNC.opcode(), Opcode.END.opcode(), // Init expression
                 // Entry 3
                 0x06, // Active segment declared with element type and explicit table index
                 0x00, // Table index
                 Opcode.I32_CONST.opcode(), 0x02, Opcode.END.opcode(), // Offset expression
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(), // Nullable heap function type
+                TypeOpcode.HEAP_FUNC.opcode(), // Ref type shorthand for nullable function references
                 0x01, // Initialiser instruction vec length (LEB128 u32)
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_FUNC.opcode(), Opcode.END.opcode(), // Init expression
                 // Entry 4
                 0x06, // Active segment declared with element type and explicit table index
                 0x04, // Table index
                 Opcode.I32_CONST.opcode(), 0x02, Opcode.END.opcode(), // Offset expression
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(), // Nullable heap function type
+                TypeOpcode.HEAP_FUNC.opcode(), // Ref type shorthand for nullable function references
                 0x01, // Initialiser instruction vec length (LEB128 u32)
                 Opcode.REF_NULL.opcode(), TypeOpcode.HEAP_FUNC.opcode(), Opcode.END.opcode(), // Init expression
         }, output.toByteArray());
@@ -494,7 +511,7 @@ class WasmBinaryEncoderTest {
                 // Section ID
                 SectionId.CODE.id(),
                 // Section size (LEB128 u32)
-                0x23,
+                0x1F,
                 // Elements vec length (LEB128 u32)
                 0x03, // 3 entries
                 // Entry 1
@@ -506,21 +523,17 @@ class WasmBinaryEncoderTest {
                 Opcode.I32_ADD.opcode(),
                 Opcode.END.opcode(),
                 // Entry 2
-                0x0B, // Entry 2 code size (LEB128 u32)
-                0x02, // Local variables vec length (LEB128 u32)
-                // TODO: Use compressed local variable declaration format
-                0x01, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
-                0x01, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
+                0x09, // Entry 2 code size (LEB128 u32)
+                0x01, // Local variables vec length (LEB128 u32)
+                0x02, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
                 Opcode.LOCAL_GET.opcode(), 0x00,
                 Opcode.LOCAL_GET.opcode(), 0x01,
                 Opcode.I32_ADD.opcode(),
                 Opcode.END.opcode(),
                 // Entry 3
-                0x0B, // Entry 3 code size (LEB128 u32)
-                0x02, // Local variables vec length (LEB128 u32)
-                // TODO: Use compressed local variable declaration format
-                0x01, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
-                0x01, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
+                0x09, // Entry 3 code size (LEB128 u32)
+                0x01, // Local variables vec length (LEB128 u32)
+                0x02, TypeOpcode.I32.opcode(), // Number of variables of this type, variable type
                 Opcode.LOCAL_GET.opcode(), 0x00,
                 Opcode.LOCAL_GET.opcode(), 0x01,
                 Opcode.I32_MUL.opcode(),
@@ -528,6 +541,104 @@ class WasmBinaryEncoderTest {
         }, output.toByteArray());
     }
 
+    @Test
+    void testEncodeCodeWithLocalRuns() throws IOException {
+        var encoder = new WasmBinaryEncoder();
+        var output = new ByteArrayOutputStream();
+
+        var locals = new ArrayList<ValType>();
+        locals.addAll(Collections.nCopies(200, NumType.i64()));
+        locals.add(NumType.i32());
+        locals.add(RefType.nullable(HeapType.typeId(1)));
+        locals.add(RefType.nullable(HeapType.typeId(1)));
+        locals.addAll(Collections.nCopies(3, NumType.i64()));
+
+        encoder.encodeCode(output, List.of(new Func(0, locals, Expression.of())));
+
+        var expected = new byte[]{
+                // Section ID
+                SectionId.CODE.id(),
+                // Section size (LEB128 u32)
+                0x0E,
+                // Elements vec length (LEB128 u32)
+                0x01,
+                // Entry 1
+                0x0C, // Entry 1 code size (LEB128 u32)
+                0x04, // Local variables vec length (LEB128 u32)
+                (byte) 0xC8, 0x01, TypeOpcode.I64.opcode(), // 200 x i64
+                0x01, TypeOpcode.I32.opcode(), // 1 x i32
+                0x02, TypeOpcode.REF_NULLABLE.opcode(), 0x01, // 2 x (ref null 1)
+                0x03, TypeOpcode.I64.opcode(), // 3 x i64
+                Opcode.END.opcode(),
+        };
+
+        assertArrayEquals(expected, output.toByteArray());
+
+        // The same runs can be given without materialising each local
+        var compressedOutput = new ByteArrayOutputStream();
+
+        encoder.encodeCode(compressedOutput, List.of(Func.compressed(0, List.of(
+                Locals.of(150, NumType.i64()),
+                Locals.of(50, NumType.i64()),
+                Locals.of(1, NumType.i32()),
+                Locals.of(0, NumType.f32()),
+                Locals.of(2, RefType.nullable(HeapType.typeId(1))),
+                Locals.of(3, NumType.i64())), Expression.of())));
+
+        assertArrayEquals(expected, compressedOutput.toByteArray());
+    }
+
+    private List<Func> manyFuncs(int count) {
+        var funcs = new ArrayList<Func>(count);
+
+        for (int i = 0; i < count; i++) {
+            funcs.add(new Func(i, List.of(NumType.i32(), NumType.i64()), Expression.of(
+                    VariableInstruction.local_get(0),
+                    NumericInstruction.i32_const(i * 1000),
+                    NumericInstruction.i32_add(),
+                    VariableInstruction.local_set(0))));
+        }
+
+        return funcs;
+    }
+
+    @Test
+    void testEncodeCodeInParallelOnForkJoinPool() throws IOException {
+        var funcs = manyFuncs(1000);
+
+        var sequential = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeCode(sequential, funcs);
+
+        var pool = new ForkJoinPool(4);
+        try {
+            var parallel = new ByteArrayOutputStream();
+            new WasmBinaryEncoder(pool).encodeCode(parallel, funcs);
+            assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testEncodeCodeInParallelOnExecutor() throws IOException {
+        // Fewer functions than a single chunk as well as several chunks with a partial final chunk
+        for (int count : new int[]{0, 1, WasmBinaryEncoder.PARALLEL_CHUNK_SIZE, 1000}) {
+            var funcs = manyFuncs(count);
+
+            var sequential = new ByteArrayOutputStream();
+            new WasmBinaryEncoder().encodeCode(sequential, funcs);
+
+            var executor = Executors.newFixedThreadPool(4);
+            try {
+                var parallel = new ByteArrayOutputStream();
+                new WasmBinaryEncoder(executor).encodeCode(parallel, funcs);
+                assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
     @Test
     void testEncodeEmptyData() throws IOException {
         var encoder = new WasmBinaryEncoder();
@@ -572,6 +683,61 @@ class WasmBinaryEncoderTest {
         }, output.toByteArray());
     }
 
+    @Test
+    void testEncodeDataWithMultiByteSectionSize() throws IOException {
+        var encoder = new WasmBinaryEncoder();
+        var output = new ByteArrayOutputStream();
+
+        var init = new byte[200];
+        Arrays.fill(init, (byte) 0x2A);
+
+        encoder.encodeData(output, List.of(new Data(init, Data.Mode.passive())));
+
+        var expected = new ByteArrayOutputStream();
+        expected.write(SectionId.DATA.id());
+        // Section size (LEB128 u32)
+        expected.write(new byte[]{(byte) 0xCC, 0x01}); // 204 bytes
+        // Data vec length (LEB128 u32)
+        expected.write(0x01);
+        // Passive data segment
+        expected.write(0x01);
+        // Data length (LEB128 u32)
+        expected.write(new byte[]{(byte) 0xC8, 0x01}); // 200 bytes
+        expected.write(init);
+
+        assertArrayEquals(expected.toByteArray(), output.toByteArray());
+    }
+
+    @Test
+    void testEncodeExportsWithNonAsciiNames() throws IOException {
+        var encoder = new WasmBinaryEncoder();
+        var output = new ByteArrayOutputStream();
+
+        encoder.encodeExports(output, List.of(
+                new Export("\u00e9", Export.Descriptor.func(0)),
+                new Export("\ud83d\ude00", Export.Descriptor.mem(0))
+        ));
+
+        assertArrayEquals(new byte[]{
+                // Section ID
+                SectionId.EXPORT.id(),
+                // Section size (LEB128 u32)
+                0x0D,
+                // Exports vec length (LEB128 u32)
+                0x02,
+                // Entry 1
+                0x02, // Name length
+                (byte) 0xC3, (byte) 0xA9, // "\u00e9"
+                0x00, // funcidx
+                0x00, // index 0
+                // Entry 2
+                0x04, // Name length
+                (byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80, // "\ud83d\ude00"
+                0x02, // memidx
+                0x00, // index 0
+        }, output.toByteArray());
+    }
+
     @Test
     void testEncodeEmptyModule() throws IOException {
         var encoder = new WasmBinaryEncoder();
@@ -586,4 +752,167 @@ class WasmBinaryEncoderTest {
                 0x01, 0x00, 0x00, 0x00
         }, output.toByteArray());
     }
+
+    private Module sampleModule() {
+        var payload = new byte[200 * 1024];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+
+        return Module.builder()
+                .withImport(new Import("env", "mem", Import.Descriptor.mem(ExternType.mem(Limits.of(1)))))
+                .withFunc(type, List.of(NumType.i64()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(1),
+                        NumericInstruction.i32_add()))
+                .withTable(new Table(
+                        ExternType.table(Limits.of(1), RefType.nullable(HeapType.func())),
+                        ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withMemory(ExternType.mem(Limits.of(4, 16)))
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(42))))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .withStart(0)
+                .withElem(new Elem(
+                        RefType.nullable(HeapType.func()),
+                        List.of(ConstantExpression.of(ReferenceInstruction.ref_func(0))),
+                        Elem.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .withData(new Data(new byte[]{1, 2, 3}, Data.Mode.passive()))
+                .withData(new Data(payload, Data.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(16)))))
+                .build();
+    }
+
+    private byte[] encodeToStream(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    @Test
+    void testSizeOfModule() throws IOException {
+        var encoder = new WasmBinaryEncoder();
+        assertEquals(8, encoder.sizeOfModule(Module.empty()));
+
+        var module = sampleModule();
+        assertEquals(encodeToStream(module).length, encoder.sizeOfModule(module));
+    }
+
+    @Test
+    void testEncodeModuleToHeapByteBuffer() throws IOException {
+        var module = sampleModule();
+        var encoder = new WasmBinaryEncoder();
+        var buffer = ByteBuffer.allocate(encoder.sizeOfModule(module));
+
+        encoder.encodeModule(buffer, module);
+
+        assertEquals(0, buffer.remaining());
+        assertArrayEquals(encodeToStream(module), buffer.array());
+    }
+
+    @Test
+    void testEncodeModuleToDirectByteBuffer() throws IOException {
+        var module = sampleModule();
+        var encoder = new WasmBinaryEncoder();
+        var buffer = ByteBuffer.allocateDirect(encoder.sizeOfModule(module));
+
+        encoder.encodeModule(buffer, module);
+
+        var encoded = new byte[buffer.flip().remaining()];
+        buffer.get(encoded);
+        assertArrayEquals(encodeToStream(module), encoded);
+    }
+
+    @Test
+    void testEncodeModuleToChannel() throws IOException {
+        var module = sampleModule();
+        var output = new ByteArrayOutputStream();
+
+        new WasmBinaryEncoder().encodeModule(Channels.newChannel(output), module);
+
+        assertArrayEquals(encodeToStream(module), output.toByteArray());
+    }
+
+    @Test
+    void testEncodeModuleToFileChannel() throws IOException {
+        var module = sampleModule();
+        var wasmFile = tmpDir.resolve("sample.wasm");
+
+        try (var channel = FileChannel.open(wasmFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            new WasmBinaryEncoder().encodeModule(channel, module);
+        }
+
+        assertArrayEquals(encodeToStream(module), Files.readAllBytes(wasmFile));
+    }
+
+    @Test
+    void testEncodeLargeDataSegmentToChannelWithoutCopying() throws IOException {
+        var init = ByteBuffer.allocate(4 * ByteChannelOutputStream.DEFAULT_BUFFER_SIZE);
+        Arrays.fill(init.array(), (byte) 0x2A);
+        var module = Module.builder().withDatas(new Data(init, Data.Mode.passive())).build();
+
+        var output = new ByteArrayOutputStream();
+        var delegate = Channels.newChannel(output);
+        var payloadWrites = new ArrayList<ByteBuffer>();
+
+        var channel = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                // The segment's own read-only view should reach the channel, rather than a copy of it
+                if (src.isReadOnly()) {
+                    payloadWrites.add(src.duplicate());
+                }
+                return delegate.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        new WasmBinaryEncoder().encodeModule(channel, module);
+
+        assertEquals(1, payloadWrites.size());
+        assertEquals(init.capacity(), payloadWrites.get(0).remaining());
+        assertArrayEquals(encodeToStream(module), output.toByteArray());
+    }
+
+    @Test
+    void testEncodeDataSegmentFromItsOwnArray() throws IOException {
+        var init = new byte[4 * 8192];
+        Arrays.fill(init, (byte) 0x2A);
+
+        var output = new ByteArrayOutputStream();
+        var payloadWrites = new ArrayList<Integer>();
+
+        var stream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // The segment's own array should be written in one go, rather than copied in chunks
+                if (b == init) {
+                    payloadWrites.add(len);
+                }
+                output.write(b, off, len);
+            }
+        };
+
+        new WasmBinaryEncoder().encodeData(stream, List.of(new Data(init, Data.Mode.passive())));
+
+        assertEquals(List.of(init.length), payloadWrites);
+
+        // A segment viewing a buffer is copied in chunks instead, with the same result
+        var expected = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeData(expected, List.of(new Data(ByteBuffer.wrap(init), Data.Mode.passive())));
+        assertArrayEquals(expected.toByteArray(), output.toByteArray());
+    }
 }
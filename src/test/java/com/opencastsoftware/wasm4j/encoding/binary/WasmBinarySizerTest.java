@@ -0,0 +1,119 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.encoding.binary;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WasmBinarySizerTest {
+    private Module sampleModule() {
+        var type = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+
+        return Module.builder()
+                .withImport(new Import("env", "mem", Import.Descriptor.mem(ExternType.mem(Limits.of(1)))))
+                .withImport(new Import("env", "g", Import.Descriptor.global(GlobalType.immutable(NumType.f64()))))
+                .withFunc(type, List.of(NumType.i64(), NumType.i64(), NumType.f32()), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(1),
+                        NumericInstruction.i32_add()))
+                .withFunc(type, List.of(), Expression.of(
+                        ControlInstruction.block(List.of(
+                                NumericInstruction.f64_const(Math.PI),
+                                NumericInstruction.i64_const(-1L << 40),
+                                ParametricInstruction.drop(),
+                                ParametricInstruction.drop())),
+                        VariableInstruction.local_get(0)))
+                .withTable(new Table(
+                        ExternType.table(Limits.of(1), RefType.nullable(HeapType.func())),
+                        ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withMemory(ExternType.mem(Limits.of(4, 16)))
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(42))))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .withExport(new Export("ünïcödé 😀", Export.Descriptor.func(1)))
+                .withStart(0)
+                .withElem(new Elem(
+                        RefType.nullable(HeapType.func()),
+                        List.of(ConstantExpression.of(ReferenceInstruction.ref_func(0))),
+                        Elem.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .withData(new Data(new byte[]{1, 2, 3}, Data.Mode.passive()))
+                .withData(new Data(new byte[300], Data.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(16)))))
+                .build();
+    }
+
+    private interface SectionEncoding {
+        void encode(WasmBinaryEncoder encoder, ByteArrayOutputStream output) throws IOException;
+    }
+
+    private int encodedSize(SectionEncoding encoding) throws IOException {
+        var output = new ByteArrayOutputStream();
+        encoding.encode(new WasmBinaryEncoder(), output);
+        return output.size();
+    }
+
+    @Test
+    void testSizeOfSections() throws IOException {
+        var module = sampleModule();
+        var sizer = new WasmBinarySizer();
+
+        assertEquals(encodedSize((e, out) -> e.encodeTypes(out, module.types())), sizer.sizeOfTypes(module.types()));
+        assertEquals(encodedSize((e, out) -> e.encodeImports(out, module.imports())), sizer.sizeOfImports(module.imports()));
+        assertEquals(encodedSize((e, out) -> e.encodeFunctions(out, module.funcs())), sizer.sizeOfFunctions(module.funcs()));
+        assertEquals(encodedSize((e, out) -> e.encodeTables(out, module.tables())), sizer.sizeOfTables(module.tables()));
+        assertEquals(encodedSize((e, out) -> e.encodeMemories(out, module.mems())), sizer.sizeOfMemories(module.mems()));
+        assertEquals(encodedSize((e, out) -> e.encodeGlobals(out, module.globals())), sizer.sizeOfGlobals(module.globals()));
+        assertEquals(encodedSize((e, out) -> e.encodeExports(out, module.exports())), sizer.sizeOfExports(module.exports()));
+        assertEquals(encodedSize((e, out) -> e.encodeStart(out, module.start())), sizer.sizeOfStart(module.start()));
+        assertEquals(encodedSize((e, out) -> e.encodeElems(out, module.elems())), sizer.sizeOfElems(module.elems()));
+        assertEquals(encodedSize((e, out) -> e.encodeDataCount(out, module.datas())), sizer.sizeOfDataCount(module.datas()));
+        assertEquals(encodedSize((e, out) -> e.encodeCode(out, module.funcs())), sizer.sizeOfCode(module.funcs()));
+        assertEquals(encodedSize((e, out) -> e.encodeData(out, module.datas())), sizer.sizeOfData(module.datas()));
+    }
+
+    @Test
+    void testSizeOfEmptySections() {
+        var module = Module.empty();
+        var sizer = new WasmBinarySizer();
+
+        assertEquals(0, sizer.sizeOfTypes(module.types()));
+        assertEquals(0, sizer.sizeOfImports(module.imports()));
+        assertEquals(0, sizer.sizeOfFunctions(module.funcs()));
+        assertEquals(0, sizer.sizeOfStart(module.start()));
+        assertEquals(0, sizer.sizeOfCode(module.funcs()));
+        assertEquals(0, sizer.sizeOfData(module.datas()));
+        assertEquals(8, sizer.sizeOfModule(module));
+    }
+
+    @Test
+    void testSizeOfFunc() throws IOException {
+        var sizer = new WasmBinarySizer();
+
+        for (Func func : sampleModule().funcs()) {
+            assertEquals(encodedSize((e, out) -> e.encodeFunc(out, func)), sizer.sizeOfFunc(func));
+        }
+    }
+
+    @Test
+    void testSizeOfModule() throws IOException {
+        var module = sampleModule();
+        var sizer = new WasmBinarySizer();
+
+        assertEquals(encodedSize((e, out) -> e.encodeModule(out, module)), sizer.sizeOfModule(module));
+        // The sizer can be reused for further modules
+        assertEquals(encodedSize((e, out) -> e.encodeModule(out, module)), sizer.sizeOfModule(module));
+    }
+}
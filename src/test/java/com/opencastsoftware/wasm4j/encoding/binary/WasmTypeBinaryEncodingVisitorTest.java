@@ -96,7 +96,7 @@ class WasmTypeBinaryEncodingVisitorTest {
         var output = new ByteArrayOutputStream();
         var visitor = new WasmTypeBinaryEncodingVisitor(output);
 
-        ExternType.table(Limits.of(0), RefType.heapFunc()).accept(visitor);
+        ExternType.table(Limits.of(0), RefType.nullable(HeapType.func())).accept(visitor);
         ExternType.table(Limits.of(0), RefType.nullable(HeapType.typeId(-1))).accept(visitor);
 
         assertArrayEquals(new byte[]{
@@ -203,17 +203,17 @@ class WasmTypeBinaryEncodingVisitorTest {
                 // Nullable index ref type
                 TypeOpcode.REF_NULLABLE.opcode(), (byte) 0x05,
                 // Ref type 3
-                // Nullable heap extern type
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_EXTERN.opcode(),
-                // Ref type 4
-                // Heap extern type
+                // Nullable heap extern type shorthand
                 TypeOpcode.HEAP_EXTERN.opcode(),
+                // Ref type 4
+                // Non-nullable heap extern type
+                TypeOpcode.REF.opcode(), TypeOpcode.HEAP_EXTERN.opcode(),
                 // Ref type 5
-                // Nullable heap func type
-                TypeOpcode.REF_NULLABLE.opcode(), TypeOpcode.HEAP_FUNC.opcode(),
+                // Nullable heap func type shorthand
+                TypeOpcode.HEAP_FUNC.opcode(),
                 // Ref type 6
-                // Heap func type
-                TypeOpcode.HEAP_FUNC.opcode()
+                // Non-nullable heap func type
+                TypeOpcode.REF.opcode(), TypeOpcode.HEAP_FUNC.opcode()
         }, output.toByteArray());
     }
 
@@ -0,0 +1,74 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.inplace;
+
+import com.opencastsoftware.wasm4j.Export;
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.LazyFunc;
+import com.opencastsoftware.wasm4j.encoding.binary.Opcode;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryDecoder;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryEncoder;
+import com.opencastsoftware.wasm4j.runtime.EngineConformanceTest;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import com.opencastsoftware.wasm4j.types.NumType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InPlaceInterpreterTest extends EngineConformanceTest {
+    @Override
+    protected Instance instantiate(Module module, Imports imports) {
+        return InPlaceInterpreter.instantiate(module, imports);
+    }
+
+    private static byte[] encode(Module module) throws IOException {
+        var output = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(output, module);
+        return output.toByteArray();
+    }
+
+    @Test
+    void testLazilyDecodedModule() throws IOException {
+        var encoded = encode(Module.builder()
+                .withFunc(UNARY, List.of(NumType.i64(), NumType.f64()), new Expression(FIB))
+                .withExport(new Export("fib", Export.Descriptor.func(0)))
+                .build());
+
+        var decoder = new WasmBinaryDecoder(WasmBinaryDecoder.BodyDecoding.LAZY);
+
+        // The code is validated and run from the array holding the module, without decoding the function
+        var module = decoder.decodeModule(ByteBuffer.wrap(encoded));
+        var func = (LazyFunc) module.funcs().get(0);
+        var instance = instantiate(module);
+        assertFalse(func.isDecoded());
+        assertArrayEquals(new long[]{6765}, instance.invoke("fib", 20));
+        assertFalse(func.isDecoded());
+
+        // The code is copied out of buffers without an accessible array
+        var direct = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+        assertArrayEquals(new long[]{55}, instantiate(decoder.decodeModule(direct)).invoke("fib", 10));
+    }
+
+    @Test
+    void testOpcodesMatchEncoding() throws IllegalAccessException {
+        for (Field field : WasmOpcodes.class.getDeclaredFields()) {
+            if (field.getName().equals("PREFIX_FC")) {
+                continue;
+            }
+
+            // Prefixed instructions are identified by the sub-opcode after their prefix
+            var bytes = Opcode.valueOf(field.getName()).bytes();
+            assertEquals(bytes[bytes.length - 1] & 0xFF, field.getInt(null), field.getName());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.instructions;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.InstructionBinaryEncodingVisitor;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryDecoder;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryEncoder;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinarySizer;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmTypeBinaryEncodingVisitor;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.types.BlockType;
+import com.opencastsoftware.wasm4j.types.ExternType;
+import com.opencastsoftware.wasm4j.types.HeapType;
+import com.opencastsoftware.wasm4j.types.NumType;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstructionWalkerTest {
+    // Deep enough to overflow the Java stack if any of the traversals recursed
+    private static final int DEPTH = 200_000;
+
+    // Records the events of a walk, as well as encoding the instructions
+    private static class RecordingVisitor extends InstructionBinaryEncodingVisitor {
+        final List<String> events = new ArrayList<>();
+
+        RecordingVisitor(ByteArrayOutputStream output) {
+            super(output, new WasmTypeBinaryEncodingVisitor(output));
+        }
+
+        @Override
+        public void visitBlockStart(@Nullable BlockType blockType) throws IOException {
+            events.add("block");
+            super.visitBlockStart(blockType);
+        }
+
+        @Override
+        public void visitLoopStart(@Nullable BlockType blockType) throws IOException {
+            events.add("loop");
+            super.visitLoopStart(blockType);
+        }
+
+        @Override
+        public void visitIfStart(@Nullable BlockType blockType) throws IOException {
+            events.add("if");
+            super.visitIfStart(blockType);
+        }
+
+        @Override
+        public void visitElse() throws IOException {
+            events.add("else");
+            super.visitElse();
+        }
+
+        @Override
+        public void visitEnd() throws IOException {
+            events.add("end");
+            super.visitEnd();
+        }
+
+        @Override
+        public void visitInstruction(Instruction instruction) throws IOException {
+            events.add(instruction.getClass().getSimpleName());
+            super.visitInstruction(instruction);
+        }
+    }
+
+    private static Expression nestedBlocks(int depth) {
+        List<Instruction> instructions = List.of(NumericInstruction.i32_const(1), ParametricInstruction.drop());
+
+        for (int i = 0; i < depth; i++) {
+            instructions = i % 3 == 0
+                    ? List.of(ControlInstruction.block(instructions))
+                    : i % 3 == 1
+                    ? List.of(ControlInstruction.loop(instructions))
+                    : List.of(ControlInstruction.ifInstr(List.of(ControlInstruction.br(0)), instructions), ParametricInstruction.drop());
+        }
+
+        return new Expression(instructions);
+    }
+
+    @Test
+    void testEvents() throws IOException {
+        var expression = Expression.of(
+                NumericInstruction.i32_const(0),
+                ControlInstruction.ifInstr(NumType.i32(),
+                        List.of(ControlInstruction.block(List.of(NumericInstruction.i32_const(1)))),
+                        List.of(ControlInstruction.loop(List.of(ControlInstruction.br_if(0))))),
+                ControlInstruction.ifInstr(List.of(ParametricInstruction.drop()), List.of()),
+                ParametricInstruction.drop());
+
+        var output = new ByteArrayOutputStream();
+        var visitor = new RecordingVisitor(output);
+
+        InstructionWalker.walk(expression, visitor);
+
+        assertEquals(List.of(
+                "I32Const", "if", "block", "I32Const", "end", "else", "loop", "BranchIf", "end", "end",
+                "if", "Drop", "else", "end", "Drop", "end"), visitor.events);
+
+        // Walking an instruction omits the end of the expression
+        var single = new RecordingVisitor(new ByteArrayOutputStream());
+        InstructionWalker.walk(expression.instructions().get(2), single);
+        assertEquals(List.of("if", "Drop", "else", "end"), single.events);
+    }
+
+    @Test
+    void testDeeplyNestedExpression() throws IOException {
+        var expression = nestedBlocks(DEPTH);
+
+        var output = new ByteArrayOutputStream();
+        expression.accept(new InstructionBinaryEncodingVisitor(output, new WasmTypeBinaryEncodingVisitor(output)));
+        var encoded = output.toByteArray();
+
+        assertEquals(encoded.length, new WasmBinarySizer().sizeOfExpression(expression));
+
+        var module = Module.builder()
+                .withType(ExternType.func(List.of(), List.of()))
+                .withType(ExternType.func(List.of(), List.of()))
+                .withFunc(ExternType.func(List.of(), List.of()), Expression.of(
+                        ControlInstruction.block(HeapType.typeId(1), expression.instructions())))
+                .build();
+
+        var moduleOutput = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(moduleOutput, module);
+        var encodedModule = moduleOutput.toByteArray();
+
+        var decoded = new WasmBinaryDecoder().decodeModule(ByteBuffer.wrap(encodedModule));
+        var deduplicated = decoded.deduplicateTypes();
+        assertEquals(1, deduplicated.types().size());
+
+        var reencoded = new ByteArrayOutputStream();
+        new WasmBinaryEncoder().encodeModule(reencoded, decoded);
+        assertArrayEquals(encodedModule, reencoded.toByteArray());
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.interpreter;
+
+import com.opencastsoftware.wasm4j.Expression;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.runtime.EngineConformanceTest;
+import com.opencastsoftware.wasm4j.runtime.Imports;
+import com.opencastsoftware.wasm4j.runtime.Instance;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterpreterTest extends EngineConformanceTest {
+    @Override
+    protected Instance instantiate(Module module, Imports imports) {
+        return Interpreter.instantiate(module, imports);
+    }
+
+    @Test
+    void testCountsInstructions() {
+        var instance = new InterpreterInstance(Module.builder().withFunc(UNARY, new Expression(FIB)).build(), Imports.empty(), true);
+
+        instance.invoke(0, 1);
+        // The comparison and the local.get in the consequent, as the if itself is not counted
+        assertEquals(4, instance.instructionCount());
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.table.TableInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import com.opencastsoftware.wasm4j.validation.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The behaviour every execution engine shares, run against each engine by its subclasses
+public abstract class EngineConformanceTest {
+    protected static final FuncType UNARY = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+    protected static final FuncType NULLARY = ExternType.func(List.of(), List.of());
+
+    protected static final List<Instruction> FIB = List.of(
+            VariableInstruction.local_get(0),
+            NumericInstruction.i32_const(2),
+            NumericInstruction.i32_lt_s(),
+            ControlInstruction.ifInstr(NumType.i32(),
+                    List.of(VariableInstruction.local_get(0)),
+                    List.of(
+                            VariableInstruction.local_get(0),
+                            NumericInstruction.i32_const(1),
+                            NumericInstruction.i32_sub(),
+                            ControlInstruction.call(0),
+                            VariableInstruction.local_get(0),
+                            NumericInstruction.i32_const(2),
+                            NumericInstruction.i32_sub(),
+                            ControlInstruction.call(0),
+                            NumericInstruction.i32_add())));
+
+    protected abstract Instance instantiate(Module module, Imports imports);
+
+    protected Instance instantiate(Module module) {
+        return instantiate(module, Imports.empty());
+    }
+
+    protected Instance instantiate(FuncType type, List<ValType> locals, Instruction... instructions) {
+        return instantiate(Module.builder()
+                .withFunc(type, locals, Expression.of(instructions))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .build());
+    }
+
+    protected Instance instantiate(FuncType type, Instruction... instructions) {
+        return instantiate(type, List.of(), instructions);
+    }
+
+    @Test
+    void testRecursiveCalls() {
+        var instance = instantiate(Module.builder()
+                .withFunc(UNARY, new Expression(FIB))
+                .withExport(new Export("fib", Export.Descriptor.func(0)))
+                .build());
+
+        assertArrayEquals(new long[]{6765}, instance.invoke("fib", 20));
+        assertArrayEquals(new long[]{1}, instance.invoke(0, 1));
+    }
+
+    @Test
+    void testPackedExpression() {
+        var instance = instantiate(Module.builder()
+                .withFunc(UNARY, PackedExpression.of(new Expression(FIB)))
+                .build());
+
+        assertArrayEquals(new long[]{55}, instance.invoke(0, 10));
+    }
+
+    @Test
+    void testLoop() {
+        // Sums the numbers from 1 to n as an i64
+        var instance = instantiate(ExternType.func(List.of(NumType.i32()), List.of(NumType.i64())), List.of(NumType.i64()),
+                ControlInstruction.block(
+                        ControlInstruction.loop(
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_eqz(),
+                                ControlInstruction.br_if(1),
+                                VariableInstruction.local_get(1),
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i64_extend_i32_u(),
+                                NumericInstruction.i64_add(),
+                                VariableInstruction.local_set(1),
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_const(1),
+                                NumericInstruction.i32_sub(),
+                                VariableInstruction.local_set(0),
+                                ControlInstruction.br(0))),
+                VariableInstruction.local_get(1));
+
+        assertArrayEquals(new long[]{5050}, instance.invoke("f", 100));
+        assertArrayEquals(new long[]{0}, instance.invoke("f", 0));
+    }
+
+    @Test
+    void testBranchesMoveValues() {
+        var instance = instantiate(UNARY,
+                ControlInstruction.block(NumType.i32(),
+                        NumericInstruction.f64_const(1.5),
+                        NumericInstruction.i32_const(7),
+                        NumericInstruction.i32_const(8),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.br_if(0),
+                        NumericInstruction.i32_add(),
+                        VariableInstruction.local_set(0),
+                        ParametricInstruction.drop(),
+                        VariableInstruction.local_get(0)),
+                NumericInstruction.i64_const(1),
+                ParametricInstruction.drop());
+
+        assertArrayEquals(new long[]{8}, instance.invoke("f", 1));
+        assertArrayEquals(new long[]{15}, instance.invoke("f", 0));
+    }
+
+    @Test
+    void testBranchTable() {
+        var instance = instantiate(UNARY,
+                ControlInstruction.block(
+                        ControlInstruction.block(
+                                ControlInstruction.block(
+                                        NumericInstruction.i64_const(3),
+                                        VariableInstruction.local_get(0),
+                                        ControlInstruction.br_table(new int[]{0, 1}, 2)),
+                                NumericInstruction.i32_const(10),
+                                ControlInstruction.ret()),
+                        NumericInstruction.i32_const(11),
+                        ControlInstruction.ret()),
+                NumericInstruction.i32_const(12));
+
+        assertArrayEquals(new long[]{10}, instance.invoke("f", 0));
+        assertArrayEquals(new long[]{11}, instance.invoke("f", 1));
+        assertArrayEquals(new long[]{12}, instance.invoke("f", 2));
+        assertArrayEquals(new long[]{12}, instance.invoke("f", -1));
+
+        var returns = instantiate(UNARY,
+                NumericInstruction.i32_const(5),
+                VariableInstruction.local_get(0),
+                ControlInstruction.br_table(new int[]{}, 0));
+
+        assertArrayEquals(new long[]{5}, returns.invoke("f", 3));
+    }
+
+    @Test
+    void testMultipleResults() {
+        var pair = ExternType.func(List.of(NumType.i32(), NumType.f64()), List.of(NumType.f64(), NumType.i32()));
+
+        var instance = instantiate(Module.builder()
+                .withType(pair)
+                // Swaps its arguments in a block which takes them as parameters
+                .withFunc(pair, Expression.of(
+                        VariableInstruction.local_get(0),
+                        VariableInstruction.local_get(1),
+                        ControlInstruction.block(HeapType.typeId(0),
+                                ParametricInstruction.drop(),
+                                ParametricInstruction.drop(),
+                                VariableInstruction.local_get(1),
+                                VariableInstruction.local_get(0))))
+                .withFunc(ExternType.func(List.of(NumType.i32()), List.of(NumType.i32())), Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.f64_const(0.5),
+                        ControlInstruction.call(0),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.br_if(0),
+                        ParametricInstruction.drop(),
+                        ParametricInstruction.drop(),
+                        NumericInstruction.i32_const(-1)))
+                .build());
+
+        assertArrayEquals(new long[]{Values.f64(0.5), 3}, instance.invoke(0, 3, Values.f64(0.5)));
+        assertArrayEquals(new long[]{-1}, instance.invoke(1, 0));
+        assertArrayEquals(new long[]{4}, instance.invoke(1, 4));
+    }
+
+    @Test
+    void testOperandsAreEvaluatedBeforeEffects() {
+        // The local is read before it is set, and the global before the call that changes it
+        var instance = instantiate(Module.builder()
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(1))))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(10),
+                        VariableInstruction.local_set(0),
+                        VariableInstruction.global_get(0),
+                        ControlInstruction.call(1),
+                        NumericInstruction.i32_sub(),
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_mul(),
+                        NumericInstruction.i32_sub()))
+                .withFunc(ExternType.func(List.of(), List.of(NumType.i32())), Expression.of(
+                        NumericInstruction.i32_const(5),
+                        VariableInstruction.global_set(0),
+                        VariableInstruction.global_get(0)))
+                .build());
+
+        // 3 - (1 - 5) * 10
+        assertArrayEquals(new long[]{43}, instance.invoke(0, 3));
+        // The global keeps the value set by the first call
+        assertArrayEquals(new long[]{-37}, instance.invoke(0, -37));
+    }
+
+    @Test
+    void testLoopParameters() {
+        var instance = instantiate(Module.builder()
+                .withType(ExternType.func(List.of(NumType.i32(), NumType.i32()), List.of(NumType.i32(), NumType.i32())))
+                // Raises the argument to its own power, keeping the product and the count on the stack
+                .withFunc(UNARY, List.of(NumType.i32()), Expression.of(
+                        NumericInstruction.i32_const(1),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.loop(HeapType.typeId(0),
+                                VariableInstruction.local_set(1),
+                                VariableInstruction.local_get(0),
+                                NumericInstruction.i32_mul(),
+                                VariableInstruction.local_get(1),
+                                NumericInstruction.i32_const(1),
+                                NumericInstruction.i32_sub(),
+                                VariableInstruction.local_get(1),
+                                NumericInstruction.i32_const(1),
+                                NumericInstruction.i32_ne(),
+                                ControlInstruction.br_if(0)),
+                        ParametricInstruction.drop()))
+                .build());
+
+        assertArrayEquals(new long[]{27}, instance.invoke(0, 3));
+        assertArrayEquals(new long[]{4}, instance.invoke(0, 2));
+    }
+
+    @Test
+    void testIfParameters() {
+        var instance = instantiate(Module.builder()
+                .withType(ExternType.func(List.of(NumType.i32(), NumType.i32()), List.of(NumType.i32())))
+                // Subtracts or adds the arguments, depending on the sign of the first
+                .withFunc(ExternType.func(List.of(NumType.i32(), NumType.i32()), List.of(NumType.i32())), Expression.of(
+                        VariableInstruction.local_get(0),
+                        VariableInstruction.local_get(1),
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(0),
+                        NumericInstruction.i32_lt_s(),
+                        ControlInstruction.ifInstr(HeapType.typeId(0),
+                                List.of(
+                                        NumericInstruction.i32_sub(),
+                                        VariableInstruction.local_get(1),
+                                        ControlInstruction.br_if(0),
+                                        NumericInstruction.i32_const(100),
+                                        NumericInstruction.i32_add()),
+                                List.of(
+                                        NumericInstruction.i32_add()))))
+                .build());
+
+        assertArrayEquals(new long[]{-7}, instance.invoke(0, -5, 2));
+        assertArrayEquals(new long[]{95}, instance.invoke(0, -5, 0));
+        assertArrayEquals(new long[]{7}, instance.invoke(0, 5, 2));
+    }
+
+    @Test
+    void testIfWithoutElse() {
+        var instance = instantiate(UNARY, List.of(NumType.i32()),
+                NumericInstruction.i32_const(3),
+                VariableInstruction.local_set(1),
+                VariableInstruction.local_get(0),
+                ControlInstruction.ifInstr(List.of(
+                        NumericInstruction.i32_const(4),
+                        VariableInstruction.local_set(1)), List.of()),
+                VariableInstruction.local_get(1));
+
+        assertArrayEquals(new long[]{4}, instance.invoke("f", 1));
+        assertArrayEquals(new long[]{3}, instance.invoke("f", 0));
+    }
+
+    @Test
+    void testDeeplyNestedBlocks() {
+        int depth = 100_000;
+
+        // Branches out of the innermost block with its argument, or returns -1 from there when the argument is 0
+        Instruction body = ControlInstruction.block(NumType.i32(),
+                VariableInstruction.local_get(0),
+                VariableInstruction.local_get(0),
+                ControlInstruction.br_if(0),
+                ParametricInstruction.drop(),
+                NumericInstruction.i32_const(-1),
+                ControlInstruction.br(depth));
+
+        for (int i = 1; i < depth; i++) {
+            body = ControlInstruction.block(NumType.i32(), body);
+        }
+
+        var instance = instantiate(UNARY, body);
+
+        assertArrayEquals(new long[]{7}, instance.invoke("f", 7));
+        assertArrayEquals(new long[]{-1}, instance.invoke("f", 0));
+    }
+
+    @Test
+    void testLongOperandChains() {
+        int length = 20_000;
+
+        // Each addition takes the sum so far as its first operand, so the operands nest as deeply as the chain is long
+        var instructions = new Instruction[1 + 2 * length];
+        instructions[0] = NumericInstruction.i32_const(0);
+        for (int k = 1; k <= length; k++) {
+            instructions[2 * k - 1] = NumericInstruction.i32_const(k);
+            instructions[2 * k] = NumericInstruction.i32_add();
+        }
+
+        var instance = instantiate(ExternType.func(List.of(), List.of(NumType.i32())), List.of(), instructions);
+
+        assertArrayEquals(new long[]{length * (length + 1) / 2}, instance.invoke("f"));
+    }
+
+    @Test
+    void testSelect() {
+        var instance = instantiate(ExternType.func(List.of(NumType.i32()), List.of(NumType.f64())),
+                NumericInstruction.i64_const(1),
+                NumericInstruction.i64_const(2),
+                VariableInstruction.local_get(0),
+                ParametricInstruction.select(),
+                NumericInstruction.f64_convert_i64_s(),
+                NumericInstruction.f64_const(0.5),
+                VariableInstruction.local_get(0),
+                ParametricInstruction.select(NumType.f64()));
+
+        assertArrayEquals(new long[]{Values.f64(1.0)}, instance.invoke("f", 1));
+        assertArrayEquals(new long[]{Values.f64(0.5)}, instance.invoke("f", 0));
+    }
+
+    @Test
+    void testUnreachableCodeIsSkipped() {
+        var instance = instantiate(UNARY,
+                VariableInstruction.local_get(0),
+                ControlInstruction.ret(),
+                ControlInstruction.block(
+                        ControlInstruction.unreachable(),
+                        NumericInstruction.i32_add(),
+                        ParametricInstruction.drop()),
+                NumericInstruction.i32_add());
+
+        assertArrayEquals(new long[]{9}, instance.invoke("f", 9));
+    }
+
+    @Test
+    void testMemory() {
+        var instance = instantiate(Module.builder()
+                .withMemory(ExternType.mem(Limits.of(1, 2)))
+                .withFunc(ExternType.func(List.of(NumType.i32(), NumType.f64()), List.of(NumType.f64())), Expression.of(
+                        VariableInstruction.local_get(0),
+                        VariableInstruction.local_get(1),
+                        MemoryInstruction.f64_store(8, 3),
+                        VariableInstruction.local_get(0),
+                        MemoryInstruction.f64_load(8, 3)))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        MemoryInstruction.memory_grow()))
+                .withData(new Data(new byte[]{1, 2, 3, 4}, Data.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(16)))))
+                .withExport(new Export("mem", Export.Descriptor.mem(0)))
+                .build());
+
+        assertArrayEquals(new long[]{Values.f64(2.5)}, instance.invoke(0, 0, Values.f64(2.5)));
+
+        var memory = instance.memory("mem");
+        assertEquals(0x04030201, memory.buffer().getInt(16));
+
+        var error = assertThrows(Trap.class, () -> instance.invoke(0, 65530, Values.f64(1.0)));
+        assertEquals("out of bounds memory access", error.getMessage());
+        assertThrows(Trap.class, () -> instance.invoke(0, -8, Values.f64(1.0)));
+
+        assertArrayEquals(new long[]{1}, instance.invoke(1, 1));
+        assertArrayEquals(new long[]{-1}, instance.invoke(1, 1));
+        assertEquals(2, memory.size());
+        assertDoesNotThrow(() -> instance.invoke(0, 65530, Values.f64(1.0)));
+        assertEquals(0x04030201, memory.buffer().getInt(16));
+    }
+
+    @Test
+    void testTraps() {
+        assertEquals("unreachable", assertThrows(Trap.class, () -> instantiate(NULLARY, ControlInstruction.unreachable()).invoke("f")).getMessage());
+
+        var divide = instantiate(UNARY,
+                NumericInstruction.i32_const(1),
+                VariableInstruction.local_get(0),
+                NumericInstruction.i32_div_s());
+        assertEquals("integer divide by zero", assertThrows(Trap.class, () -> divide.invoke("f", 0)).getMessage());
+
+        var recurse = instantiate(Module.builder()
+                .withFunc(NULLARY, Expression.of(ControlInstruction.call(0)))
+                .build());
+        assertEquals("call stack exhausted", assertThrows(Trap.class, () -> recurse.invoke(0)).getMessage());
+    }
+
+    @Test
+    void testIndirectCalls() {
+        var funcref = RefType.nullable(HeapType.func());
+
+        var instance = instantiate(Module.builder()
+                .withType(UNARY)
+                .withTable(new Table(ExternType.table(Limits.of(3), funcref), ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.call_indirect(0, 0)))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(1),
+                        NumericInstruction.i32_add()))
+                .withFunc(NULLARY, Expression.empty())
+                .withElem(new Elem(funcref, List.of(
+                        ConstantExpression.of(ReferenceInstruction.ref_func(1)),
+                        ConstantExpression.of(ReferenceInstruction.ref_func(2))),
+                        Elem.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .build());
+
+        assertArrayEquals(new long[]{1}, instance.invoke(0, 0));
+        assertEquals("indirect call type mismatch", assertThrows(Trap.class, () -> instance.invoke(0, 1)).getMessage());
+        assertEquals("uninitialized element 2", assertThrows(Trap.class, () -> instance.invoke(0, 2)).getMessage());
+        assertEquals("out of bounds table access", assertThrows(Trap.class, () -> instance.invoke(0, 3)).getMessage());
+    }
+
+    @Test
+    void testReferences() {
+        var ref = RefType.nullable(HeapType.typeId(0));
+
+        // Calls the function in the table at the index given, or returns -1 for a null reference
+        var instance = instantiate(Module.builder()
+                .withTypeDeduplication()
+                .withType(UNARY)
+                .withTable(new Table(ExternType.table(Limits.of(2), ref), ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.typeId(0)))))
+                .withFunc(UNARY, Expression.of(
+                        ControlInstruction.block(
+                                NumericInstruction.i32_const(7),
+                                VariableInstruction.local_get(0),
+                                TableInstruction.table_get(0),
+                                ControlInstruction.br_on_null(0),
+                                ControlInstruction.call_ref(0),
+                                ControlInstruction.ret()),
+                        NumericInstruction.i32_const(-1)))
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.local_get(0),
+                        NumericInstruction.i32_const(2),
+                        NumericInstruction.i32_mul()))
+                .withFunc(ExternType.func(List.of(), List.of(NumType.i32())), Expression.of(
+                        NumericInstruction.i32_const(1),
+                        ReferenceInstruction.ref_func(1),
+                        TableInstruction.table_set(0),
+                        TableInstruction.table_size(0),
+                        ReferenceInstruction.ref_null(HeapType.typeId(0)),
+                        ReferenceInstruction.ref_is_null(),
+                        NumericInstruction.i32_add()))
+                .withElem(new Elem(ref, List.of(ConstantExpression.of(ReferenceInstruction.ref_func(1))), Elem.Mode.declarative()))
+                .build());
+
+        assertArrayEquals(new long[]{-1}, instance.invoke(0, 1));
+        assertArrayEquals(new long[]{3}, instance.invoke(2));
+        assertArrayEquals(new long[]{14}, instance.invoke(0, 1));
+        assertEquals("out of bounds table access", assertThrows(Trap.class, () -> instance.invoke(0, 2)).getMessage());
+    }
+
+    @Test
+    void testImports() {
+        var counter = new GlobalInstance(GlobalType.mutable(NumType.i64()), 0);
+
+        var imports = Imports.builder()
+                .withFunc("env", "double", UNARY, args -> new long[]{Values.i32(Values.asI32(args[0]) * 2)})
+                .withGlobal("env", "counter", counter)
+                .build();
+
+        var instance = instantiate(Module.builder()
+                .withImport(new Import("env", "double", Import.Descriptor.func(0)))
+                .withImport(new Import("env", "counter", Import.Descriptor.global(GlobalType.mutable(NumType.i64()))))
+                .withType(UNARY)
+                .withFunc(UNARY, Expression.of(
+                        VariableInstruction.global_get(0),
+                        NumericInstruction.i64_const(1),
+                        NumericInstruction.i64_add(),
+                        VariableInstruction.global_set(0),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.call(0)))
+                .withExport(new Export("f", Export.Descriptor.func(1)))
+                .build(), imports);
+
+        assertArrayEquals(new long[]{42}, instance.invoke("f", 21));
+        assertArrayEquals(new long[]{4}, instance.invoke(0, 2));
+        assertEquals(1, counter.get());
+
+        var unknown = assertThrows(IllegalArgumentException.class, () -> instantiate(Module.builder()
+                .withImport(new Import("env", "missing", Import.Descriptor.func(0)))
+                .withType(NULLARY)
+                .build()));
+        assertEquals("unknown import env.missing", unknown.getMessage());
+    }
+
+    @Test
+    void testStartFunction() {
+        var instance = instantiate(Module.builder()
+                .withGlobal(new Global(GlobalType.mutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(1))))
+                .withFunc(NULLARY, Expression.of(
+                        NumericInstruction.i32_const(5),
+                        VariableInstruction.global_set(0)))
+                .withStart(0)
+                .withExport(new Export("g", Export.Descriptor.global(0)))
+                .build());
+
+        assertEquals(5, instance.global("g").get());
+    }
+
+    @Test
+    void testInvalidModule() {
+        assertThrows(ValidationException.class, () -> instantiate(Module.builder()
+                .withFunc(UNARY, Expression.of(NumericInstruction.i64_const(1)))
+                .build()));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumericsTest {
+    @Test
+    void testDivision() {
+        assertEquals(-2, Numerics.i32DivS(-7, 3));
+        assertEquals(0x7FFF_FFFF, Numerics.i32DivU(-1, 2));
+        assertEquals(-1, Numerics.i32RemS(-7, 3));
+        assertEquals(0, Numerics.i32RemS(Integer.MIN_VALUE, -1));
+        assertEquals(1, Numerics.i64RemU(-1L, 2));
+
+        assertEquals("integer divide by zero", assertThrows(Trap.class, () -> Numerics.i32DivU(1, 0)).getMessage());
+        assertEquals("integer overflow", assertThrows(Trap.class, () -> Numerics.i32DivS(Integer.MIN_VALUE, -1)).getMessage());
+        assertEquals("integer overflow", assertThrows(Trap.class, () -> Numerics.i64DivS(Long.MIN_VALUE, -1)).getMessage());
+    }
+
+    @Test
+    void testRounding() {
+        assertEquals(2.0f, Numerics.f32Nearest(2.5f));
+        assertEquals(-4.0f, Numerics.f32Nearest(-3.5f));
+        assertEquals(-0.0f, Numerics.f32Nearest(-0.4f));
+        assertEquals(-1.0, Numerics.f64Trunc(-1.9));
+        assertEquals(-0.0, Numerics.f64Trunc(-0.5));
+    }
+
+    @Test
+    void testTruncation() {
+        assertEquals(-256, Numerics.i32TruncF32U(4294967040f));
+        assertEquals(-2, Numerics.i32TruncF64S(-2.9));
+        assertEquals(-2048L, Numerics.i64TruncF64U(18446744073709549568d));
+
+        assertEquals("integer overflow", assertThrows(Trap.class, () -> Numerics.i32TruncF64S(2147483648d)).getMessage());
+        assertEquals("integer overflow", assertThrows(Trap.class, () -> Numerics.i32TruncF32U(-1f)).getMessage());
+        assertEquals("invalid conversion to integer", assertThrows(Trap.class, () -> Numerics.i64TruncF32S(Float.NaN)).getMessage());
+        assertEquals(0, Numerics.i32TruncF64U(-0.9));
+    }
+
+    @Test
+    void testSaturatingTruncation() {
+        assertEquals(-1, Numerics.i32TruncSatF32U(1e20f));
+        assertEquals(0, Numerics.i32TruncSatF64U(Double.NaN));
+        assertEquals(0, Numerics.i64TruncSatF32U(-5f));
+        assertEquals(-1L, Numerics.i64TruncSatF64U(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void testUnsignedConversion() {
+        assertEquals(18446744073709551616d, Numerics.f64ConvertI64U(-1L));
+        assertEquals(9223372036854775808f, Numerics.f32ConvertI64U(Long.MIN_VALUE));
+        assertEquals(1.0, Numerics.f64ConvertI64U(1L));
+    }
+}
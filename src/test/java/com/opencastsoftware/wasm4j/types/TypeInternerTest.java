@@ -0,0 +1,72 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.types;
+
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeInternerTest {
+    @Test
+    void testStructuralEquality() {
+        var first = ExternType.func(List.of(NumType.i32(), RefType.nullable(HeapType.typeId(3))), List.of(NumType.f64()));
+        var second = ExternType.func(new ArrayList<>(List.of(NumType.i32(), RefType.nullable(HeapType.typeId(3)))), List.of(NumType.f64()));
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, ExternType.func(List.of(NumType.i32()), List.of(NumType.f64())));
+        assertNotEquals(first, ExternType.func(first.arguments(), List.of()));
+
+        assertEquals(Limits.of(1, 2), Limits.of(1, 2));
+        assertEquals(Limits.of(1).hashCode(), Limits.of(1).hashCode());
+        assertNotEquals(Limits.of(1), Limits.of(1, 1));
+    }
+
+    @Test
+    void testIntern() {
+        var interner = new TypeInterner();
+        var ref = RefType.nonNullable(HeapType.typeId(2000));
+
+        var first = interner.intern(ExternType.func(List.of(ref), List.of(NumType.i32())));
+        var second = interner.intern(ExternType.func(List.of(RefType.nonNullable(HeapType.typeId(2000))), List.of(NumType.i32())));
+
+        assertSame(first, second);
+        assertSame(ref, interner.intern(RefType.nonNullable(HeapType.typeId(2000))));
+        assertSame(ref, first.arguments().get(0));
+        assertThrows(UnsupportedOperationException.class, () -> first.results().add(NumType.i64()));
+
+        var limits = interner.intern(Limits.of(1, 10));
+        assertSame(limits, interner.intern(Limits.of(1, 10)));
+        assertNotSame(limits, interner.intern(Limits.of(1)));
+
+        assertSame(NumType.i32(), interner.intern(NumType.i32()));
+        assertEquals(4, interner.size());
+    }
+
+    @Test
+    void testSharedInstances() {
+        assertSame(RefType.nullable(HeapType.func()), RefType.nullable(HeapType.func()));
+        assertSame(RefType.heapExtern(), RefType.nonNullable(HeapType.extern()));
+        assertSame(HeapType.typeId(7), HeapType.typeId(7));
+
+        assertSame(VariableInstruction.local_get(255), VariableInstruction.local_get(255));
+        assertNotSame(VariableInstruction.local_get(256), VariableInstruction.local_get(256));
+        assertSame(VariableInstruction.global_set(0), VariableInstruction.global_set(0));
+        assertSame(NumericInstruction.i32_const(-128), NumericInstruction.i32_const(-128));
+        assertSame(NumericInstruction.i64_const(1023), NumericInstruction.i64_const(1023));
+        assertNotSame(NumericInstruction.i32_const(1024), NumericInstruction.i32_const(1024));
+        assertNotSame(NumericInstruction.i64_const(Long.MIN_VALUE), NumericInstruction.i64_const(Long.MIN_VALUE));
+        assertSame(ControlInstruction.br_if(3), ControlInstruction.br_if(3));
+
+        assertEquals(-129, NumericInstruction.i32_const(-129).value());
+        assertEquals(17, ControlInstruction.br(17).labelIndex());
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * SPDX-FileCopyrightText:  Copyright 2023 Opencast Software Europe Ltd
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.opencastsoftware.wasm4j.validation;
+
+import com.opencastsoftware.wasm4j.*;
+import com.opencastsoftware.wasm4j.Module;
+import com.opencastsoftware.wasm4j.encoding.binary.PackedExpression;
+import com.opencastsoftware.wasm4j.encoding.binary.WasmBinaryDecoder;
+import com.opencastsoftware.wasm4j.instructions.Instruction;
+import com.opencastsoftware.wasm4j.instructions.control.ControlInstruction;
+import com.opencastsoftware.wasm4j.instructions.memory.MemoryInstruction;
+import com.opencastsoftware.wasm4j.instructions.numeric.NumericInstruction;
+import com.opencastsoftware.wasm4j.instructions.parametric.ParametricInstruction;
+import com.opencastsoftware.wasm4j.instructions.reference.ReferenceInstruction;
+import com.opencastsoftware.wasm4j.instructions.table.TableInstruction;
+import com.opencastsoftware.wasm4j.instructions.variable.VariableInstruction;
+import com.opencastsoftware.wasm4j.types.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleValidatorTest {
+    private static final FuncType UNARY = ExternType.func(List.of(NumType.i32()), List.of(NumType.i32()));
+    private static final FuncType NULLARY = ExternType.func(List.of(), List.of());
+
+    private static Module func(FuncType type, Instruction... instructions) {
+        return Module.builder().withFunc(type, Expression.of(instructions)).build();
+    }
+
+    private static ValidationException invalid(Module module) {
+        return assertThrows(ValidationException.class, () -> ModuleValidator.validate(module));
+    }
+
+    @Test
+    void testValidModule() {
+        var ref = RefType.nonNullable(HeapType.typeId(0));
+
+        var module = Module.builder()
+                .withType(UNARY)
+                .withImport(new Import("env", "g", Import.Descriptor.global(GlobalType.immutable(NumType.i32()))))
+                .withMemory(ExternType.mem(Limits.of(1, 2)))
+                .withTable(new Table(ExternType.table(Limits.of(1), RefType.nullable(HeapType.func())), ConstantExpression.of(ReferenceInstruction.ref_null(HeapType.func()))))
+                .withGlobal(new Global(GlobalType.mutable(NumType.i64()), ConstantExpression.of(NumericInstruction.i64_const(0))))
+                .withFunc(UNARY, List.of(NumType.f64(), ref), Expression.of(
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.block(HeapType.typeId(0),
+                                VariableInstruction.local_get(0),
+                                ControlInstruction.br_table(new int[]{0, 1}, 0)),
+                        ControlInstruction.loop(NumType.i32(),
+                                VariableInstruction.global_get(0),
+                                VariableInstruction.global_get(0),
+                                ControlInstruction.br_if(0)),
+                        ControlInstruction.ifInstr(NumType.i32(),
+                                List.of(NumericInstruction.i32_const(1), MemoryInstruction.i32_load(0, 2)),
+                                List.of(ControlInstruction.unreachable(), NumericInstruction.i32_add())),
+                        NumericInstruction.i32_const(0),
+                        ControlInstruction.call_indirect(0, 0),
+                        ReferenceInstruction.ref_func(0),
+                        ControlInstruction.call_ref(0),
+                        VariableInstruction.local_get(2),
+                        ReferenceInstruction.ref_is_null(),
+                        ParametricInstruction.select(),
+                        VariableInstruction.global_get(1),
+                        NumericInstruction.i32_wrap_i64(),
+                        NumericInstruction.i32_add()))
+                .withElem(new Elem(RefType.nullable(HeapType.func()), List.of(ConstantExpression.of(ReferenceInstruction.ref_func(0))), Elem.Mode.declarative()))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .build();
+
+        assertDoesNotThrow(() -> ModuleValidator.validate(module));
+    }
+
+    @Test
+    void testTypeMismatch() {
+        var error = invalid(func(UNARY,
+                VariableInstruction.local_get(0),
+                NumericInstruction.i64_const(1),
+                NumericInstruction.i32_add()));
+
+        assertEquals(0, error.funcIndex());
+        assertEquals(2, error.instructionIndex());
+        assertEquals("type mismatch: expected i32 but found i64 in function 0 at instruction 2", error.getMessage());
+    }
+
+    @Test
+    void testFunctionResults() {
+        assertTrue(invalid(func(UNARY)).getMessage().startsWith("type mismatch: expected i32 but the stack is empty"));
+        assertTrue(invalid(func(NULLARY, NumericInstruction.i32_const(1))).getMessage().startsWith("type mismatch: 1 values remain"));
+        assertDoesNotThrow(() -> ModuleValidator.validate(func(UNARY, NumericInstruction.i32_const(1), ControlInstruction.ret())));
+    }
+
+    @Test
+    void testUnreachableCodeIsPolymorphic() {
+        assertDoesNotThrow(() -> ModuleValidator.validate(func(UNARY,
+                ControlInstruction.unreachable(),
+                NumericInstruction.i32_add())));
+
+        assertDoesNotThrow(() -> ModuleValidator.validate(func(NULLARY,
+                ControlInstruction.block(
+                        ControlInstruction.br(0),
+                        ParametricInstruction.select(),
+                        ParametricInstruction.drop()))));
+
+        // Values pushed after the unreachable instruction are still checked
+        assertThrows(ValidationException.class, () -> ModuleValidator.validate(func(UNARY,
+                ControlInstruction.unreachable(),
+                NumericInstruction.i64_const(1),
+                NumericInstruction.i32_add())));
+    }
+
+    @Test
+    void testBlocks() {
+        // A conditional without an alternative must pass its parameters through unchanged
+        var error = invalid(func(UNARY,
+                VariableInstruction.local_get(0),
+                ControlInstruction.ifInstr(NumType.i32(), List.of(NumericInstruction.i32_const(1)), List.of())));
+        assertTrue(error.getMessage().startsWith("type mismatch: expected i32 but the stack is empty"));
+
+        // A branch to a loop passes values to its start, and a branch to a block passes values to its end
+        assertDoesNotThrow(() -> ModuleValidator.validate(func(UNARY,
+                ControlInstruction.loop(NumType.i32(), ControlInstruction.br(0)))));
+        assertThrows(ValidationException.class, () -> ModuleValidator.validate(func(UNARY,
+                ControlInstruction.block(NumType.i32(), ControlInstruction.br(0)))));
+
+        var arities = invalid(func(NULLARY,
+                ControlInstruction.block(NumType.i32(),
+                        ControlInstruction.block(
+                                NumericInstruction.i32_const(1),
+                                NumericInstruction.i32_const(0),
+                                ControlInstruction.br_table(new int[]{0}, 1)))));
+        assertTrue(arities.getMessage().contains("br_table targets"));
+
+        assertTrue(invalid(func(NULLARY, ControlInstruction.br(1))).getMessage().startsWith("unknown label 1"));
+    }
+
+    @Test
+    void testIndices() {
+        assertTrue(invalid(func(NULLARY, VariableInstruction.local_get(0), ParametricInstruction.drop())).getMessage().startsWith("unknown local 0"));
+        assertTrue(invalid(func(NULLARY, ControlInstruction.call(1))).getMessage().startsWith("unknown function 1"));
+        assertTrue(invalid(func(NULLARY, VariableInstruction.global_get(0), ParametricInstruction.drop())).getMessage().startsWith("unknown global 0"));
+        assertTrue(invalid(func(NULLARY, TableInstruction.elem_drop(0))).getMessage().startsWith("unknown elem segment 0"));
+        assertTrue(invalid(func(NULLARY, MemoryInstruction.memory_size(), ParametricInstruction.drop())).getMessage().startsWith("unknown memory 0"));
+        assertTrue(invalid(func(NULLARY, ReferenceInstruction.ref_func(0), ParametricInstruction.drop())).getMessage().startsWith("undeclared function reference 0"));
+    }
+
+    @Test
+    void testLocals() {
+        var module = Module.builder()
+                .withCompressedFunc(UNARY, List.of(Locals.of(100_000, NumType.i64()), Locals.of(1, NumType.f32())), Expression.of(
+                        VariableInstruction.local_get(100_001),
+                        ParametricInstruction.drop(),
+                        VariableInstruction.local_get(100_000),
+                        VariableInstruction.local_tee(1),
+                        VariableInstruction.local_set(50_000),
+                        VariableInstruction.local_get(0)))
+                .build();
+
+        assertDoesNotThrow(() -> ModuleValidator.validate(module));
+    }
+
+    @Test
+    void testImmutableGlobal() {
+        var module = Module.builder()
+                .withGlobal(new Global(GlobalType.immutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i32_const(0))))
+                .withFunc(NULLARY, Expression.of(NumericInstruction.i32_const(1), VariableInstruction.global_set(0)))
+                .build();
+
+        assertTrue(invalid(module).getMessage().startsWith("global 0 is immutable"));
+    }
+
+    @Test
+    void testAlignment() {
+        var module = Module.builder()
+                .withMemory(ExternType.mem(Limits.of(1)))
+                .withFunc(NULLARY, Expression.of(
+                        NumericInstruction.i32_const(0),
+                        MemoryInstruction.i32_load(0, 3),
+                        ParametricInstruction.drop()))
+                .build();
+
+        assertTrue(invalid(module).getMessage().startsWith("alignment must not be larger than natural"));
+    }
+
+    @Test
+    void testReferences() {
+        var typed = RefType.nullable(HeapType.typeId(0));
+
+        assertDoesNotThrow(() -> ModuleValidator.validate(Module.builder()
+                .withFunc(NULLARY, List.of(typed), Expression.of(
+                        ControlInstruction.block(RefType.nonNullable(HeapType.typeId(0)),
+                                VariableInstruction.local_get(0),
+                                ControlInstruction.br_on_non_null(0),
+                                ControlInstruction.unreachable()),
+                        ControlInstruction.call_ref(0),
+                        VariableInstruction.local_get(0),
+                        ReferenceInstruction.ref_as_non_null(),
+                        ControlInstruction.call_ref(0)))
+                .build()));
+
+        // A function reference is not an external reference
+        assertThrows(ValidationException.class, () -> ModuleValidator.validate(Module.builder()
+                .withFunc(NULLARY, List.of(RefType.nullable(HeapType.extern())), Expression.of(
+                        ReferenceInstruction.ref_null(HeapType.func()),
+                        VariableInstruction.local_set(0)))
+                .build()));
+
+        // A nullable reference is not a non-nullable reference
+        var error = invalid(Module.builder()
+                .withType(NULLARY)
+                .withType(ExternType.func(List.of(RefType.nonNullable(HeapType.typeId(0))), List.of()))
+                .withFunc(NULLARY, List.of(typed), Expression.of(
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.block(HeapType.typeId(1), ParametricInstruction.drop())))
+                .build());
+        assertTrue(error.getMessage().startsWith("type mismatch: expected (ref 0) but found (ref null 0)"));
+    }
+
+    @Test
+    void testModuleStructure() {
+        assertTrue(invalid(Module.builder()
+                .withMemory(ExternType.mem(Limits.of(2, 1)))
+                .build()).getMessage().startsWith("memory size minimum"));
+
+        assertTrue(invalid(Module.builder()
+                .withMemory(ExternType.mem(Limits.of(65537)))
+                .build()).getMessage().startsWith("memory size must be at most"));
+
+        assertTrue(invalid(Module.builder()
+                .withFunc(NULLARY, Expression.empty())
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .withExport(new Export("f", Export.Descriptor.func(0)))
+                .build()).getMessage().startsWith("duplicate export name"));
+
+        assertTrue(invalid(Module.builder()
+                .withExport(new Export("m", Export.Descriptor.mem(0)))
+                .build()).getMessage().startsWith("unknown mem 0"));
+
+        assertTrue(invalid(Module.builder()
+                .withFunc(UNARY, Expression.of(VariableInstruction.local_get(0)))
+                .withStart(0)
+                .build()).getMessage().startsWith("start function"));
+
+        assertTrue(invalid(Module.builder()
+                .withGlobal(new Global(GlobalType.immutable(NumType.i32()), ConstantExpression.of(NumericInstruction.i64_const(0))))
+                .build()).getMessage().startsWith("type mismatch in initialiser of global 0"));
+
+        assertTrue(invalid(Module.builder()
+                .withGlobal(new Global(GlobalType.immutable(NumType.i32()), ConstantExpression.of(VariableInstruction.global_get(0))))
+                .build()).getMessage().startsWith("unknown global 0"));
+
+        assertTrue(invalid(Module.builder()
+                .withData(new Data(new byte[1], Data.Mode.active(0, ConstantExpression.of(NumericInstruction.i32_const(0)))))
+                .build()).getMessage().startsWith("unknown memory 0"));
+
+        assertTrue(invalid(Module.builder()
+                .withFunc(ExternType.func(List.of(RefType.nullable(HeapType.typeId(5))), List.of()), Expression.empty())
+                .build()).getMessage().startsWith("unknown type 5"));
+    }
+
+    @Test
+    void testDecodedTableAndElemSegment() {
+        // (module (type (func)) (func) (table 1 funcref) (elem (i32.const 0) 0))
+        var module = new WasmBinaryDecoder().decodeModule(ByteBuffer.wrap(new byte[]{
+                0x00, 0x61, 0x73, 0x6D, 0x01, 0x00, 0x00, 0x00,
+                0x01, 0x04, 0x01, 0x60, 0x00, 0x00,
+                0x03, 0x02, 0x01, 0x00,
+                0x04, 0x04, 0x01, 0x70, 0x00, 0x01,
+                0x09, 0x07, 0x01, 0x00, 0x41, 0x00, 0x0B, 0x01, 0x00,
+                0x0A, 0x04, 0x01, 0x02, 0x00, 0x0B
+        }));
+
+        // The table is filled with null references, and the segment's function references fit into it
+        assertDoesNotThrow(() -> ModuleValidator.validate(module));
+    }
+
+    @Test
+    void testPackedExpressions() {
+        var instructions = new Instruction[]{
+                ControlInstruction.block(NumType.i32(),
+                        VariableInstruction.local_get(0),
+                        ControlInstruction.ifInstr(NumType.i32(), List.of(NumericInstruction.i32_const(1)), List.of())),
+                NumericInstruction.i64_const(1),
+                NumericInstruction.i32_add()};
+
+        var tree = invalid(func(UNARY, instructions));
+        var packed = invalid(Module.builder().withFunc(UNARY, PackedExpression.of(Expression.of(instructions))).build());
+
+        assertEquals(tree.getMessage(), packed.getMessage());
+        assertTrue(tree.getMessage().startsWith("type mismatch: expected i32 but the stack is empty"));
+        // The end of the alternative, which is encoded even though it is empty
+        assertEquals(5, tree.instructionIndex());
+    }
+
+    @Test
+    void testDeepNesting() {
+        Instruction body = NumericInstruction.i32_const(1);
+        for (int i = 0; i < 100_000; i++) {
+            body = ControlInstruction.block(NumType.i32(), body);
+        }
+
+        var module = func(UNARY, body);
+        assertDoesNotThrow(() -> ModuleValidator.validate(module));
+    }
+
+    private static Module manyFuncs(int count, int... invalid) {
+        var builder = Module.builder()
+                .withType(UNARY)
+                .withImport(new Import("env", "f", Import.Descriptor.func(0)));
+
+        for (int i = 0; i < count; i++) {
+            int funcIndex = i;
+            var operand = Arrays.stream(invalid).anyMatch(f -> f == funcIndex)
+                    ? NumericInstruction.i64_const(i)
+                    : NumericInstruction.i32_const(i);
+
+            builder.withFunc(UNARY, Expression.of(
+                    VariableInstruction.local_get(0),
+                    operand,
+                    NumericInstruction.i32_add(),
+                    ControlInstruction.call(i % (count + 1))));
+        }
+
+        return builder.build();
+    }
+
+    @Test
+    void testValidateInParallel() {
+        var pool = new ForkJoinPool(4);
+        try {
+            // Fewer functions than a single chunk as well as several chunks with a partial final chunk
+            for (int count : new int[]{0, 1, ModuleValidator.PARALLEL_CHUNK_SIZE, 1000}) {
+                var module = manyFuncs(count);
+                assertDoesNotThrow(() -> ModuleValidator.validate(module, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testValidateInParallelReportsFirstInvalidFunction() {
+        var module = manyFuncs(1000, 900, 130, 131, 600);
+
+        // Function indices count the imported function too
+        var sequential = invalid(module);
+        assertEquals(131, sequential.funcIndex());
+
+        var pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                var parallel = assertThrows(ValidationException.class, () -> ModuleValidator.validate(module, pool));
+                assertEquals(sequential.getMessage(), parallel.getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}